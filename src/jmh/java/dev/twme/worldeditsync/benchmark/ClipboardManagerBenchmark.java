@@ -0,0 +1,78 @@
+package dev.twme.worldeditsync.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.twme.worldeditsync.common.model.SyncState;
+import dev.twme.worldeditsync.paper.clipboard.ClipboardManager;
+
+/**
+ * Runs the watcher's IDLE → CHECKING → UPLOADING → IDLE sequence, with the token, hash and
+ * clipboard checks made along the way, from several threads at once. Fewer players than
+ * threads means threads compete for the same player's state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ClipboardManagerBenchmark {
+
+    @Param({"1", "16", "1024"})
+    public int players;
+
+    private final Object clipboard = new Object();
+    private ClipboardManager manager;
+    private UUID[] playerIds;
+
+    @Setup
+    public void setUp() {
+        manager = new ClipboardManager();
+        playerIds = new UUID[players];
+        String hash = "a".repeat(64);
+        for (int index = 0; index < players; index++) {
+            UUID playerId = UUID.randomUUID();
+            playerIds[index] = playerId;
+            manager.initPlayer(playerId, SyncState.IDLE);
+            manager.markUploadedClipboard(playerId, hash);
+            manager.markSerializedClipboard(playerId, clipboard, hash);
+        }
+    }
+
+    /** Each thread walks the players from its own starting point. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = (int) Thread.currentThread().threadId();
+    }
+
+    @Benchmark
+    public boolean transition(Cursor cursor) {
+        UUID playerId = playerIds[Math.floorMod(cursor.next++, playerIds.length)];
+        if (!manager.isTracked(playerId)
+                || !manager.compareAndSetState(playerId, SyncState.IDLE, SyncState.CHECKING)) {
+            return false;
+        }
+        Object token = manager.getPlayerToken(playerId);
+        boolean unchanged = manager.isSerializedClipboard(playerId, clipboard);
+        boolean uploading = manager.isCurrentPlayerToken(playerId, token)
+                && manager.getLocalHash(playerId) != null
+                && manager.compareAndSetState(playerId, SyncState.CHECKING, SyncState.UPLOADING);
+        manager.forceSetState(playerId, SyncState.IDLE);
+        return uploading && unchanged;
+    }
+}
@@ -0,0 +1,69 @@
+package dev.twme.worldeditsync.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+/**
+ * Compares the single-stream SHA-256 used for clipboard identities with the tree hash, hashed
+ * on the calling thread, on the common pool, and incrementally in transfer-sized chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+
+    private static final int CHUNK_SIZE = 30_000;
+
+    @Param({"1", "16", "64", "256"})
+    public int megabytes;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = new byte[megabytes * 1024 * 1024];
+        new Random(42L).nextBytes(data);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return HashUtil.sha256Hex(data);
+    }
+
+    @Benchmark
+    public String treeHash() {
+        return HashUtil.bytesToHex(TreeHasher.hash(data, null));
+    }
+
+    @Benchmark
+    public String treeHashParallel() {
+        return HashUtil.bytesToHex(TreeHasher.hash(data, ForkJoinPool.commonPool()));
+    }
+
+    @Benchmark
+    public String treeHashIncremental() {
+        TreeHasher hasher = new TreeHasher();
+        for (int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+            hasher.update(data, offset, Math.min(CHUNK_SIZE, data.length - offset));
+        }
+        return hasher.digestHex();
+    }
+}
@@ -0,0 +1,205 @@
+package dev.twme.worldeditsync.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import com.velocitypowered.api.scheduler.Scheduler.TaskBuilder;
+
+import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec;
+import dev.twme.worldeditsync.common.storage.ProxyClipboardStore;
+import dev.twme.worldeditsync.common.util.HashUtil;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.plugin.Plugin;
+import net.md_5.bungee.api.scheduler.TaskScheduler;
+
+/**
+ * Uploads a clipboard through the proxy transfer engine and streams it back, once per
+ * operation, under the Velocity and the BungeeCord adapter. Platform objects are stub-only
+ * mocks whose schedulers run tasks inline, so the numbers reflect engine and codec work.
+ * The proxy-wide download budget is disabled because inline ticks see no time pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyTransferBenchmark {
+
+    private static final String TOKEN = "benchmark-token";
+
+    @Param({"velocity", "bungeecord"})
+    public String platform;
+
+    @Param({"65536", "1048576", "4194304"})
+    public int payloadBytes;
+
+    private final UUID playerId = UUID.randomUUID();
+    private final List<byte[]> uploadFrames = new ArrayList<>();
+    private byte[] downloadRequestFrame;
+    private ProxyClipboardStore store;
+    private Consumer<byte[]> inbound;
+    private Runnable reset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] payload = new byte[payloadBytes];
+        new Random(42L).nextBytes(payload);
+        int chunkSize = Constants.DEFAULT_CHUNK_SIZE;
+        int totalChunks = (payload.length + chunkSize - 1) / chunkSize;
+        String sessionId = UUID.randomUUID().toString();
+        PluginMessageCodec paperCodec = PluginMessageCodec.forPaper(TOKEN);
+        uploadFrames.clear();
+        uploadFrames.add(paperCodec.encode(ProtocolCodec.encodeUploadBegin(
+                sessionId, payload.length, totalChunks, HashUtil.sha256Hex(payload))));
+        for (int index = 0; index < totalChunks; index++) {
+            int offset = index * chunkSize;
+            byte[] chunk = new byte[Math.min(chunkSize, payload.length - offset)];
+            System.arraycopy(payload, offset, chunk, 0, chunk.length);
+            uploadFrames.add(paperCodec.encode(
+                    ProtocolCodec.encodeUploadChunk(sessionId, index, chunk)));
+        }
+        downloadRequestFrame = paperCodec.encode(
+                ProtocolCodec.encodeDownloadRequest(UUID.randomUUID().toString()));
+
+        switch (platform) {
+            case "velocity" -> setUpVelocity(chunkSize);
+            case "bungeecord" -> setUpBungee(chunkSize);
+            default -> throw new IllegalArgumentException("Unknown platform " + platform);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    @Benchmark
+    public long uploadThenDownload() {
+        for (byte[] frame : uploadFrames) {
+            inbound.accept(frame);
+        }
+        inbound.accept(downloadRequestFrame);
+        // Clears per-player rate limiting so every operation starts from the same state.
+        reset.run();
+        return store.getStoredBytes();
+    }
+
+    private void setUpVelocity(int chunkSize) {
+        var velocityStore = new dev.twme.worldeditsync.velocity.storage.ClipboardStore();
+        Player player = stub(Player.class);
+        ServerConnection connection = stub(ServerConnection.class);
+        when(player.getUniqueId()).thenReturn(playerId);
+        when(player.getUsername()).thenReturn("Benchmark");
+        when(player.isActive()).thenReturn(true);
+        when(player.getCurrentServer()).thenReturn(Optional.of(connection));
+        when(connection.getServerInfo()).thenReturn(new ServerInfo(
+                "benchmark", InetSocketAddress.createUnresolved("localhost", 25565)));
+
+        ProxyServer proxy = stub(ProxyServer.class);
+        Scheduler scheduler = stub(Scheduler.class);
+        TaskBuilder builder = stub(TaskBuilder.class);
+        Runnable[] pending = new Runnable[1];
+        when(proxy.getScheduler()).thenReturn(scheduler);
+        when(scheduler.buildTask(any(), any(Runnable.class))).thenAnswer(invocation -> {
+            pending[0] = invocation.getArgument(1);
+            return builder;
+        });
+        when(builder.delay(any(Duration.class))).thenReturn(builder);
+        ScheduledTask task = stub(ScheduledTask.class);
+        when(builder.schedule()).thenAnswer(invocation -> {
+            Runnable runnable = pending[0];
+            pending[0] = null;
+            runnable.run();
+            return task;
+        });
+
+        var handler = new dev.twme.worldeditsync.velocity.handler.MessageHandler(
+                new Object(), proxy, velocityStore, stub(ChannelIdentifier.class),
+                chunkSize, Constants.ABSOLUTE_MAX_CLIPBOARD_SIZE, 0L,
+                Constants.DEFAULT_SESSION_TIMEOUT_MS, 0L,
+                Constants.DEFAULT_PROXY_FRAME_CACHE_BYTES, PluginMessageCodec.forProxy(TOKEN),
+                stub(org.slf4j.Logger.class));
+        store = velocityStore;
+        inbound = frame -> handler.handleMessage(player, frame);
+        reset = () -> handler.removePlayer(playerId);
+    }
+
+    private void setUpBungee(int chunkSize) {
+        var bungeeStore = new dev.twme.worldeditsync.bungeecord.storage.ClipboardStore();
+        ProxiedPlayer player = stub(ProxiedPlayer.class);
+        Server connection = stub(Server.class);
+        when(player.getUniqueId()).thenReturn(playerId);
+        when(player.getName()).thenReturn("Benchmark");
+        when(player.isConnected()).thenReturn(true);
+        when(player.getServer()).thenReturn(connection);
+        net.md_5.bungee.api.config.ServerInfo info = stub(net.md_5.bungee.api.config.ServerInfo.class);
+        when(info.getName()).thenReturn("benchmark");
+        when(connection.getInfo()).thenReturn(info);
+
+        Plugin plugin = stub(Plugin.class);
+        net.md_5.bungee.api.ProxyServer proxy = stub(net.md_5.bungee.api.ProxyServer.class);
+        TaskScheduler scheduler = stub(TaskScheduler.class);
+        when(plugin.getLogger()).thenReturn(stub(java.util.logging.Logger.class));
+        when(plugin.getProxy()).thenReturn(proxy);
+        when(proxy.getScheduler()).thenReturn(scheduler);
+        when(scheduler.runAsync(any(), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        });
+        when(scheduler.schedule(any(), any(Runnable.class), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> {
+                    invocation.<Runnable>getArgument(1).run();
+                    return null;
+                });
+
+        var handler = new dev.twme.worldeditsync.bungeecord.handler.MessageHandler(
+                plugin, bungeeStore, chunkSize, Constants.ABSOLUTE_MAX_CLIPBOARD_SIZE, 0L,
+                Constants.DEFAULT_SESSION_TIMEOUT_MS, 0L,
+                Constants.DEFAULT_PROXY_FRAME_CACHE_BYTES, PluginMessageCodec.forProxy(TOKEN));
+        store = bungeeStore;
+        inbound = frame -> handler.handleMessage(player, frame);
+        reset = () -> handler.removePlayer(playerId);
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
@@ -0,0 +1,231 @@
+package dev.twme.worldeditsync.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.event.platform.PlatformsRegisteredEvent;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+
+import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec.ParsedMessage;
+import dev.twme.worldeditsync.common.protocol.TransferSession;
+import dev.twme.worldeditsync.common.util.HashUtil;
+import dev.twme.worldeditsync.paper.clipboard.ClipboardSerializer;
+
+/**
+ * Measures each stage a clipboard passes through between two backends: serialize, canonicalize,
+ * encrypt, encode into chunk frames, decode the frames, reassemble, decrypt and deserialize.
+ * Synthetic cubic clipboards range from 1K to 16M blocks of a small mixed palette. Inputs for
+ * every stage are prepared once, so each benchmark measures only its own stage.
+ *
+ * <p>Add {@code -prof gc} to the JMH arguments to report the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TransferPipelineBenchmark {
+
+    private static final String TOKEN = "benchmark-token";
+    private static final String[] PALETTE = {
+            "minecraft:stone", "minecraft:dirt", "minecraft:oak_planks",
+            "minecraft:glass", "minecraft:air"};
+
+    /** Cube edge: 10 = 1K, 40 = 64K, 100 = 1M and 256 = 16M blocks. */
+    @Param({"10", "40", "100", "256"})
+    public int edge;
+
+    private final int maxBytes = Constants.ABSOLUTE_MAX_CLIPBOARD_SIZE;
+    private final long maxBlocks = Constants.ABSOLUTE_MAX_CLIPBOARD_BLOCKS;
+    private final int chunkSize = Constants.DEFAULT_CHUNK_SIZE;
+    private final MessageCipher cipher = new MessageCipher(TOKEN);
+    private final PluginMessageCodec paperCodec = PluginMessageCodec.forPaper(TOKEN);
+    private final PluginMessageCodec proxyCodec = PluginMessageCodec.forProxy(TOKEN);
+    private final String sessionId = UUID.randomUUID().toString();
+    private final ExposedSerializer serializer = new ExposedSerializer();
+
+    private Platform platform;
+    private Clipboard clipboard;
+    private byte[] serialized;
+    private byte[] encrypted;
+    private String hash;
+    private List<byte[]> frames;
+    private List<byte[]> chunks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        platform = registerPlatform();
+        clipboard = syntheticClipboard(edge);
+        serialized = serializer.serialize(clipboard, maxBytes, maxBlocks);
+        hash = HashUtil.sha256Hex(serialized);
+        encrypted = cipher.encrypt(serialized);
+        frames = chunkFrames();
+        chunks = new ArrayList<>(frames.size());
+        for (byte[] frame : frames) {
+            chunks.add(chunkData(proxyCodec.decode(frame)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorldEdit.getInstance().getPlatformManager().unregister(platform);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return serializer.serialize(clipboard, maxBytes, maxBlocks);
+    }
+
+    @Benchmark
+    public byte[] canonicalize() throws IOException {
+        return serializer.canonicalize(serialized, maxBytes, maxBlocks);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return cipher.encrypt(serialized);
+    }
+
+    @Benchmark
+    public List<byte[]> encodeChunks() {
+        return chunkFrames();
+    }
+
+    @Benchmark
+    public int decodeChunks() throws IOException {
+        int bytes = 0;
+        for (byte[] frame : frames) {
+            bytes += chunkData(proxyCodec.decode(frame)).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] reassemble() {
+        TransferSession session = new TransferSession(
+                sessionId, chunks.size(), encrypted.length, chunkSize, hash);
+        for (int index = 0; index < chunks.size(); index++) {
+            session.addChunk(index, chunks.get(index));
+        }
+        return session.assemble();
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return cipher.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public Clipboard deserialize() throws IOException {
+        return serializer.deserialize(serialized, maxBytes, maxBlocks);
+    }
+
+    private List<byte[]> chunkFrames() {
+        int totalChunks = (encrypted.length + chunkSize - 1) / chunkSize;
+        List<byte[]> encoded = new ArrayList<>(totalChunks);
+        for (int index = 0; index < totalChunks; index++) {
+            int offset = index * chunkSize;
+            byte[] chunk = new byte[Math.min(chunkSize, encrypted.length - offset)];
+            System.arraycopy(encrypted, offset, chunk, 0, chunk.length);
+            encoded.add(paperCodec.encode(ProtocolCodec.encodeUploadChunk(sessionId, index, chunk)));
+        }
+        return encoded;
+    }
+
+    private static byte[] chunkData(ParsedMessage message) throws IOException {
+        try (DataInputStream input = ProtocolCodec.payloadStream(message)) {
+            input.readUTF();
+            input.readInt();
+            return input.readNBytes(input.readInt());
+        }
+    }
+
+    /** A stub platform backed by WorldEdit's bundled registries, as in the serializer test. */
+    private static Platform registerPlatform() {
+        Platform platform = mock(Platform.class, withSettings().stubOnly());
+        when(platform.getCapabilities()).thenReturn(Map.of(
+                Capability.WORLD_EDITING, Preference.PREFERRED,
+                Capability.GAME_HOOKS, Preference.PREFERRED));
+        when(platform.getRegistries()).thenReturn(BundledRegistries.getInstance());
+        when(platform.getDataVersion()).thenReturn(4_189);
+        when(platform.getPlatformName()).thenReturn("benchmark");
+        when(platform.getPlatformVersion()).thenReturn("1");
+        when(platform.getVersion()).thenReturn("1");
+        when(platform.id()).thenReturn("benchmark");
+        WorldEdit worldEdit = WorldEdit.getInstance();
+        worldEdit.getPlatformManager().register(platform);
+        worldEdit.getPlatformManager().handlePlatformsRegistered(new PlatformsRegisteredEvent());
+        return platform;
+    }
+
+    private static Clipboard syntheticClipboard(int edge) throws WorldEditException {
+        BlockState[] palette = new BlockState[PALETTE.length];
+        for (int index = 0; index < PALETTE.length; index++) {
+            BlockType type = BlockType.REGISTRY.get(PALETTE[index]);
+            if (type == null) {
+                type = new BlockType(PALETTE[index]);
+                BlockType.REGISTRY.register(PALETTE[index], type);
+            }
+            palette[index] = type.getDefaultState();
+        }
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(
+                BlockVector3.ZERO, BlockVector3.at(edge - 1, edge - 1, edge - 1)));
+        clipboard.setOrigin(BlockVector3.ZERO);
+        for (int y = 0; y < edge; y++) {
+            for (int z = 0; z < edge; z++) {
+                for (int x = 0; x < edge; x++) {
+                    // Layers with some noise compress like a real build rather than a solid cube.
+                    int pick = y < edge / 2 ? (x * 31 + y * 17 + z * 7) % 3 : (x ^ z) % 5 == 0 ? 3 : 4;
+                    clipboard.setBlock(BlockVector3.at(x, y, z), palette[pick]);
+                }
+            }
+        }
+        return clipboard;
+    }
+
+    private static final class ExposedSerializer extends ClipboardSerializer {
+        @Override
+        protected byte[] canonicalize(byte[] data, int maxBytes, long maxBlocks) throws IOException {
+            return super.canonicalize(data, maxBytes, maxBlocks);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package dev.twme.worldeditsync.benchmark;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+/**
+ * Two-level SHA-256 tree hash. Data is split into fixed-size leaves, each hashed as
+ * {@code SHA-256(0x00 || leaf)}; the root is {@code SHA-256(0x01 || length || leaf hashes)}.
+ * Leaves can be hashed in parallel, incrementally as chunks arrive, and verified one by one.
+ *
+ * <p>Only {@link HashBenchmark} uses it, to measure the tree hash against the plain
+ * {@link HashUtil#sha256Hex(byte[])} that clipboard identities are built on.
+ */
+public final class TreeHasher {
+
+    public static final int LEAF_SIZE = 1024 * 1024;
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte ROOT_PREFIX = 1;
+    private static final int LEAVES_PER_TASK = 4;
+
+    private final int leafSize;
+    private final MessageDigest leafDigest = newDigest();
+    private final List<byte[]> leafHashes = new ArrayList<>();
+    private int leafFill;
+    private long length;
+    private boolean finished;
+
+    public TreeHasher() {
+        this(LEAF_SIZE);
+    }
+
+    TreeHasher(int leafSize) {
+        if (leafSize <= 0) {
+            throw new IllegalArgumentException("leafSize must be positive");
+        }
+        this.leafSize = leafSize;
+        leafDigest.update(LEAF_PREFIX);
+    }
+
+    public void update(byte[] data) {
+        update(data, 0, data.length);
+    }
+
+    /** Feed the next bytes; each leaf is hashed as soon as it is complete. */
+    public void update(byte[] data, int offset, int count) {
+        if (finished) {
+            throw new IllegalStateException("Tree hash is already finished");
+        }
+        while (count > 0) {
+            int amount = Math.min(count, leafSize - leafFill);
+            leafDigest.update(data, offset, amount);
+            leafFill += amount;
+            length += amount;
+            offset += amount;
+            count -= amount;
+            if (leafFill == leafSize) {
+                completeLeaf();
+            }
+        }
+    }
+
+    public int completedLeaves() {
+        return leafHashes.size();
+    }
+
+    /** Hash of a completed leaf, to compare against an expected value before the root is known. */
+    public byte[] leafHash(int index) {
+        return leafHashes.get(index).clone();
+    }
+
+    /** Finish the hash. An empty input hashes as a single empty leaf. */
+    public byte[] digest() {
+        if (!finished) {
+            if (leafFill > 0 || leafHashes.isEmpty()) {
+                completeLeaf();
+            }
+            finished = true;
+        }
+        return root(leafHashes.toArray(new byte[0][]), length);
+    }
+
+    public String digestHex() {
+        return HashUtil.bytesToHex(digest());
+    }
+
+    /** Hash of one leaf of the given bytes. */
+    public static byte[] leafHash(byte[] data, int offset, int count) {
+        MessageDigest digest = newDigest();
+        digest.update(LEAF_PREFIX);
+        digest.update(data, offset, count);
+        return digest.digest();
+    }
+
+    /** Tree hash of a whole array, hashing leaves on the pool when one is given. */
+    public static byte[] hash(byte[] data, ForkJoinPool pool) {
+        return hash(data, LEAF_SIZE, pool);
+    }
+
+    static byte[] hash(byte[] data, int leafSize, ForkJoinPool pool) {
+        int leaves = (int) Math.max(1L, ((long) data.length + leafSize - 1) / leafSize);
+        byte[][] hashes = new byte[leaves][];
+        LeafRange range = new LeafRange(data, leafSize, hashes, 0, leaves);
+        if (pool != null && leaves > LEAVES_PER_TASK) {
+            pool.invoke(range);
+        } else {
+            range.hashLeaves();
+        }
+        return root(hashes, data.length);
+    }
+
+    private void completeLeaf() {
+        leafHashes.add(leafDigest.digest());
+        leafDigest.update(LEAF_PREFIX);
+        leafFill = 0;
+    }
+
+    private static byte[] root(byte[][] leafHashes, long length) {
+        MessageDigest digest = newDigest();
+        digest.update(ROOT_PREFIX);
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(length).array());
+        for (byte[] leafHash : leafHashes) {
+            digest.update(leafHash);
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class LeafRange extends RecursiveAction {
+        private final byte[] data;
+        private final int leafSize;
+        private final byte[][] hashes;
+        private final int from;
+        private final int to;
+
+        private LeafRange(byte[] data, int leafSize, byte[][] hashes, int from, int to) {
+            this.data = data;
+            this.leafSize = leafSize;
+            this.hashes = hashes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAVES_PER_TASK) {
+                hashLeaves();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LeafRange(data, leafSize, hashes, from, middle),
+                    new LeafRange(data, leafSize, hashes, middle, to));
+        }
+
+        private void hashLeaves() {
+            for (int index = from; index < to; index++) {
+                int offset = (int) Math.min((long) index * leafSize, data.length);
+                hashes[index] = leafHash(data, offset, Math.min(leafSize, data.length - offset));
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.util.PriorityQueue;
+
+/**
+ * Single-threaded discrete-event loop on a virtual millisecond clock. Tasks scheduled for the
+ * same instant run in submission order, so a run is fully determined by its seed and trace.
+ */
+final class EventLoop {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long now;
+    private long sequence;
+
+    long now() {
+        return now;
+    }
+
+    void schedule(long delayMs, Runnable task) {
+        events.add(new Event(now + Math.max(0L, delayMs), sequence++, task));
+    }
+
+    void scheduleAt(long timeMs, Runnable task) {
+        events.add(new Event(Math.max(now, timeMs), sequence++, task));
+    }
+
+    /** Runs events in time order until none are left or the next one is after {@code endMs}. */
+    void runUntil(long endMs, Runnable afterEach) {
+        while (!events.isEmpty() && events.peek().time <= endMs) {
+            Event event = events.poll();
+            now = event.time;
+            event.task.run();
+            afterEach.run();
+        }
+    }
+
+    private record Event(long time, long sequence, Runnable task) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Recorded player behaviour, one action per line: {@code <timeMs> <player> <action> [argument]}.
+ * Actions are {@code join <server>}, {@code upload <bytes>}, {@code switch <server>} and
+ * {@code quit}; blank lines and lines starting with {@code #} are ignored.
+ */
+record PlayerTrace(List<Action> actions) {
+
+    enum Kind { JOIN, UPLOAD, SWITCH, QUIT }
+
+    record Action(long timeMs, String player, Kind kind, String argument) {
+        int bytes() {
+            return Integer.parseInt(argument);
+        }
+    }
+
+    private static final long MEAN_THINK_MS = 20_000L;
+    private static final int MIN_CLIPBOARD_BYTES = 16 * 1024;
+    private static final int MAX_CLIPBOARD_BYTES = 4 * 1024 * 1024;
+
+    static PlayerTrace read(Path path) throws IOException {
+        List<Action> actions = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(path)) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+");
+            try {
+                Kind kind = Kind.valueOf(fields[2].toUpperCase(Locale.ROOT));
+                String argument = fields.length > 3 ? fields[3] : null;
+                if ((kind == Kind.QUIT) != (argument == null)) {
+                    throw new IllegalArgumentException("wrong argument count");
+                }
+                Action action = new Action(Long.parseLong(fields[0]), fields[1], kind, argument);
+                if (kind == Kind.UPLOAD) {
+                    action.bytes();
+                }
+                actions.add(action);
+            } catch (RuntimeException e) {
+                throw new IOException(path + ":" + lineNumber + ": cannot parse '" + line + "'", e);
+            }
+        }
+        actions.sort(Comparator.comparingLong(Action::timeMs));
+        return new PlayerTrace(List.copyOf(actions));
+    }
+
+    void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("# timeMs player action [argument]");
+            writer.newLine();
+            for (Action action : actions) {
+                writer.write(action.timeMs() + " " + action.player() + " "
+                        + action.kind().name().toLowerCase(Locale.ROOT)
+                        + (action.argument() == null ? "" : " " + action.argument()));
+                writer.newLine();
+            }
+        }
+    }
+
+    List<String> servers() {
+        return actions.stream()
+                .filter(action -> action.kind() == Kind.JOIN || action.kind() == Kind.SWITCH)
+                .map(Action::argument)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Players join within the first ten seconds, then copy clipboards of 16 KiB to 4 MiB,
+     * switch servers or reconnect, about every twenty seconds.
+     */
+    static PlayerTrace generate(int players, List<String> servers, long durationMs,
+                                int maxClipboardBytes, Random random) {
+        List<Action> actions = new ArrayList<>();
+        int maxBytes = Math.max(MIN_CLIPBOARD_BYTES, Math.min(MAX_CLIPBOARD_BYTES, maxClipboardBytes));
+        for (int index = 1; index <= players; index++) {
+            String player = "player-" + index;
+            String server = servers.get(random.nextInt(servers.size()));
+            long time = (long) (random.nextDouble() * Math.min(10_000L, durationMs));
+            actions.add(new Action(time, player, Kind.JOIN, server));
+            while (true) {
+                time += (long) (-Math.log(1.0 - random.nextDouble()) * MEAN_THINK_MS);
+                if (time >= durationMs) {
+                    break;
+                }
+                double choice = random.nextDouble();
+                if (choice < 0.55 || servers.size() == 1 && choice < 0.9) {
+                    double scale = Math.log((double) maxBytes / MIN_CLIPBOARD_BYTES);
+                    int bytes = (int) (MIN_CLIPBOARD_BYTES * Math.exp(random.nextDouble() * scale));
+                    actions.add(new Action(time, player, Kind.UPLOAD, Integer.toString(bytes)));
+                } else if (choice < 0.9) {
+                    String next;
+                    do {
+                        next = servers.get(random.nextInt(servers.size()));
+                    } while (next.equals(server));
+                    server = next;
+                    actions.add(new Action(time, player, Kind.SWITCH, server));
+                } else {
+                    actions.add(new Action(time, player, Kind.QUIT, null));
+                    time += 5_000L + random.nextInt(25_000);
+                    actions.add(new Action(time, player, Kind.JOIN, server));
+                }
+            }
+        }
+        actions.sort(Comparator.comparingLong(Action::timeMs));
+        return new PlayerTrace(List.copyOf(actions));
+    }
+}
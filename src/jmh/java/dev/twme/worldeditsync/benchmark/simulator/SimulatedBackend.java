@@ -0,0 +1,454 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.config.TransferConfig;
+import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.protocol.ChunkPacing;
+import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec.ParsedMessage;
+import dev.twme.worldeditsync.common.protocol.TransferSession;
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+/**
+ * The Paper side of the protocol for one backend server: the join handshake with its retries,
+ * watcher-paced uploads pumped with {@link ChunkPacing} like {@code ProxySyncEngine}, and
+ * download reassembly, decryption and hash checks like {@code PluginMessageHandler}.
+ * Serialization and world access are not modelled.
+ */
+final class SimulatedBackend {
+
+    static final String UPLOAD = "upload";
+    static final String DOWNLOAD = "download";
+    static final String JOIN = "join-sync";
+    static final String BACKEND_BYTES = "backend transfers";
+
+    /** One visit of a player to this backend, compared by identity like a server connection. */
+    static final class Connection {
+        final SimulatedPlayer player;
+        final SimulatedBackend backend;
+
+        private Connection(SimulatedPlayer player, SimulatedBackend backend) {
+            this.player = player;
+            this.backend = backend;
+        }
+    }
+
+    private enum State { SYNCING, IDLE, UPLOADING, DOWNLOADING }
+
+    final String name;
+    private final EventLoop loop;
+    private final TransferConfig config;
+    private final PluginMessageCodec codec;
+    private final MessageCipher cipher;
+    private final SimulatedLink uplink;
+    private final SimulatedLink downlink;
+    private final Random random;
+    private final TransferStats stats;
+    private final Map<UUID, PlayerSession> sessions = new HashMap<>();
+    /** Last clipboard each player had here, as the applied-hash index keeps it across visits. */
+    private final Map<UUID, String> appliedHashes = new HashMap<>();
+    private SimulatedProxy proxy;
+
+    SimulatedBackend(String name, EventLoop loop, TransferConfig config, String token,
+                     SimulatedLink uplink, SimulatedLink downlink, Random random,
+                     TransferStats stats) {
+        this.name = name;
+        this.loop = loop;
+        this.config = config;
+        this.codec = PluginMessageCodec.forPaper(token);
+        this.cipher = new MessageCipher(token);
+        this.uplink = uplink;
+        this.downlink = downlink;
+        this.random = random;
+        this.stats = stats;
+    }
+
+    void attach(SimulatedProxy proxy) {
+        this.proxy = proxy;
+    }
+
+    Connection connect(SimulatedPlayer player) {
+        Connection connection = new Connection(player, this);
+        PlayerSession session = new PlayerSession(connection);
+        sessions.put(player.id, session);
+        session.syncStartedAt = loop.now();
+        startSync(session);
+        return connection;
+    }
+
+    void disconnect(SimulatedPlayer player) {
+        PlayerSession session = sessions.remove(player.id);
+        if (session == null) {
+            return;
+        }
+        if (session.state == State.UPLOADING || session.state == State.DOWNLOADING) {
+            stats.recordFailure(operation(session), "player_left");
+            send(session, ProtocolCodec.encodeCancel(session.sessionId, "player_quit"));
+            release(session);
+        }
+        if (session.pendingUploadBytes >= 0) {
+            stats.recordFailure(UPLOAD, "left_before_upload");
+        }
+    }
+
+    /** The player's clipboard changed; the watcher notices it on its next pass. */
+    void clipboardChanged(SimulatedPlayer player, int bytes) {
+        PlayerSession session = sessions.get(player.id);
+        if (session == null) {
+            return;
+        }
+        session.pendingUploadBytes = bytes;
+        session.pendingSince = loop.now();
+        scheduleWatcher(session);
+    }
+
+    /** Frames the proxy sends travel down this backend's link before they are handled. */
+    void deliver(Connection connection, byte[] frame) {
+        downlink.send(frame, () -> receive(connection, frame));
+    }
+
+    int activeTransfers() {
+        int active = 0;
+        for (PlayerSession session : sessions.values()) {
+            if (session.state != State.IDLE || session.pendingUploadBytes >= 0) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private void receive(Connection connection, byte[] frame) {
+        PlayerSession session = sessions.get(connection.player.id);
+        if (session == null || session.connection != connection) {
+            return;
+        }
+        ParsedMessage message = codec.decode(frame);
+        if (message == null) {
+            stats.recordFailure("protocol", "undecodable_frame");
+            return;
+        }
+        try {
+            DataInputStream in = ProtocolCodec.payloadStream(message);
+            switch (message.type()) {
+                case SYNC_HASH -> handleSyncHash(session, in.readUTF(), in.readUTF());
+                case SYNC_NO_DATA -> handleSyncNoData(session, in.readUTF());
+                case UPLOAD_READY -> handleUploadReady(session, in.readUTF());
+                case UPLOAD_ACK -> handleUploadAck(session, in.readUTF());
+                case DOWNLOAD_BEGIN -> handleDownloadBegin(session, in.readUTF(), in.readUTF(),
+                        in.readInt(), in.readInt(), in.readUTF());
+                case DOWNLOAD_CHUNK -> handleDownloadChunk(session, in.readUTF(), in.readInt(),
+                        in.readNBytes(in.readInt()));
+                case CANCEL -> handleCancel(session, in.readUTF(), in.readUTF());
+                default -> {
+                }
+            }
+        } catch (IOException e) {
+            stats.recordFailure("protocol", "truncated_" + message.type());
+        }
+    }
+
+    private void startSync(PlayerSession session) {
+        session.state = State.SYNCING;
+        session.requestId = newId();
+        sendSyncRequest(session, session.requestId, 1);
+    }
+
+    private void sendSyncRequest(PlayerSession session, String requestId, int attempt) {
+        if (!isPending(session, requestId)) {
+            return;
+        }
+        send(session, ProtocolCodec.encodeSyncRequest(requestId));
+        if (attempt < Constants.INITIAL_SYNC_MAX_ATTEMPTS) {
+            loop.schedule(Constants.INITIAL_SYNC_RETRY_MS,
+                    () -> sendSyncRequest(session, requestId, attempt + 1));
+        } else {
+            loop.schedule(Constants.INITIAL_SYNC_RETRY_MS, () -> {
+                if (isPending(session, requestId)) {
+                    // Paper keeps uploads paused rather than overwrite remote data.
+                    stats.recordFailure(JOIN, "no_answer");
+                }
+            });
+        }
+    }
+
+    private boolean isPending(PlayerSession session, String requestId) {
+        return isCurrent(session) && session.state == State.SYNCING
+                && requestId.equals(session.requestId);
+    }
+
+    private void handleSyncHash(PlayerSession session, String requestId, String hash) {
+        if (!isPending(session, requestId)) {
+            return;
+        }
+        if (hash.equals(appliedHashes.get(session.connection.player.id))) {
+            stats.recordLatency(JOIN, loop.now() - session.syncStartedAt);
+            becomeIdle(session);
+            return;
+        }
+        session.state = State.DOWNLOADING;
+        session.requestId = newId();
+        session.sessionId = session.requestId;
+        session.operationStartedAt = loop.now();
+        touch(session);
+        send(session, ProtocolCodec.encodeDownloadRequest(session.requestId));
+        watch(session, session.sessionId);
+    }
+
+    private void handleSyncNoData(PlayerSession session, String requestId) {
+        if (isPending(session, requestId)) {
+            stats.recordLatency(JOIN, loop.now() - session.syncStartedAt);
+            becomeIdle(session);
+        }
+    }
+
+    private void scheduleWatcher(PlayerSession session) {
+        long intervalMs = config.getWatcherIntervalTicks() * ChunkPacing.TICK_MS;
+        loop.schedule(intervalMs - loop.now() % intervalMs, () -> startUpload(session));
+    }
+
+    private void startUpload(PlayerSession session) {
+        if (!isCurrent(session) || session.state != State.IDLE || session.pendingUploadBytes < 0) {
+            return;
+        }
+        int bytes = session.pendingUploadBytes;
+        session.pendingUploadBytes = -1;
+        if (bytes <= 0 || bytes > config.getMaxClipboardSize()) {
+            stats.recordFailure(UPLOAD, "too_large");
+            return;
+        }
+        byte[] plaintext = new byte[bytes];
+        random.nextBytes(plaintext);
+        session.hash = HashUtil.sha256Hex(plaintext);
+        session.payloadBytes = bytes;
+        session.payload = cipher.encrypt(plaintext);
+        session.state = State.UPLOADING;
+        session.sessionId = newId();
+        session.operationStartedAt = session.pendingSince;
+        session.totalChunks = (session.payload.length + config.getChunkSize() - 1) / config.getChunkSize();
+        session.nextChunk = 0;
+        session.started = false;
+        stats.adjust(BACKEND_BYTES, session.payload.length);
+        touch(session);
+        send(session, ProtocolCodec.encodeUploadBegin(
+                session.sessionId, session.payload.length, session.totalChunks, session.hash));
+        watch(session, session.sessionId);
+    }
+
+    private void handleUploadReady(PlayerSession session, String sessionId) {
+        if (isActive(session, State.UPLOADING, sessionId) && !session.started) {
+            session.started = true;
+            touch(session);
+            // The first burst runs on the player's next tick.
+            loop.schedule(ChunkPacing.TICK_MS, () -> pumpUpload(session, sessionId));
+        }
+    }
+
+    private void pumpUpload(PlayerSession session, String sessionId) {
+        if (!isActive(session, State.UPLOADING, sessionId)) {
+            return;
+        }
+        int chunkSize = config.getChunkSize();
+        long delayMs = config.getChunkSendDelayMs();
+        int chunksPerPump = ChunkPacing.chunksPerPump(delayMs);
+        for (int sent = 0; sent < chunksPerPump && session.nextChunk < session.totalChunks; sent++) {
+            int index = session.nextChunk++;
+            int offset = index * chunkSize;
+            byte[] chunk = Arrays.copyOfRange(session.payload, offset,
+                    Math.min(session.payload.length, offset + chunkSize));
+            send(session, ProtocolCodec.encodeUploadChunk(sessionId, index, chunk));
+            touch(session);
+        }
+        if (session.nextChunk < session.totalChunks) {
+            loop.schedule(ChunkPacing.pumpDelayTicks(delayMs) * ChunkPacing.TICK_MS,
+                    () -> pumpUpload(session, sessionId));
+        }
+    }
+
+    private void handleUploadAck(PlayerSession session, String sessionId) {
+        if (!isActive(session, State.UPLOADING, sessionId)) {
+            return;
+        }
+        stats.recordLatency(UPLOAD, loop.now() - session.operationStartedAt);
+        appliedHashes.put(session.connection.player.id, session.hash);
+        release(session);
+        becomeIdle(session);
+    }
+
+    private void handleDownloadBegin(PlayerSession session, String requestId, String sessionId,
+                                     int totalBytes, int totalChunks, String hash) {
+        if (!isCurrent(session) || session.state != State.DOWNLOADING
+                || !requestId.equals(session.requestId) || session.download != null) {
+            send(session, ProtocolCodec.encodeCancel(sessionId, "unexpected_download"));
+            return;
+        }
+        if (!TransferSession.isValidLayout(totalBytes, totalChunks, config.getChunkSize())) {
+            send(session, ProtocolCodec.encodeCancel(sessionId, "invalid_download"));
+            failTransfer(session, "invalid_download");
+            return;
+        }
+        session.sessionId = sessionId;
+        session.hash = hash;
+        session.download = new TransferSession(
+                sessionId, totalChunks, totalBytes, config.getChunkSize(), hash);
+        stats.adjust(BACKEND_BYTES, totalBytes);
+        touch(session);
+    }
+
+    private void handleDownloadChunk(PlayerSession session, String sessionId, int index,
+                                     byte[] chunk) {
+        if (!isActive(session, State.DOWNLOADING, sessionId) || session.download == null) {
+            return;
+        }
+        try {
+            session.download.addChunk(index, chunk);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            send(session, ProtocolCodec.encodeCancel(sessionId, "invalid_chunk"));
+            failTransfer(session, "invalid_chunk");
+            return;
+        }
+        touch(session);
+        if (!session.download.tryClaimCompletion()) {
+            return;
+        }
+        try {
+            byte[] plaintext = cipher.decrypt(session.download.assemble());
+            if (!HashUtil.sha256Hex(plaintext).equals(session.hash)) {
+                failTransfer(session, "hash_mismatch");
+                return;
+            }
+        } catch (RuntimeException e) {
+            failTransfer(session, "decrypt_failed");
+            return;
+        }
+        send(session, ProtocolCodec.encodeDownloadAck(sessionId));
+        stats.recordLatency(DOWNLOAD, loop.now() - session.operationStartedAt);
+        stats.recordLatency(JOIN, loop.now() - session.syncStartedAt);
+        appliedHashes.put(session.connection.player.id, session.hash);
+        release(session);
+        becomeIdle(session);
+    }
+
+    private void handleCancel(PlayerSession session, String sessionId, String reason) {
+        if (isCurrent(session) && sessionId.equals(session.sessionId)
+                && (session.state == State.UPLOADING || session.state == State.DOWNLOADING)) {
+            failTransfer(session, reason);
+        }
+    }
+
+    /** Paper's session timeout: a transfer with no progress for the timeout is abandoned. */
+    private void watch(PlayerSession session, String sessionId) {
+        long timeoutMs = config.getSessionTimeoutMs();
+        long idleMs = loop.now() - session.lastActivityAt;
+        loop.schedule(Math.max(1L, timeoutMs - idleMs), () -> {
+            if (!isCurrent(session) || !sessionId.equals(session.sessionId)
+                    || (session.state != State.UPLOADING && session.state != State.DOWNLOADING)) {
+                return;
+            }
+            if (loop.now() - session.lastActivityAt < timeoutMs) {
+                watch(session, sessionId);
+                return;
+            }
+            if (session.state == State.UPLOADING) {
+                send(session, ProtocolCodec.encodeCancel(sessionId, "upload_timeout"));
+            }
+            failTransfer(session, "timeout");
+        });
+    }
+
+    /**
+     * A failed upload is retried by the next watcher pass; a failed download restarts the join
+     * handshake, as {@code ProxySyncEngine.onDownloadFailed} does.
+     */
+    private void failTransfer(PlayerSession session, String reason) {
+        boolean upload = session.state == State.UPLOADING;
+        stats.recordFailure(operation(session), reason);
+        release(session);
+        if (upload) {
+            if (session.pendingUploadBytes < 0) {
+                session.pendingUploadBytes = session.payloadBytes;
+                session.pendingSince = session.operationStartedAt;
+            }
+            becomeIdle(session);
+        } else {
+            startSync(session);
+        }
+    }
+
+    private void release(PlayerSession session) {
+        if (session.payload != null) {
+            stats.adjust(BACKEND_BYTES, -session.payload.length);
+            session.payload = null;
+        }
+        if (session.download != null) {
+            stats.adjust(BACKEND_BYTES, -session.download.getTotalBytes());
+            session.download.release();
+            session.download = null;
+        }
+        session.sessionId = null;
+    }
+
+    private void becomeIdle(PlayerSession session) {
+        session.state = State.IDLE;
+        if (session.pendingUploadBytes >= 0) {
+            scheduleWatcher(session);
+        }
+    }
+
+    private boolean isActive(PlayerSession session, State state, String sessionId) {
+        return isCurrent(session) && session.state == state && sessionId.equals(session.sessionId);
+    }
+
+    private boolean isCurrent(PlayerSession session) {
+        return sessions.get(session.connection.player.id) == session;
+    }
+
+    private void touch(PlayerSession session) {
+        session.lastActivityAt = loop.now();
+    }
+
+    private void send(PlayerSession session, byte[] protocolMessage) {
+        byte[] frame = codec.encode(protocolMessage);
+        Connection connection = session.connection;
+        uplink.send(frame, () -> proxy.receive(connection, frame));
+    }
+
+    private String operation(PlayerSession session) {
+        return session.state == State.UPLOADING ? UPLOAD : DOWNLOAD;
+    }
+
+    private String newId() {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private static final class PlayerSession {
+        private final Connection connection;
+        private State state = State.SYNCING;
+        private String requestId;
+        private String sessionId;
+        private long syncStartedAt;
+        private long operationStartedAt;
+        private long lastActivityAt;
+        private int pendingUploadBytes = -1;
+        private long pendingSince;
+        private String hash;
+        private byte[] payload;
+        private int payloadBytes;
+        private int totalChunks;
+        private int nextChunk;
+        private boolean started;
+        private TransferSession download;
+
+        private PlayerSession(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.util.Random;
+
+/**
+ * One direction of a backend's plugin-message connection to the proxy. Frames are serialized
+ * onto the link in order at {@code bytesPerSecond}, arrive {@code latencyMs} after they leave
+ * and are dropped with probability {@code lossRate}.
+ */
+final class SimulatedLink {
+
+    private final EventLoop loop;
+    private final long latencyMs;
+    private final double lossRate;
+    private final long bytesPerSecond;
+    private final Random random;
+    private final TransferStats stats;
+    private double freeAtMs;
+
+    SimulatedLink(EventLoop loop, long latencyMs, double lossRate, long bytesPerSecond,
+                  Random random, TransferStats stats) {
+        this.loop = loop;
+        this.latencyMs = Math.max(0L, latencyMs);
+        this.lossRate = Math.max(0.0, Math.min(1.0, lossRate));
+        this.bytesPerSecond = Math.max(0L, bytesPerSecond);
+        this.random = random;
+        this.stats = stats;
+    }
+
+    /** Sends a frame; {@code receiver} runs when it arrives unless the frame is lost. */
+    void send(byte[] frame, Runnable receiver) {
+        stats.frameSent(frame.length);
+        if (lossRate > 0.0 && random.nextDouble() < lossRate) {
+            stats.frameLost();
+            return;
+        }
+        double transmitMs = bytesPerSecond == 0L ? 0.0 : frame.length * 1_000.0 / bytesPerSecond;
+        freeAtMs = Math.max(freeAtMs, loop.now()) + transmitMs;
+        long arrival = (long) Math.ceil(freeAtMs) + latencyMs;
+        stats.linkBytes(frame.length);
+        loop.scheduleAt(arrival, () -> {
+            stats.linkBytes(-frame.length);
+            receiver.run();
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/** A player in the simulated network; {@code connection} is null while offline. */
+final class SimulatedPlayer {
+
+    final UUID id;
+    final String name;
+    SimulatedBackend.Connection connection;
+
+    SimulatedPlayer(String name) {
+        this.id = UUID.nameUUIDFromBytes(("simulated:" + name).getBytes(StandardCharsets.UTF_8));
+        this.name = name;
+    }
+}
@@ -0,0 +1,124 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.util.UUID;
+
+import dev.twme.worldeditsync.common.config.TransferConfig;
+import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
+import dev.twme.worldeditsync.common.proxy.ProxyPlatform;
+import dev.twme.worldeditsync.common.proxy.ProxyTransferEngine;
+import dev.twme.worldeditsync.common.storage.ProxyClipboardStore;
+
+/**
+ * The real {@link ProxyTransferEngine} and {@link ProxyClipboardStore} on the simulated clock.
+ * Scheduling goes through the event loop and frames for a backend go down its link.
+ */
+final class SimulatedProxy implements ProxyPlatform<SimulatedPlayer, SimulatedBackend.Connection> {
+
+    static final String STORED_BYTES = "proxy stored";
+    static final String UPLOAD_BYTES = "proxy uploads";
+
+    private final EventLoop loop;
+    private final TransferStats stats;
+    private final boolean verbose;
+    private final ProxyClipboardStore store;
+    private final ProxyTransferEngine<SimulatedPlayer, SimulatedBackend.Connection> engine;
+
+    SimulatedProxy(EventLoop loop, TransferConfig config, String token,
+                   long downloadBytesPerSecond, long frameCacheBytes, TransferStats stats,
+                   boolean verbose) {
+        this.loop = loop;
+        this.stats = stats;
+        this.verbose = verbose;
+        this.store = new ProxyClipboardStore(config.getMemoryLimitBytes());
+        this.engine = new ProxyTransferEngine<>(this, store, config.getChunkSize(),
+                config.getMaxClipboardSize(), config.getChunkSendDelayMs(),
+                config.getSessionTimeoutMs(), downloadBytesPerSecond, frameCacheBytes,
+                PluginMessageCodec.forProxy(token), config.getInboundLimits(), loop::now);
+    }
+
+    /** A frame from a backend; frames from a connection the player already left are dropped. */
+    void receive(SimulatedBackend.Connection connection, byte[] frame) {
+        if (connection.player.connection == connection) {
+            engine.handleMessage(connection.player, frame);
+        }
+    }
+
+    void disconnect(SimulatedPlayer player) {
+        engine.removePlayer(player.id);
+    }
+
+    void sampleMemory() {
+        stats.gauge(STORED_BYTES, store.getStoredBytes());
+        stats.gauge(UPLOAD_BYTES, store.getReservedUploadBytes());
+    }
+
+    void shutdown() {
+        engine.shutdown();
+        store.shutdown();
+    }
+
+    @Override
+    public UUID playerId(SimulatedPlayer player) {
+        return player.id;
+    }
+
+    @Override
+    public String playerName(SimulatedPlayer player) {
+        return player.name;
+    }
+
+    @Override
+    public boolean isConnected(SimulatedPlayer player) {
+        return player.connection != null;
+    }
+
+    @Override
+    public SimulatedBackend.Connection currentConnection(SimulatedPlayer player) {
+        return player.connection;
+    }
+
+    @Override
+    public String backendName(SimulatedBackend.Connection connection) {
+        return connection.backend.name;
+    }
+
+    @Override
+    public void send(SimulatedBackend.Connection connection, byte[] frame) {
+        connection.backend.deliver(connection, frame);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        loop.schedule(0L, task);
+    }
+
+    @Override
+    public void runLater(Runnable task, long delayMs) {
+        loop.schedule(delayMs, task);
+    }
+
+    @Override
+    public void debug(String message) {
+        if (verbose) {
+            log("debug", message);
+        }
+    }
+
+    @Override
+    public void warn(String message) {
+        stats.proxyWarning();
+        if (verbose) {
+            log("warn", message);
+        }
+    }
+
+    @Override
+    public void error(String message) {
+        stats.proxyWarning();
+        log("error", message);
+    }
+
+    private void log(String level, String message) {
+        System.err.printf("[%8d ms] %-5s %s%n", loop.now(), level, message);
+    }
+}
@@ -0,0 +1,166 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.config.TransferConfig;
+
+/**
+ * Headless end-to-end transfer simulator for tuning {@code chunk-size} and
+ * {@code chunk-send-delay-ms} without a Paper and Velocity network. Simulated backends talk to
+ * the real proxy transfer engine over in-memory links with configurable latency, loss and
+ * bandwidth while a recorded or generated player trace is replayed on a virtual clock. It
+ * reports end-to-end latency percentiles and memory high-water marks.
+ *
+ * <p>Options are {@code --name=value}: {@code players}, {@code servers}, {@code duration-s},
+ * {@code seed}, {@code trace}, {@code write-trace}, {@code chunk-size},
+ * {@code chunk-send-delay-ms}, {@code session-timeout-ms}, {@code watcher-interval-ticks},
+ * {@code max-clipboard-size}, {@code download-bytes-per-second}, {@code frame-cache-bytes},
+ * {@code latency-ms}, {@code loss}, {@code bandwidth-bytes-per-second} and {@code verbose}.
+ */
+public final class TransferSimulator {
+
+    private static final String TOKEN = "simulator-token";
+    private static final Set<String> OPTIONS = Set.of("players", "servers", "duration-s", "seed",
+            "trace", "write-trace", "chunk-size", "chunk-send-delay-ms", "session-timeout-ms",
+            "watcher-interval-ticks", "max-clipboard-size", "download-bytes-per-second",
+            "frame-cache-bytes", "latency-ms", "loss", "bandwidth-bytes-per-second", "verbose");
+
+    private TransferSimulator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        long durationMs = Long.parseLong(options.getOrDefault("duration-s", "300")) * 1_000L;
+        long latencyMs = Long.parseLong(options.getOrDefault("latency-ms", "2"));
+        double loss = Double.parseDouble(options.getOrDefault("loss", "0"));
+        long bandwidth = Long.parseLong(options.getOrDefault("bandwidth-bytes-per-second", "12500000"));
+        boolean verbose = Boolean.parseBoolean(options.getOrDefault("verbose", "false"));
+
+        TransferConfig config = new TransferConfig();
+        config.setChunkSize(Integer.parseInt(options.getOrDefault(
+                "chunk-size", Integer.toString(Constants.DEFAULT_CHUNK_SIZE))));
+        config.setChunkSendDelayMs(Long.parseLong(options.getOrDefault(
+                "chunk-send-delay-ms", Long.toString(Constants.DEFAULT_CHUNK_SEND_DELAY_MS))));
+        config.setSessionTimeoutMs(Long.parseLong(options.getOrDefault(
+                "session-timeout-ms", Long.toString(Constants.DEFAULT_SESSION_TIMEOUT_MS))));
+        config.setWatcherIntervalTicks(Integer.parseInt(options.getOrDefault(
+                "watcher-interval-ticks", Integer.toString(Constants.DEFAULT_WATCHER_INTERVAL_TICKS))));
+        config.setMaxClipboardSize(Integer.parseInt(options.getOrDefault(
+                "max-clipboard-size", Integer.toString(Constants.DEFAULT_MAX_CLIPBOARD_SIZE))));
+        long downloadBytesPerSecond = Long.parseLong(options.getOrDefault("download-bytes-per-second", "0"));
+        long frameCacheBytes = Long.parseLong(options.getOrDefault(
+                "frame-cache-bytes", Long.toString(Constants.DEFAULT_PROXY_FRAME_CACHE_BYTES)));
+
+        Random random = new Random(seed);
+        PlayerTrace trace;
+        if (options.containsKey("trace")) {
+            trace = PlayerTrace.read(Path.of(options.get("trace")));
+        } else {
+            int servers = Integer.parseInt(options.getOrDefault("servers", "3"));
+            List<String> names = new ArrayList<>();
+            for (int index = 1; index <= Math.max(1, servers); index++) {
+                names.add("server-" + index);
+            }
+            trace = PlayerTrace.generate(Integer.parseInt(options.getOrDefault("players", "50")),
+                    names, durationMs, config.getMaxClipboardSize(), random);
+        }
+        if (options.containsKey("write-trace")) {
+            trace.write(Path.of(options.get("write-trace")));
+        }
+
+        EventLoop loop = new EventLoop();
+        TransferStats stats = new TransferStats();
+        SimulatedProxy proxy = new SimulatedProxy(loop, config, TOKEN,
+                downloadBytesPerSecond, frameCacheBytes, stats, verbose);
+        Map<String, SimulatedBackend> backends = new LinkedHashMap<>();
+        for (String server : trace.servers()) {
+            SimulatedBackend backend = new SimulatedBackend(server, loop, config, TOKEN,
+                    new SimulatedLink(loop, latencyMs, loss, bandwidth, new Random(random.nextLong()), stats),
+                    new SimulatedLink(loop, latencyMs, loss, bandwidth, new Random(random.nextLong()), stats),
+                    new Random(random.nextLong()), stats);
+            backend.attach(proxy);
+            backends.put(server, backend);
+        }
+
+        Map<String, SimulatedPlayer> players = new HashMap<>();
+        long lastActionMs = 0L;
+        for (PlayerTrace.Action action : trace.actions()) {
+            SimulatedPlayer player = players.computeIfAbsent(action.player(), SimulatedPlayer::new);
+            loop.scheduleAt(action.timeMs(), () -> apply(action, player, backends, proxy));
+            lastActionMs = Math.max(lastActionMs, action.timeMs());
+        }
+
+        // Let transfers still running at the end finish or time out.
+        long endMs = lastActionMs + 10L * config.getSessionTimeoutMs();
+        long startedAt = System.nanoTime();
+        loop.runUntil(endMs, proxy::sampleMemory);
+        long wallMs = (System.nanoTime() - startedAt) / 1_000_000L;
+        int unfinished = backends.values().stream().mapToInt(SimulatedBackend::activeTransfers).sum();
+        proxy.shutdown();
+
+        System.out.printf("%d players, %d servers, %d actions; chunk-size=%d, chunk-send-delay-ms=%d, "
+                        + "latency-ms=%d, loss=%s, bandwidth-bytes-per-second=%d (%d ms wall time)%n",
+                players.size(), backends.size(), trace.actions().size(), config.getChunkSize(),
+                config.getChunkSendDelayMs(), latencyMs, loss, bandwidth, wallMs);
+        stats.print(System.out, loop.now());
+        if (unfinished > 0) {
+            System.out.printf("%d players still had a transfer in progress at the end%n", unfinished);
+        }
+    }
+
+    private static void apply(PlayerTrace.Action action, SimulatedPlayer player,
+                              Map<String, SimulatedBackend> backends, SimulatedProxy proxy) {
+        switch (action.kind()) {
+            case JOIN -> {
+                if (player.connection == null) {
+                    player.connection = backends.get(action.argument()).connect(player);
+                }
+            }
+            case UPLOAD -> {
+                if (player.connection != null) {
+                    player.connection.backend.clipboardChanged(player, action.bytes());
+                }
+            }
+            case SWITCH -> {
+                SimulatedBackend target = backends.get(action.argument());
+                if (player.connection != null && player.connection.backend != target) {
+                    player.connection.backend.disconnect(player);
+                    player.connection = target.connect(player);
+                }
+            }
+            case QUIT -> {
+                if (player.connection != null) {
+                    player.connection.backend.disconnect(player);
+                    player.connection = null;
+                    proxy.disconnect(player);
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            if (!OPTIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + "; expected one of " + OPTIONS);
+            }
+            options.put(name, arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,96 @@
+package dev.twme.worldeditsync.benchmark.simulator;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** End-to-end latencies, failures and memory high-water marks collected during a run. */
+final class TransferStats {
+
+    static final String LINK_BYTES = "link in-flight";
+
+    private final Map<String, List<Long>> latencies = new TreeMap<>();
+    private final Map<String, Integer> failures = new TreeMap<>();
+    private final Map<String, long[]> gauges = new LinkedHashMap<>();
+    private long framesSent;
+    private long bytesSent;
+    private long framesLost;
+    private long proxyWarnings;
+
+    void recordLatency(String operation, long latencyMs) {
+        latencies.computeIfAbsent(operation, ignored -> new ArrayList<>()).add(latencyMs);
+    }
+
+    void recordFailure(String operation, String reason) {
+        failures.merge(operation + ": " + reason, 1, Integer::sum);
+    }
+
+    void frameSent(int bytes) {
+        framesSent++;
+        bytesSent += bytes;
+    }
+
+    void frameLost() {
+        framesLost++;
+    }
+
+    void proxyWarning() {
+        proxyWarnings++;
+    }
+
+    void linkBytes(long delta) {
+        adjust(LINK_BYTES, delta);
+    }
+
+    /** Sets a gauge and raises its high-water mark. */
+    void gauge(String name, long value) {
+        long[] gauge = gauges.computeIfAbsent(name, ignored -> new long[2]);
+        gauge[0] = value;
+        gauge[1] = Math.max(gauge[1], value);
+    }
+
+    void adjust(String name, long delta) {
+        long[] gauge = gauges.get(name);
+        gauge(name, (gauge == null ? 0L : gauge[0]) + delta);
+    }
+
+    void print(PrintStream out, long simulatedMs) {
+        out.printf("Simulated %.1f s, %d frames (%d lost), %s sent, %d proxy warnings%n",
+                simulatedMs / 1_000.0, framesSent, framesLost, formatBytes(bytesSent), proxyWarnings);
+        out.println();
+        out.printf("%-12s %7s %9s %9s %9s %9s%n", "latency ms", "count", "p50", "p90", "p99", "max");
+        latencies.forEach((operation, values) -> {
+            Collections.sort(values);
+            out.printf("%-12s %7d %9d %9d %9d %9d%n", operation, values.size(),
+                    percentile(values, 0.50), percentile(values, 0.90),
+                    percentile(values, 0.99), values.get(values.size() - 1));
+        });
+        if (!failures.isEmpty()) {
+            out.println();
+            failures.forEach((failure, count) -> out.printf("failed %-32s %7d%n", failure, count));
+        }
+        out.println();
+        out.printf("%-24s %12s%n", "memory high-water", "peak");
+        gauges.forEach((name, gauge) -> out.printf("%-24s %12s%n", name, formatBytes(gauge[1])));
+    }
+
+    /** Nearest-rank percentile of sorted values. */
+    private static long percentile(List<Long> sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1_024L) {
+            return bytes + " B";
+        }
+        if (bytes < 1_024L * 1_024L) {
+            return String.format("%.1f KiB", bytes / 1_024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1_024.0 * 1_024.0));
+    }
+}
@@ -1,5 +1,6 @@
 package dev.twme.worldeditsync.bungeecord;
 
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import dev.twme.worldeditsync.bungeecord.config.BungeeConfig;
@@ -7,6 +8,8 @@ import dev.twme.worldeditsync.bungeecord.handler.MessageHandler;
 import dev.twme.worldeditsync.bungeecord.storage.ClipboardStore;
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.metrics.MetricsHttpServer;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
 import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
 import net.md_5.bungee.api.connection.Server;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
@@ -19,10 +22,14 @@ import net.md_5.bungee.event.EventHandler;
 
 public class WorldEditSyncBungee extends Plugin implements Listener {
 
+    private static final String STORED_BYTES_GAUGE = "wesync_proxy_stored_bytes";
+    private static final String RESERVED_UPLOAD_BYTES_GAUGE = "wesync_proxy_reserved_upload_bytes";
+
     private ClipboardStore store;
     private MessageHandler messageHandler;
     private BungeeConfig config;
     private ScheduledTask cleanupTask;
+    private MetricsHttpServer metricsServer;
 
     @Override
     public void onEnable() {
@@ -51,7 +58,8 @@ public class WorldEditSyncBungee extends Plugin implements Listener {
         PluginMessageCodec pluginMessageCodec = PluginMessageCodec.forProxy(config.getToken());
         messageHandler = new MessageHandler(this, store, config.getChunkSize(),
                 config.getMaxClipboardSize(), config.getChunkSendDelayMs(),
-                config.getSessionTimeoutMs(), pluginMessageCodec);
+                config.getSessionTimeoutMs(), config.getDownloadBytesPerSecond(),
+                config.getFrameCacheBytes(), config.getInboundLimits(), pluginMessageCodec);
 
         // Schedule cleanup tasks
         cleanupTask = getProxy().getScheduler().schedule(this, () -> {
@@ -59,6 +67,10 @@ public class WorldEditSyncBungee extends Plugin implements Listener {
             store.cleanupExpiredClipboards(config.getClipboardTtlMinutes());
         }, 2, 2, TimeUnit.MINUTES);
 
+        if (config.isMetricsEnabled()) {
+            startMetrics();
+        }
+
         getLogger().info("WorldEditSync BungeeCord proxy enabled.");
     }
 
@@ -69,6 +81,13 @@ public class WorldEditSyncBungee extends Plugin implements Listener {
             cleanupTask.cancel();
             cleanupTask = null;
         }
+        if (metricsServer != null) {
+            metricsServer.close();
+            metricsServer = null;
+        }
+        // The registry outlives this instance; drop gauges that read its store.
+        SyncMetrics.REGISTRY.removeGauge(STORED_BYTES_GAUGE);
+        SyncMetrics.REGISTRY.removeGauge(RESERVED_UPLOAD_BYTES_GAUGE);
         if (messageHandler != null) {
             messageHandler.shutdown();
         }
@@ -78,6 +97,22 @@ public class WorldEditSyncBungee extends Plugin implements Listener {
         getLogger().info("WorldEditSync BungeeCord proxy disabled.");
     }
 
+    private void startMetrics() {
+        SyncMetrics.REGISTRY.gauge(STORED_BYTES_GAUGE,
+                "Clipboard bytes held by the proxy", store::getStoredBytes);
+        SyncMetrics.REGISTRY.gauge(RESERVED_UPLOAD_BYTES_GAUGE,
+                "Bytes reserved for uploads in progress", store::getReservedUploadBytes);
+        try {
+            metricsServer = MetricsHttpServer.start(
+                    config.getMetricsBindAddress(), config.getMetricsPort(), SyncMetrics.REGISTRY,
+                    SyncMetrics.TRACES);
+            getLogger().info("Serving metrics on " + config.getMetricsBindAddress() + ":"
+                    + metricsServer.getPort() + "/metrics");
+        } catch (IOException | RuntimeException e) {
+            getLogger().warning("Could not start the metrics endpoint: " + e.getMessage());
+        }
+    }
+
     @EventHandler
     public void onPluginMessage(PluginMessageEvent event) {
         if (!Constants.CHANNEL.equals(event.getTag())) return;
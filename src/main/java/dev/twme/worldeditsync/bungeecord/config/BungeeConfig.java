@@ -11,6 +11,7 @@ import net.md_5.bungee.config.ConfigurationProvider;
 import net.md_5.bungee.config.YamlConfiguration;
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.protocol.InboundLimits;
 
 public class BungeeConfig {
 
@@ -21,6 +22,12 @@ public class BungeeConfig {
     private long chunkSendDelayMs = 5;
     private int maxClipboardSize = 52_428_800;
     private long memoryLimitBytes = Constants.DEFAULT_TRANSFER_MEMORY_LIMIT_BYTES;
+    private long downloadBytesPerSecond = Constants.DEFAULT_PROXY_DOWNLOAD_BYTES_PER_SECOND;
+    private long frameCacheBytes = Constants.DEFAULT_PROXY_FRAME_CACHE_BYTES;
+    private InboundLimits inboundLimits = InboundLimits.DEFAULTS;
+    private boolean metricsEnabled = false;
+    private String metricsBindAddress = "127.0.0.1";
+    private int metricsPort = 9464;
 
     public void load(Plugin plugin) {
         File dataFolder = plugin.getDataFolder();
@@ -58,12 +65,24 @@ public class BungeeConfig {
             maxClipboardSize = config.getInt("transfer.max-clipboard-size", maxClipboardSize);
             memoryLimitBytes = config.getLong(
                     "transfer.memory-limit-bytes", memoryLimitBytes);
+            downloadBytesPerSecond = Math.max(0L, config.getLong(
+                    "transfer.proxy-download-bytes-per-second", downloadBytesPerSecond));
+            frameCacheBytes = Math.max(0L, config.getLong(
+                    "transfer.proxy-frame-cache-bytes", frameCacheBytes));
+            inboundLimits = new InboundLimits(
+                    config.getInt("transfer.inbound-messages-per-second", inboundLimits.messagesPerSecond()),
+                    config.getInt("transfer.inbound-message-burst", inboundLimits.messageBurst()),
+                    config.getLong("transfer.inbound-bytes-per-second", inboundLimits.bytesPerSecond()),
+                    config.getLong("transfer.inbound-byte-burst", inboundLimits.byteBurst()));
+            metricsEnabled = config.getBoolean("metrics.enabled", metricsEnabled);
+            metricsBindAddress = config.getString("metrics.bind-address", metricsBindAddress);
+            metricsPort = Math.max(0, Math.min(65_535, config.getInt("metrics.port", metricsPort)));
             chunkSize = Math.max(Constants.MIN_CHUNK_SIZE,
                     Math.min(Constants.MAX_CHUNK_SIZE, chunkSize));
             maxClipboardSize = Math.max(1, Math.min(
                     Constants.ABSOLUTE_MAX_CLIPBOARD_SIZE, maxClipboardSize));
             memoryLimitBytes = Math.max(
-                    (long) maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES,
+                    MessageCipher.maxEncryptedSize(maxClipboardSize),
                     Math.max(Constants.MIN_TRANSFER_MEMORY_LIMIT_BYTES,
                             Math.min(Constants.MAX_TRANSFER_MEMORY_LIMIT_BYTES,
                                     memoryLimitBytes)));
@@ -102,4 +121,28 @@ public class BungeeConfig {
     public long getMemoryLimitBytes() {
         return memoryLimitBytes;
     }
+
+    public long getDownloadBytesPerSecond() {
+        return downloadBytesPerSecond;
+    }
+
+    public long getFrameCacheBytes() {
+        return frameCacheBytes;
+    }
+
+    public InboundLimits getInboundLimits() {
+        return inboundLimits;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public String getMetricsBindAddress() {
+        return metricsBindAddress;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
 }
@@ -0,0 +1,78 @@
+package dev.twme.worldeditsync.bungeecord.handler;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.proxy.ProxyPlatform;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.plugin.Plugin;
+
+/** BungeeCord scheduling, messaging and logging for the shared transfer engine. */
+final class BungeeProxyPlatform implements ProxyPlatform<ProxiedPlayer, Server> {
+
+    private final Plugin plugin;
+    private final Logger logger;
+
+    BungeeProxyPlatform(Plugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    @Override
+    public UUID playerId(ProxiedPlayer player) {
+        return player.getUniqueId();
+    }
+
+    @Override
+    public String playerName(ProxiedPlayer player) {
+        return player.getName();
+    }
+
+    @Override
+    public boolean isConnected(ProxiedPlayer player) {
+        return player.isConnected();
+    }
+
+    @Override
+    public Server currentConnection(ProxiedPlayer player) {
+        return player.isConnected() ? player.getServer() : null;
+    }
+
+    @Override
+    public String backendName(Server connection) {
+        return connection.getInfo().getName();
+    }
+
+    @Override
+    public void send(Server connection, byte[] frame) {
+        connection.sendData(Constants.CHANNEL, frame);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        plugin.getProxy().getScheduler().runAsync(plugin, task);
+    }
+
+    @Override
+    public void runLater(Runnable task, long delayMs) {
+        plugin.getProxy().getScheduler().schedule(plugin, task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void debug(String message) {
+        logger.fine(message);
+    }
+
+    @Override
+    public void warn(String message) {
+        logger.warning(message);
+    }
+
+    @Override
+    public void error(String message) {
+        logger.severe(message);
+    }
+}
@@ -1,5 +1,7 @@
 package dev.twme.worldeditsync.common;
 
+import dev.twme.worldeditsync.common.crypto.MessageCipher;
+
 public final class Constants {
 
     private Constants() {
@@ -7,7 +9,7 @@ public final class Constants {
 
     public static final String CHANNEL = "worldeditsync:main";
 
-    public static final byte PROTOCOL_VERSION = 3;
+    public static final byte PROTOCOL_VERSION = 4;
 
     /** Conservative limit supported by Bukkit's plugin messaging transport. */
     public static final int MAX_PLUGIN_MESSAGE_SIZE = 32_766;
@@ -19,8 +21,13 @@ public final class Constants {
     public static final int MAX_CHUNKS_PER_TICK = 8;
 
     /** Per-player inbound budget, enforced before authentication/decryption. */
-    public static final int MAX_INBOUND_MESSAGES_PER_SECOND = 200;
-    public static final int MAX_INBOUND_BYTES_PER_SECOND = 8 * 1024 * 1024;
+    public static final int DEFAULT_INBOUND_MESSAGES_PER_SECOND = 200;
+    public static final int DEFAULT_INBOUND_MESSAGE_BURST = 400;
+    public static final long DEFAULT_INBOUND_BYTES_PER_SECOND = 8L * 1024 * 1024;
+    public static final long DEFAULT_INBOUND_BYTE_BURST = 16L * 1024 * 1024;
+    /** Upper bounds for configured inbound limits. */
+    public static final int MAX_CONFIGURABLE_INBOUND_MESSAGES_PER_SECOND = 100_000;
+    public static final long MAX_CONFIGURABLE_INBOUND_BYTES_PER_SECOND = 1024L * 1024 * 1024;
     public static final int MAX_INVALID_MESSAGES_PER_SECOND = 1_024;
     public static final long INVALID_MESSAGE_PLAYER_COOLDOWN_MS = 1_000L;
     public static final long INVALID_MESSAGE_GLOBAL_COOLDOWN_MS = 250L;
@@ -31,16 +38,22 @@ public final class Constants {
     public static final long DEFAULT_MAX_CLIPBOARD_BLOCKS = 16_777_216L;
     public static final long ABSOLUTE_MAX_CLIPBOARD_BLOCKS = 67_108_864L;
     public static final long MAX_EXPANDED_SCHEMATIC_SIZE = 512L * 1024 * 1024;
-    public static final int MAX_TRANSFER_CHUNKS =
-            (ABSOLUTE_MAX_CLIPBOARD_SIZE + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE + 1;
+    public static final int MAX_TRANSFER_CHUNKS = (int) ((MessageCipher.maxEncryptedSize(
+            ABSOLUTE_MAX_CLIPBOARD_SIZE) + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
     public static final long DEFAULT_TRANSFER_MEMORY_LIMIT_BYTES = 256L * 1024 * 1024;
     public static final long MIN_TRANSFER_MEMORY_LIMIT_BYTES = 16L * 1024 * 1024;
     public static final long MAX_TRANSFER_MEMORY_LIMIT_BYTES = 8L * 1024 * 1024 * 1024;
     public static final long DEFAULT_SESSION_TIMEOUT_MS = 30_000;
     public static final long DEFAULT_CHUNK_SEND_DELAY_MS = 5;
+    /** Proxy-wide outgoing download budget; 0 disables the aggregate limit. */
+    public static final long DEFAULT_PROXY_DOWNLOAD_BYTES_PER_SECOND = 32L * 1024 * 1024;
+    public static final long DEFAULT_PROXY_FRAME_CACHE_BYTES = 64L * 1024 * 1024;
     public static final int DEFAULT_WATCHER_INTERVAL_TICKS = 60; // 3 seconds
     public static final int DEFAULT_WATCHER_INITIAL_DELAY_TICKS = 40;
+    public static final double DEFAULT_SERIALIZATION_CPU_FRACTION = 0.25;
+    public static final long DEFAULT_SERIALIZATION_CPU_MS_PER_TICK = 100L;
     public static final long UNCHANGED_CLIPBOARD_RECHECK_MS = 60_000L;
+    public static final long SERIALIZED_CLIPBOARD_CACHE_BYTES = 64L * 1024 * 1024;
     public static final long DEFAULT_CLIPBOARD_TTL_MINUTES = 60;
     public static final int INITIAL_SYNC_MAX_ATTEMPTS = 5;
     public static final long INITIAL_SYNC_RETRY_MS = 1_000;
@@ -2,6 +2,7 @@ package dev.twme.worldeditsync.common.config;
 
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.protocol.InboundLimits;
 
 public class TransferConfig {
 
@@ -14,6 +15,9 @@ public class TransferConfig {
     private int watcherInitialDelayTicks = Constants.DEFAULT_WATCHER_INITIAL_DELAY_TICKS;
     private long clipboardTtlMinutes = Constants.DEFAULT_CLIPBOARD_TTL_MINUTES;
     private long memoryLimitBytes = Constants.DEFAULT_TRANSFER_MEMORY_LIMIT_BYTES;
+    private InboundLimits inboundLimits = InboundLimits.DEFAULTS;
+    private double serializationCpuFraction = Constants.DEFAULT_SERIALIZATION_CPU_FRACTION;
+    private long serializationCpuMillisPerTick = Constants.DEFAULT_SERIALIZATION_CPU_MS_PER_TICK;
 
     public int getChunkSize() {
         return chunkSize;
@@ -32,7 +36,7 @@ public class TransferConfig {
         this.maxClipboardSize = Math.max(1, Math.min(
                 Constants.ABSOLUTE_MAX_CLIPBOARD_SIZE, maxClipboardSize));
         memoryLimitBytes = Math.max(memoryLimitBytes,
-                (long) this.maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES);
+                MessageCipher.maxEncryptedSize(this.maxClipboardSize));
     }
 
     public long getMaxClipboardBlocks() {
@@ -68,6 +72,25 @@ public class TransferConfig {
         this.watcherIntervalTicks = Math.max(1, watcherIntervalTicks);
     }
 
+    public double getSerializationCpuFraction() {
+        return serializationCpuFraction;
+    }
+
+    public void setSerializationCpuFraction(double serializationCpuFraction) {
+        this.serializationCpuFraction = Double.isFinite(serializationCpuFraction)
+                ? Math.max(0.0, Math.min(1.0, serializationCpuFraction))
+                : Constants.DEFAULT_SERIALIZATION_CPU_FRACTION;
+    }
+
+    /** CPU milliseconds clipboard serialization may use per tick, or 0 for no limit. */
+    public long getSerializationCpuMillisPerTick() {
+        return serializationCpuMillisPerTick;
+    }
+
+    public void setSerializationCpuMillisPerTick(long serializationCpuMillisPerTick) {
+        this.serializationCpuMillisPerTick = Math.max(0L, serializationCpuMillisPerTick);
+    }
+
     public int getWatcherInitialDelayTicks() {
         return watcherInitialDelayTicks;
     }
@@ -90,8 +113,16 @@ public class TransferConfig {
 
     public void setMemoryLimitBytes(long memoryLimitBytes) {
         this.memoryLimitBytes = Math.max(
-                (long) maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES,
+                MessageCipher.maxEncryptedSize(maxClipboardSize),
                 Math.max(Constants.MIN_TRANSFER_MEMORY_LIMIT_BYTES,
                         Math.min(Constants.MAX_TRANSFER_MEMORY_LIMIT_BYTES, memoryLimitBytes)));
     }
+
+    public InboundLimits getInboundLimits() {
+        return inboundLimits;
+    }
+
+    public void setInboundLimits(InboundLimits inboundLimits) {
+        this.inboundLimits = inboundLimits;
+    }
 }
@@ -1,53 +1,126 @@
 package dev.twme.worldeditsync.common.crypto;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+/**
+ * Token-keyed AES-GCM encryption for clipboard payloads.
+ *
+ * <p>Payloads are written in a segmented format so they can be encrypted and decrypted as a
+ * stream in bounded memory and each segment can be verified on its own:
+ * {@code [magic][segment size][salt]} followed by one {@code [ciphertext][tag]} per segment.
+ * Every payload is encrypted under its own key, derived with HKDF-SHA256 from the token key and
+ * the random 128-bit salt, so nonces only need to be unique within one payload: each segment's
+ * nonce is its index and a final-segment flag. The header is authenticated with every segment,
+ * so segments cannot be reordered, dropped, moved between payloads or truncated at a segment
+ * boundary. Payloads from older versions, a single {@code [IV][ciphertext][tag]} operation, are
+ * still decrypted.
+ */
 public class MessageCipher {
 
     private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_BITS = 128;
-    public static final int ENCRYPTION_OVERHEAD_BYTES = GCM_IV_LENGTH + GCM_TAG_BITS / 8;
+    private static final int GCM_TAG_LENGTH = GCM_TAG_BITS / 8;
+    /** Overhead of the single-operation format written by older versions. */
+    public static final int ENCRYPTION_OVERHEAD_BYTES = GCM_IV_LENGTH + GCM_TAG_LENGTH;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    private static final byte[] SEGMENTED_MAGIC = {'W', 'E', 'S'};
+    private static final byte PAYLOAD_KEY_VERSION = 3;
+    private static final int MAGIC_LENGTH = SEGMENTED_MAGIC.length + 1;
+    /** Offset of the segment index in a nonce; the last byte flags the final segment. */
+    private static final int NONCE_INDEX_OFFSET = GCM_IV_LENGTH - Integer.BYTES - 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int HEADER_LENGTH = MAGIC_LENGTH + Integer.BYTES + SALT_LENGTH;
+    private static final byte[] PAYLOAD_KEY_INFO =
+            "WorldEditSync payload key".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    private static final int MIN_SEGMENT_SIZE = 16 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+    private static final int SEGMENTS_PER_TASK = 16;
 
     private final SecretKeySpec secretKey;
     private final SecureRandom secureRandom = new SecureRandom();
     private final boolean enabled;
+    private final String keyId;
+    private final int segmentSize;
 
     public MessageCipher(String token) {
+        this(token, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MessageCipher(String token, int segmentSize) {
         if (token == null || token.isBlank()) {
             this.secretKey = null;
             this.enabled = false;
+            this.keyId = "";
         } else {
             this.secretKey = deriveKey(token);
             this.enabled = true;
+            this.keyId = deriveKeyId(secretKey);
         }
+        this.segmentSize = Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, segmentSize));
     }
 
     public boolean isEnabled() {
         return enabled;
     }
 
+    /** Short non-secret fingerprint of the key, or an empty string when encryption is disabled. */
+    public String keyId() {
+        return keyId;
+    }
+
+    /** Exact size of {@link #encrypt(byte[])} output for a plaintext of the given size. */
+    public long encryptedSize(long plaintextSize) {
+        return enabled ? segmentedSize(plaintextSize, segmentSize) : plaintextSize;
+    }
+
+    /**
+     * Largest payload any supported format produces for a plaintext of the given size, used to
+     * bound declared transfer and storage sizes.
+     */
+    public static long maxEncryptedSize(long plaintextSize) {
+        return Math.max(plaintextSize + ENCRYPTION_OVERHEAD_BYTES,
+                segmentedSize(plaintextSize, MIN_SEGMENT_SIZE));
+    }
+
     public byte[] encrypt(byte[] plaintext) {
         if (!enabled) {
             return plaintext;
         }
         try {
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            secureRandom.nextBytes(iv);
-
+            byte[] header = newHeader();
+            SecretKeySpec key = payloadKey(header);
+            int segments = segmentCount(plaintext.length, segmentSize);
+            byte[] result = new byte[Math.toIntExact(segmentedSize(plaintext.length, segmentSize))];
+            System.arraycopy(header, 0, result, 0, HEADER_LENGTH);
             Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            byte[] ciphertext = cipher.doFinal(plaintext);
-
-            // [IV (12 bytes)] [ciphertext + GCM tag]
-            byte[] result = new byte[GCM_IV_LENGTH + ciphertext.length];
-            System.arraycopy(iv, 0, result, 0, GCM_IV_LENGTH);
-            System.arraycopy(ciphertext, 0, result, GCM_IV_LENGTH, ciphertext.length);
+            int outputOffset = HEADER_LENGTH;
+            for (int index = 0; index < segments; index++) {
+                int inputOffset = index * segmentSize;
+                int length = Math.min(segmentSize, plaintext.length - inputOffset);
+                initSegment(cipher, Cipher.ENCRYPT_MODE, key, header, index, index == segments - 1);
+                outputOffset += cipher.doFinal(plaintext, inputOffset, length, result, outputOffset);
+            }
             return result;
         } catch (Exception e) {
             throw new SecurityException("Encryption failed", e);
@@ -55,9 +128,73 @@ public class MessageCipher {
     }
 
     public byte[] decrypt(byte[] data) {
+        return decrypt(data, null);
+    }
+
+    /**
+     * Decrypt like {@link #decrypt(byte[])}, verifying and decrypting segments of large payloads
+     * in parallel on the given pool. A null pool decrypts on the calling thread.
+     */
+    public byte[] decrypt(byte[] data, ForkJoinPool pool) {
         if (!enabled) {
             return data;
         }
+        if (isSegmented(data)) {
+            try {
+                return decryptSegmented(data, pool);
+            } catch (SecurityException e) {
+                // A legacy IV can start with a magic; only then is the old format valid.
+                if (data.length < ENCRYPTION_OVERHEAD_BYTES) {
+                    throw e;
+                }
+                try {
+                    return decryptLegacy(data);
+                } catch (SecurityException ignored) {
+                    throw e;
+                }
+            }
+        }
+        return decryptLegacy(data);
+    }
+
+    /** Stream the same format as {@link #encrypt(byte[])}, holding one segment at a time. */
+    public InputStream encryptingStream(InputStream plaintext) {
+        if (!enabled) {
+            return plaintext;
+        }
+        byte[] header = newHeader();
+        return new SegmentEncryptingStream(plaintext, header, payloadKey(header));
+    }
+
+    /**
+     * Stream the plaintext of {@link #encrypt(byte[])} output one verified segment at a time.
+     * Authentication failures surface as {@link SecurityException}; no plaintext of a segment is
+     * released before its tag has been verified.
+     */
+    public InputStream decryptingStream(InputStream ciphertext) {
+        if (!enabled) {
+            return ciphertext;
+        }
+        return new SegmentDecryptingStream(ciphertext);
+    }
+
+    private byte[] decryptSegmented(byte[] data, ForkJoinPool pool) {
+        int payloadSegmentSize = readSegmentSize(data);
+        byte[] header = Arrays.copyOf(data, HEADER_LENGTH);
+        int segments = segmentCountForPayload(data.length, header.length, payloadSegmentSize);
+        long plaintextLength = (long) data.length - header.length - (long) segments * GCM_TAG_LENGTH;
+        byte[] plaintext = new byte[Math.toIntExact(plaintextLength)];
+        SegmentRange range = new SegmentRange(data, header, payloadKey(header),
+                payloadSegmentSize, segments, plaintext, 0, segments);
+        if (pool != null && segments >= 2 * SEGMENTS_PER_TASK) {
+            pool.invoke(range);
+        } else {
+            range.decrypt();
+        }
+        return plaintext;
+    }
+
+    private byte[] decryptLegacy(byte[] data) {
         if (data.length < ENCRYPTION_OVERHEAD_BYTES) {
             throw new SecurityException("Data too short for decryption");
         }
@@ -73,6 +210,77 @@ public class MessageCipher {
         }
     }
 
+    private byte[] newHeader() {
+        byte[] header = new byte[HEADER_LENGTH];
+        System.arraycopy(SEGMENTED_MAGIC, 0, header, 0, SEGMENTED_MAGIC.length);
+        header[SEGMENTED_MAGIC.length] = PAYLOAD_KEY_VERSION;
+        ByteBuffer.wrap(header, MAGIC_LENGTH, Integer.BYTES).putInt(segmentSize);
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        System.arraycopy(salt, 0, header, HEADER_LENGTH - SALT_LENGTH, SALT_LENGTH);
+        return header;
+    }
+
+    /** The key segments of this payload are encrypted with, derived from its salt. */
+    private SecretKeySpec payloadKey(byte[] header) {
+        try {
+            // HKDF-SHA256 (RFC 5869) with a single output block.
+            Mac hmac = Mac.getInstance("HmacSHA256");
+            hmac.init(new SecretKeySpec(header, HEADER_LENGTH - SALT_LENGTH, SALT_LENGTH, "HmacSHA256"));
+            byte[] pseudorandomKey = hmac.doFinal(secretKey.getEncoded());
+            hmac.init(new SecretKeySpec(pseudorandomKey, "HmacSHA256"));
+            hmac.update(PAYLOAD_KEY_INFO);
+            hmac.update((byte) 1);
+            return new SecretKeySpec(hmac.doFinal(), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new SecurityException("Failed to derive payload key", e);
+        }
+    }
+
+    private static void initSegment(Cipher cipher, int mode, SecretKeySpec key, byte[] header,
+                                    int index, boolean last) throws GeneralSecurityException {
+        byte[] nonce = new byte[GCM_IV_LENGTH];
+        ByteBuffer.wrap(nonce, NONCE_INDEX_OFFSET, Integer.BYTES).putInt(index);
+        nonce[GCM_IV_LENGTH - 1] = (byte) (last ? 1 : 0);
+        cipher.init(mode, key, new GCMParameterSpec(GCM_TAG_BITS, nonce));
+        cipher.updateAAD(header);
+    }
+
+    private static boolean isSegmented(byte[] data) {
+        return startsWithMagic(data) && data.length >= HEADER_LENGTH + GCM_TAG_LENGTH;
+    }
+
+    private static boolean startsWithMagic(byte[] data) {
+        return data.length >= MAGIC_LENGTH && Arrays.equals(
+                data, 0, SEGMENTED_MAGIC.length, SEGMENTED_MAGIC, 0, SEGMENTED_MAGIC.length)
+                && data[SEGMENTED_MAGIC.length] == PAYLOAD_KEY_VERSION;
+    }
+
+    private static int readSegmentSize(byte[] header) {
+        int size = ByteBuffer.wrap(header, MAGIC_LENGTH, Integer.BYTES).getInt();
+        if (size < MIN_SEGMENT_SIZE || size > MAX_SEGMENT_SIZE) {
+            throw new SecurityException("Decryption failed - invalid segment size");
+        }
+        return size;
+    }
+
+    private static int segmentCount(long plaintextSize, int segmentSize) {
+        return (int) Math.max(1L, (plaintextSize + segmentSize - 1) / segmentSize);
+    }
+
+    private static int segmentCountForPayload(long payloadSize, int headerLength, int segmentSize) {
+        long body = payloadSize - headerLength;
+        int segments = (int) ((body + segmentSize + GCM_TAG_LENGTH - 1) / (segmentSize + GCM_TAG_LENGTH));
+        if (segments < 1 || body - (long) segments * GCM_TAG_LENGTH < 0) {
+            throw new SecurityException("Data too short for decryption");
+        }
+        return segments;
+    }
+
+    private static long segmentedSize(long plaintextSize, int segmentSize) {
+        return HEADER_LENGTH + plaintextSize + (long) segmentCount(plaintextSize, segmentSize) * GCM_TAG_LENGTH;
+    }
+
     private static SecretKeySpec deriveKey(String token) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
@@ -82,4 +290,302 @@ public class MessageCipher {
             throw new SecurityException("Failed to derive encryption key", e);
         }
     }
+
+    private static String deriveKeyId(SecretKeySpec key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update("WorldEditSync key id".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            byte[] fingerprint = digest.digest(key.getEncoded());
+            return HashUtil.bytesToHex(Arrays.copyOf(fingerprint, 8));
+        } catch (Exception e) {
+            throw new SecurityException("Failed to derive key fingerprint", e);
+        }
+    }
+
+    /** Decrypts a run of segments into their fixed offsets, splitting large runs across the pool. */
+    private final class SegmentRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+        private final byte[] header;
+        private final SecretKeySpec key;
+        private final int payloadSegmentSize;
+        private final int segments;
+        private final byte[] plaintext;
+        private final int from;
+        private final int to;
+
+        private SegmentRange(byte[] data, byte[] header, SecretKeySpec key, int payloadSegmentSize,
+                             int segments, byte[] plaintext, int from, int to) {
+            this.data = data;
+            this.header = header;
+            this.key = key;
+            this.payloadSegmentSize = payloadSegmentSize;
+            this.segments = segments;
+            this.plaintext = plaintext;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEGMENTS_PER_TASK) {
+                decrypt();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SegmentRange(data, header, key, payloadSegmentSize, segments, plaintext, from, middle),
+                    new SegmentRange(data, header, key, payloadSegmentSize, segments, plaintext, middle, to));
+        }
+
+        private void decrypt() {
+            try {
+                Cipher cipher = Cipher.getInstance(ALGORITHM);
+                for (int index = from; index < to; index++) {
+                    long inputOffset = header.length + (long) index * (payloadSegmentSize + GCM_TAG_LENGTH);
+                    int length = (int) Math.min(payloadSegmentSize + GCM_TAG_LENGTH,
+                            data.length - inputOffset);
+                    initSegment(cipher, Cipher.DECRYPT_MODE, key, header, index, index == segments - 1);
+                    cipher.doFinal(data, (int) inputOffset, length,
+                            plaintext, index * payloadSegmentSize);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new SecurityException("Decryption failed - token mismatch or data corrupted", e);
+            }
+        }
+    }
+
+    /** Encrypts one segment at a time, reading one byte ahead to detect the final segment. */
+    private final class SegmentEncryptingStream extends BufferedSegmentStream {
+        private final byte[] header;
+        private final SecretKeySpec key;
+        private final byte[] segment = new byte[segmentSize];
+        private int carried = -1;
+        private int index;
+        private Cipher cipher;
+
+        private SegmentEncryptingStream(InputStream source, byte[] header, SecretKeySpec key) {
+            super(source);
+            this.header = header;
+            this.key = key;
+            this.pending = header;
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            int length = 0;
+            if (carried >= 0) {
+                segment[length++] = (byte) carried;
+                carried = -1;
+            }
+            length += in.readNBytes(segment, length, segmentSize - length);
+            boolean last = length < segmentSize || (carried = in.read()) < 0;
+            try {
+                if (cipher == null) {
+                    cipher = Cipher.getInstance(ALGORITHM);
+                }
+                initSegment(cipher, Cipher.ENCRYPT_MODE, key, header, index++, last);
+                pending = cipher.doFinal(segment, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new SecurityException("Encryption failed", e);
+            }
+            pendingOffset = 0;
+            finished = last;
+        }
+    }
+
+    /**
+     * Decrypts one segment at a time. Input that does not authenticate as a segmented payload is
+     * replayed through the legacy single-operation decryptor.
+     */
+    private final class SegmentDecryptingStream extends BufferedSegmentStream {
+        private byte[] header;
+        private SecretKeySpec key;
+        private byte[] segment;
+        private int carried = -1;
+        private int index;
+        private Cipher cipher;
+        private InputStream legacy;
+
+        private SegmentDecryptingStream(InputStream source) {
+            super(source);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (legacy != null) {
+                fillLegacy();
+                return;
+            }
+            if (header == null) {
+                byte[] start = in.readNBytes(HEADER_LENGTH);
+                if (start.length < HEADER_LENGTH || !startsWithMagic(start)) {
+                    switchToLegacy(start);
+                    return;
+                }
+                int payloadSegmentSize;
+                try {
+                    payloadSegmentSize = readSegmentSize(start);
+                } catch (SecurityException e) {
+                    switchToLegacy(start);
+                    return;
+                }
+                header = start;
+                key = payloadKey(start);
+                segment = new byte[payloadSegmentSize + GCM_TAG_LENGTH];
+            }
+            int length = 0;
+            if (carried >= 0) {
+                segment[length++] = (byte) carried;
+                carried = -1;
+            }
+            length += in.readNBytes(segment, length, segment.length - length);
+            boolean last = length < segment.length || (carried = in.read()) < 0;
+            try {
+                if (length < GCM_TAG_LENGTH) {
+                    throw new GeneralSecurityException("Segment is shorter than its tag");
+                }
+                if (cipher == null) {
+                    cipher = Cipher.getInstance(ALGORITHM);
+                }
+                initSegment(cipher, Cipher.DECRYPT_MODE, key, header, index, last);
+                pending = cipher.doFinal(segment, 0, length);
+            } catch (GeneralSecurityException e) {
+                if (index == 0) {
+                    // A legacy IV can start with a magic; replay what was read.
+                    byte[] consumed = new byte[header.length + length + (carried >= 0 ? 1 : 0)];
+                    System.arraycopy(header, 0, consumed, 0, header.length);
+                    System.arraycopy(segment, 0, consumed, header.length, length);
+                    if (carried >= 0) {
+                        consumed[consumed.length - 1] = (byte) carried;
+                    }
+                    switchToLegacy(consumed);
+                    return;
+                }
+                throw new SecurityException("Decryption failed - token mismatch or data corrupted", e);
+            }
+            index++;
+            pendingOffset = 0;
+            finished = last;
+        }
+
+        private void switchToLegacy(byte[] consumed) throws IOException {
+            legacy = new LegacyDecryptingStream(
+                    new SequenceInputStream(new ByteArrayInputStream(consumed), in), secretKey);
+            fillLegacy();
+        }
+
+        private void fillLegacy() throws IOException {
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int amount = legacy.read(buffer);
+            if (amount < 0) {
+                pending = null;
+                finished = true;
+            } else {
+                pending = Arrays.copyOf(buffer, amount);
+            }
+            pendingOffset = 0;
+        }
+    }
+
+    /** Serves bytes from a buffer that subclasses refill one unit at a time. */
+    private abstract static class BufferedSegmentStream extends FilterInputStream {
+        protected byte[] pending;
+        protected int pendingOffset;
+        protected boolean finished;
+
+        private BufferedSegmentStream(InputStream source) {
+            super(source);
+        }
+
+        protected abstract void fill() throws IOException;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int amount = read(single, 0, 1);
+            return amount < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (pending == null || pendingOffset >= pending.length) {
+                if (finished) {
+                    return -1;
+                }
+                fill();
+            }
+            int amount = Math.min(length, pending.length - pendingOffset);
+            System.arraycopy(pending, pendingOffset, buffer, offset, amount);
+            pendingOffset += amount;
+            return amount;
+        }
+
+        @Override
+        public long skip(long amount) throws IOException {
+            long skipped = 0L;
+            byte[] discard = new byte[STREAM_BUFFER_SIZE];
+            while (skipped < amount) {
+                int read = read(discard, 0, (int) Math.min(discard.length, amount - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return pending == null ? 0 : pending.length - pendingOffset;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /** Decrypts the single-operation format written by older versions. */
+    private static final class LegacyDecryptingStream extends BufferedSegmentStream {
+        private final SecretKeySpec key;
+        private final byte[] input = new byte[STREAM_BUFFER_SIZE];
+        private Cipher cipher;
+
+        private LegacyDecryptingStream(InputStream source, SecretKeySpec key) {
+            super(source);
+            this.key = key;
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (cipher == null) {
+                byte[] iv = in.readNBytes(GCM_IV_LENGTH);
+                if (iv.length < GCM_IV_LENGTH) {
+                    throw new SecurityException("Data too short for decryption");
+                }
+                try {
+                    cipher = Cipher.getInstance(ALGORITHM);
+                    cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+                } catch (GeneralSecurityException e) {
+                    throw new SecurityException("Decryption failed - token mismatch or data corrupted", e);
+                }
+            }
+            int amount = in.read(input);
+            try {
+                if (amount < 0) {
+                    finished = true;
+                    pending = cipher.doFinal();
+                } else {
+                    pending = cipher.update(input, 0, amount);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new SecurityException("Decryption failed - token mismatch or data corrupted", e);
+            }
+            pendingOffset = 0;
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A monotonically increasing count that hot paths can bump without contention. */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        if (amount > 0L) {
+            value.add(amount);
+        }
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,73 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a registry at {@code /metrics} for Prometheus to scrape, and the slowest recent
+ * transfer traces as JSON at {@code /traces}. A single daemon thread handles requests; it
+ * should be bound to localhost or a network the operator controls.
+ */
+public final class MetricsHttpServer implements AutoCloseable {
+
+    static final int TRACE_LIMIT = 20;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private MetricsHttpServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static MetricsHttpServer start(String bindAddress, int port, MetricsRegistry registry,
+                                          TransferTracer tracer) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "WorldEditSync-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> respond(exchange,
+                "text/plain; version=0.0.4; charset=utf-8", registry::scrape));
+        server.createContext("/traces", exchange -> respond(exchange,
+                "application/json; charset=utf-8", () -> tracer.slowestJson(TRACE_LIMIT)));
+        server.start();
+        return new MetricsHttpServer(server, executor);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType,
+                                Supplier<String> body) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
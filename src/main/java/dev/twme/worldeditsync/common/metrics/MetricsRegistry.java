@@ -0,0 +1,148 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, latency histograms and gauges, rendered in the Prometheus text format.
+ * A name and label set always returns the same instance, so metrics can be looked up once and
+ * kept in fields. Histograms are exported as summaries in seconds.
+ */
+public final class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private enum Type { COUNTER, SUMMARY, GAUGE }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /** @param labels alternating label names and values */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER)
+                .series.computeIfAbsent(labelText(labels), ignored -> new Counter());
+    }
+
+    /** @param labels alternating label names and values */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY)
+                .series.computeIfAbsent(labelText(labels), ignored -> new LatencyHistogram());
+    }
+
+    /** Registers a gauge read on every scrape, replacing an earlier one with the same name. */
+    public void gauge(String name, String help, LongSupplier value) {
+        family(name, help, Type.GAUGE).series.put("", value);
+    }
+
+    public void removeGauge(String name) {
+        families.computeIfPresent(name, (ignored, family) -> family.type == Type.GAUGE ? null : family);
+    }
+
+    private Family family(String name, String help, Type type) {
+        if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        Family family = families.computeIfAbsent(name, ignored -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    /** Prometheus text exposition format, version 0.0.4. */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ')
+                    .append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(name).append(' ')
+                    .append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            family.series.forEach((labels, metric) -> {
+                switch (family.type) {
+                    case COUNTER -> sample(out, name, labels, ((Counter) metric).get());
+                    case GAUGE -> sample(out, name, labels, ((LongSupplier) metric).getAsLong());
+                    case SUMMARY -> {
+                        LatencyHistogram histogram = (LatencyHistogram) metric;
+                        for (double quantile : QUANTILES) {
+                            sample(out, name, withLabel(labels, "quantile", Double.toString(quantile)),
+                                    seconds(histogram.valueAtQuantile(quantile)));
+                        }
+                        sample(out, name + "_sum", labels, seconds(histogram.getSumNanos()));
+                        sample(out, name + "_count", labels, histogram.getCount());
+                    }
+                }
+            });
+        });
+        return out.toString();
+    }
+
+    /** One readable line per series that has seen any activity, for in-game display. */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        families.forEach((name, family) -> family.series.forEach((labels, metric) -> {
+            switch (family.type) {
+                case COUNTER -> {
+                    long value = ((Counter) metric).get();
+                    if (value != 0L) {
+                        lines.add(name + labels + " " + value);
+                    }
+                }
+                case GAUGE -> lines.add(name + labels + " " + ((LongSupplier) metric).getAsLong());
+                case SUMMARY -> {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    if (histogram.getCount() != 0L) {
+                        lines.add(String.format(Locale.ROOT, "%s%s n=%d p50=%.1fms p99=%.1fms max=%.1fms",
+                                name, labels, histogram.getCount(),
+                                millis(histogram.valueAtQuantile(0.5)),
+                                millis(histogram.valueAtQuantile(0.99)),
+                                millis(histogram.getMaxNanos())));
+                    }
+                }
+            }
+        }));
+        return lines;
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String labelText(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        String text = "";
+        for (int index = 0; index < labels.length; index += 2) {
+            text = withLabel(text, labels[index], labels[index + 1]);
+        }
+        return text;
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String pair = name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n") + "\"";
+        return labels.isEmpty() ? "{" + pair + "}" : labels.substring(0, labels.length() - 1) + "," + pair + "}";
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1.0e9;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1.0e6;
+    }
+
+    private static final class Family {
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import java.util.UUID;
+
+/**
+ * The process-wide registry and the metrics recorded on sync and transfer hot paths. Paper
+ * servers and proxies load the same class and each export whichever series they use.
+ */
+public final class SyncMetrics {
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    public static final TransferTracer TRACES = new TransferTracer();
+
+    // Paper, proxy mode
+    public static final Counter UPLOAD_CHUNKS = REGISTRY.counter("wesync_upload_chunks_total",
+            "Upload chunks sent to the proxy");
+    public static final Counter UPLOAD_BYTES = REGISTRY.counter("wesync_upload_bytes_total",
+            "Encrypted clipboard bytes sent to the proxy");
+    public static final Counter UPLOADS_COMPLETED = uploads("completed");
+    public static final Counter UPLOADS_FAILED = uploads("failed");
+    public static final LatencyHistogram UPLOAD_TIME = REGISTRY.histogram("wesync_upload_seconds",
+            "Time from starting an upload to the proxy acknowledging it");
+    public static final Counter DOWNLOAD_BYTES = REGISTRY.counter("wesync_download_bytes_total",
+            "Encrypted clipboard bytes received from the proxy");
+    public static final Counter DOWNLOADS_COMPLETED = downloads("completed");
+    public static final Counter DOWNLOADS_FAILED = downloads("failed");
+    public static final Counter TRANSFER_MEMORY_REJECTIONS = REGISTRY.counter(
+            "wesync_transfer_memory_rejections_total",
+            "Transfers refused because the transfer memory budget was full");
+    public static final Counter TRANSFER_MEMORY_WAITS = REGISTRY.counter(
+            "wesync_transfer_memory_waits_total",
+            "Uploads queued until the transfer memory budget had room");
+    public static final LatencyHistogram SERIALIZE_TIME = REGISTRY.histogram(
+            "wesync_serialize_seconds", "Time to serialize a clipboard for upload");
+    public static final Counter SERIALIZE_REJECTIONS = REGISTRY.counter(
+            "wesync_serialize_rejections_total",
+            "Clipboard checks skipped because the serialization queue was full");
+
+    // Proxy
+    public static final Counter PROXY_MESSAGES = REGISTRY.counter("wesync_proxy_messages_total",
+            "Plugin messages accepted from backend servers");
+    public static final Counter PROXY_RATE_LIMITED = proxyRejected("rate_limited");
+    public static final Counter PROXY_INVALID = proxyRejected("invalid");
+    public static final Counter PROXY_UPLOAD_BYTES = REGISTRY.counter(
+            "wesync_proxy_upload_bytes_total", "Upload chunk bytes received from backend servers");
+    public static final Counter PROXY_UPLOADS = REGISTRY.counter("wesync_proxy_uploads_total",
+            "Uploads stored by the proxy");
+    public static final Counter PROXY_DOWNLOAD_BYTES = REGISTRY.counter(
+            "wesync_proxy_download_bytes_total", "Download frame bytes sent to backend servers");
+    public static final Counter PROXY_DOWNLOADS = REGISTRY.counter("wesync_proxy_downloads_total",
+            "Downloads started by the proxy");
+    public static final Counter PROXY_FRAME_CACHE_HITS = frameCache("hit");
+    public static final Counter PROXY_FRAME_CACHE_MISSES = frameCache("miss");
+
+    private SyncMetrics() {
+    }
+
+    /** Trace key of a player's upload, which is traced before it has a session ID. */
+    public static String uploadTraceKey(UUID playerId) {
+        return "upload/" + playerId;
+    }
+
+    /** Time taken by one storage backend call, labelled by backend and operation. */
+    public static LatencyHistogram storageTime(String backend, String operation) {
+        return REGISTRY.histogram("wesync_storage_seconds", "Time taken by storage backend calls",
+                "backend", backend, "operation", operation);
+    }
+
+    public static Counter storageErrors(String backend, String operation) {
+        return REGISTRY.counter("wesync_storage_errors_total", "Storage backend calls that failed",
+                "backend", backend, "operation", operation);
+    }
+
+    /** A storage sync step skipped because every storage I/O slot was busy. */
+    public static Counter workerSlotRejections(String operation) {
+        return REGISTRY.counter("wesync_worker_slot_rejections_total",
+                "Storage sync work skipped because all storage I/O slots were busy",
+                "operation", operation);
+    }
+
+    private static Counter uploads(String result) {
+        return REGISTRY.counter("wesync_uploads_total", "Clipboard uploads by result", "result", result);
+    }
+
+    private static Counter downloads(String result) {
+        return REGISTRY.counter("wesync_downloads_total", "Clipboard downloads by result", "result", result);
+    }
+
+    private static Counter proxyRejected(String reason) {
+        return REGISTRY.counter("wesync_proxy_rejected_messages_total",
+                "Plugin messages dropped before handling", "reason", reason);
+    }
+
+    private static Counter frameCache(String result) {
+        return REGISTRY.counter("wesync_proxy_frame_cache_total",
+                "Download transfers served from cached or freshly encoded frames", "result", result);
+    }
+}
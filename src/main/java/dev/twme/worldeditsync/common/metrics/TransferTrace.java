@@ -0,0 +1,134 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Timestamps of the stages one clipboard transfer passed through, relative to its start.
+ * Stages may be marked from any thread; the first mark of a stage name wins.
+ */
+public final class TransferTrace {
+
+    /** Chunk progress is marked every time this many percent of the chunks have been handled. */
+    static final int PROGRESS_STEP_PERCENT = 25;
+
+    private final String kind;
+    private final UUID playerId;
+    private final long startedAtMillis;
+    private final long startNanos;
+    private final LongSupplier nanoClock;
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile String sessionId;
+    private volatile String outcome;
+    private volatile long endNanos = -1L;
+    private int progressStep;
+
+    TransferTrace(String kind, UUID playerId, String sessionId, long startedAtMillis,
+                  LongSupplier nanoClock) {
+        this.kind = kind;
+        this.playerId = playerId;
+        this.sessionId = sessionId;
+        this.startedAtMillis = startedAtMillis;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    public synchronized void mark(String stage) {
+        if (endNanos >= 0L) {
+            return;
+        }
+        for (Stage existing : stages) {
+            if (existing.name().equals(stage)) {
+                return;
+            }
+        }
+        stages.add(new Stage(stage, nanoClock.getAsLong() - startNanos));
+    }
+
+    /** Marks {@code chunks_25%}, {@code chunks_50%} and so on as each step is crossed. */
+    public synchronized void progress(long done, long total) {
+        if (total <= 0L) {
+            return;
+        }
+        int percent = (int) Math.min(100L, done * 100L / total);
+        while (progressStep + PROGRESS_STEP_PERCENT <= percent) {
+            progressStep += PROGRESS_STEP_PERCENT;
+            mark("chunks_" + progressStep + "%");
+        }
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    synchronized boolean finish(String outcome) {
+        if (endNanos >= 0L) {
+            return false;
+        }
+        mark(outcome);
+        this.outcome = outcome;
+        this.endNanos = nanoClock.getAsLong() - startNanos;
+        return true;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /** Null while the transfer is still running. */
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public long getDurationNanos() {
+        long end = endNanos;
+        return end >= 0L ? end : nanoClock.getAsLong() - startNanos;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    public synchronized List<Stage> getStages() {
+        return List.copyOf(stages);
+    }
+
+    synchronized void appendJson(StringBuilder out) {
+        out.append("{\"kind\":\"").append(kind)
+                .append("\",\"player\":\"").append(playerId)
+                .append("\",\"session\":").append(sessionId == null ? "null" : "\"" + sessionId + "\"")
+                .append(",\"startedAt\":\"").append(Instant.ofEpochMilli(startedAtMillis))
+                .append("\",\"durationMs\":").append(millis(getDurationNanos()))
+                .append(",\"outcome\":").append(outcome == null ? "null" : "\"" + outcome + "\"")
+                .append(",\"stages\":[");
+        for (int index = 0; index < stages.size(); index++) {
+            Stage stage = stages.get(index);
+            if (index > 0) {
+                out.append(',');
+            }
+            out.append("{\"stage\":\"").append(stage.name())
+                    .append("\",\"atMs\":").append(millis(stage.offsetNanos())).append('}');
+        }
+        out.append("]}");
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1.0e6);
+    }
+
+    /** One named stage and when it was reached, in nanoseconds after the transfer started. */
+    public record Stage(String name, long offsetNanos) {
+    }
+}
@@ -0,0 +1,121 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a {@link TransferTrace} for every transfer in flight and the most recently finished
+ * ones, so the slowest can be inspected after a player reports a slow sync. Traces are looked
+ * up by a caller-chosen key, because an upload is traced before its session ID exists.
+ */
+public final class TransferTracer {
+
+    static final int MAX_ACTIVE = 4_096;
+    static final int MAX_RECENT = 256;
+    private static final long STALE_ACTIVE_NANOS = 10L * 60L * 1_000_000_000L;
+
+    private final ConcurrentHashMap<String, TransferTrace> active = new ConcurrentHashMap<>();
+    private final Deque<TransferTrace> recent = new ArrayDeque<>();
+    private final LongSupplier nanoClock;
+    private final LongSupplier wallClock;
+
+    public TransferTracer() {
+        this(System::nanoTime, System::currentTimeMillis);
+    }
+
+    TransferTracer(LongSupplier nanoClock, LongSupplier wallClock) {
+        this.nanoClock = nanoClock;
+        this.wallClock = wallClock;
+    }
+
+    /**
+     * Starts tracing under {@code key}, discarding an unfinished trace with the same key. When
+     * too many transfers are already traced, the returned trace is not kept.
+     */
+    public TransferTrace start(String key, String kind, UUID playerId, String sessionId) {
+        TransferTrace trace = new TransferTrace(
+                kind, playerId, sessionId, wallClock.getAsLong(), nanoClock);
+        if (active.size() >= MAX_ACTIVE && !active.containsKey(key)) {
+            long now = nanoClock.getAsLong();
+            active.values().removeIf(stale -> now - stale.getStartNanos() > STALE_ACTIVE_NANOS);
+            if (active.size() >= MAX_ACTIVE) {
+                return trace;
+            }
+        }
+        active.put(key, trace);
+        return trace;
+    }
+
+    /** The running trace for {@code key}, or null. */
+    public TransferTrace get(String key) {
+        return active.get(key);
+    }
+
+    public void mark(String key, String stage) {
+        TransferTrace trace = active.get(key);
+        if (trace != null) {
+            trace.mark(stage);
+        }
+    }
+
+    public void progress(String key, long done, long total) {
+        TransferTrace trace = active.get(key);
+        if (trace != null) {
+            trace.progress(done, total);
+        }
+    }
+
+    /** Ends the trace for {@code key} with an outcome such as {@code completed} or {@code failed}. */
+    public void finish(String key, String outcome) {
+        TransferTrace trace = active.remove(key);
+        if (trace == null || !trace.finish(outcome)) {
+            return;
+        }
+        synchronized (recent) {
+            if (recent.size() >= MAX_RECENT) {
+                recent.removeFirst();
+            }
+            recent.addLast(trace);
+        }
+    }
+
+    /** Drops an unfinished trace without recording it, e.g. when nothing needed sending. */
+    public void discard(String key) {
+        active.remove(key);
+    }
+
+    /** Recently finished traces, slowest first. */
+    public List<TransferTrace> slowest(int limit) {
+        List<TransferTrace> traces;
+        synchronized (recent) {
+            traces = new ArrayList<>(recent);
+        }
+        traces.sort(Comparator.comparingLong(TransferTrace::getDurationNanos).reversed());
+        return traces.subList(0, Math.min(Math.max(0, limit), traces.size()));
+    }
+
+    public String slowestJson(int limit) {
+        StringBuilder out = new StringBuilder("[");
+        List<TransferTrace> traces = slowest(limit);
+        for (int index = 0; index < traces.size(); index++) {
+            if (index > 0) {
+                out.append(",\n");
+            }
+            traces.get(index).appendJson(out);
+        }
+        return out.append("]\n").toString();
+    }
+
+    public void clear() {
+        active.clear();
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+}
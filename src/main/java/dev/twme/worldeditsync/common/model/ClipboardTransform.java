@@ -0,0 +1,94 @@
+package dev.twme.worldeditsync.common.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The affine transform a player's clipboard holder applies on top of the stored block data,
+ * such as the result of {@code //rotate} or {@code //flip}. It is synchronized on its own so
+ * that rotating a clipboard never re-transfers the blocks.
+ *
+ * <p>Coefficients are the rows of a 3x4 matrix, in WorldEdit's {@code AffineTransform} order.
+ */
+public final class ClipboardTransform {
+
+    public static final int COEFFICIENTS = 12;
+    /** Generous bound for a rotation, flip or scale; a translation never leaves the world. */
+    private static final double MAX_COEFFICIENT = 30_000_000.0;
+    private static final double MIN_DETERMINANT = 1.0e-9;
+
+    public static final ClipboardTransform IDENTITY = new ClipboardTransform(new double[] {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0});
+
+    private final double[] coefficients;
+
+    private ClipboardTransform(double[] coefficients) {
+        this.coefficients = coefficients;
+    }
+
+    /** Returns the transform, or null when it is not a finite, invertible affine transform. */
+    public static ClipboardTransform of(double[] coefficients) {
+        if (coefficients == null || coefficients.length != COEFFICIENTS) {
+            return null;
+        }
+        double[] copy = new double[COEFFICIENTS];
+        for (int index = 0; index < COEFFICIENTS; index++) {
+            double value = coefficients[index];
+            if (!Double.isFinite(value) || Math.abs(value) > MAX_COEFFICIENT) {
+                return null;
+            }
+            // Adding zero turns -0.0 into 0.0 so equal transforms compare equal.
+            copy[index] = value + 0.0;
+        }
+        double determinant = copy[0] * (copy[5] * copy[10] - copy[6] * copy[9])
+                - copy[1] * (copy[4] * copy[10] - copy[6] * copy[8])
+                + copy[2] * (copy[4] * copy[9] - copy[5] * copy[8]);
+        if (Math.abs(determinant) < MIN_DETERMINANT) {
+            return null;
+        }
+        return new ClipboardTransform(copy);
+    }
+
+    /** Reads a transform written by {@link #write}; returns null if it is invalid. */
+    public static ClipboardTransform read(DataInputStream in) throws IOException {
+        double[] coefficients = new double[COEFFICIENTS];
+        for (int index = 0; index < COEFFICIENTS; index++) {
+            coefficients[index] = in.readDouble();
+        }
+        return of(coefficients);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        for (double value : coefficients) {
+            out.writeDouble(value);
+        }
+    }
+
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    public boolean isIdentity() {
+        return equals(IDENTITY);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ClipboardTransform transform
+                && Arrays.equals(coefficients, transform.coefficients);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(coefficients);
+    }
+
+    @Override
+    public String toString() {
+        return "ClipboardTransform" + Arrays.toString(coefficients);
+    }
+}
@@ -0,0 +1,35 @@
+package dev.twme.worldeditsync.common.protocol;
+
+import dev.twme.worldeditsync.common.Constants;
+
+/**
+ * How {@code chunk-send-delay-ms} turns into bursts of chunks per server tick. Paper uploads and
+ * proxy downloads share these rules so both directions pace a transfer the same way.
+ */
+public final class ChunkPacing {
+
+    public static final long TICK_MS = 50L;
+
+    private ChunkPacing() {
+    }
+
+    /** Chunks sent in one burst; a short delay packs several into each tick. */
+    public static int chunksPerPump(long chunkSendDelayMs) {
+        if (chunkSendDelayMs <= 0) {
+            return Constants.MAX_CHUNKS_PER_TICK;
+        }
+        return Math.max(1, Math.min(
+                Constants.MAX_CHUNKS_PER_TICK,
+                (int) (TICK_MS / chunkSendDelayMs)));
+    }
+
+    /** Ticks a Paper upload waits between bursts. */
+    public static long pumpDelayTicks(long chunkSendDelayMs) {
+        return Math.max(1L, (chunkSendDelayMs + TICK_MS - 1L) / TICK_MS);
+    }
+
+    /** Milliseconds the proxy waits between download bursts. */
+    public static long pumpIntervalMs(long chunkSendDelayMs) {
+        return Math.max(TICK_MS, Math.max(1L, chunkSendDelayMs) * chunksPerPump(chunkSendDelayMs));
+    }
+}
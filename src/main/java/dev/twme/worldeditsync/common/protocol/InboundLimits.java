@@ -0,0 +1,25 @@
+package dev.twme.worldeditsync.common.protocol;
+
+import dev.twme.worldeditsync.common.Constants;
+
+/**
+ * Per-player plugin message budget: a sustained rate plus the burst a player may send at
+ * once after being idle. Out-of-range values are clamped; a burst never drops below one
+ * message or one maximum-size message's bytes, so every valid message can eventually pass.
+ */
+public record InboundLimits(int messagesPerSecond, int messageBurst,
+                            long bytesPerSecond, long byteBurst) {
+
+    public static final InboundLimits DEFAULTS = new InboundLimits(
+            Constants.DEFAULT_INBOUND_MESSAGES_PER_SECOND, Constants.DEFAULT_INBOUND_MESSAGE_BURST,
+            Constants.DEFAULT_INBOUND_BYTES_PER_SECOND, Constants.DEFAULT_INBOUND_BYTE_BURST);
+
+    public InboundLimits {
+        int maxMessages = Constants.MAX_CONFIGURABLE_INBOUND_MESSAGES_PER_SECOND;
+        long maxBytes = Constants.MAX_CONFIGURABLE_INBOUND_BYTES_PER_SECOND;
+        messagesPerSecond = Math.max(1, Math.min(maxMessages, messagesPerSecond));
+        messageBurst = Math.max(1, Math.min(maxMessages, messageBurst));
+        bytesPerSecond = Math.max(Constants.MAX_PLUGIN_MESSAGE_SIZE, Math.min(maxBytes, bytesPerSecond));
+        byteBurst = Math.max(Constants.MAX_PLUGIN_MESSAGE_SIZE, Math.min(maxBytes, byteBurst));
+    }
+}
@@ -2,26 +2,46 @@ package dev.twme.worldeditsync.common.protocol;
 
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongSupplier;
 
 import dev.twme.worldeditsync.common.Constants;
 
-/** Bounds protocol work before messages are decrypted or parsed. */
+/**
+ * Bounds protocol work before messages are decrypted or parsed. Each player has a token
+ * bucket for messages and one for bytes, refilled continuously so there is no window edge
+ * at which twice the rate can get through.
+ */
 public final class InboundMessageLimiter {
 
-    private static final long WINDOW_MS = 1_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
 
-    private final ConcurrentHashMap<UUID, Window> windows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, PlayerBuckets> buckets = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<UUID, Long> blockedPlayers = new ConcurrentHashMap<>();
-    private final Window invalidMessages = new Window();
+    private final TokenBucket invalidMessages;
+    private final TokenBucket.Rate messageRate;
+    private final TokenBucket.Rate byteRate;
     private final LongSupplier clock;
     private volatile long globallyBlockedUntil;
 
     public InboundMessageLimiter() {
-        this(System::currentTimeMillis);
+        this(InboundLimits.DEFAULTS, System::currentTimeMillis);
     }
 
-    InboundMessageLimiter(LongSupplier clock) {
+    public InboundMessageLimiter(LongSupplier clock) {
+        this(InboundLimits.DEFAULTS, clock);
+    }
+
+    public InboundMessageLimiter(InboundLimits limits) {
+        this(limits, System::currentTimeMillis);
+    }
+
+    /** @param clock milliseconds, e.g. a simulated clock */
+    public InboundMessageLimiter(InboundLimits limits, LongSupplier clock) {
+        this.messageRate = new TokenBucket.Rate(limits.messagesPerSecond(), limits.messageBurst());
+        this.byteRate = new TokenBucket.Rate(limits.bytesPerSecond(), limits.byteBurst());
+        this.invalidMessages = new TokenBucket(new TokenBucket.Rate(
+                Constants.MAX_INVALID_MESSAGES_PER_SECOND, Constants.MAX_INVALID_MESSAGES_PER_SECOND));
         this.clock = clock;
     }
 
@@ -40,10 +60,17 @@ public final class InboundMessageLimiter {
             }
             blockedPlayers.remove(playerId, blockedUntil);
         }
-        return windows.computeIfAbsent(playerId, ignored -> new Window())
-                .tryAcquire(bytes, now,
-                        Constants.MAX_INBOUND_MESSAGES_PER_SECOND,
-                        Constants.MAX_INBOUND_BYTES_PER_SECOND);
+        PlayerBuckets player = buckets.computeIfAbsent(playerId, ignored -> new PlayerBuckets(
+                new TokenBucket(messageRate), new TokenBucket(byteRate)));
+        long nowNanos = toNanos(now);
+        if (!player.messages.tryAcquire(1L, nowNanos)) {
+            return false;
+        }
+        if (!player.bytes.tryAcquire(bytes, nowNanos)) {
+            player.messages.refund(1L);
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -57,54 +84,87 @@ public final class InboundMessageLimiter {
         long now = clock.getAsLong();
         blockedPlayers.put(playerId, saturatingAdd(
                 now, Constants.INVALID_MESSAGE_PLAYER_COOLDOWN_MS));
-        if (!invalidMessages.tryAcquire(0, now,
-                Constants.MAX_INVALID_MESSAGES_PER_SECOND, Integer.MAX_VALUE)) {
+        if (!invalidMessages.tryAcquire(1L, toNanos(now))) {
             globallyBlockedUntil = saturatingAdd(
                     now, Constants.INVALID_MESSAGE_GLOBAL_COOLDOWN_MS);
         }
     }
 
     public void remove(UUID playerId) {
-        windows.remove(playerId);
+        buckets.remove(playerId);
         blockedPlayers.remove(playerId);
     }
 
     public void clear() {
-        windows.clear();
+        buckets.clear();
         blockedPlayers.clear();
         invalidMessages.reset();
         globallyBlockedUntil = 0L;
     }
 
+    private static long toNanos(long millis) {
+        if (millis > Long.MAX_VALUE / NANOS_PER_MILLI) {
+            return Long.MAX_VALUE / 2;
+        }
+        return millis < Long.MIN_VALUE / NANOS_PER_MILLI ? Long.MIN_VALUE / 2 : millis * NANOS_PER_MILLI;
+    }
+
     private long saturatingAdd(long value, long increment) {
         return value > Long.MAX_VALUE - increment ? Long.MAX_VALUE : value + increment;
     }
 
-    private static final class Window {
-        private long startedAt = Long.MIN_VALUE;
-        private int messages;
-        private int bytes;
-
-        private synchronized boolean tryAcquire(int messageBytes, long now,
-                                                int maxMessages, int maxBytes) {
-            if (startedAt == Long.MIN_VALUE || now < startedAt
-                    || now - startedAt >= WINDOW_MS) {
-                startedAt = now;
-                messages = 0;
-                bytes = 0;
-            }
-            if (messages >= maxMessages || bytes > maxBytes - messageBytes) {
-                return false;
+    private record PlayerBuckets(TokenBucket messages, TokenBucket bytes) {
+    }
+
+    /**
+     * A token bucket kept as one theoretical arrival time (GCRA): the instant at which the
+     * bucket would be full again. Acquiring moves it forward by the cost of the request, and
+     * is refused when that would put it further ahead of now than the burst allows.
+     */
+    static final class TokenBucket {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final Rate rate;
+        private final AtomicLong fullAt = new AtomicLong(EMPTY);
+
+        TokenBucket(Rate rate) {
+            this.rate = rate;
+        }
+
+        boolean tryAcquire(long amount, long nowNanos) {
+            long cost = rate.nanosFor(amount);
+            while (true) {
+                long current = fullAt.get();
+                long start = current == EMPTY ? nowNanos : Math.max(current, nowNanos);
+                long next = start + cost;
+                if (next - nowNanos > rate.burstNanos()) {
+                    return false;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return true;
+                }
             }
-            messages++;
-            bytes += messageBytes;
-            return true;
         }
 
-        private synchronized void reset() {
-            startedAt = Long.MIN_VALUE;
-            messages = 0;
-            bytes = 0;
+        /** Gives back tokens taken by a request that another bucket then refused. */
+        void refund(long amount) {
+            long cost = rate.nanosFor(amount);
+            fullAt.updateAndGet(current -> current == EMPTY ? EMPTY : current - cost);
+        }
+
+        void reset() {
+            fullAt.set(EMPTY);
+        }
+
+        /** Refill interval per token and the burst expressed as time, both in nanoseconds. */
+        record Rate(double nanosPerToken, long burstNanos) {
+            Rate(long perSecond, long burst) {
+                this(1.0e9 / perSecond, (long) Math.ceil(burst * (1.0e9 / perSecond)));
+            }
+
+            long nanosFor(long amount) {
+                return (long) Math.ceil(amount * nanosPerToken);
+            }
         }
     }
 }
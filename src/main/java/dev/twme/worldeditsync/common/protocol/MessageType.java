@@ -28,7 +28,10 @@ public enum MessageType {
     DOWNLOAD_ACK((byte) 0x15),
 
     // Bidirectional: Cancel
-    CANCEL((byte) 0x20);
+    CANCEL((byte) 0x20),
+
+    // Bidirectional: clipboard holder transform for a stored clipboard hash
+    TRANSFORM_UPDATE((byte) 0x21);
 
     private final byte id;
 
@@ -1,6 +1,7 @@
 package dev.twme.worldeditsync.common.protocol;
 
 import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 
 import java.io.*;
 
@@ -142,6 +143,18 @@ public final class ProtocolCodec {
         }
     }
 
+    public static byte[] encodeTransformUpdate(String hash, ClipboardTransform transform) {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             DataOutputStream out = new DataOutputStream(bos)) {
+            writeHeader(out, MessageType.TRANSFORM_UPDATE);
+            out.writeUTF(hash);
+            transform.write(out);
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode TRANSFORM_UPDATE", e);
+        }
+    }
+
     public static byte[] encodeCancel(String sessionId, String reason) {
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
              DataOutputStream out = new DataOutputStream(bos)) {
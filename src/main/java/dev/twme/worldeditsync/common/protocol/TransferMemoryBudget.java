@@ -1,12 +1,24 @@
 package dev.twme.worldeditsync.common.protocol;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 
-/** Shared byte reservation for large in-flight backend transfers. */
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
+
+/**
+ * Shared byte reservation for large in-flight backend transfers. Callers that can wait use
+ * {@link #reserve(long)}, which queues in strict FIFO order: a large reservation at the head of
+ * the queue is not overtaken by smaller queued ones. {@link #tryReserve(long)} is for callers that
+ * cannot wait, such as a download the proxy is already sending, and takes priority over the queue.
+ */
 public final class TransferMemoryBudget {
 
     private final long limitBytes;
     private final AtomicLong reservedBytes = new AtomicLong();
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
 
     public TransferMemoryBudget(long limitBytes) {
         if (limitBytes <= 0L) {
@@ -15,37 +27,118 @@ public final class TransferMemoryBudget {
         this.limitBytes = limitBytes;
     }
 
+    /**
+     * Reserves {@code bytes} now if they fit, even while reservations are queued; those waiters
+     * can retry on their own schedule, whereas the caller here would otherwise have to fail.
+     */
     public boolean tryReserve(long bytes) {
-        if (bytes <= 0L || bytes > limitBytes) {
+        if (bytes <= 0L) {
             return false;
         }
-        while (true) {
-            long current = reservedBytes.get();
-            if (current > limitBytes - bytes) {
-                return false;
-            }
-            if (reservedBytes.compareAndSet(current, current + bytes)) {
+        synchronized (waiters) {
+            if (fits(bytes)) {
+                reservedBytes.addAndGet(bytes);
                 return true;
             }
         }
+        SyncMetrics.TRANSFER_MEMORY_REJECTIONS.increment();
+        return false;
+    }
+
+    /**
+     * Reserves {@code bytes}, completing the returned future once they are held. Cancelling a
+     * future that has not completed yet withdraws it from the queue. Reservations larger than
+     * the whole budget fail immediately with {@link IllegalArgumentException}.
+     */
+    public CompletableFuture<Void> reserve(long bytes) {
+        if (bytes <= 0L || bytes > limitBytes) {
+            SyncMetrics.TRANSFER_MEMORY_REJECTIONS.increment();
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Cannot reserve " + bytes + " of " + limitBytes + " transfer memory bytes"));
+        }
+        Waiter waiter = new Waiter(bytes);
+        synchronized (waiters) {
+            if (waiters.isEmpty() && fits(bytes)) {
+                reservedBytes.addAndGet(bytes);
+                return CompletableFuture.completedFuture(null);
+            }
+            waiters.addLast(waiter);
+        }
+        SyncMetrics.TRANSFER_MEMORY_WAITS.increment();
+        waiter.future.whenComplete((ignored, error) -> {
+            if (waiter.future.isCancelled()) {
+                withdraw(waiter);
+            }
+        });
+        return waiter.future;
     }
 
     public void release(long bytes) {
         if (bytes <= 0L) {
             return;
         }
-        while (true) {
-            long current = reservedBytes.get();
-            if (current < bytes) {
+        List<Waiter> granted;
+        synchronized (waiters) {
+            if (reservedBytes.get() < bytes) {
                 throw new IllegalStateException("Released more transfer memory than was reserved");
             }
-            if (reservedBytes.compareAndSet(current, current - bytes)) {
+            reservedBytes.addAndGet(-bytes);
+            granted = grantWaiters();
+        }
+        complete(granted);
+    }
+
+    private void withdraw(Waiter waiter) {
+        List<Waiter> granted;
+        synchronized (waiters) {
+            if (!waiters.remove(waiter)) {
                 return;
             }
+            granted = grantWaiters();
+        }
+        complete(granted);
+    }
+
+    /** Moves waiters off the head of the queue while they fit. Called with the lock held. */
+    private List<Waiter> grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        while (!waiters.isEmpty() && fits(waiters.peekFirst().bytes)) {
+            Waiter waiter = waiters.pollFirst();
+            reservedBytes.addAndGet(waiter.bytes);
+            granted.add(waiter);
+        }
+        return granted;
+    }
+
+    /** Completes futures outside the lock; a waiter cancelled in the meantime hands its bytes back. */
+    private void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            if (!waiter.future.complete(null)) {
+                release(waiter.bytes);
+            }
         }
     }
 
+    private boolean fits(long bytes) {
+        return reservedBytes.get() <= limitBytes - bytes;
+    }
+
     public long getReservedBytes() {
         return reservedBytes.get();
     }
+
+    public int getWaitingReservations() {
+        synchronized (waiters) {
+            return waiters.size();
+        }
+    }
+
+    private static final class Waiter {
+        private final long bytes;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Waiter(long bytes) {
+            this.bytes = bytes;
+        }
+    }
 }
@@ -0,0 +1,156 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Encoded DOWNLOAD_CHUNK frames of each player's stored clipboard, least recently used first.
+ * Chunk frames carry the download session ID, so an entry is only reused for the same player,
+ * clipboard hash and chunk size. Entries are dropped when the proxy store replaces or evicts
+ * the player's clipboard. Frames still being collected by a first download hold a reservation
+ * against the same budget, so cached and in-flight copies together stay within it.
+ */
+final class DownloadFrameCache {
+
+    private final long maxBytes;
+    private final Map<UUID, Frames> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Frames, Long> reservations = new IdentityHashMap<>();
+    private long cachedBytes;
+    private long reservedBytes;
+
+    DownloadFrameCache(long maxBytes) {
+        this.maxBytes = Math.max(0L, maxBytes);
+    }
+
+    synchronized Frames get(UUID playerId, String hash, int chunkSize) {
+        Frames frames = entries.get(playerId);
+        return frames != null && frames.matches(hash, chunkSize) ? frames : null;
+    }
+
+    /**
+     * Reserves room for a download to collect the frames of a payload of about
+     * {@code payloadBytes}, evicting older players' frames if needed. Returns null when frames
+     * in flight already hold the rest of the budget; the caller then encodes and drops each frame.
+     * The reservation ends at {@link #put} or {@link #release}.
+     */
+    synchronized Frames reserve(String hash, int chunkSize, String sessionId, int totalChunks,
+                                long payloadBytes) {
+        if (payloadBytes <= 0L || payloadBytes > maxBytes - reservedBytes) {
+            return null;
+        }
+        reservedBytes += payloadBytes;
+        evictToBudget();
+        Frames frames = new Frames(hash, chunkSize, sessionId, totalChunks);
+        reservations.put(frames, payloadBytes);
+        return frames;
+    }
+
+    /** Gives back the reservation of frames that will not be cached; a no-op for other frames. */
+    synchronized void release(Frames frames) {
+        Long reserved = reservations.remove(frames);
+        if (reserved != null) {
+            reservedBytes -= reserved;
+        }
+    }
+
+    /** Keep a fully encoded set of frames, evicting older players' frames to stay in bounds. */
+    synchronized void put(UUID playerId, Frames frames) {
+        release(frames);
+        long size = frames.encodedBytes();
+        if (size <= 0L || size > maxBytes || !frames.isComplete()) {
+            return;
+        }
+        Frames previous = entries.put(playerId, frames);
+        cachedBytes += size - (previous == null ? 0L : previous.encodedBytes());
+        evictToBudget();
+    }
+
+    /** Must be called while holding this monitor. */
+    private void evictToBudget() {
+        Iterator<Frames> iterator = entries.values().iterator();
+        while (cachedBytes + reservedBytes > maxBytes && iterator.hasNext()) {
+            cachedBytes -= iterator.next().encodedBytes();
+            iterator.remove();
+        }
+    }
+
+    synchronized void invalidate(UUID playerId) {
+        Frames removed = entries.remove(playerId);
+        if (removed != null) {
+            cachedBytes -= removed.encodedBytes();
+        }
+    }
+
+    /** Drop a player's frames if they belong to a session the backend refused. */
+    synchronized void invalidate(UUID playerId, String sessionId) {
+        Frames frames = entries.get(playerId);
+        if (frames != null && frames.sessionId().equals(sessionId)) {
+            invalidate(playerId);
+        }
+    }
+
+    synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        reservations.clear();
+        cachedBytes = 0L;
+        reservedBytes = 0L;
+    }
+
+    /** Chunk frames of one download, filled in as the first download encodes them. */
+    static final class Frames {
+        private final String hash;
+        private final int chunkSize;
+        private final String sessionId;
+        private final byte[][] frames;
+        private int encodedFrames;
+        private long encodedBytes;
+
+        Frames(String hash, int chunkSize, String sessionId, int totalChunks) {
+            this.hash = hash;
+            this.chunkSize = chunkSize;
+            this.sessionId = sessionId;
+            this.frames = new byte[totalChunks][];
+        }
+
+        String sessionId() {
+            return sessionId;
+        }
+
+        boolean matches(String expectedHash, int expectedChunkSize) {
+            return hash.equals(expectedHash) && chunkSize == expectedChunkSize;
+        }
+
+        synchronized byte[] frame(int chunkIndex) {
+            return frames[chunkIndex];
+        }
+
+        /** Record an encoded frame; returns true once every frame is present. */
+        synchronized boolean store(int chunkIndex, byte[] frame) {
+            if (frames[chunkIndex] == null) {
+                frames[chunkIndex] = frame;
+                encodedFrames++;
+                encodedBytes += frame.length;
+            }
+            return encodedFrames == frames.length;
+        }
+
+        synchronized boolean isComplete() {
+            return encodedFrames == frames.length;
+        }
+
+        synchronized long encodedBytes() {
+            return encodedBytes;
+        }
+    }
+}
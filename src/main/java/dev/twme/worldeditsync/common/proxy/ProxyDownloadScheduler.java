@@ -0,0 +1,236 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces every proxy download from one timer. Each tick hands out chunks round-robin across
+ * backend servers, then across the downloads headed to each backend, until the proxy-wide
+ * byte budget for that tick is spent. A join storm therefore shares one bounded stream
+ * instead of starting one unbounded pump per player.
+ */
+final class ProxyDownloadScheduler {
+
+    static final long TICK_MS = 50L;
+
+    /** Sends one download chunk. */
+    interface ChunkSender {
+        void send(int chunkIndex);
+    }
+
+    /** Runs a task after a delay on the proxy scheduler. */
+    interface DelayedExecutor {
+        void runLater(Runnable task, long delayMs);
+    }
+
+    private final DelayedExecutor executor;
+    private final long bytesPerSecond;
+    private final int chunksPerTick;
+    private final long intervalTicks;
+    private final LongSupplier clock;
+    private final Map<String, ArrayDeque<Download>> backends = new LinkedHashMap<>();
+    private long tokens;
+    private long lastRefill;
+    private long tickCount;
+    private int backendCursor;
+    private boolean scheduled;
+    private boolean shutdown;
+
+    ProxyDownloadScheduler(DelayedExecutor executor, long bytesPerSecond,
+                           int chunksPerTick, long downloadIntervalMs) {
+        this(executor, bytesPerSecond, chunksPerTick, downloadIntervalMs,
+                System::currentTimeMillis);
+    }
+
+    ProxyDownloadScheduler(DelayedExecutor executor, long bytesPerSecond, int chunksPerTick,
+                           long downloadIntervalMs, LongSupplier clock) {
+        this.executor = executor;
+        this.bytesPerSecond = Math.max(0L, bytesPerSecond);
+        this.chunksPerTick = Math.max(1, chunksPerTick);
+        this.intervalTicks = Math.max(1L, (downloadIntervalMs + TICK_MS / 2) / TICK_MS);
+        this.clock = clock;
+        this.lastRefill = clock.getAsLong();
+        this.tokens = maxTokens();
+    }
+
+    /**
+     * Queue a download. It is dropped as soon as {@code active} reports false, for example
+     * after a cancellation, a newer download for the same player or a server switch.
+     */
+    void enqueue(String backend, int totalBytes, int chunkSize,
+                 BooleanSupplier active, ChunkSender sender) {
+        if (totalBytes <= 0 || chunkSize <= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            backends.computeIfAbsent(backend, ignored -> new ArrayDeque<>())
+                    .addLast(new Download(totalBytes, chunkSize, active, sender, tickCount + 1));
+            scheduleLocked();
+        }
+    }
+
+    synchronized int activeDownloads() {
+        int count = 0;
+        for (ArrayDeque<Download> queue : backends.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    synchronized void shutdown() {
+        shutdown = true;
+        backends.clear();
+    }
+
+    void tick() {
+        List<Pick> picks = new ArrayList<>();
+        synchronized (this) {
+            scheduled = false;
+            if (shutdown) {
+                return;
+            }
+            tickCount++;
+            refill();
+            dropInactive();
+            selectChunks(picks);
+            scheduleLocked();
+        }
+        for (Pick pick : picks) {
+            pick.download.sender.send(pick.chunkIndex);
+        }
+    }
+
+    private void selectChunks(List<Pick> picks) {
+        List<ArrayDeque<Download>> queues = new ArrayList<>(backends.values());
+        if (queues.isEmpty()) {
+            return;
+        }
+        int start = Math.floorMod(backendCursor++, queues.size());
+        boolean progressed = true;
+        while (progressed && hasBudget()) {
+            progressed = false;
+            for (int offset = 0; offset < queues.size() && hasBudget(); offset++) {
+                Download download = nextReady(queues.get((start + offset) % queues.size()));
+                if (download == null) {
+                    continue;
+                }
+                Pick pick = download.nextChunk();
+                picks.add(pick);
+                if (bytesPerSecond > 0L) {
+                    tokens -= pick.length;
+                }
+                progressed = true;
+            }
+        }
+        for (Iterator<ArrayDeque<Download>> queueIterator = backends.values().iterator();
+             queueIterator.hasNext(); ) {
+            ArrayDeque<Download> queue = queueIterator.next();
+            queue.removeIf(Download::finished);
+            for (Download download : queue) {
+                if (download.sentThisTick > 0) {
+                    download.sentThisTick = 0;
+                    download.readyAtTick = tickCount + intervalTicks;
+                }
+            }
+            if (queue.isEmpty()) {
+                queueIterator.remove();
+            }
+        }
+    }
+
+    /** Rotate through one backend's downloads and return the next one allowed to send. */
+    private Download nextReady(ArrayDeque<Download> queue) {
+        for (int checked = 0; checked < queue.size(); checked++) {
+            Download download = queue.pollFirst();
+            queue.addLast(download);
+            if (!download.finished() && download.readyAtTick <= tickCount
+                    && download.sentThisTick < chunksPerTick) {
+                return download;
+            }
+        }
+        return null;
+    }
+
+    private void dropInactive() {
+        for (Iterator<ArrayDeque<Download>> queueIterator = backends.values().iterator();
+             queueIterator.hasNext(); ) {
+            ArrayDeque<Download> queue = queueIterator.next();
+            queue.removeIf(download -> !download.active.getAsBoolean());
+            if (queue.isEmpty()) {
+                queueIterator.remove();
+            }
+        }
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        long elapsed = Math.max(0L, now - lastRefill);
+        lastRefill = now;
+        if (bytesPerSecond <= 0L) {
+            return;
+        }
+        long added = elapsed >= Long.MAX_VALUE / bytesPerSecond
+                ? Long.MAX_VALUE : bytesPerSecond * elapsed / 1_000L;
+        tokens = Math.min(maxTokens(), tokens > Long.MAX_VALUE - added ? Long.MAX_VALUE : tokens + added);
+    }
+
+    /** Allow at most two ticks of catch-up after an idle period or a late timer. */
+    private long maxTokens() {
+        return Math.max(1L, bytesPerSecond * TICK_MS * 2L / 1_000L);
+    }
+
+    private boolean hasBudget() {
+        // The last chunk of a tick may overdraw; the deficit is repaid by later ticks.
+        return bytesPerSecond <= 0L || tokens > 0L;
+    }
+
+    private void scheduleLocked() {
+        if (!scheduled && !shutdown && !backends.isEmpty()) {
+            scheduled = true;
+            executor.runLater(this::tick, TICK_MS);
+        }
+    }
+
+    private record Pick(Download download, int chunkIndex, int length) {
+    }
+
+    private static final class Download {
+        private final int totalBytes;
+        private final int chunkSize;
+        private final int totalChunks;
+        private final BooleanSupplier active;
+        private final ChunkSender sender;
+        private int nextChunk;
+        private int sentThisTick;
+        private long readyAtTick;
+
+        private Download(int totalBytes, int chunkSize, BooleanSupplier active,
+                         ChunkSender sender, long readyAtTick) {
+            this.totalBytes = totalBytes;
+            this.chunkSize = chunkSize;
+            this.totalChunks = (int) (((long) totalBytes + chunkSize - 1) / chunkSize);
+            this.active = active;
+            this.sender = sender;
+            this.readyAtTick = readyAtTick;
+        }
+
+        private boolean finished() {
+            return nextChunk >= totalChunks;
+        }
+
+        private Pick nextChunk() {
+            int index = nextChunk++;
+            sentThisTick++;
+            return new Pick(this, index, Math.min(chunkSize, totalBytes - index * chunkSize));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import java.util.UUID;
+
+/**
+ * Thin proxy-specific operations needed by {@link ProxyTransferEngine}.
+ *
+ * @param <P> platform player type
+ * @param <C> platform backend connection type
+ */
+public interface ProxyPlatform<P, C> {
+
+    UUID playerId(P player);
+
+    String playerName(P player);
+
+    boolean isConnected(P player);
+
+    /** The backend connection the player is currently on, or null while switching servers. */
+    C currentConnection(P player);
+
+    /** Name of the backend server behind a connection, used to share download bandwidth fairly. */
+    String backendName(C connection);
+
+    /** Send an already encoded plugin message frame on the sync channel. */
+    void send(C connection, byte[] frame);
+
+    void runAsync(Runnable task);
+
+    void runLater(Runnable task, long delayMs);
+
+    void debug(String message);
+
+    void warn(String message);
+
+    void error(String message);
+}
@@ -0,0 +1,526 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
+import dev.twme.worldeditsync.common.model.ClipboardPayload;
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
+import dev.twme.worldeditsync.common.protocol.ChunkPacing;
+import dev.twme.worldeditsync.common.protocol.InboundLimits;
+import dev.twme.worldeditsync.common.protocol.InboundMessageLimiter;
+import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec.ParsedMessage;
+import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
+import dev.twme.worldeditsync.common.protocol.TransferSession;
+import dev.twme.worldeditsync.common.storage.ProxyClipboardStore;
+
+/**
+ * Platform-neutral upload, download and sync handling for plugin messages from Paper servers.
+ * Proxy implementations only adapt scheduling, sending and logging through {@link ProxyPlatform}.
+ *
+ * @param <P> platform player type
+ * @param <C> platform backend connection type
+ */
+public final class ProxyTransferEngine<P, C> {
+
+    private final ProxyPlatform<P, C> platform;
+    private final ProxyClipboardStore store;
+    private final int chunkSize;
+    private final int maxClipboardSize;
+    private final long chunkSendDelayMs;
+    private final long sessionTimeoutMs;
+    private final PluginMessageCodec pluginMessageCodec;
+    private final LongSupplier clock;
+    private final InboundMessageLimiter inboundMessageLimiter;
+    private final ConcurrentHashMap<UUID, Long> invalidMessageWarnings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, String> pendingSyncRequests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, ActiveDownload> activeDownloads = new ConcurrentHashMap<>();
+    private final ProxyDownloadScheduler downloadScheduler;
+    private final DownloadFrameCache frameCache;
+
+    /**
+     * @param downloadBytesPerSecond proxy-wide budget shared by all outgoing downloads,
+     *                               or 0 for no limit beyond the per-download pacing
+     * @param frameCacheBytes        memory for reusable encoded download frames, or 0 to disable
+     */
+    public ProxyTransferEngine(ProxyPlatform<P, C> platform, ProxyClipboardStore store,
+                               int chunkSize, int maxClipboardSize, long chunkSendDelayMs,
+                               long sessionTimeoutMs, long downloadBytesPerSecond,
+                               long frameCacheBytes, PluginMessageCodec pluginMessageCodec) {
+        this(platform, store, chunkSize, maxClipboardSize, chunkSendDelayMs, sessionTimeoutMs,
+                downloadBytesPerSecond, frameCacheBytes, pluginMessageCodec,
+                InboundLimits.DEFAULTS, System::currentTimeMillis);
+    }
+
+    /**
+     * @param inboundLimits per-player budget for messages from backend servers
+     * @param clock         time source for rate limits, pacing and deadlines, e.g. a simulated one
+     */
+    public ProxyTransferEngine(ProxyPlatform<P, C> platform, ProxyClipboardStore store,
+                               int chunkSize, int maxClipboardSize, long chunkSendDelayMs,
+                               long sessionTimeoutMs, long downloadBytesPerSecond,
+                               long frameCacheBytes, PluginMessageCodec pluginMessageCodec,
+                               InboundLimits inboundLimits, LongSupplier clock) {
+        this.platform = platform;
+        this.store = store;
+        this.chunkSize = chunkSize;
+        this.maxClipboardSize = maxClipboardSize;
+        this.chunkSendDelayMs = chunkSendDelayMs;
+        this.sessionTimeoutMs = sessionTimeoutMs;
+        this.pluginMessageCodec = pluginMessageCodec;
+        this.clock = clock;
+        this.inboundMessageLimiter = new InboundMessageLimiter(inboundLimits, clock);
+        this.downloadScheduler = new ProxyDownloadScheduler(platform::runLater,
+                downloadBytesPerSecond, ChunkPacing.chunksPerPump(chunkSendDelayMs),
+                ChunkPacing.pumpIntervalMs(chunkSendDelayMs), clock);
+        this.frameCache = new DownloadFrameCache(frameCacheBytes);
+        store.setClipboardRemovalListener(frameCache::invalidate);
+    }
+
+    public void handleMessage(P player, byte[] data) {
+        UUID playerId = platform.playerId(player);
+        int messageLength = data == null ? -1 : data.length;
+        if (!inboundMessageLimiter.tryAcquire(playerId, messageLength)) {
+            SyncMetrics.PROXY_RATE_LIMITED.increment();
+            warnInvalidMessage(player, "Rate-limited protocol messages from ");
+            return;
+        }
+        ParsedMessage msg = pluginMessageCodec.decode(data);
+        if (msg == null) {
+            SyncMetrics.PROXY_INVALID.increment();
+            inboundMessageLimiter.recordInvalidMessage(playerId);
+            warnInvalidMessage(player, "Invalid protocol message from ");
+            return;
+        }
+        SyncMetrics.PROXY_MESSAGES.increment();
+
+        try {
+            switch (msg.type()) {
+                case SYNC_REQUEST -> handleSyncRequest(player, msg);
+                case UPLOAD_BEGIN -> handleUploadBegin(player, msg);
+                case UPLOAD_CHUNK -> handleUploadChunk(player, msg);
+                case DOWNLOAD_REQUEST -> handleDownloadRequest(player, msg);
+                case DOWNLOAD_ACK -> handleDownloadAck(player, msg);
+                case CANCEL -> handleCancel(player, msg);
+                case TRANSFORM_UPDATE -> handleTransformUpdate(player, msg);
+                default -> platform.warn("Unexpected message type from Paper: " + msg.type());
+            }
+        } catch (Exception e) {
+            platform.error("Error handling message " + msg.type() + " from "
+                    + platform.playerName(player) + ": " + e.getMessage());
+        }
+    }
+
+    private void handleUploadBegin(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String sessionId = in.readUTF();
+        int totalBytes = in.readInt();
+        int totalChunks = in.readInt();
+        String hash = in.readUTF();
+
+        long maxPayloadSize = MessageCipher.maxEncryptedSize(maxClipboardSize);
+        if (!ProtocolValidation.isSessionId(sessionId)
+                || !ProtocolValidation.isSha256(hash)
+                || !ProtocolValidation.exhausted(in)
+                || totalBytes > maxPayloadSize
+                || !TransferSession.isValidLayout(totalBytes, totalChunks, chunkSize)) {
+            platform.warn("Upload rejected from " + platform.playerName(player)
+                    + ": invalid transfer layout (" + totalBytes + " bytes, " + totalChunks + " chunks)");
+            if (ProtocolValidation.isSessionId(sessionId)) {
+                sendToPlayer(player, ProtocolCodec.encodeCancel(sessionId, "invalid_upload"));
+            }
+            return;
+        }
+
+        TransferSession session = new TransferSession(
+                sessionId, totalChunks, totalBytes, chunkSize, hash);
+        if (!store.addUploadSession(sessionId, platform.playerId(player), session)) {
+            sendToPlayer(player, ProtocolCodec.encodeCancel(sessionId, "duplicate_session"));
+            return;
+        }
+
+        SyncMetrics.TRACES.start(uploadTraceKey(sessionId), "proxy_upload",
+                platform.playerId(player), sessionId).mark("begin");
+        sendToPlayer(player, ProtocolCodec.encodeUploadReady(sessionId));
+        platform.debug("Upload begin from " + platform.playerName(player) + ": "
+                + totalBytes + " bytes, " + totalChunks + " chunks");
+    }
+
+    private void handleUploadChunk(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String sessionId = in.readUTF();
+        int chunkIndex = in.readInt();
+        int chunkLength = in.readInt();
+        UUID playerId = platform.playerId(player);
+        if (!ProtocolValidation.isSessionId(sessionId)
+                || chunkIndex < 0
+                || chunkLength <= 0
+                || chunkLength > chunkSize) {
+            platform.warn("Chunk rejected from " + platform.playerName(player) + ": chunkLength="
+                    + chunkLength + " exceeds chunkSize=" + chunkSize);
+            if (ProtocolValidation.isSessionId(sessionId)) {
+                sendToPlayer(player, ProtocolCodec.encodeCancel(sessionId, "invalid_chunk_length"));
+                store.removeUploadSession(sessionId, playerId);
+            }
+            return;
+        }
+        byte[] chunkData = in.readNBytes(chunkLength);
+        if (chunkData.length != chunkLength || !ProtocolValidation.exhausted(in)) {
+            rejectUpload(player, sessionId, "Truncated upload chunk");
+            return;
+        }
+
+        TransferSession session = store.getUploadSession(sessionId);
+        if (session == null) {
+            platform.warn("Chunk for unknown upload session: " + sessionId);
+            return;
+        }
+        if (!playerId.equals(store.getSessionOwner(sessionId))) {
+            platform.warn("Chunk owner mismatch for upload session: " + sessionId);
+            return;
+        }
+        if (chunkIndex >= session.getTotalChunks()) {
+            rejectUpload(player, sessionId, "invalid_chunk_index");
+            return;
+        }
+        int expectedLength = Math.min(chunkSize, session.getTotalBytes() - chunkIndex * chunkSize);
+        if (chunkLength != expectedLength) {
+            rejectUpload(player, sessionId, "invalid_chunk_layout");
+            return;
+        }
+
+        try {
+            if (session.addChunk(chunkIndex, chunkData)) {
+                SyncMetrics.PROXY_UPLOAD_BYTES.add(chunkLength);
+                SyncMetrics.TRACES.progress(uploadTraceKey(sessionId),
+                        session.getReceivedBytes(), session.getTotalBytes());
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            rejectUpload(player, sessionId, e.getMessage());
+            return;
+        }
+
+        if (session.tryClaimCompletion()) {
+            completeUpload(player, session, sessionId);
+        }
+    }
+
+    private void completeUpload(P player, TransferSession session, String sessionId) {
+        UUID owner = store.getSessionOwner(sessionId);
+        UUID playerId = owner != null ? owner : platform.playerId(player);
+        String playerName = platform.playerName(player);
+        platform.runAsync(() -> {
+            try {
+                if (!store.completeUploadSession(sessionId, playerId, session)) {
+                    platform.debug("Ignoring stale completed upload for " + playerName
+                            + " (session: " + sessionId + ")");
+                    SyncMetrics.TRACES.finish(uploadTraceKey(sessionId), "stale");
+                    return;
+                }
+                SyncMetrics.TRACES.mark(uploadTraceKey(sessionId), "stored");
+                sendToPlayer(player, ProtocolCodec.encodeUploadAck(sessionId));
+                SyncMetrics.PROXY_UPLOADS.increment();
+                SyncMetrics.TRACES.finish(uploadTraceKey(sessionId), "completed");
+                platform.debug("Upload complete for " + playerName + ", hash: " + session.getExpectedHash());
+            } catch (Exception e) {
+                platform.error("Failed to complete upload for " + playerName + ": " + e.getMessage());
+                store.removeUploadSession(sessionId, playerId, session);
+                SyncMetrics.TRACES.finish(uploadTraceKey(sessionId), "failed");
+                sendToPlayer(player, ProtocolCodec.encodeCancel(sessionId, "upload_failed"));
+            }
+        });
+    }
+
+    private void rejectUpload(P player, String sessionId, String reason) {
+        store.removeUploadSession(sessionId, platform.playerId(player));
+        SyncMetrics.TRACES.finish(uploadTraceKey(sessionId), "rejected");
+        sendToPlayer(player, ProtocolCodec.encodeCancel(sessionId, reason));
+        platform.warn("Upload session rejected from " + platform.playerName(player)
+                + " (session: " + sessionId + "): " + reason);
+    }
+
+    private void handleSyncRequest(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String requestId = in.readUTF();
+        if (!ProtocolValidation.isSessionId(requestId) || !ProtocolValidation.exhausted(in)) {
+            platform.warn("Malformed sync request from " + platform.playerName(player));
+            return;
+        }
+
+        String previous = pendingSyncRequests.put(platform.playerId(player), requestId);
+        if (requestId.equals(previous)) {
+            return;
+        }
+        respondToSyncRequest(player, requestId, clock.getAsLong() + sessionTimeoutMs);
+    }
+
+    private void respondToSyncRequest(P player, String requestId, long deadline) {
+        UUID playerId = platform.playerId(player);
+        if (!requestId.equals(pendingSyncRequests.get(playerId))) {
+            return;
+        }
+        if (!platform.isConnected(player)) {
+            pendingSyncRequests.remove(playerId, requestId);
+            return;
+        }
+        TransferSession activeUpload = store.getUploadSessionForOwner(playerId);
+        if (activeUpload != null && !activeUpload.isComplete()) {
+            pendingSyncRequests.remove(playerId, requestId);
+            store.removeUploadSessionForOwner(playerId);
+            respondWithStoredClipboard(player, requestId);
+            platform.warn("Discarded an incomplete upload before answering initial sync for "
+                    + platform.playerName(player));
+            return;
+        }
+        if (activeUpload != null) {
+            if (clock.getAsLong() < deadline) {
+                platform.runLater(() -> respondToSyncRequest(player, requestId, deadline), 50L);
+            } else {
+                pendingSyncRequests.remove(playerId, requestId);
+                store.removeUploadSessionForOwner(playerId);
+                respondWithStoredClipboard(player, requestId);
+                platform.warn("Discarded a stalled upload before answering initial sync for "
+                        + platform.playerName(player));
+            }
+            return;
+        }
+        if (!pendingSyncRequests.remove(playerId, requestId)) {
+            return;
+        }
+
+        respondWithStoredClipboard(player, requestId);
+    }
+
+    private void respondWithStoredClipboard(P player, String requestId) {
+        UUID playerId = platform.playerId(player);
+        ClipboardPayload payload = store.getClipboard(playerId);
+        if (payload != null) {
+            sendToPlayer(player, ProtocolCodec.encodeSyncHash(requestId, payload.getHash()));
+            ClipboardTransform transform = store.getTransform(playerId);
+            if (transform != null) {
+                sendToPlayer(player, ProtocolCodec.encodeTransformUpdate(payload.getHash(), transform));
+            }
+        } else {
+            sendToPlayer(player, ProtocolCodec.encodeSyncNoData(requestId));
+        }
+    }
+
+    /** A rotate or flip only changes the transform; keep it beside the stored block data. */
+    private void handleTransformUpdate(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String hash = in.readUTF();
+        ClipboardTransform transform = ClipboardTransform.read(in);
+        if (!ProtocolValidation.isSha256(hash) || transform == null
+                || !ProtocolValidation.exhausted(in)) {
+            platform.warn("Malformed transform update from " + platform.playerName(player));
+            return;
+        }
+        if (store.setTransform(platform.playerId(player), hash, transform)) {
+            platform.debug("Clipboard transform updated for " + platform.playerName(player));
+        }
+    }
+
+    private void handleDownloadRequest(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String requestId = in.readUTF();
+        if (!ProtocolValidation.isSessionId(requestId) || !ProtocolValidation.exhausted(in)) {
+            platform.warn("Malformed download request from " + platform.playerName(player));
+            return;
+        }
+        ClipboardPayload payload = store.getClipboard(platform.playerId(player));
+
+        if (payload == null) {
+            sendToPlayer(player, ProtocolCodec.encodeCancel(requestId, "clipboard_not_found"));
+            return;
+        }
+
+        sendClipboardToPlayer(player, requestId, payload);
+    }
+
+    private void sendClipboardToPlayer(P player, String requestId, ClipboardPayload payload) {
+        C destination = platform.currentConnection(player);
+        if (destination == null) {
+            return;
+        }
+        byte[] data = payload.getData();
+        int totalChunks = (int) Math.ceil((double) data.length / chunkSize);
+        UUID playerId = platform.playerId(player);
+        // Reusing cached frames means reusing the session ID they were encoded with.
+        DownloadFrameCache.Frames cached = frameCache.get(playerId, payload.getHash(), chunkSize);
+        String sessionId = cached != null ? cached.sessionId() : UUID.randomUUID().toString();
+        // Only collect copies of the frames while the cache budget has room for them in flight.
+        DownloadFrameCache.Frames frames = cached != null
+                ? cached
+                : frameCache.reserve(payload.getHash(), chunkSize, sessionId, totalChunks, data.length);
+        (cached != null ? SyncMetrics.PROXY_FRAME_CACHE_HITS : SyncMetrics.PROXY_FRAME_CACHE_MISSES).increment();
+        SyncMetrics.PROXY_DOWNLOADS.increment();
+        ActiveDownload download = new ActiveDownload(sessionId, frames);
+        endDownload(activeDownloads.put(playerId, download));
+        String traceKey = downloadTraceKey(playerId);
+        SyncMetrics.TRACES.start(traceKey, "proxy_download", playerId, sessionId).mark("begin");
+        if (cached != null) {
+            SyncMetrics.TRACES.mark(traceKey, "frames_cached");
+        }
+
+        byte[] beginMsg = ProtocolCodec.encodeDownloadBegin(
+                requestId, sessionId, data.length, totalChunks, payload.getHash());
+        sendToServer(destination, beginMsg);
+        downloadScheduler.enqueue(platform.backendName(destination), data.length, chunkSize,
+                () -> platform.isConnected(player)
+                        && activeDownloads.get(playerId) == download
+                        && Objects.equals(destination, platform.currentConnection(player)),
+                chunkIndex -> {
+                    byte[] frame = downloadFrame(playerId, payload, sessionId, frames, chunkIndex);
+                    SyncMetrics.PROXY_DOWNLOAD_BYTES.add(frame.length);
+                    platform.send(destination, frame);
+                    if (activeDownloads.get(playerId) == download) {
+                        SyncMetrics.TRACES.progress(traceKey, chunkIndex + 1L, totalChunks);
+                    }
+                });
+    }
+
+    /** Return the encoded chunk frame, encoding it on first use and collecting it when cacheable. */
+    private byte[] downloadFrame(UUID playerId, ClipboardPayload payload, String sessionId,
+                                 DownloadFrameCache.Frames frames, int chunkIndex) {
+        byte[] frame = frames != null ? frames.frame(chunkIndex) : null;
+        if (frame != null) {
+            return frame;
+        }
+        byte[] data = payload.getData();
+        int offset = chunkIndex * chunkSize;
+        byte[] chunk = new byte[Math.min(chunkSize, data.length - offset)];
+        System.arraycopy(data, offset, chunk, 0, chunk.length);
+        frame = pluginMessageCodec.encode(
+                ProtocolCodec.encodeDownloadChunk(sessionId, chunkIndex, chunk));
+        if (frames != null && frames.store(chunkIndex, frame)) {
+            if (store.getClipboard(playerId) == payload) {
+                frameCache.put(playerId, frames);
+            } else {
+                frameCache.release(frames);
+            }
+        }
+        return frame;
+    }
+
+    private void handleDownloadAck(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String sessionId = in.readUTF();
+        if (!ProtocolValidation.isSessionId(sessionId) || !ProtocolValidation.exhausted(in)) {
+            platform.warn("Malformed download acknowledgement from " + platform.playerName(player));
+            return;
+        }
+        if (removeActiveDownload(platform.playerId(player), sessionId)) {
+            SyncMetrics.TRACES.finish(downloadTraceKey(platform.playerId(player)), "completed");
+        }
+        platform.debug("Download acknowledged by " + platform.playerName(player)
+                + " session: " + sessionId);
+    }
+
+    private void handleCancel(P player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String sessionId = in.readUTF();
+        String reason = in.readUTF();
+        if (!ProtocolValidation.isSessionId(sessionId)
+                || !ProtocolValidation.isReason(reason)
+                || !ProtocolValidation.exhausted(in)) {
+            platform.warn("Malformed cancellation from " + platform.playerName(player));
+            return;
+        }
+
+        UUID playerId = platform.playerId(player);
+        if (store.removeUploadSession(sessionId, playerId)) {
+            SyncMetrics.TRACES.finish(uploadTraceKey(sessionId), "cancelled");
+        }
+        if (removeActiveDownload(playerId, sessionId)) {
+            // The backend may have refused a reused session ID; encode fresh frames next time.
+            frameCache.invalidate(playerId, sessionId);
+            SyncMetrics.TRACES.finish(downloadTraceKey(playerId), "cancelled");
+        }
+        platform.debug("Transfer cancelled by " + platform.playerName(player) + ": " + reason);
+    }
+
+    private void sendToPlayer(P player, byte[] protocolMessage) {
+        C connection = platform.currentConnection(player);
+        if (connection != null) {
+            sendToServer(connection, protocolMessage);
+        }
+    }
+
+    private void sendToServer(C connection, byte[] protocolMessage) {
+        platform.send(connection, pluginMessageCodec.encode(protocolMessage));
+    }
+
+    public void removePlayer(UUID playerId) {
+        pendingSyncRequests.remove(playerId);
+        inboundMessageLimiter.remove(playerId);
+        invalidMessageWarnings.remove(playerId);
+        endDownload(activeDownloads.remove(playerId));
+        SyncMetrics.TRACES.discard(downloadTraceKey(playerId));
+        TransferSession upload = store.getUploadSessionForOwner(playerId);
+        if (upload != null && !upload.isComplete()) {
+            SyncMetrics.TRACES.discard(uploadTraceKey(upload.getSessionId()));
+        }
+        store.removeIncompleteUploadSessionForOwner(playerId);
+    }
+
+    private boolean removeActiveDownload(UUID playerId, String sessionId) {
+        ActiveDownload current = activeDownloads.get(playerId);
+        if (current != null && current.sessionId.equals(sessionId)
+                && activeDownloads.remove(playerId, current)) {
+            endDownload(current);
+            return true;
+        }
+        return false;
+    }
+
+    /** Frees the frame cache reservation of a download that stopped before collecting them all. */
+    private void endDownload(ActiveDownload download) {
+        if (download != null && download.frames != null) {
+            frameCache.release(download.frames);
+        }
+    }
+
+    public void shutdown() {
+        downloadScheduler.shutdown();
+        frameCache.clear();
+        pendingSyncRequests.clear();
+        activeDownloads.clear();
+        invalidMessageWarnings.clear();
+        inboundMessageLimiter.clear();
+    }
+
+    private void warnInvalidMessage(P player, String prefix) {
+        long now = clock.getAsLong();
+        Long previous = invalidMessageWarnings.put(platform.playerId(player), now);
+        if (previous == null || now - previous >= 5_000L) {
+            platform.warn(prefix + platform.playerName(player));
+        }
+    }
+
+    private static String uploadTraceKey(String sessionId) {
+        return "proxy-upload/" + sessionId;
+    }
+
+    /** Cached frames may repeat a session ID, so downloads are traced per player. */
+    private static String downloadTraceKey(UUID playerId) {
+        return "proxy-download/" + playerId;
+    }
+
+    /** Identity of one download attempt; cached frames may repeat a session ID. */
+    private static final class ActiveDownload {
+        private final String sessionId;
+        private final DownloadFrameCache.Frames frames;
+
+        private ActiveDownload(String sessionId, DownloadFrameCache.Frames frames) {
+            this.sessionId = sessionId;
+            this.frames = frames;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package dev.twme.worldeditsync.common.storage;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.function.Consumer;
 
 /**
@@ -23,6 +26,38 @@ public interface ClipboardStorage extends AutoCloseable {
      */
     byte[] download(String playerId, StoredClipboard expected) throws Exception;
 
+    /**
+     * Stream a clipboard of exactly {@code size} plaintext bytes into storage.
+     * Backends that cannot stream fall back to buffering it for {@link #upload(String, byte[], String, long)}.
+     */
+    default void upload(String playerId, InputStream data, int size, String hash,
+                        long updatedAt) throws Exception {
+        byte[] buffered = data.readNBytes(size);
+        if (buffered.length != size || data.read() >= 0) {
+            throw new IOException("Clipboard stream does not match its declared size");
+        }
+        upload(playerId, buffered, hash, updatedAt);
+    }
+
+    /**
+     * Stream the exact version returned by {@link #inspect(String)} into {@code output}.
+     * Returns the number of plaintext bytes written.
+     */
+    default long download(String playerId, StoredClipboard expected,
+                          OutputStream output) throws Exception {
+        byte[] data = download(playerId, expected);
+        output.write(data);
+        return data.length;
+    }
+
+    /**
+     * How many calls the backend can usefully serve at once, usually its connection pool size.
+     * Callers keep no more than this many calls in flight.
+     */
+    default int maxConcurrentCalls() {
+        return 2;
+    }
+
     /** Human-readable backend name used in logs. */
     String description();
 
@@ -4,9 +4,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.model.ClipboardPayload;
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 import dev.twme.worldeditsync.common.protocol.TransferSession;
 
 /**
@@ -16,6 +18,7 @@ import dev.twme.worldeditsync.common.protocol.TransferSession;
 public class ProxyClipboardStore {
 
     private final Map<UUID, ClipboardPayload> clipboards = new HashMap<>();
+    private final Map<UUID, ClipboardTransform> transforms = new HashMap<>();
     private final Map<String, TransferSession> uploadSessions = new HashMap<>();
     private final Map<String, UUID> sessionOwners = new HashMap<>();
     private final Map<UUID, String> ownerSessions = new HashMap<>();
@@ -23,6 +26,7 @@ public class ProxyClipboardStore {
 
     private long storedBytes;
     private long reservedUploadBytes;
+    private Consumer<UUID> removalListener = ignored -> { };
 
     public ProxyClipboardStore() {
         this(Constants.DEFAULT_TRANSFER_MEMORY_LIMIT_BYTES);
@@ -45,7 +49,11 @@ public class ProxyClipboardStore {
             return false;
         }
         clipboards.put(playerId, new ClipboardPayload(data, hash));
+        transforms.remove(playerId);
         storedBytes += data.length - previousBytes;
+        if (previous != null) {
+            removalListener.accept(playerId);
+        }
         return true;
     }
 
@@ -62,18 +70,47 @@ public class ProxyClipboardStore {
         byte[] data = expectedSession.assemble();
         ClipboardPayload previous = clipboards.put(playerId,
                 new ClipboardPayload(data, expectedSession.getExpectedHash()));
+        transforms.remove(playerId);
         if (previous != null) {
             storedBytes -= previous.getData().length;
+            removalListener.accept(playerId);
         }
         storedBytes += data.length;
         detachUploadSession(sessionId);
         return true;
     }
 
+    /**
+     * Called, while the store is locked, whenever a player's stored clipboard is replaced,
+     * expired or evicted. Listeners must not call back into the store.
+     */
+    public synchronized void setClipboardRemovalListener(Consumer<UUID> listener) {
+        removalListener = listener == null ? ignored -> { } : listener;
+    }
+
     public synchronized ClipboardPayload getClipboard(UUID playerId) {
         return clipboards.get(playerId);
     }
 
+    /**
+     * Record the holder transform for the player's stored clipboard. Ignored unless the hash
+     * still names the stored clipboard; a new clipboard starts without a transform.
+     */
+    public synchronized boolean setTransform(UUID playerId, String hash,
+                                             ClipboardTransform transform) {
+        ClipboardPayload payload = clipboards.get(playerId);
+        if (payload == null || transform == null || !payload.getHash().equalsIgnoreCase(hash)) {
+            return false;
+        }
+        transforms.put(playerId, transform);
+        return true;
+    }
+
+    /** Transform last recorded for the stored clipboard, or null if none was ever sent. */
+    public synchronized ClipboardTransform getTransform(UUID playerId) {
+        return transforms.get(playerId);
+    }
+
     public synchronized boolean hasClipboard(UUID playerId) {
         return clipboards.containsKey(playerId);
     }
@@ -196,7 +233,9 @@ public class ProxyClipboardStore {
         for (TransferSession session : uploadSessions.values()) {
             session.release();
         }
+        clipboards.keySet().forEach(removalListener);
         clipboards.clear();
+        transforms.clear();
         uploadSessions.clear();
         sessionOwners.clear();
         ownerSessions.clear();
@@ -226,8 +265,10 @@ public class ProxyClipboardStore {
 
     private void removeClipboard(UUID playerId) {
         ClipboardPayload removed = clipboards.remove(playerId);
+        transforms.remove(playerId);
         if (removed != null) {
             storedBytes -= removed.getData().length;
+            removalListener.accept(playerId);
         }
     }
 
@@ -0,0 +1,102 @@
+package dev.twme.worldeditsync.common.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** Size-checked stream helpers shared by streaming storage backends. */
+public final class StorageStreams {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private StorageStreams() {
+    }
+
+    /** Wrap a stream that must contain exactly {@code length} bytes before end of stream. */
+    public static InputStream exactLength(InputStream input, long length, String message) {
+        return new ExactLengthInputStream(input, length, message);
+    }
+
+    /** Copy a stream, rejecting it once more than {@code maximum} bytes have been produced. */
+    public static long copyBounded(InputStream input, OutputStream output, long maximum,
+                                   String message) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long copied = 0L;
+        int amount;
+        while ((amount = input.read(buffer)) >= 0) {
+            if (amount > maximum - copied) {
+                throw new IOException(message);
+            }
+            output.write(buffer, 0, amount);
+            copied += amount;
+        }
+        return copied;
+    }
+
+    private static final class ExactLengthInputStream extends FilterInputStream {
+        private final long length;
+        private final String message;
+        private long read;
+
+        private ExactLengthInputStream(InputStream input, long length, String message) {
+            super(input);
+            this.length = length;
+            this.message = message;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (read == length) {
+                requireEnd();
+                return -1;
+            }
+            int value = in.read();
+            if (value < 0) {
+                throw new IOException(message);
+            }
+            read++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (read == length) {
+                requireEnd();
+                return -1;
+            }
+            int amount = in.read(buffer, offset, (int) Math.min(count, length - read));
+            if (amount < 0) {
+                throw new IOException(message);
+            }
+            read += amount;
+            return amount;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = in.skip(Math.min(count, length - read));
+            read += Math.max(0L, skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), length - read);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void requireEnd() throws IOException {
+            if (in.read() >= 0) {
+                throw new IOException(message);
+            }
+        }
+    }
+}
@@ -1,19 +1,31 @@
 package dev.twme.worldeditsync.paper;
 
+import java.io.IOException;
+
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.metrics.MetricsHttpServer;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
 import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
 import dev.twme.worldeditsync.common.protocol.TransferMemoryBudget;
+import dev.twme.worldeditsync.common.storage.ClipboardStorage;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardManager;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardSerializer;
+import dev.twme.worldeditsync.paper.clipboard.SerializationService;
+import dev.twme.worldeditsync.paper.command.WorldEditSyncCommand;
 import dev.twme.worldeditsync.paper.config.PaperConfig;
 import dev.twme.worldeditsync.paper.config.DatabaseSettings;
 import dev.twme.worldeditsync.paper.config.StorageType;
 import dev.twme.worldeditsync.paper.listener.ClipboardWatcher;
 import dev.twme.worldeditsync.paper.listener.PlayerListener;
 import dev.twme.worldeditsync.paper.s3.S3StorageManager;
+import dev.twme.worldeditsync.paper.storage.AppliedHashIndex;
+import dev.twme.worldeditsync.paper.storage.CachedClipboardStorage;
 import dev.twme.worldeditsync.paper.storage.JdbcClipboardStorage;
+import dev.twme.worldeditsync.paper.storage.LocalClipboardCache;
+import dev.twme.worldeditsync.paper.storage.MeteredClipboardStorage;
 import dev.twme.worldeditsync.paper.storage.RedisClipboardStorage;
 import dev.twme.worldeditsync.paper.storage.S3ClipboardStorage;
 import dev.twme.worldeditsync.paper.sync.ProxySyncEngine;
@@ -24,12 +36,18 @@ import dev.twme.worldeditsync.paper.update.UpdateChecker;
 
 public class WorldEditSyncPaper extends JavaPlugin {
 
+    private static final int APPLIED_HASH_INDEX_MAX_ENTRIES = 50_000;
+    private static final String RESERVED_BYTES_GAUGE = "wesync_transfer_memory_reserved_bytes";
+    private static final String WAITING_GAUGE = "wesync_transfer_memory_waiting";
+
     private PaperConfig paperConfig;
     private ClipboardManager clipboardManager;
     private ClipboardSerializer clipboardSerializer;
+    private SerializationService serializationService;
     private SyncEngine syncEngine;
     private ClipboardWatcher clipboardWatcher;
     private ActionBarProgress actionBarProgress;
+    private MetricsHttpServer metricsServer;
 
     @Override
     public void onEnable() {
@@ -51,9 +69,14 @@ public class WorldEditSyncPaper extends JavaPlugin {
 
         // Core components
         clipboardManager = new ClipboardManager();
-        clipboardManager.setTransferMemoryBudget(new TransferMemoryBudget(
-                paperConfig.getTransferConfig().getMemoryLimitBytes()));
+        TransferMemoryBudget transferMemoryBudget = new TransferMemoryBudget(
+                paperConfig.getTransferConfig().getMemoryLimitBytes());
+        clipboardManager.setTransferMemoryBudget(transferMemoryBudget);
         clipboardSerializer = new ClipboardSerializer();
+        // One CPU budget for serializing, parsing and decrypting clipboards in every mode.
+        serializationService = new SerializationService(
+                paperConfig.getTransferConfig().getSerializationCpuFraction(),
+                paperConfig.getTransferConfig().getSerializationCpuMillisPerTick());
         actionBarProgress = new ActionBarProgress(this, paperConfig.isActionBarEnabled());
         MessageCipher cipher = new MessageCipher(paperConfig.getToken());
 
@@ -94,12 +117,27 @@ public class WorldEditSyncPaper extends JavaPlugin {
         // Storage-backed modes have their own polling; proxy mode needs this watcher.
         if (paperConfig.isProxyMode()) {
             clipboardWatcher = new ClipboardWatcher(this, clipboardManager, clipboardSerializer,
-                    syncEngine, paperConfig.getTransferConfig());
+                    serializationService, syncEngine, paperConfig.getTransferConfig());
             clipboardWatcher.start(
                     paperConfig.getTransferConfig().getWatcherInitialDelayTicks(),
                     paperConfig.getTransferConfig().getWatcherIntervalTicks());
         }
 
+        PluginCommand command = getCommand("wesync");
+        if (command != null) {
+            WorldEditSyncCommand executor = new WorldEditSyncCommand(
+                    SyncMetrics.REGISTRY, SyncMetrics.TRACES, getDataFolder().toPath().resolve("traces.json"));
+            command.setExecutor(executor);
+            command.setTabCompleter(executor);
+        }
+        if (paperConfig.isMetricsEnabled()) {
+            SyncMetrics.REGISTRY.gauge(RESERVED_BYTES_GAUGE,
+                    "Bytes reserved by in-progress transfers", transferMemoryBudget::getReservedBytes);
+            SyncMetrics.REGISTRY.gauge(WAITING_GAUGE,
+                    "Uploads queued for transfer memory", transferMemoryBudget::getWaitingReservations);
+            startMetrics();
+        }
+
         // Check for updates
         new UpdateChecker(this).checkAsync();
 
@@ -108,12 +146,22 @@ public class WorldEditSyncPaper extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (metricsServer != null) {
+            metricsServer.close();
+            metricsServer = null;
+        }
+        // The registry outlives this instance; drop gauges that read its budget.
+        SyncMetrics.REGISTRY.removeGauge(RESERVED_BYTES_GAUGE);
+        SyncMetrics.REGISTRY.removeGauge(WAITING_GAUGE);
         if (clipboardWatcher != null) {
             clipboardWatcher.cancel();
         }
         if (syncEngine != null) {
             syncEngine.shutdown();
         }
+        if (serializationService != null) {
+            serializationService.close();
+        }
         if (clipboardManager != null) {
             clipboardManager.shutdown();
         }
@@ -123,9 +171,29 @@ public class WorldEditSyncPaper extends JavaPlugin {
         getLogger().info("WorldEditSync disabled.");
     }
 
+    private void startMetrics() {
+        try {
+            metricsServer = MetricsHttpServer.start(paperConfig.getMetricsBindAddress(),
+                    paperConfig.getMetricsPort(), SyncMetrics.REGISTRY, SyncMetrics.TRACES);
+            getLogger().info("Serving metrics on " + paperConfig.getMetricsBindAddress() + ":"
+                    + metricsServer.getPort() + "/metrics");
+        } catch (IOException | RuntimeException e) {
+            getLogger().warning("Could not start the metrics endpoint: " + e.getMessage());
+        }
+    }
+
     private void initProxyMode(MessageCipher cipher, PluginMessageCodec pluginMessageCodec) {
+        AppliedHashIndex appliedHashIndex = null;
+        LocalClipboardCache cache = null;
+        if (paperConfig.isLocalCacheEnabled()) {
+            appliedHashIndex = new AppliedHashIndex(
+                    getDataFolder().toPath().resolve("applied-hashes.txt"),
+                    APPLIED_HASH_INDEX_MAX_ENTRIES);
+            cache = newLocalCache();
+        }
         syncEngine = new ProxySyncEngine(this, clipboardManager, clipboardSerializer,
-                cipher, pluginMessageCodec, paperConfig.getTransferConfig(), actionBarProgress);
+                cipher, pluginMessageCodec, paperConfig.getTransferConfig(), actionBarProgress,
+                appliedHashIndex, cache, serializationService);
         getLogger().info("Initializing Proxy sync mode.");
     }
 
@@ -138,11 +206,13 @@ public class WorldEditSyncPaper extends JavaPlugin {
                 paperConfig.getS3Region(),
                 cipher,
                 paperConfig.getTransferConfig().getMaxClipboardSize(),
+                paperConfig.getS3PartSizeBytes(),
+                paperConfig.getS3ParallelTransfers(),
                 getLogger());
 
         syncEngine = new StorageSyncEngine(this, clipboardManager, clipboardSerializer,
-                new S3ClipboardStorage(s3), paperConfig.getTransferConfig(),
-                paperConfig.getS3CheckIntervalTicks(), actionBarProgress);
+                withLocalCache(new S3ClipboardStorage(s3)), paperConfig.getTransferConfig(),
+                paperConfig.getS3CheckIntervalTicks(), actionBarProgress, serializationService);
         getLogger().info("Initializing S3 sync mode.");
     }
 
@@ -150,7 +220,7 @@ public class WorldEditSyncPaper extends JavaPlugin {
         DatabaseSettings settings = paperConfig.getDatabaseSettings();
         String url = settings.resolveUrl(getDataFolder().toPath());
         try {
-            dev.twme.worldeditsync.common.storage.ClipboardStorage storage;
+            ClipboardStorage storage;
             if (settings.type() == StorageType.REDIS) {
                 storage = new RedisClipboardStorage(
                         url,
@@ -175,13 +245,27 @@ public class WorldEditSyncPaper extends JavaPlugin {
                         paperConfig.getTransferConfig().getMaxClipboardSize());
             }
             syncEngine = new StorageSyncEngine(
-                    this, clipboardManager, clipboardSerializer, storage,
+                    this, clipboardManager, clipboardSerializer, withLocalCache(storage),
                     paperConfig.getTransferConfig(), settings.checkIntervalTicks(),
-                    actionBarProgress);
+                    actionBarProgress, serializationService);
             getLogger().info("Initializing database sync mode (backend: "
                     + settings.type().name().toLowerCase(java.util.Locale.ROOT) + ").");
         } catch (IllegalArgumentException e) {
             getLogger().severe("Invalid database configuration: " + e.getMessage());
         }
     }
+
+    private ClipboardStorage withLocalCache(ClipboardStorage backend) {
+        ClipboardStorage storage = new MeteredClipboardStorage(backend);
+        if (!paperConfig.isLocalCacheEnabled()) {
+            return storage;
+        }
+        return new CachedClipboardStorage(storage, newLocalCache(),
+                paperConfig.getTransferConfig().getMaxClipboardSize(), getLogger());
+    }
+
+    private LocalClipboardCache newLocalCache() {
+        return new LocalClipboardCache(
+                getDataFolder().toPath().resolve("cache"), paperConfig.getLocalCacheMaxBytes());
+    }
 }
@@ -1,10 +1,12 @@
 package dev.twme.worldeditsync.paper.clipboard;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.LongSupplier;
 
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 import dev.twme.worldeditsync.common.model.SyncState;
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.protocol.TransferSession;
@@ -12,18 +14,16 @@ import dev.twme.worldeditsync.common.protocol.TransferMemoryBudget;
 
 /**
  * Manages per-player sync state, clipboard hash caches, and active transfer sessions.
- * All state transitions use AtomicReference.compareAndSet to avoid race conditions.
+ * Everything known about a player lives in one {@link PlayerState}, so a check on the watcher
+ * path is a single map lookup. All state transitions use AtomicReference.compareAndSet to
+ * avoid race conditions.
  */
 public class ClipboardManager {
 
-    private final ConcurrentHashMap<UUID, AtomicReference<SyncState>> playerStates = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, Object> playerTokens = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, String> localHashes = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, String> remoteHashes = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, SerializedClipboard> serializedClipboards = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, String> activeSessionIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, PlayerState> players = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, TransferSession> downloadSessions = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, TransferSession> processingDownloadSessions = new ConcurrentHashMap<>();
+    private final SerializedClipboardCache serializedBytes;
     private volatile TransferMemoryBudget transferMemoryBudget;
     private final LongSupplier clock;
 
@@ -32,16 +32,23 @@ public class ClipboardManager {
     }
 
     ClipboardManager(LongSupplier clock) {
+        this(clock, Constants.SERIALIZED_CLIPBOARD_CACHE_BYTES);
+    }
+
+    ClipboardManager(LongSupplier clock, long serializedBytesLimit) {
         this.clock = clock;
+        this.serializedBytes = new SerializedClipboardCache(
+                serializedBytesLimit, Constants.UNCHANGED_CLIPBOARD_RECHECK_MS);
     }
 
     public void setTransferMemoryBudget(TransferMemoryBudget transferMemoryBudget) {
         this.transferMemoryBudget = transferMemoryBudget;
     }
 
-    public boolean tryReserveTransferMemory(long bytes) {
+    /** Completes once {@code bytes} are reserved, queueing behind earlier reservations. */
+    public CompletableFuture<Void> reserveTransferMemory(long bytes) {
         TransferMemoryBudget budget = transferMemoryBudget;
-        return budget == null || budget.tryReserve(bytes);
+        return budget == null ? CompletableFuture.completedFuture(null) : budget.reserve(bytes);
     }
 
     public void releaseTransferMemory(long bytes) {
@@ -54,8 +61,8 @@ public class ClipboardManager {
     // ── State management ──
 
     public SyncState getState(UUID playerId) {
-        AtomicReference<SyncState> ref = playerStates.get(playerId);
-        return ref != null ? ref.get() : null;
+        PlayerState player = players.get(playerId);
+        return player != null ? player.syncState.get() : null;
     }
 
     /**
@@ -71,18 +78,19 @@ public class ClipboardManager {
      * S3 mode passes IDLE directly because it manages its own join-time check.
      */
     public void initPlayer(UUID playerId, SyncState initialState) {
-        playerTokens.put(playerId, new Object());
-        playerStates.put(playerId, new AtomicReference<>(initialState));
-        serializedClipboards.remove(playerId);
+        PlayerState player = player(playerId);
+        player.token = new Object();
+        player.syncState.set(initialState);
+        player.serialized.set(null);
     }
 
     /**
      * Atomically transition state. Returns true if successful.
      */
     public boolean compareAndSetState(UUID playerId, SyncState expected, SyncState newState) {
-        AtomicReference<SyncState> ref = playerStates.get(playerId);
-        if (ref == null) return false;
-        return ref.compareAndSet(expected, newState);
+        PlayerState player = players.get(playerId);
+        if (player == null || expected == null) return false;
+        return player.syncState.compareAndSet(expected, newState);
     }
 
     /**
@@ -92,20 +100,25 @@ public class ClipboardManager {
      * Returns true if successful.
      */
     public boolean transitionFromPendingOrIdle(UUID playerId, SyncState newState) {
-        AtomicReference<SyncState> ref = playerStates.get(playerId);
-        if (ref == null) return false;
-        return ref.compareAndSet(SyncState.PENDING_SYNC, newState)
-                || ref.compareAndSet(SyncState.IDLE, newState);
+        PlayerState player = players.get(playerId);
+        if (player == null) return false;
+        return player.syncState.compareAndSet(SyncState.PENDING_SYNC, newState)
+                || player.syncState.compareAndSet(SyncState.IDLE, newState);
     }
 
     /**
      * Force set state (for error recovery / cleanup).
      */
     public void forceSetState(UUID playerId, SyncState state) {
-        AtomicReference<SyncState> ref = playerStates.get(playerId);
-        if (ref != null) {
-            ref.set(state);
+        PlayerState player = players.get(playerId);
+        if (player == null) {
+            return;
         }
+        // An untracked entry only carries hashes; it must not become tracked here.
+        SyncState current;
+        do {
+            current = player.syncState.get();
+        } while (current != null && !player.syncState.compareAndSet(current, state));
     }
 
     public boolean isIdle(UUID playerId) {
@@ -113,40 +126,44 @@ public class ClipboardManager {
     }
 
     public boolean isTracked(UUID playerId) {
-        return playerStates.containsKey(playerId);
+        return getState(playerId) != null;
     }
 
     /** Identifies one connection lifetime so old async work cannot affect a rejoin. */
     public Object getPlayerToken(UUID playerId) {
-        return playerTokens.get(playerId);
+        PlayerState player = players.get(playerId);
+        return player != null ? player.token : null;
     }
 
     public boolean isCurrentPlayerToken(UUID playerId, Object token) {
-        return token != null && playerTokens.get(playerId) == token;
+        return token != null && getPlayerToken(playerId) == token;
     }
 
     // ── Hash cache ──
 
     public String getLocalHash(UUID playerId) {
-        return localHashes.get(playerId);
+        PlayerState player = players.get(playerId);
+        return player != null ? player.localHash : null;
     }
 
     public void setLocalHash(UUID playerId, String hash) {
-        localHashes.put(playerId, hash);
+        player(playerId).localHash = hash;
     }
 
     public String getRemoteHash(UUID playerId) {
-        return remoteHashes.get(playerId);
+        PlayerState player = players.get(playerId);
+        return player != null ? player.remoteHash : null;
     }
 
     public void setRemoteHash(UUID playerId, String hash) {
-        remoteHashes.put(playerId, hash);
+        player(playerId).remoteHash = hash;
     }
 
     /** Records content that was accepted by the remote sync backend. */
     public void markUploadedClipboard(UUID playerId, String hash) {
-        setLocalHash(playerId, hash);
-        setRemoteHash(playerId, hash);
+        PlayerState player = player(playerId);
+        player.localHash = hash;
+        player.remoteHash = hash;
     }
 
     /**
@@ -155,57 +172,132 @@ public class ClipboardManager {
      */
     public void markDownloadedClipboard(UUID playerId, Object clipboard,
                                         String remoteHash, String localHash) {
-        setRemoteHash(playerId, remoteHash);
-        setLocalHash(playerId, localHash);
+        PlayerState player = player(playerId);
+        player.remoteHash = remoteHash;
+        player.localHash = localHash;
         markSerializedClipboard(playerId, clipboard, localHash);
     }
 
     public void forgetClipboard(UUID playerId) {
-        localHashes.remove(playerId);
-        remoteHashes.remove(playerId);
-        serializedClipboards.remove(playerId);
+        PlayerState player = players.get(playerId);
+        if (player != null) {
+            player.localHash = null;
+            player.remoteHash = null;
+            player.serialized.set(null);
+            player.remoteTransform = null;
+        }
+    }
+
+    /** Transform the remote side holds for the clipboard with this remote hash. */
+    public ClipboardTransform getRemoteTransform(UUID playerId, String remoteHash) {
+        PlayerState player = players.get(playerId);
+        RemoteTransform remote = player != null ? player.remoteTransform : null;
+        return remote != null && remote.hash.equalsIgnoreCase(remoteHash)
+                ? remote.transform : ClipboardTransform.IDENTITY;
+    }
+
+    public void setRemoteTransform(UUID playerId, String remoteHash, ClipboardTransform transform) {
+        if (remoteHash != null && transform != null) {
+            player(playerId).remoteTransform = new RemoteTransform(remoteHash, transform);
+        }
+    }
+
+    /** Returns true when this clipboard instance is the one last confirmed as the local hash. */
+    public boolean isCurrentClipboard(UUID playerId, Object clipboard) {
+        PlayerState player = players.get(playerId);
+        if (clipboard == null || player == null) {
+            return false;
+        }
+        SerializedClipboard serialized = player.serialized.get();
+        return serialized != null && serialized.clipboard == clipboard
+                && serialized.hash.equals(player.localHash);
     }
 
     /** Returns true when this clipboard instance was confirmed recently enough to skip a scan. */
     public boolean isSerializedClipboard(UUID playerId, Object clipboard) {
-        SerializedClipboard serialized = serializedClipboards.get(playerId);
-        String localHash = localHashes.get(playerId);
+        PlayerState player = players.get(playerId);
+        if (clipboard == null || player == null) {
+            return false;
+        }
+        SerializedClipboard serialized = player.serialized.get();
         long now = clock.getAsLong();
-        return clipboard != null && serialized != null && serialized.clipboard == clipboard
-                && serialized.hash.equals(localHash)
+        return serialized != null && serialized.clipboard == clipboard
+                && serialized.hash.equals(player.localHash)
                 && now >= serialized.timestamp
                 && now - serialized.timestamp < Constants.UNCHANGED_CLIPBOARD_RECHECK_MS;
     }
 
+    /** Returns true when this clipboard instance is the one last serialized to {@code hash}. */
+    public boolean isSerializedAs(UUID playerId, Object clipboard, String hash) {
+        PlayerState player = players.get(playerId);
+        if (clipboard == null || player == null) {
+            return false;
+        }
+        SerializedClipboard serialized = player.serialized.get();
+        return serialized != null && serialized.clipboard == clipboard && serialized.hash.equals(hash);
+    }
+
     public void markSerializedClipboard(UUID playerId, Object clipboard, String hash) {
         if (clipboard != null && hash != null) {
-            serializedClipboards.put(playerId,
+            player(playerId).serialized.set(
                     new SerializedClipboard(clipboard, hash, clock.getAsLong()));
         }
     }
 
+    /** Also keeps the bytes so a retry or re-upload of the same clipboard skips serialization. */
+    public void markSerializedClipboard(UUID playerId, Object clipboard, String hash, byte[] data) {
+        markSerializedClipboard(playerId, clipboard, hash);
+        if (clipboard != null && hash != null && data != null) {
+            serializedBytes.put(playerId, clipboard, data, hash, clock.getAsLong());
+        }
+    }
+
+    /**
+     * Bytes this clipboard instance serialized to within the recheck window, or null. They
+     * outlive a failed upload, {@link #forgetClipboard} and a reconnect, but not the clipboard.
+     */
+    public SerializedBytes getSerializedBytes(UUID playerId, Object clipboard) {
+        if (clipboard == null) {
+            return null;
+        }
+        SerializedClipboardCache.Entry entry = serializedBytes.get(
+                playerId, clipboard, clock.getAsLong());
+        return entry == null ? null : new SerializedBytes(entry.data(), entry.hash());
+    }
+
+    public long getSerializedBytesSize() {
+        return serializedBytes.getCachedBytes();
+    }
+
     public void clearSerializedClipboard(UUID playerId, Object expectedClipboard) {
+        PlayerState player = players.get(playerId);
+        if (player == null) {
+            return;
+        }
         if (expectedClipboard == null) {
-            serializedClipboards.remove(playerId);
+            player.serialized.set(null);
         } else {
-            serializedClipboards.computeIfPresent(playerId,
-                    (ignored, serialized) -> serialized.clipboard == expectedClipboard
-                            ? null : serialized);
+            player.serialized.getAndUpdate(serialized -> serialized != null
+                    && serialized.clipboard == expectedClipboard ? null : serialized);
         }
     }
 
     // ── Session management ──
 
     public void setActiveSessionId(UUID playerId, String sessionId) {
-        activeSessionIds.put(playerId, sessionId);
+        player(playerId).activeSessionId = sessionId;
     }
 
     public String getActiveSessionId(UUID playerId) {
-        return activeSessionIds.get(playerId);
+        PlayerState player = players.get(playerId);
+        return player != null ? player.activeSessionId : null;
     }
 
     public void clearActiveSession(UUID playerId) {
-        activeSessionIds.remove(playerId);
+        PlayerState player = players.get(playerId);
+        if (player != null) {
+            player.activeSessionId = null;
+        }
     }
 
     public synchronized boolean addDownloadSession(String sessionId, TransferSession session) {
@@ -262,12 +354,8 @@ public class ClipboardManager {
     // ── Cleanup ──
 
     public void removePlayer(UUID playerId) {
-        playerStates.remove(playerId);
-        playerTokens.remove(playerId);
-        localHashes.remove(playerId);
-        remoteHashes.remove(playerId);
-        serializedClipboards.remove(playerId);
-        String sessionId = activeSessionIds.remove(playerId);
+        PlayerState removed = players.remove(playerId);
+        String sessionId = removed != null ? removed.activeSessionId : null;
         if (sessionId != null) {
             removeDownloadSession(sessionId);
         }
@@ -285,12 +373,8 @@ public class ClipboardManager {
     }
 
     public synchronized void shutdown() {
-        playerStates.clear();
-        playerTokens.clear();
-        localHashes.clear();
-        remoteHashes.clear();
-        serializedClipboards.clear();
-        activeSessionIds.clear();
+        players.clear();
+        serializedBytes.clear();
         downloadSessions.forEach((sessionId, session) -> {
             if (downloadSessions.remove(sessionId, session)) {
                 releaseReservation(session);
@@ -305,9 +389,34 @@ public class ClipboardManager {
         });
     }
 
+    private PlayerState player(UUID playerId) {
+        return players.computeIfAbsent(playerId, ignored -> new PlayerState());
+    }
+
+    /**
+     * Everything known about one player. The sync state is null until {@link #initPlayer},
+     * so hashes recorded by late async work never make a player tracked.
+     */
+    private static final class PlayerState {
+        private final AtomicReference<SyncState> syncState = new AtomicReference<>();
+        private final AtomicReference<SerializedClipboard> serialized = new AtomicReference<>();
+        private volatile Object token;
+        private volatile String localHash;
+        private volatile String remoteHash;
+        private volatile String activeSessionId;
+        private volatile RemoteTransform remoteTransform;
+    }
+
     private record SerializedClipboard(Object clipboard, String hash, long timestamp) {
     }
 
+    private record RemoteTransform(String hash, ClipboardTransform transform) {
+    }
+
+    /** Canonical serialized bytes of a clipboard and their SHA-256 hash. */
+    public record SerializedBytes(byte[] data, String hash) {
+    }
+
     private void releaseReservation(TransferSession session) {
         TransferMemoryBudget budget = transferMemoryBudget;
         if (budget != null) {
@@ -6,11 +6,15 @@ import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.BuiltInClipboardFormat;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Identity;
+import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.session.ClipboardHolder;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 import dev.twme.worldeditsync.common.Constants;
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -56,6 +60,52 @@ public class ClipboardSerializer {
         }
     }
 
+    /**
+     * Get the transform the player's clipboard holder applies, or null if there is no clipboard
+     * or the transform is not a plain affine transform.
+     */
+    public ClipboardTransform getPlayerTransform(Player player) {
+        try {
+            WorldEditPlugin we = (WorldEditPlugin) Bukkit.getPluginManager().getPlugin("WorldEdit");
+            if (we == null) return null;
+
+            var actor = BukkitAdapter.adapt(player);
+            var session = we.getWorldEdit().getSessionManager().get(actor);
+            Transform transform = session.getClipboard().getTransform();
+            if (transform instanceof Identity) {
+                return ClipboardTransform.IDENTITY;
+            }
+            return transform instanceof AffineTransform affine
+                    ? ClipboardTransform.of(affine.coefficients()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Apply a transform to the player's clipboard holder without touching its block data.
+     * Returns false if the holder no longer contains {@code expectedClipboard}.
+     */
+    public boolean setPlayerTransform(Player player, Clipboard expectedClipboard,
+                                      ClipboardTransform transform) {
+        try {
+            WorldEditPlugin we = (WorldEditPlugin) Bukkit.getPluginManager().getPlugin("WorldEdit");
+            if (we == null) return false;
+
+            var actor = BukkitAdapter.adapt(player);
+            var session = we.getWorldEdit().getSessionManager().get(actor);
+            ClipboardHolder holder = session.getClipboard();
+            if (holder.getClipboard() != expectedClipboard) {
+                return false;
+            }
+            holder.setTransform(transform.isIdentity()
+                    ? new Identity() : new AffineTransform(transform.getCoefficients()));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     /** Serialize a WorldEdit Clipboard to canonical Sponge V3 schematic bytes. */
     public byte[] serialize(Clipboard clipboard) throws IOException {
         validateVolume(clipboard, Constants.DEFAULT_MAX_CLIPBOARD_BLOCKS);
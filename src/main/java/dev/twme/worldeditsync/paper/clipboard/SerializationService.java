@@ -0,0 +1,235 @@
+package dev.twme.worldeditsync.paper.clipboard;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Serializes clipboards for many players at once without competing with the server tick.
+ * Jobs run on a ForkJoin pool sized to a fraction of the available cores, smallest clipboard
+ * first so a join storm clears quickly, and a CPU-time budget refilled every tick stops new
+ * jobs from starting while serialization has recently used more than its share.
+ */
+public final class SerializationService implements AutoCloseable {
+
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+    static final int MAX_QUEUED_JOBS = 256;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final long budgetNanosPerTick;
+    private final LongSupplier nanoClock;
+    private final LongSupplier cpuClock;
+    private final PriorityQueue<Job> queue = new PriorityQueue<>(
+            Comparator.comparingLong(Job::size).thenComparingLong(Job::sequence));
+    private long nextSequence;
+    private int running;
+    private long budgetNanos;
+    private long refilledAt;
+    private boolean wakeupScheduled;
+    private boolean closed;
+
+    /**
+     * @param cpuFraction       share of the available cores serialization may occupy at once
+     * @param cpuMillisPerTick  CPU time serialization may use per 50 ms tick across all
+     *                          workers, or 0 for no limit beyond the pool size
+     */
+    public SerializationService(double cpuFraction, long cpuMillisPerTick) {
+        this(threadsFor(cpuFraction), TimeUnit.MILLISECONDS.toNanos(Math.max(0L, cpuMillisPerTick)),
+                System::nanoTime, SerializationService::currentThreadCpuTime);
+    }
+
+    SerializationService(int parallelism, long budgetNanosPerTick, LongSupplier nanoClock,
+                         LongSupplier cpuClock) {
+        this.parallelism = Math.max(1, parallelism);
+        this.budgetNanosPerTick = budgetNanosPerTick;
+        this.nanoClock = nanoClock;
+        this.cpuClock = cpuClock;
+        this.budgetNanos = budgetNanosPerTick;
+        this.refilledAt = nanoClock.getAsLong();
+        this.pool = new ForkJoinPool(this.parallelism, SerializationService::newWorker, null, false);
+    }
+
+    static int threadsFor(double cpuFraction) {
+        double fraction = Double.isFinite(cpuFraction) ? Math.max(0.0, Math.min(1.0, cpuFraction)) : 0.0;
+        return Math.max(1, (int) Math.floor(Runtime.getRuntime().availableProcessors() * fraction));
+    }
+
+    /**
+     * Queues {@code task}, which is expected to serialize a clipboard of about {@code size}
+     * blocks. Returns false when the queue is full or the service is closed; the caller should
+     * try again on a later scan.
+     */
+    public boolean submit(long size, Runnable task) {
+        return submit(size, task, () -> { });
+    }
+
+    /**
+     * Like {@link #submit(long, Runnable)}, but runs {@code onDrop} instead of {@code task} if the
+     * job is accepted and then discarded by {@link #close()} before it starts, so the caller can
+     * undo whatever state it set while the job was queued.
+     */
+    public boolean submit(long size, Runnable task, Runnable onDrop) {
+        synchronized (this) {
+            if (closed || queue.size() >= MAX_QUEUED_JOBS) {
+                return false;
+            }
+            queue.add(new Job(Math.max(0L, size), nextSequence++, task, onDrop));
+        }
+        dispatch();
+        return true;
+    }
+
+    /** Starts queued jobs while a worker is free and the CPU budget is not spent. */
+    private void dispatch() {
+        while (true) {
+            Job job;
+            long wakeupDelay = -1L;
+            synchronized (this) {
+                if (closed || queue.isEmpty() || running >= parallelism) {
+                    return;
+                }
+                if (!hasBudget()) {
+                    if (!wakeupScheduled) {
+                        wakeupScheduled = true;
+                        wakeupDelay = nanosUntilBudget();
+                    }
+                    job = null;
+                } else {
+                    job = queue.poll();
+                    running++;
+                }
+            }
+            if (job == null) {
+                if (wakeupDelay >= 0L) {
+                    scheduleWakeup(wakeupDelay);
+                }
+                return;
+            }
+            try {
+                pool.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running--;
+                }
+                job.onDrop().run();
+                return;
+            }
+        }
+    }
+
+    private void run(Job job) {
+        long startCpu = cpuClock.getAsLong();
+        try {
+            job.task().run();
+        } finally {
+            long spent = Math.max(0L, cpuClock.getAsLong() - startCpu);
+            synchronized (this) {
+                running--;
+                refill();
+                budgetNanos -= spent;
+            }
+            dispatch();
+        }
+    }
+
+    /** Must be called while holding this monitor. */
+    private boolean hasBudget() {
+        if (budgetNanosPerTick <= 0L) {
+            return true;
+        }
+        refill();
+        return budgetNanos > 0L;
+    }
+
+    /**
+     * Adds the budget earned since the last refill. A job may overdraw it, and the debt delays
+     * later jobs; unused budget never exceeds one tick's worth. Must be called while holding
+     * this monitor.
+     */
+    private void refill() {
+        if (budgetNanosPerTick <= 0L) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        double earned = (double) budgetNanosPerTick * Math.max(0L, now - refilledAt) / TICK_NANOS;
+        refilledAt = now;
+        budgetNanos = (long) Math.min(budgetNanosPerTick, budgetNanos + earned);
+    }
+
+    /** Must be called while holding this monitor. */
+    private long nanosUntilBudget() {
+        double missing = 1.0 - budgetNanos;
+        return Math.max(1L, (long) Math.ceil(missing * TICK_NANOS / budgetNanosPerTick));
+    }
+
+    private void scheduleWakeup(long delayNanos) {
+        try {
+            CompletableFuture.runAsync(() -> {
+                synchronized (this) {
+                    wakeupScheduled = false;
+                }
+                dispatch();
+            }, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, pool));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                wakeupScheduled = false;
+            }
+        }
+    }
+
+    public synchronized int getQueuedJobs() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningJobs() {
+        return running;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Drops queued jobs, running their drop callbacks, and lets running ones finish. */
+    @Override
+    public void close() {
+        List<Job> dropped;
+        synchronized (this) {
+            closed = true;
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+        }
+        pool.shutdown();
+        for (Job job : dropped) {
+            job.onDrop().run();
+        }
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+                ? THREADS.getCurrentThreadCpuTime()
+                : System.nanoTime();
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("WorldEditSync-Serializer-" + thread.getPoolIndex());
+        thread.setContextClassLoader(SerializationService.class.getClassLoader());
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    }
+
+    private record Job(long size, long sequence, Runnable task, Runnable onDrop) {
+    }
+}
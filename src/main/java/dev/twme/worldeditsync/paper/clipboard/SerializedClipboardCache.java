@@ -0,0 +1,83 @@
+package dev.twme.worldeditsync.paper.clipboard;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The canonical bytes each player's clipboard last serialized to, least recently used first.
+ * Entries hold the clipboard weakly and are only returned for the same clipboard instance
+ * within {@code maxAgeMs}, so a replaced clipboard never pins memory or yields stale bytes and
+ * an in-place edit is still picked up by the regular recheck. The total size is bounded.
+ */
+final class SerializedClipboardCache {
+
+    private final long maxBytes;
+    private final long maxAgeMs;
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    SerializedClipboardCache(long maxBytes, long maxAgeMs) {
+        this.maxBytes = Math.max(0L, maxBytes);
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    synchronized Entry get(UUID playerId, Object clipboard, long now) {
+        Entry entry = entries.get(playerId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.clipboard.get() == null || isExpired(entry, now)) {
+            removeLocked(playerId);
+            return null;
+        }
+        return entry.clipboard.get() == clipboard ? entry : null;
+    }
+
+    /** Keep a player's latest bytes, dropping expired entries and then the least recently used. */
+    synchronized void put(UUID playerId, Object clipboard, byte[] data, String hash, long now) {
+        removeLocked(playerId);
+        entries.values().removeIf(entry -> {
+            boolean stale = entry.clipboard.get() == null || isExpired(entry, now);
+            if (stale) {
+                cachedBytes -= entry.data.length;
+            }
+            return stale;
+        });
+        if (data.length > maxBytes) {
+            return;
+        }
+        entries.put(playerId, new Entry(new WeakReference<>(clipboard), data, hash, now));
+        cachedBytes += data.length;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            cachedBytes -= iterator.next().data.length;
+            iterator.remove();
+        }
+    }
+
+    synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0L;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now < entry.timestamp || now - entry.timestamp >= maxAgeMs;
+    }
+
+    private void removeLocked(UUID playerId) {
+        Entry removed = entries.remove(playerId);
+        if (removed != null) {
+            cachedBytes -= removed.data.length;
+        }
+    }
+
+    record Entry(WeakReference<Object> clipboard, byte[] data, String hash, long timestamp) {
+    }
+}
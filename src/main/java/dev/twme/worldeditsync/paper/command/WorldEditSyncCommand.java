@@ -0,0 +1,97 @@
+package dev.twme.worldeditsync.paper.command;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import dev.twme.worldeditsync.common.metrics.MetricsRegistry;
+import dev.twme.worldeditsync.common.metrics.TransferTrace;
+import dev.twme.worldeditsync.common.metrics.TransferTracer;
+
+/**
+ * {@code /wesync stats} prints every metric that has recorded activity since startup;
+ * {@code /wesync traces} lists the slowest recent transfers and writes their timelines as JSON.
+ */
+public class WorldEditSyncCommand implements CommandExecutor, TabCompleter {
+
+    private static final List<String> SUBCOMMANDS = List.of("stats", "traces");
+    private static final int TRACE_LIMIT = 20;
+    private static final int TRACES_SHOWN = 5;
+
+    private final MetricsRegistry registry;
+    private final TransferTracer tracer;
+    private final Path traceFile;
+
+    public WorldEditSyncCommand(MetricsRegistry registry, TransferTracer tracer, Path traceFile) {
+        this.registry = registry;
+        this.tracer = tracer;
+        this.traceFile = traceFile;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length != 1 || !SUBCOMMANDS.contains(args[0].toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (!sender.hasPermission("worldeditsync.stats")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to view sync statistics.");
+            return true;
+        }
+        if (args[0].equalsIgnoreCase("stats")) {
+            showStats(sender);
+        } else {
+            showTraces(sender);
+        }
+        return true;
+    }
+
+    private void showStats(CommandSender sender) {
+        List<String> lines = registry.describe();
+        sender.sendMessage(ChatColor.AQUA + "WorldEditSync statistics");
+        if (lines.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "No transfers recorded yet.");
+        }
+        for (String line : lines) {
+            sender.sendMessage(ChatColor.GRAY + line);
+        }
+    }
+
+    private void showTraces(CommandSender sender) {
+        List<TransferTrace> traces = tracer.slowest(TRACES_SHOWN);
+        sender.sendMessage(ChatColor.AQUA + "Slowest recent transfers");
+        if (traces.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "No transfers recorded yet.");
+            return;
+        }
+        for (TransferTrace trace : traces) {
+            sender.sendMessage(ChatColor.GRAY + String.format(Locale.ROOT, "%s %s %.1fms (%s)",
+                    trace.getKind(), trace.getSessionId(), trace.getDurationNanos() / 1.0e6,
+                    trace.getOutcome()));
+        }
+        try {
+            Files.createDirectories(traceFile.getParent());
+            Files.writeString(traceFile, tracer.slowestJson(TRACE_LIMIT), StandardCharsets.UTF_8);
+            sender.sendMessage(ChatColor.GRAY + "Full timelines written to " + traceFile);
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Could not write " + traceFile + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length != 1) {
+            return List.of();
+        }
+        String prefix = args[0].toLowerCase(Locale.ROOT);
+        return SUBCOMMANDS.stream().filter(subcommand -> subcommand.startsWith(prefix)).toList();
+    }
+}
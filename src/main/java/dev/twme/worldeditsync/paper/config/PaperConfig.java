@@ -1,6 +1,7 @@
 package dev.twme.worldeditsync.paper.config;
 
 import dev.twme.worldeditsync.common.config.TransferConfig;
+import dev.twme.worldeditsync.common.protocol.InboundLimits;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -17,6 +18,17 @@ public class PaperConfig {
     private String s3Bucket = "worldeditsync";
     private String s3Region = "";
     private int s3CheckIntervalTicks = 40;
+    private long s3PartSizeBytes = 16_777_216L;
+    private int s3ParallelTransfers = 4;
+
+    // Local clipboard cache; proxy mode also uses it to restore clipboards after a restart
+    private boolean localCacheEnabled = true;
+    private long localCacheMaxBytes = 268_435_456L;
+
+    // Metrics settings
+    private boolean metricsEnabled = false;
+    private String metricsBindAddress = "127.0.0.1";
+    private int metricsPort = 9464;
 
     // Database settings
     private DatabaseSettings databaseSettings = new DatabaseSettings(
@@ -42,6 +54,16 @@ public class PaperConfig {
         s3Bucket = config.getString("s3.bucket", s3Bucket);
         s3Region = config.getString("s3.region", s3Region);
         s3CheckIntervalTicks = Math.max(1, config.getInt("s3.check-interval", s3CheckIntervalTicks));
+        s3PartSizeBytes = Math.max(5_242_880L, Math.min(1_073_741_824L,
+                config.getLong("s3.part-size-bytes", s3PartSizeBytes)));
+        s3ParallelTransfers = clamp(config.getInt("s3.parallel-transfers", s3ParallelTransfers), 1, 16);
+
+        localCacheEnabled = config.getBoolean("local-cache.enabled", localCacheEnabled);
+        localCacheMaxBytes = Math.max(0L, config.getLong("local-cache.max-size-bytes", localCacheMaxBytes));
+
+        metricsEnabled = config.getBoolean("metrics.enabled", metricsEnabled);
+        metricsBindAddress = value(config.getString("metrics.bind-address", metricsBindAddress));
+        metricsPort = clamp(config.getInt("metrics.port", metricsPort), 0, 65_535);
 
         StorageType databaseType = StorageType.parse(config.getString("database.type", "sqlite"));
         databaseSettings = new DatabaseSettings(
@@ -67,9 +89,19 @@ public class PaperConfig {
         transferConfig.setChunkSendDelayMs(config.getLong("transfer.chunk-send-delay-ms", transferConfig.getChunkSendDelayMs()));
         transferConfig.setWatcherIntervalTicks(config.getInt("transfer.watcher-interval-ticks", transferConfig.getWatcherIntervalTicks()));
         transferConfig.setWatcherInitialDelayTicks(config.getInt("transfer.watcher-initial-delay-ticks", transferConfig.getWatcherInitialDelayTicks()));
+        transferConfig.setSerializationCpuFraction(config.getDouble(
+                "transfer.serialization-cpu-fraction", transferConfig.getSerializationCpuFraction()));
+        transferConfig.setSerializationCpuMillisPerTick(config.getLong(
+                "transfer.serialization-cpu-ms-per-tick", transferConfig.getSerializationCpuMillisPerTick()));
         transferConfig.setClipboardTtlMinutes(config.getLong("transfer.clipboard-ttl-minutes", transferConfig.getClipboardTtlMinutes()));
         transferConfig.setMemoryLimitBytes(config.getLong(
                 "transfer.memory-limit-bytes", transferConfig.getMemoryLimitBytes()));
+        InboundLimits inbound = transferConfig.getInboundLimits();
+        transferConfig.setInboundLimits(new InboundLimits(
+                config.getInt("transfer.inbound-messages-per-second", inbound.messagesPerSecond()),
+                config.getInt("transfer.inbound-message-burst", inbound.messageBurst()),
+                config.getLong("transfer.inbound-bytes-per-second", inbound.bytesPerSecond()),
+                config.getLong("transfer.inbound-byte-burst", inbound.byteBurst())));
     }
 
     public boolean isProxyMode() {
@@ -124,6 +156,34 @@ public class PaperConfig {
         return s3CheckIntervalTicks;
     }
 
+    public long getS3PartSizeBytes() {
+        return s3PartSizeBytes;
+    }
+
+    public int getS3ParallelTransfers() {
+        return s3ParallelTransfers;
+    }
+
+    public boolean isLocalCacheEnabled() {
+        return localCacheEnabled && localCacheMaxBytes > 0L;
+    }
+
+    public long getLocalCacheMaxBytes() {
+        return localCacheMaxBytes;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public String getMetricsBindAddress() {
+        return metricsBindAddress;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
     public DatabaseSettings getDatabaseSettings() {
         return databaseSettings;
     }
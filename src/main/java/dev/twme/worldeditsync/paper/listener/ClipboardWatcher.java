@@ -1,7 +1,6 @@
 package dev.twme.worldeditsync.paper.listener;
 
 import java.util.UUID;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -10,11 +9,14 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 import dev.twme.worldeditsync.common.model.SyncState;
 import dev.twme.worldeditsync.common.config.TransferConfig;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
 import dev.twme.worldeditsync.common.util.HashUtil;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardManager;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardSerializer;
+import dev.twme.worldeditsync.paper.clipboard.SerializationService;
 import dev.twme.worldeditsync.paper.sync.SyncEngine;
 import dev.twme.worldeditsync.paper.util.SchedulerUtil;
 
@@ -28,20 +30,22 @@ public class ClipboardWatcher {
     private final JavaPlugin plugin;
     private final ClipboardManager clipboardManager;
     private final ClipboardSerializer clipboardSerializer;
+    private final SerializationService serializationService;
     private final SyncEngine syncEngine;
     private final TransferConfig transferConfig;
     private final Logger logger;
-    private final Semaphore serializationSlots = new Semaphore(2);
     private final AtomicBoolean scanPending = new AtomicBoolean();
     private final AtomicBoolean running = new AtomicBoolean();
     private Object watcherTask;
 
     public ClipboardWatcher(JavaPlugin plugin, ClipboardManager clipboardManager,
-                            ClipboardSerializer clipboardSerializer, SyncEngine syncEngine,
+                            ClipboardSerializer clipboardSerializer,
+                            SerializationService serializationService, SyncEngine syncEngine,
                             TransferConfig transferConfig) {
         this.plugin = plugin;
         this.clipboardManager = clipboardManager;
         this.clipboardSerializer = clipboardSerializer;
+        this.serializationService = serializationService;
         this.syncEngine = syncEngine;
         this.transferConfig = transferConfig;
         this.logger = plugin.getLogger();
@@ -106,10 +110,13 @@ public class ClipboardWatcher {
                 return;
             }
             if (clipboardManager.isSerializedClipboard(playerId, clipboard)) {
+                syncTransformIfChanged(player, playerId, clipboard);
                 clipboardManager.forceSetState(playerId, SyncState.IDLE);
                 return;
             }
             String playerName = player.getName();
+            SyncMetrics.TRACES.start(SyncMetrics.uploadTraceKey(playerId), "upload", playerId, null)
+                    .mark("detect");
             Object task = SchedulerUtil.runDelayedOnEntityThread(
                     plugin,
                     player,
@@ -121,6 +128,7 @@ public class ClipboardWatcher {
             }
         } catch (Exception e) {
             logger.warning("Clipboard detection error for " + player.getName() + ": " + e.getMessage());
+            SyncMetrics.TRACES.discard(SyncMetrics.uploadTraceKey(playerId));
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
         }
     }
@@ -132,33 +140,46 @@ public class ClipboardWatcher {
             resetCheck(playerId, playerToken);
             return;
         }
-        if (!serializationSlots.tryAcquire()) {
+        if (!serializationService.submit(expectedClipboard.getRegion().getVolume(),
+                () -> serializeClipboard(player, playerId, playerToken, playerName, expectedClipboard),
+                () -> resetCheck(playerId, playerToken))) {
+            SyncMetrics.SERIALIZE_REJECTIONS.increment();
             resetCheck(playerId, playerToken);
             return;
         }
-
-        try {
-            if (SchedulerUtil.runAsync(plugin,
-                    () -> serializeClipboard(
-                            player, playerId, playerToken, playerName, expectedClipboard)) == null) {
-                serializationSlots.release();
-                resetCheck(playerId, playerToken);
-            }
-        } catch (RuntimeException e) {
-            serializationSlots.release();
-            resetCheck(playerId, playerToken);
-            throw e;
-        }
+        SyncMetrics.TRACES.mark(SyncMetrics.uploadTraceKey(playerId), "serialize_queued");
     }
 
     private void serializeClipboard(Player player, UUID playerId, Object playerToken,
                                     String playerName, Clipboard clipboard) {
+        // A queued job may start well after it was submitted.
+        if (!running.get() || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
+            resetCheck(playerId, playerToken);
+            return;
+        }
+        SyncMetrics.TRACES.mark(SyncMetrics.uploadTraceKey(playerId), "serialize_slot");
         try {
-            byte[] serialized = clipboardSerializer.serialize(
-                    clipboard, transferConfig.getMaxClipboardSize(),
-                    transferConfig.getMaxClipboardBlocks());
-            String hash = HashUtil.sha256Hex(serialized);
-            clipboardManager.markSerializedClipboard(playerId, clipboard, hash);
+            byte[] serialized;
+            String hash;
+            ClipboardManager.SerializedBytes cached =
+                    clipboardManager.getSerializedBytes(playerId, clipboard);
+            String traceKey = SyncMetrics.uploadTraceKey(playerId);
+            if (cached != null) {
+                serialized = cached.data();
+                hash = cached.hash();
+                clipboardManager.markSerializedClipboard(playerId, clipboard, hash);
+                SyncMetrics.TRACES.mark(traceKey, "serialize_cached");
+            } else {
+                long start = System.nanoTime();
+                serialized = clipboardSerializer.serialize(
+                        clipboard, transferConfig.getMaxClipboardSize(),
+                        transferConfig.getMaxClipboardBlocks());
+                SyncMetrics.SERIALIZE_TIME.recordSince(start);
+                SyncMetrics.TRACES.mark(traceKey, "serialize");
+                hash = HashUtil.sha256Hex(serialized);
+                SyncMetrics.TRACES.mark(traceKey, "hash");
+                clipboardManager.markSerializedClipboard(playerId, clipboard, hash, serialized);
+            }
             scheduleEntityContinuation(player, playerId, playerToken,
                     () -> publishIfCurrent(
                             player, playerId, playerToken, clipboard, serialized, hash));
@@ -167,8 +188,6 @@ public class ClipboardWatcher {
             scheduleEntityContinuation(player, playerId, playerToken,
                     () -> handleSerializationFailure(
                             player, playerId, playerToken, playerName, clipboard, e));
-        } finally {
-            serializationSlots.release();
         }
     }
 
@@ -181,6 +200,7 @@ public class ClipboardWatcher {
             return;
         }
         if (hash.equals(clipboardManager.getLocalHash(playerId))) {
+            syncTransformIfChanged(player, playerId, expectedClipboard);
             resetCheck(playerId, playerToken);
             return;
         }
@@ -197,6 +217,19 @@ public class ClipboardWatcher {
         }
     }
 
+    /** Block data is unchanged; only send the holder transform if a rotate or flip moved it. */
+    private void syncTransformIfChanged(Player player, UUID playerId, Clipboard clipboard) {
+        String remoteHash = clipboardManager.getRemoteHash(playerId);
+        if (remoteHash == null || !clipboardManager.isCurrentClipboard(playerId, clipboard)) {
+            return;
+        }
+        ClipboardTransform transform = clipboardSerializer.getPlayerTransform(player);
+        if (transform != null
+                && !transform.equals(clipboardManager.getRemoteTransform(playerId, remoteHash))) {
+            syncEngine.uploadTransform(player, remoteHash, transform);
+        }
+    }
+
     private void handleSerializationFailure(Player player, UUID playerId, Object playerToken,
                                             String playerName, Clipboard expectedClipboard,
                                             Exception exception) {
@@ -216,9 +249,11 @@ public class ClipboardWatcher {
                 && clipboardManager.getState(playerId) == SyncState.CHECKING;
     }
 
+    /** Ends a check that did not lead to an upload, along with the trace it started. */
     private void resetCheck(UUID playerId, Object playerToken) {
         if (clipboardManager.isCurrentPlayerToken(playerId, playerToken)
                 && clipboardManager.getState(playerId) == SyncState.CHECKING) {
+            SyncMetrics.TRACES.discard(SyncMetrics.uploadTraceKey(playerId));
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
         }
     }
@@ -15,6 +15,8 @@ import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.config.TransferConfig;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 import dev.twme.worldeditsync.common.model.SyncState;
 import dev.twme.worldeditsync.common.protocol.InboundMessageLimiter;
 import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
@@ -25,6 +27,10 @@ import dev.twme.worldeditsync.common.protocol.TransferSession;
 import dev.twme.worldeditsync.common.util.HashUtil;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardManager;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardSerializer;
+import dev.twme.worldeditsync.paper.clipboard.SerializationService;
+import dev.twme.worldeditsync.paper.storage.AppliedHashIndex;
+import dev.twme.worldeditsync.paper.storage.AppliedHashIndex.AppliedClipboard;
+import dev.twme.worldeditsync.paper.storage.LocalClipboardCache;
 import dev.twme.worldeditsync.paper.sync.UploadSessionListener;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress.Operation;
@@ -44,8 +50,11 @@ public class PluginMessageHandler implements PluginMessageListener {
     private final TransferConfig transferConfig;
     private final UploadSessionListener uploadSessionListener;
     private final ActionBarProgress actionBarProgress;
+    private final AppliedHashIndex appliedHashIndex;
+    private final LocalClipboardCache localCache;
+    private final SerializationService serializationService;
     private final Logger logger;
-    private final InboundMessageLimiter inboundMessageLimiter = new InboundMessageLimiter();
+    private final InboundMessageLimiter inboundMessageLimiter;
     private final ConcurrentHashMap<UUID, Long> invalidMessageWarnings = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, ProgressHandle> downloadProgress = new ConcurrentHashMap<>();
 
@@ -55,6 +64,19 @@ public class PluginMessageHandler implements PluginMessageListener {
                                 TransferConfig transferConfig,
                                 UploadSessionListener uploadSessionListener,
                                 ActionBarProgress actionBarProgress) {
+        this(plugin, clipboardManager, clipboardSerializer, cipher, pluginMessageCodec,
+                transferConfig, uploadSessionListener, actionBarProgress, null, null, null);
+    }
+
+    public PluginMessageHandler(JavaPlugin plugin, ClipboardManager clipboardManager,
+                                ClipboardSerializer clipboardSerializer, MessageCipher cipher,
+                                PluginMessageCodec pluginMessageCodec,
+                                TransferConfig transferConfig,
+                                UploadSessionListener uploadSessionListener,
+                                ActionBarProgress actionBarProgress,
+                                AppliedHashIndex appliedHashIndex,
+                                LocalClipboardCache localCache,
+                                SerializationService serializationService) {
         this.plugin = plugin;
         this.clipboardManager = clipboardManager;
         this.clipboardSerializer = clipboardSerializer;
@@ -63,7 +85,11 @@ public class PluginMessageHandler implements PluginMessageListener {
         this.transferConfig = transferConfig;
         this.uploadSessionListener = uploadSessionListener;
         this.actionBarProgress = actionBarProgress;
+        this.appliedHashIndex = appliedHashIndex;
+        this.localCache = localCache;
+        this.serializationService = serializationService;
         this.logger = plugin.getLogger();
+        this.inboundMessageLimiter = new InboundMessageLimiter(transferConfig.getInboundLimits());
     }
 
     @Override
@@ -92,6 +118,7 @@ public class PluginMessageHandler implements PluginMessageListener {
                 case DOWNLOAD_BEGIN -> handleDownloadBegin(player, msg);
                 case DOWNLOAD_CHUNK -> handleDownloadChunk(player, msg);
                 case CANCEL -> handleCancel(player, msg);
+                case TRANSFORM_UPDATE -> handleTransformUpdate(player, msg);
                 default -> logger.warning("Unexpected message type from proxy: " + msg.type());
             }
         } catch (Exception e) {
@@ -127,12 +154,121 @@ public class PluginMessageHandler implements PluginMessageListener {
             return;
         }
 
-        // Hash differs: request download
+        // Hash differs: restore a locally kept copy or request a download
         if (!clipboardManager.compareAndSetState(playerId, SyncState.CHECKING, SyncState.DOWNLOADING)) {
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
             return;
         }
+        if (!restoreFromLocalCache(player, remoteHash)) {
+            requestDownload(player);
+        }
+    }
+
+    /**
+     * The proxy sends the holder transform after SYNC_HASH. Apply it now if this server already
+     * holds that clipboard; otherwise the pending download or restore applies it.
+     */
+    private void handleTransformUpdate(Player player, ParsedMessage msg) throws IOException {
+        DataInputStream in = ProtocolCodec.payloadStream(msg);
+        String remoteHash = in.readUTF();
+        ClipboardTransform transform = ClipboardTransform.read(in);
+        if (!ProtocolValidation.isSha256(remoteHash) || transform == null
+                || !ProtocolValidation.exhausted(in)) {
+            warnInvalidMessage(player, "Rejected malformed TRANSFORM_UPDATE");
+            return;
+        }
+
+        UUID playerId = player.getUniqueId();
+        clipboardManager.setRemoteTransform(playerId, remoteHash, transform);
+        SchedulerUtil.runOnEntityThread(plugin, player, () -> {
+            SyncState state = clipboardManager.getState(playerId);
+            if (!player.isOnline()
+                    || (state != SyncState.IDLE && state != SyncState.CHECKING)
+                    || !remoteHash.equalsIgnoreCase(clipboardManager.getRemoteHash(playerId))) {
+                return;
+            }
+            Clipboard clipboard = clipboardSerializer.getPlayerClipboard(player);
+            if (clipboardManager.isCurrentClipboard(playerId, clipboard)) {
+                applyRemoteTransform(player, clipboard, remoteHash);
+            }
+        });
+    }
+
+    private void applyRemoteTransform(Player player, Clipboard clipboard, String remoteHash) {
+        ClipboardTransform transform = clipboardManager.getRemoteTransform(
+                player.getUniqueId(), remoteHash);
+        if (!clipboardSerializer.setPlayerTransform(player, clipboard, transform)) {
+            logger.fine("Could not apply clipboard transform for " + player.getName());
+        }
+    }
+
+    /**
+     * After a restart this server has no in-memory hash, but if it already applied this exact
+     * clipboard before and still holds the bytes locally it can restore them without a download.
+     */
+    private boolean restoreFromLocalCache(Player player, String remoteHash) {
+        UUID playerId = player.getUniqueId();
+        AppliedClipboard applied = appliedHashIndex == null ? null : appliedHashIndex.get(playerId);
+        if (localCache == null || applied == null
+                || !applied.remoteHash().equalsIgnoreCase(remoteHash)
+                || !localCache.contains(remoteHash)) {
+            return false;
+        }
+        String restoreId = UUID.randomUUID().toString();
+        clipboardManager.setActiveSessionId(playerId, restoreId);
+        Object restoreTask;
+        try {
+            restoreTask = SchedulerUtil.runAsync(plugin,
+                    () -> restoreClipboard(player, restoreId, applied));
+        } catch (RuntimeException e) {
+            restoreTask = null;
+        }
+        return restoreTask != null;
+    }
+
+    private void restoreClipboard(Player player, String restoreId, AppliedClipboard applied) {
+        Clipboard clipboard = null;
+        try {
+            byte[] data = localCache.read(applied.remoteHash(), transferConfig.getMaxClipboardSize());
+            if (data != null) {
+                clipboard = clipboardSerializer.deserialize(data,
+                        transferConfig.getMaxClipboardSize(), transferConfig.getMaxClipboardBlocks());
+            }
+        } catch (Exception e) {
+            logger.warning("Failed to restore cached clipboard for " + player.getName()
+                    + ": " + e.getMessage());
+        }
+        Clipboard restored = clipboard;
+        SchedulerUtil.runOnEntityThread(plugin, player, () -> {
+            UUID playerId = player.getUniqueId();
+            if (!player.isOnline()
+                    || clipboardManager.getState(playerId) != SyncState.DOWNLOADING
+                    || !restoreId.equals(clipboardManager.getActiveSessionId(playerId))) {
+                return;
+            }
+            if (restored == null) {
+                requestDownload(player);
+                return;
+            }
+            try {
+                clipboardSerializer.setPlayerClipboard(player, restored);
+            } catch (Exception e) {
+                logger.warning("Failed to apply cached clipboard for " + player.getName()
+                        + ": " + e.getMessage());
+                requestDownload(player);
+                return;
+            }
+            clipboardManager.markDownloadedClipboard(
+                    playerId, restored, applied.remoteHash(), applied.localHash());
+            applyRemoteTransform(player, restored, applied.remoteHash());
+            clipboardManager.clearActiveSession(playerId);
+            clipboardManager.forceSetState(playerId, SyncState.IDLE);
+            logger.fine("Restored " + player.getName() + "'s clipboard from the local cache.");
+        });
+    }
 
+    private void requestDownload(Player player) {
+        UUID playerId = player.getUniqueId();
         String downloadRequestId = UUID.randomUUID().toString();
         clipboardManager.setActiveSessionId(playerId, downloadRequestId);
         byte[] requestMsg = pluginMessageCodec.encode(
@@ -192,8 +328,7 @@ public class PluginMessageHandler implements PluginMessageListener {
         String hash = in.readUTF();
 
         var playerId = player.getUniqueId();
-        long maxPayloadSize = (long) transferConfig.getMaxClipboardSize()
-                + MessageCipher.ENCRYPTION_OVERHEAD_BYTES;
+        long maxPayloadSize = MessageCipher.maxEncryptedSize(transferConfig.getMaxClipboardSize());
         if (!ProtocolValidation.isSessionId(requestId)
                 || !ProtocolValidation.isSessionId(sessionId)
                 || !ProtocolValidation.isSha256(hash)
@@ -222,6 +357,7 @@ public class PluginMessageHandler implements PluginMessageListener {
             return;
         }
         clipboardManager.setActiveSessionId(playerId, sessionId);
+        SyncMetrics.TRACES.start(traceKey(sessionId), "download", playerId, sessionId).mark("begin");
         ProgressHandle progress = actionBarProgress.begin(player, Operation.DOWNLOAD);
         ProgressHandle previous = downloadProgress.put(sessionId, progress);
         if (previous != null) {
@@ -300,6 +436,8 @@ public class PluginMessageHandler implements PluginMessageListener {
         if (!added) {
             return;
         }
+        SyncMetrics.DOWNLOAD_BYTES.add(chunkData.length);
+        SyncMetrics.TRACES.progress(traceKey(sessionId), session.getReceivedBytes(), session.getTotalBytes());
 
         if (session.tryClaimCompletion()) {
             completeDownload(player, session);
@@ -320,45 +458,84 @@ public class PluginMessageHandler implements PluginMessageListener {
             return;
         }
 
-        Object completionTask;
-        try {
-            completionTask = SchedulerUtil.runAsync(plugin, () -> {
+        Runnable completion = () -> {
             try {
+                String traceKey = traceKey(sessionId);
                 byte[] assembled = session.assemble();
+                SyncMetrics.TRACES.mark(traceKey, "assemble");
                 byte[] decrypted = cipher.decrypt(assembled);
+                SyncMetrics.TRACES.mark(traceKey, "decrypt");
+                // Only parse bytes the proxy vouched for; a corrupt payload never reaches WorldEdit.
                 String actualHash = HashUtil.sha256Hex(decrypted);
-
-                if (!actualHash.equalsIgnoreCase(session.getExpectedHash())) {
-                    logger.warning("Hash mismatch after download for " + playerName
-                            + ": expected " + session.getExpectedHash() + ", got " + actualHash);
-                    rejectDownload(player, sessionId, "hash_mismatch");
+                SyncMetrics.TRACES.mark(traceKey, "hash");
+                if (rejectHashMismatch(player, sessionId, session, actualHash)) {
                     return;
                 }
-
                 Clipboard clipboard = clipboardSerializer.deserialize(
                         decrypted, transferConfig.getMaxClipboardSize(),
                         transferConfig.getMaxClipboardBlocks());
+                SyncMetrics.TRACES.mark(traceKey, "deserialize");
+
                 String localHash = HashUtil.sha256Hex(clipboardSerializer.serialize(
                         clipboard, transferConfig.getMaxClipboardSize(),
                         transferConfig.getMaxClipboardBlocks()));
+                SyncMetrics.TRACES.mark(traceKey, "local_hash");
                 SchedulerUtil.runOnEntityThread(plugin, player,
                         () -> applyDownloadedClipboard(
                                 player, sessionId, clipboard, actualHash, localHash));
+                rememberLocally(playerName, actualHash, decrypted);
             } catch (Exception e) {
                 logger.severe("Failed to complete download for " + playerName + ": " + e.getMessage());
                 rejectDownload(player, sessionId, "download_failed");
             } finally {
                 clipboardManager.releaseDetachedDownloadSession(session);
             }
-            });
-        } catch (RuntimeException e) {
+        };
+        Runnable dropped = () -> {
             clipboardManager.releaseDetachedDownloadSession(session);
             rejectDownload(player, sessionId, "scheduler_unavailable");
+        };
+
+        if (serializationService != null) {
+            // Decrypting, hashing and parsing share the serialization CPU budget.
+            if (!serializationService.submit(session.getTotalBytes(), completion, dropped)) {
+                SyncMetrics.SERIALIZE_REJECTIONS.increment();
+                dropped.run();
+            }
+            return;
+        }
+
+        Object completionTask;
+        try {
+            completionTask = SchedulerUtil.runAsync(plugin, completion);
+        } catch (RuntimeException e) {
+            dropped.run();
             return;
         }
         if (completionTask == null) {
-            clipboardManager.releaseDetachedDownloadSession(session);
-            rejectDownload(player, sessionId, "scheduler_unavailable");
+            dropped.run();
+        }
+    }
+
+    private boolean rejectHashMismatch(Player player, String sessionId, TransferSession session,
+                                       String actualHash) {
+        if (actualHash.equalsIgnoreCase(session.getExpectedHash())) {
+            return false;
+        }
+        logger.warning("Hash mismatch after download for " + player.getName()
+                + ": expected " + session.getExpectedHash() + ", got " + actualHash);
+        rejectDownload(player, sessionId, "hash_mismatch");
+        return true;
+    }
+
+    private void rememberLocally(String playerName, String hash, byte[] data) {
+        if (localCache == null || appliedHashIndex == null) {
+            return;
+        }
+        try {
+            localCache.store(hash, data);
+        } catch (Exception e) {
+            logger.fine("Could not cache clipboard locally for " + playerName + ": " + e.getMessage());
         }
     }
 
@@ -381,13 +558,19 @@ public class PluginMessageHandler implements PluginMessageListener {
 
         try {
             clipboardSerializer.setPlayerClipboard(player, clipboard);
+            SyncMetrics.TRACES.mark(traceKey(sessionId), "apply");
             clipboardManager.markDownloadedClipboard(
                     playerId, clipboard, remoteHash, localHash);
+            applyRemoteTransform(player, clipboard, remoteHash);
+            if (appliedHashIndex != null) {
+                appliedHashIndex.record(playerId, remoteHash, localHash);
+            }
             clipboardManager.removeDownloadSession(sessionId);
             clipboardManager.clearActiveSession(playerId);
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
             player.sendPluginMessage(plugin, Constants.CHANNEL,
                     pluginMessageCodec.encode(ProtocolCodec.encodeDownloadAck(sessionId)));
+            SyncMetrics.DOWNLOADS_COMPLETED.increment();
             completeDownloadProgress(sessionId);
             logger.info("Clipboard synced for " + player.getName());
         } catch (Exception e) {
@@ -503,6 +686,7 @@ public class PluginMessageHandler implements PluginMessageListener {
             if (progress.playerId().equals(playerId)
                     && downloadProgress.remove(sessionId, progress)) {
                 progress.cancel();
+                SyncMetrics.TRACES.discard(traceKey(sessionId));
             }
         });
         actionBarProgress.removePlayer(playerId);
@@ -523,13 +707,16 @@ public class PluginMessageHandler implements PluginMessageListener {
         if (progress != null) {
             progress.complete();
         }
+        SyncMetrics.TRACES.finish(traceKey(sessionId), "completed");
     }
 
     private void failDownloadProgress(String sessionId) {
         ProgressHandle progress = downloadProgress.remove(sessionId);
         if (progress != null) {
+            SyncMetrics.DOWNLOADS_FAILED.increment();
             progress.fail();
         }
+        SyncMetrics.TRACES.finish(traceKey(sessionId), "failed");
     }
 
     private void cancelDownloadProgress(String sessionId) {
@@ -537,5 +724,10 @@ public class PluginMessageHandler implements PluginMessageListener {
         if (progress != null) {
             progress.cancel();
         }
+        SyncMetrics.TRACES.finish(traceKey(sessionId), "cancelled");
+    }
+
+    private static String traceKey(String sessionId) {
+        return "download/" + sessionId;
     }
 }
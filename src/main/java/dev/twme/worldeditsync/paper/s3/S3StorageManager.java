@@ -1,19 +1,49 @@
 package dev.twme.worldeditsync.paper.s3;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
 import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
+import dev.twme.worldeditsync.common.storage.StorageStreams;
 import io.minio.BucketExistsArgs;
+import io.minio.ComposeObjectArgs;
+import io.minio.ComposeSource;
 import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
 import io.minio.StatObjectArgs;
 import io.minio.StatObjectResponse;
 import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 
 /**
  * Encapsulates MinIO/S3 operations for clipboard storage.
@@ -23,6 +53,16 @@ public class S3StorageManager {
     private static final String HASH_METADATA_KEY = "clipboard-hash";
     private static final String UPDATED_AT_METADATA_KEY = "updated-at";
     private static final String OBJECT_PREFIX = "clipboards/";
+    private static final String MANIFEST_OBJECT = OBJECT_PREFIX + "manifest";
+    private static final String UPLOAD_PREFIX = "uploads/";
+    /** S3 rejects multipart parts smaller than 5 MiB except for the last one. */
+    public static final long MIN_PART_SIZE = 5L * 1024L * 1024L;
+    public static final long DEFAULT_PART_SIZE = 16L * 1024L * 1024L;
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final int PART_ATTEMPTS = 3;
+    private static final long PART_RETRY_DELAY_MS = 250L;
+    // Parts older than this belong to an upload whose server stopped before cleaning up.
+    private static final long ABANDONED_UPLOAD_AGE_HOURS = 24L;
 
     private final String endpoint;
     private final String accessKey;
@@ -31,11 +71,23 @@ public class S3StorageManager {
     private final String bucket;
     private final MessageCipher cipher;
     private final int maxClipboardSize;
+    private final long partSize;
+    private final int parallelism;
     private final Logger logger;
+    private ExecutorService transferExecutor;
 
     public S3StorageManager(String endpoint, String accessKey, String secretKey,
                             String bucket, String region, MessageCipher cipher,
                             int maxClipboardSize, Logger logger) {
+        this(endpoint, accessKey, secretKey, bucket, region, cipher, maxClipboardSize,
+                DEFAULT_PART_SIZE, DEFAULT_PARALLELISM, logger);
+    }
+
+    public S3StorageManager(String endpoint, String accessKey, String secretKey,
+                            String bucket, String region, MessageCipher cipher,
+                            int maxClipboardSize, long partSize, int parallelism, Logger logger) {
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        this.parallelism = Math.max(1, parallelism);
         this.endpoint = endpoint;
         this.accessKey = accessKey;
         this.secretKey = secretKey;
@@ -67,6 +119,8 @@ public class S3StorageManager {
                     }
                 }
             }
+            ensureManifest(client);
+            removeAbandonedParts(client);
             return client;
         } catch (Exception e) {
             if (client != null) {
@@ -101,21 +155,61 @@ public class S3StorageManager {
 
     public void uploadClipboard(MinioClient client, String playerId,
                                 byte[] data, String hash, long updatedAt) throws Exception {
-        if (data.length <= 0 || data.length > maxClipboardSize
-                || !ProtocolValidation.isSha256(hash)) {
+        if (data == null) {
+            throw new IOException("Clipboard data or hash is invalid");
+        }
+        uploadClipboard(client, playerId, new ByteArrayInputStream(data), data.length, hash, updatedAt);
+    }
+
+    /** Stream exactly {@code size} plaintext bytes through encryption into the clipboard object. */
+    public void uploadClipboard(MinioClient client, String playerId, InputStream data, int size,
+                                String hash, long updatedAt) throws Exception {
+        if (size <= 0 || size > maxClipboardSize || !ProtocolValidation.isSha256(hash)) {
             throw new IOException("Clipboard data or hash is invalid");
         }
-        byte[] encrypted = cipher.encrypt(data);
+        InputStream encrypted = cipher.encryptingStream(StorageStreams.exactLength(
+                data, size, "Clipboard stream does not match its declared size"));
+        long encryptedSize = cipher.encryptedSize(size);
         String objectName = objectName(playerId);
+        Map<String, String> metadata = Map.of(
+                HASH_METADATA_KEY, hash,
+                UPDATED_AT_METADATA_KEY, Long.toString(updatedAt));
 
-        client.putObject(PutObjectArgs.builder()
-                .bucket(bucket)
-                .object(objectName)
-                .stream(new ByteArrayInputStream(encrypted), (long) encrypted.length, -1L)
-                .userMetadata(java.util.Map.of(
-                        HASH_METADATA_KEY, hash,
-                        UPDATED_AT_METADATA_KEY, Long.toString(updatedAt)))
-                .build());
+        if (encryptedSize > partSize) {
+            uploadInParts(client, playerId, objectName, encrypted, metadata);
+        } else {
+            client.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    .stream(encrypted, encryptedSize, -1L)
+                    .userMetadata(metadata)
+                    .build());
+        }
+        // Readers only re-stat players after the manifest ETag changes, so it must follow the object.
+        publishManifest(client, playerId, updatedAt);
+    }
+
+    /**
+     * Return the manifest ETag, issuing a conditional request when a version is already known.
+     * Returns knownVersion when nothing changed and null when no manifest exists.
+     */
+    public String getManifestVersion(MinioClient client, String knownVersion) throws Exception {
+        StatObjectArgs.Builder args = StatObjectArgs.builder().bucket(bucket).object(MANIFEST_OBJECT);
+        if (knownVersion != null) {
+            args.notMatchETag(knownVersion);
+        }
+        try {
+            String version = client.statObject(args.build()).etag();
+            return version == null || version.isBlank() ? null : version;
+        } catch (ErrorResponseException e) {
+            if (knownVersion != null && isNotModified(e)) {
+                return knownVersion;
+            }
+            if (isNotFound(e)) {
+                return null;
+            }
+            throw e;
+        }
     }
 
     /** Inspect the remote object without treating transport errors as missing data. */
@@ -124,7 +218,7 @@ public class S3StorageManager {
             StatObjectResponse stat = client.statObject(
                     StatObjectArgs.builder().bucket(bucket).object(objectName(playerId)).build());
             String hash = stat.userMetadata().getFirst(HASH_METADATA_KEY);
-            long maxPayloadSize = (long) maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES;
+            long maxPayloadSize = MessageCipher.maxEncryptedSize(maxClipboardSize);
             if (hash == null || hash.isBlank()) {
                 throw new IOException("S3 clipboard object has no hash metadata");
             }
@@ -144,22 +238,277 @@ public class S3StorageManager {
     /** Download and decrypt a size-bounded clipboard object. */
     public byte[] downloadClipboard(MinioClient client, String playerId,
                                     long expectedEncryptedSize) throws Exception {
-        int maxPayloadSize = Math.addExact(
-                maxClipboardSize, MessageCipher.ENCRYPTION_OVERHEAD_BYTES);
-        try (var response = client.getObject(
-                GetObjectArgs.builder().bucket(bucket).object(objectName(playerId)).build())) {
-            byte[] encrypted = response.readNBytes(maxPayloadSize + 1);
-            if (encrypted.length > maxPayloadSize || encrypted.length != expectedEncryptedSize) {
-                throw new IOException("S3 clipboard size changed or exceeds configured limit");
-            }
-            byte[] decrypted = cipher.decrypt(encrypted);
-            if (decrypted.length <= 0 || decrypted.length > maxClipboardSize) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(
+                (int) Math.min(expectedEncryptedSize, maxClipboardSize));
+        downloadClipboard(client, playerId, expectedEncryptedSize, output);
+        return output.toByteArray();
+    }
+
+    /** Stream a size-bounded clipboard object through decryption into {@code output}. */
+    public long downloadClipboard(MinioClient client, String playerId,
+                                  long expectedEncryptedSize, OutputStream output) throws Exception {
+        long maxPayloadSize = cipher.encryptedSize(maxClipboardSize);
+        if (expectedEncryptedSize <= 0 || expectedEncryptedSize > maxPayloadSize) {
+            throw new IOException("S3 clipboard size changed or exceeds configured limit");
+        }
+        try (InputStream response = openObject(client, objectName(playerId), expectedEncryptedSize)) {
+            long written = StorageStreams.copyBounded(
+                    cipher.decryptingStream(StorageStreams.exactLength(response, expectedEncryptedSize,
+                            "S3 clipboard size changed or exceeds configured limit")),
+                    output, maxClipboardSize, "Decrypted clipboard exceeds configured size limit");
+            if (written <= 0) {
                 throw new IOException("Decrypted clipboard exceeds configured size limit");
             }
-            return decrypted;
+            return written;
+        }
+    }
+
+    /** Stop the part transfer threads; the MinIO client itself is owned by the caller. */
+    public synchronized void close() {
+        if (transferExecutor != null) {
+            transferExecutor.shutdownNow();
+            transferExecutor = null;
+        }
+    }
+
+    /**
+     * Upload the encrypted stream as independent part objects, at most {@code parallelism} in
+     * flight, then stitch them together server-side. A failed part is retried on its own. On
+     * failure or interruption, queued parts are withdrawn and running PUTs are interrupted;
+     * every part object is deleted once no PUT can still create one.
+     */
+    private void uploadInParts(MinioClient client, String playerId, String objectName,
+                               InputStream encrypted, Map<String, String> metadata) throws Exception {
+        String partPrefix = UPLOAD_PREFIX + playerId + "/" + UUID.randomUUID() + "/part-";
+        ExecutorService executor = transferExecutor();
+        Semaphore partsInFlight = new Semaphore(parallelism);
+        List<String> parts = new ArrayList<>();
+        List<PartUpload> uploads = new ArrayList<>();
+        try {
+            while (true) {
+                partsInFlight.acquire();
+                byte[] part;
+                try {
+                    part = encrypted.readNBytes((int) partSize);
+                    if (part.length > 0) {
+                        throwIfFailed(uploads);
+                    }
+                } catch (Exception e) {
+                    partsInFlight.release();
+                    throw e;
+                }
+                if (part.length == 0) {
+                    partsInFlight.release();
+                    break;
+                }
+                String partName = partPrefix + String.format("%05d", parts.size());
+                parts.add(partName);
+                PartUpload upload = new PartUpload(client, partName, part, partsInFlight);
+                uploads.add(upload);
+                upload.submit(executor);
+            }
+            for (PartUpload upload : uploads) {
+                join(upload.result);
+            }
+            List<ComposeSource> sources = new ArrayList<>(parts.size());
+            for (String part : parts) {
+                sources.add(ComposeSource.builder().bucket(bucket).object(part).build());
+            }
+            client.composeObject(ComposeObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    .sources(sources)
+                    .userMetadata(metadata)
+                    .build());
+        } finally {
+            // Cleanup requests would fail on an interrupted thread; restore the flag afterwards.
+            boolean interrupted = Thread.interrupted();
+            try {
+                for (PartUpload upload : uploads) {
+                    upload.abort();
+                }
+                for (PartUpload upload : uploads) {
+                    upload.awaitSettled();
+                }
+                removeParts(client, parts);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void uploadPart(MinioClient client, String partName, byte[] part) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                client.putObject(PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(partName)
+                        .stream(new ByteArrayInputStream(part), (long) part.length, -1L)
+                        .build());
+                return;
+            } catch (Exception e) {
+                if (attempt >= PART_ATTEMPTS) {
+                    throw new CompletionException(e);
+                }
+                pauseBeforeRetry(attempt, e);
+            }
+        }
+    }
+
+    private void removeParts(MinioClient client, List<String> parts) {
+        if (parts.isEmpty()) {
+            return;
+        }
+        List<DeleteObject> objects = new ArrayList<>(parts.size());
+        for (String part : parts) {
+            objects.add(new DeleteObject(part));
+        }
+        try {
+            // Deletion is lazy; results must be consumed for the request to be sent.
+            for (Result<DeleteError> result : client.removeObjects(
+                    RemoveObjectsArgs.builder().bucket(bucket).objects(objects).build())) {
+                DeleteError error = result.get();
+                logger.fine("Could not remove S3 upload part " + error.objectName()
+                        + ": " + error.message());
+            }
+        } catch (Exception e) {
+            logger.warning("Failed to remove temporary S3 upload parts: " + e.getMessage());
+        }
+    }
+
+    /** Delete part objects left behind by servers that stopped in the middle of an upload. */
+    private void removeAbandonedParts(MinioClient client) {
+        ZonedDateTime cutoff = ZonedDateTime.now().minusHours(ABANDONED_UPLOAD_AGE_HOURS);
+        List<String> abandoned = new ArrayList<>();
+        try {
+            for (Result<Item> result : client.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucket).prefix(UPLOAD_PREFIX).recursive(true).build())) {
+                Item item = result.get();
+                if (!item.isDir() && item.lastModified() != null
+                        && item.lastModified().isBefore(cutoff)) {
+                    abandoned.add(item.objectName());
+                }
+            }
+        } catch (Exception e) {
+            logger.fine("Could not list abandoned S3 upload parts: " + e.getMessage());
+            return;
+        }
+        if (!abandoned.isEmpty()) {
+            logger.info("Removing " + abandoned.size() + " abandoned S3 upload parts");
+            removeParts(client, abandoned);
+        }
+    }
+
+    /** Open the object, fetching byte ranges in parallel when it spans several parts. */
+    private InputStream openObject(MinioClient client, String objectName, long size) throws Exception {
+        if (size <= partSize || parallelism <= 1) {
+            return client.getObject(GetObjectArgs.builder().bucket(bucket).object(objectName).build());
+        }
+        return new RangedObjectInputStream(client, objectName, size);
+    }
+
+    private byte[] readRange(MinioClient client, String objectName, long offset, long length,
+                             String etag) {
+        for (int attempt = 1; ; attempt++) {
+            GetObjectArgs.Builder args = GetObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    .offset(offset)
+                    .length(length);
+            if (etag != null) {
+                args.matchETag(etag);
+            }
+            try (GetObjectResponse response = client.getObject(args.build())) {
+                byte[] range = response.readNBytes((int) length);
+                if (range.length != length) {
+                    throw new IOException("S3 clipboard size changed or exceeds configured limit");
+                }
+                return range;
+            } catch (ErrorResponseException e) {
+                if (isPreconditionFailed(e)) {
+                    throw new CompletionException(
+                            new IOException("S3 clipboard changed while it was being downloaded"));
+                }
+                if (attempt >= PART_ATTEMPTS) {
+                    throw new CompletionException(e);
+                }
+                pauseBeforeRetry(attempt, e);
+            } catch (Exception e) {
+                if (attempt >= PART_ATTEMPTS) {
+                    throw new CompletionException(e);
+                }
+                pauseBeforeRetry(attempt, e);
+            }
+        }
+    }
+
+    private synchronized ExecutorService transferExecutor() {
+        if (transferExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            transferExecutor = Executors.newFixedThreadPool(parallelism, task -> {
+                Thread thread = new Thread(task, "WorldEditSync-S3-Transfer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return transferExecutor;
+    }
+
+    private void pauseBeforeRetry(int attempt, Exception cause) {
+        try {
+            Thread.sleep(PART_RETRY_DELAY_MS * attempt);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(cause);
+        }
+    }
+
+    private static void throwIfFailed(List<PartUpload> uploads) throws Exception {
+        for (PartUpload upload : uploads) {
+            if (upload.result.isCompletedExceptionally()) {
+                join(upload.result);
+            }
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause()
+                    : e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    private void ensureManifest(MinioClient client) {
+        try {
+            if (getManifestVersion(client, null) == null) {
+                publishManifest(client, "", 0L);
+            }
+        } catch (Exception e) {
+            logger.warning("Failed to create S3 change manifest, falling back to per-player checks: "
+                    + e.getMessage());
         }
     }
 
+    private void publishManifest(MinioClient client, String playerId, long updatedAt) throws Exception {
+        // Every write changes the ETag; the content only records the latest writer for diagnostics.
+        byte[] content = (playerId + " " + updatedAt + "\n").getBytes(StandardCharsets.UTF_8);
+        client.putObject(PutObjectArgs.builder()
+                .bucket(bucket)
+                .object(MANIFEST_OBJECT)
+                .stream(new ByteArrayInputStream(content), (long) content.length, -1L)
+                .contentType("text/plain")
+                .build());
+    }
+
     private String objectName(String playerId) {
         return OBJECT_PREFIX + playerId + ".schem";
     }
@@ -175,6 +524,22 @@ public class S3StorageManager {
         return "NoSuchKey".equals(code) || "NoSuchObject".equals(code) || "NotFound".equals(code);
     }
 
+    private boolean isPreconditionFailed(ErrorResponseException exception) {
+        if (exception.response() != null && exception.response().code() == 412) {
+            return true;
+        }
+        return exception.errorResponse() != null
+                && "PreconditionFailed".equals(exception.errorResponse().code());
+    }
+
+    private boolean isNotModified(ErrorResponseException exception) {
+        if (exception.response() != null && exception.response().code() == 304) {
+            return true;
+        }
+        return exception.errorResponse() != null
+                && "NotModified".equals(exception.errorResponse().code());
+    }
+
     private long parseUpdatedAt(String value) {
         if (value == null || value.isBlank()) {
             return 0L;
@@ -186,6 +551,168 @@ public class S3StorageManager {
         }
     }
 
+    /** One part PUT that can be withdrawn while queued or interrupted while it runs. */
+    private final class PartUpload implements Runnable {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int WITHDRAWN = 2;
+
+        private final MinioClient client;
+        private final String partName;
+        private final byte[] part;
+        private final Semaphore partsInFlight;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private Future<?> task;
+
+        private PartUpload(MinioClient client, String partName, byte[] part,
+                           Semaphore partsInFlight) {
+            this.client = client;
+            this.partName = partName;
+            this.part = part;
+            this.partsInFlight = partsInFlight;
+        }
+
+        private void submit(ExecutorService executor) {
+            try {
+                task = executor.submit(this);
+            } catch (RuntimeException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            try {
+                uploadPart(client, partName, part);
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                partsInFlight.release();
+            }
+        }
+
+        private void abort() {
+            if (state.compareAndSet(QUEUED, WITHDRAWN)) {
+                result.cancel(false);
+                partsInFlight.release();
+            }
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+
+        /** Wait until this part can no longer be written, however it ended. */
+        private void awaitSettled() {
+            try {
+                result.join();
+            } catch (RuntimeException ignored) {
+                // Failures were already reported by the upload itself.
+            }
+        }
+    }
+
+    /** Reads consecutive byte ranges in order while keeping up to {@code parallelism} in flight. */
+    private final class RangedObjectInputStream extends InputStream {
+        private final MinioClient client;
+        private final String objectName;
+        private final long size;
+        private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        private String etag;
+        private long nextOffset;
+        private byte[] current = new byte[0];
+        private int position;
+
+        private RangedObjectInputStream(MinioClient client, String objectName, long size) {
+            this.client = client;
+            this.objectName = objectName;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int amount = read(single, 0, 1);
+            return amount < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position >= current.length) {
+                if (!advance()) {
+                    return -1;
+                }
+            }
+            int amount = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, amount);
+            position += amount;
+            return amount;
+        }
+
+        @Override
+        public void close() {
+            for (CompletableFuture<byte[]> range : pending) {
+                range.cancel(false);
+            }
+            pending.clear();
+        }
+
+        private boolean advance() throws IOException {
+            if (etag == null && nextOffset == 0L) {
+                // The first range pins the object version for every following range.
+                long length = Math.min(partSize, size);
+                try (GetObjectResponse response = client.getObject(GetObjectArgs.builder()
+                        .bucket(bucket).object(objectName).offset(0L).length(length).build())) {
+                    etag = response.headers().get("ETag");
+                    current = response.readNBytes((int) length);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Failed to read S3 clipboard: " + e.getMessage(), e);
+                }
+                if (current.length != length) {
+                    throw new IOException("S3 clipboard size changed or exceeds configured limit");
+                }
+                position = 0;
+                nextOffset = length;
+                return true;
+            }
+            ExecutorService executor = transferExecutor();
+            while (pending.size() < parallelism && nextOffset < size) {
+                long offset = nextOffset;
+                long length = Math.min(partSize, size - offset);
+                String version = etag;
+                pending.add(CompletableFuture.supplyAsync(
+                        () -> readRange(client, objectName, offset, length, version), executor));
+                nextOffset += length;
+            }
+            CompletableFuture<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                current = join(next);
+            } catch (IOException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading S3 clipboard");
+            } catch (Exception e) {
+                throw new IOException("Failed to read S3 clipboard: " + e.getMessage(), e);
+            }
+            position = 0;
+            return true;
+        }
+    }
+
     public record RemoteObject(boolean exists, String hash, long encryptedSize, long updatedAt) {
         public static RemoteObject missing() {
             return new RemoteObject(false, "", 0L, 0L);
@@ -0,0 +1,152 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
+
+/**
+ * The clipboard hash each player last had applied on this server, kept on disk so a restarted
+ * backend still knows which proxy clipboard a returning player already had. Entries are evicted
+ * least recently used first.
+ */
+public final class AppliedHashIndex {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path file;
+    private final int maxEntries;
+    private final Map<UUID, AppliedClipboard> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Object writeLock = new Object();
+    private boolean dirty;
+
+    public AppliedHashIndex(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /** Load the index written by a previous run; malformed lines are skipped. */
+    public synchronized void initialize() throws IOException {
+        entries.clear();
+        dirty = false;
+        Files.deleteIfExists(temporaryFile());
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split(" ");
+                if (fields.length != 3 || !isHash(fields[1]) || !isHash(fields[2])) {
+                    continue;
+                }
+                try {
+                    entries.put(UUID.fromString(fields[0]), new AppliedClipboard(
+                            fields[1].toLowerCase(Locale.ROOT), fields[2].toLowerCase(Locale.ROOT)));
+                } catch (IllegalArgumentException ignored) {
+                    // Skip a damaged player ID rather than discarding the whole index.
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        evictLocked();
+    }
+
+    public synchronized AppliedClipboard get(UUID playerId) {
+        return entries.get(playerId);
+    }
+
+    /**
+     * Record the remote hash a player's clipboard was synchronized to and the hash of the form
+     * this server holds it in. Returns true when the index changed and should be flushed.
+     */
+    public synchronized boolean record(UUID playerId, String remoteHash, String localHash) {
+        if (!isHash(remoteHash) || !isHash(localHash)) {
+            return false;
+        }
+        AppliedClipboard applied = new AppliedClipboard(
+                remoteHash.toLowerCase(Locale.ROOT), localHash.toLowerCase(Locale.ROOT));
+        if (applied.equals(entries.put(playerId, applied))) {
+            return false;
+        }
+        evictLocked();
+        dirty = true;
+        return true;
+    }
+
+    /** Write pending changes with an atomic replace so a crash never leaves a partial index. */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            List<String> lines;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                lines = new ArrayList<>(entries.size());
+                entries.forEach((playerId, applied) -> lines.add(
+                        playerId + " " + applied.remoteHash() + " " + applied.localHash()));
+            }
+            try {
+                write(lines);
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                throw e;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void write(List<String> lines) throws IOException {
+        Path temporary = temporaryFile();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, file,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void evictLocked() {
+        Iterator<UUID> iterator = entries.keySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private Path temporaryFile() {
+        return file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+    }
+
+    private static boolean isHash(String hash) {
+        return ProtocolValidation.isSha256(hash);
+    }
+
+    /** Remote clipboard hash and the hash of the form this server applied it in. */
+    public record AppliedClipboard(String remoteHash, String localHash) {
+    }
+}
@@ -0,0 +1,207 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import dev.twme.worldeditsync.common.storage.ClipboardStorage;
+import dev.twme.worldeditsync.common.storage.StoredClipboard;
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+/** Serves downloads from a local content-addressed cache before reaching the shared backend. */
+public final class CachedClipboardStorage implements ClipboardStorage {
+
+    private final ClipboardStorage delegate;
+    private final LocalClipboardCache cache;
+    private final int maxClipboardSize;
+    private final Logger logger;
+
+    public CachedClipboardStorage(ClipboardStorage delegate, LocalClipboardCache cache,
+                                  int maxClipboardSize, Logger logger) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.maxClipboardSize = maxClipboardSize;
+        this.logger = logger;
+    }
+
+    @Override
+    public boolean initialize() throws Exception {
+        try {
+            cache.initialize();
+        } catch (Exception e) {
+            logger.warning("Failed to open local clipboard cache: " + e.getMessage());
+        }
+        return delegate.initialize();
+    }
+
+    @Override
+    public StoredClipboard inspect(String playerId) throws Exception {
+        return delegate.inspect(playerId);
+    }
+
+    @Override
+    public void upload(String playerId, byte[] data, String hash, long updatedAt) throws Exception {
+        delegate.upload(playerId, data, hash, updatedAt);
+        remember(hash, data);
+    }
+
+    @Override
+    public void upload(String playerId, InputStream data, int size, String hash,
+                       long updatedAt) throws Exception {
+        // Spool a copy to a temporary cache file while the backend consumes the stream.
+        try (LocalClipboardCache.Pending pending = begin(hash)) {
+            if (pending == null) {
+                delegate.upload(playerId, data, size, hash, updatedAt);
+                return;
+            }
+            delegate.upload(playerId, new TeeInputStream(data, pending), size, hash, updatedAt);
+            if (pending.size() == size) {
+                commit(pending);
+            }
+        }
+    }
+
+    @Override
+    public long download(String playerId, StoredClipboard expected,
+                         OutputStream output) throws Exception {
+        long cached = cache.copyTo(expected.hash(), maxClipboardSize, output);
+        if (cached >= 0L) {
+            return cached;
+        }
+        try (LocalClipboardCache.Pending pending = begin(expected.hash())) {
+            if (pending == null) {
+                return delegate.download(playerId, expected, output);
+            }
+            long size = delegate.download(playerId, expected, new TeeOutputStream(output, pending));
+            commit(pending);
+            return size;
+        }
+    }
+
+    @Override
+    public byte[] download(String playerId, StoredClipboard expected) throws Exception {
+        byte[] cached = cache.read(expected.hash(), maxClipboardSize);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] data = delegate.download(playerId, expected);
+        if (HashUtil.sha256Hex(data).equalsIgnoreCase(expected.hash())) {
+            remember(expected.hash(), data);
+        }
+        return data;
+    }
+
+    @Override
+    public int maxConcurrentCalls() {
+        return delegate.maxConcurrentCalls();
+    }
+
+    @Override
+    public String description() {
+        return delegate.description();
+    }
+
+    @Override
+    public void setUpdateListener(Consumer<String> listener) {
+        delegate.setUpdateListener(listener);
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    private static final class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        private TeeInputStream(InputStream input, OutputStream copy) {
+            super(input);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = in.read();
+            if (value >= 0) {
+                copy.write(value);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int amount = in.read(buffer, offset, length);
+            if (amount > 0) {
+                copy.write(buffer, offset, amount);
+            }
+            return amount;
+        }
+
+        @Override
+        public long skip(long count) {
+            // Skipped bytes would be missing from the cached copy.
+            return 0L;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static final class TeeOutputStream extends FilterOutputStream {
+        private final OutputStream copy;
+
+        private TeeOutputStream(OutputStream output, OutputStream copy) {
+            super(output);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            copy.write(value);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            copy.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The caller owns the destination stream and the cache entry.
+            flush();
+        }
+    }
+
+    private LocalClipboardCache.Pending begin(String hash) {
+        try {
+            return cache.begin(hash);
+        } catch (Exception e) {
+            logger.fine("Could not cache clipboard locally: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void commit(LocalClipboardCache.Pending pending) {
+        try {
+            pending.commit();
+        } catch (Exception e) {
+            logger.fine("Could not cache clipboard locally: " + e.getMessage());
+        }
+    }
+
+    private void remember(String hash, byte[] data) {
+        try {
+            cache.store(hash, data);
+        } catch (Exception e) {
+            logger.fine("Could not cache clipboard locally: " + e.getMessage());
+        }
+    }
+}
@@ -1,42 +1,66 @@
 package dev.twme.worldeditsync.paper.storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
 import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
 import dev.twme.worldeditsync.common.storage.ClipboardStorage;
+import dev.twme.worldeditsync.common.storage.StorageStreams;
 import dev.twme.worldeditsync.common.storage.StoredClipboard;
 import dev.twme.worldeditsync.paper.config.StorageType;
 
 /** JDBC storage shared by MySQL, MariaDB, PostgreSQL, and SQLite. */
 public final class JdbcClipboardStorage implements ClipboardStorage {
 
-    private static final String TABLE_PATTERN = "[A-Za-z][A-Za-z0-9_]{0,62}";
+    /** Leaves room for the blob table suffix within MySQL's 64 character identifier limit. */
+    private static final String TABLE_PATTERN = "[A-Za-z][A-Za-z0-9_]{0,56}";
+    private static final String BLOB_TABLE_SUFFIX = "_blobs";
+    /** Unreferenced blobs younger than this may belong to an upload that is still in progress. */
+    private static final long BLOB_RETENTION_MS = 600_000L;
+    private static final long BLOB_COLLECTION_INTERVAL_MS = 600_000L;
 
     private final StorageType type;
     private final String jdbcUrl;
     private final String username;
     private final String password;
     private final String table;
+    private final String blobTable;
     private final int poolSize;
     private final long connectionTimeoutMs;
     private final long ttlMinutes;
     private final MessageCipher cipher;
     private final int maxClipboardSize;
     private final SqlDialect dialect;
+    private final LongSupplier clock;
+    private final AtomicLong lastBlobCollection = new AtomicLong();
     private volatile HikariDataSource dataSource;
 
     public JdbcClipboardStorage(StorageType type, String jdbcUrl, String username, String password,
                                 String table, int poolSize, long connectionTimeoutMs,
                                 long ttlMinutes, MessageCipher cipher, int maxClipboardSize) {
+        this(type, jdbcUrl, username, password, table, poolSize, connectionTimeoutMs,
+                ttlMinutes, cipher, maxClipboardSize, System::currentTimeMillis);
+    }
+
+    JdbcClipboardStorage(StorageType type, String jdbcUrl, String username, String password,
+                         String table, int poolSize, long connectionTimeoutMs,
+                         long ttlMinutes, MessageCipher cipher, int maxClipboardSize,
+                         LongSupplier clock) {
         if (!type.isSql()) {
             throw new IllegalArgumentException(type + " is not a SQL storage type");
         }
@@ -48,12 +72,15 @@ public final class JdbcClipboardStorage implements ClipboardStorage {
         this.username = username;
         this.password = password;
         this.table = table;
+        this.blobTable = table + BLOB_TABLE_SUFFIX;
         this.poolSize = Math.max(1, Math.min(16, poolSize));
         this.connectionTimeoutMs = Math.max(1_000L, connectionTimeoutMs);
         this.ttlMinutes = Math.max(0L, ttlMinutes);
         this.cipher = cipher;
         this.maxClipboardSize = maxClipboardSize;
         this.dialect = SqlDialect.forType(type);
+        this.clock = clock;
+        this.lastBlobCollection.set(clock.getAsLong());
     }
 
     @Override
@@ -83,6 +110,10 @@ public final class JdbcClipboardStorage implements ClipboardStorage {
                 statement.execute("PRAGMA journal_mode = WAL");
             }
             statement.executeUpdate(dialect.createTable(table));
+            statement.executeUpdate(dialect.createBlobTable(blobTable));
+            if (hasColumn(connection, table, "payload")) {
+                migrateLegacyPayloads(connection);
+            }
         } catch (SQLException e) {
             initialized.close();
             throw e;
@@ -121,55 +152,104 @@ public final class JdbcClipboardStorage implements ClipboardStorage {
     @Override
     public void upload(String playerId, byte[] data, String hash, long updatedAt) throws Exception {
         validatePlaintext(data, hash);
-        byte[] encrypted = cipher.encrypt(data);
-        validateMetadata(hash, encrypted.length, updatedAt);
-        try (Connection connection = requireDataSource().getConnection();
-             PreparedStatement statement = connection.prepareStatement(dialect.upsert(table))) {
-            statement.setString(1, playerId);
-            statement.setString(2, hash);
-            statement.setLong(3, updatedAt);
-            statement.setLong(4, encrypted.length);
-            statement.setBytes(5, encrypted);
-            statement.executeUpdate();
+        upload(playerId, new ByteArrayInputStream(data), data.length, hash, updatedAt);
+    }
+
+    /**
+     * Store the payload once per content hash and encryption key, then point the player's
+     * metadata row at it. Re-uploading an already stored hash only touches small rows.
+     */
+    @Override
+    public void upload(String playerId, InputStream data, int size, String hash,
+                       long updatedAt) throws Exception {
+        validatePlaintext(size, hash);
+        long encryptedSize = cipher.encryptedSize(size);
+        validateMetadata(hash, encryptedSize, updatedAt);
+        String keyId = cipher.keyId();
+        long now = clock.getAsLong();
+        InputStream plaintext = StorageStreams.exactLength(
+                data, size, "Clipboard stream does not match its declared size");
+        try (Connection connection = requireDataSource().getConnection()) {
+            if (touchBlob(connection, hash, keyId, now) == 0) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        dialect.insertBlobIfAbsent(blobTable))) {
+                    statement.setString(1, hash);
+                    statement.setString(2, keyId);
+                    statement.setLong(3, encryptedSize);
+                    statement.setLong(4, now);
+                    statement.setBinaryStream(5, cipher.encryptingStream(plaintext), encryptedSize);
+                    statement.executeUpdate();
+                }
+            } else {
+                // Callers such as the local cache tee expect the stream to be consumed.
+                plaintext.transferTo(OutputStream.nullOutputStream());
+            }
+            // A concurrent writer may have stored the same content first; reference its size.
+            long storedSize = blobSize(connection, hash, keyId);
+            validateMetadata(hash, storedSize, updatedAt);
+            try (PreparedStatement statement = connection.prepareStatement(dialect.upsert(table))) {
+                statement.setString(1, playerId);
+                statement.setString(2, hash);
+                statement.setLong(3, updatedAt);
+                statement.setLong(4, storedSize);
+                statement.executeUpdate();
+            }
+            collectUnreferencedBlobs(connection, now);
         }
     }
 
     @Override
     public byte[] download(String playerId, StoredClipboard expected) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(
+                (int) Math.min(expected.storedSize(), maxClipboardSize));
+        download(playerId, expected, output);
+        return output.toByteArray();
+    }
+
+    @Override
+    public long download(String playerId, StoredClipboard expected,
+                         OutputStream output) throws Exception {
         validateMetadata(expected.hash(), expected.storedSize(), expected.updatedAt());
-        String sql = "SELECT payload FROM " + table
-                + " WHERE player_id = ? AND clipboard_hash = ? AND updated_at = ? AND payload_size = ?";
+        // Prefer the blob encrypted with this server's key; any other one fails authentication.
+        String sql = "SELECT b.payload FROM " + table + " m JOIN " + blobTable + " b"
+                + " ON b.clipboard_hash = m.clipboard_hash AND b.payload_size = m.payload_size"
+                + " WHERE m.player_id = ? AND m.clipboard_hash = ? AND m.updated_at = ?"
+                + " AND m.payload_size = ?"
+                + " ORDER BY CASE WHEN b.key_id = ? THEN 0 ELSE 1 END LIMIT 1";
         try (Connection connection = requireDataSource().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, playerId);
             statement.setString(2, expected.hash());
             statement.setLong(3, expected.updatedAt());
             statement.setLong(4, expected.storedSize());
+            statement.setString(5, cipher.keyId());
             try (ResultSet result = statement.executeQuery()) {
                 if (!result.next()) {
                     throw new IOException("SQL clipboard changed while it was being downloaded");
                 }
-                int maximum = Math.addExact(
-                        maxClipboardSize, MessageCipher.ENCRYPTION_OVERHEAD_BYTES);
-                byte[] encrypted;
                 try (InputStream payload = result.getBinaryStream(1)) {
                     if (payload == null) {
                         throw new IOException("SQL clipboard payload is missing");
                     }
-                    encrypted = payload.readNBytes(maximum + 1);
-                }
-                if (encrypted.length > maximum || encrypted.length != expected.storedSize()) {
-                    throw new IOException("SQL clipboard size changed or exceeds configured limit");
-                }
-                byte[] data = cipher.decrypt(encrypted);
-                if (data.length <= 0 || data.length > maxClipboardSize) {
-                    throw new IOException("SQL clipboard exceeds configured size limit");
+                    long written = StorageStreams.copyBounded(
+                            cipher.decryptingStream(StorageStreams.exactLength(payload,
+                                    expected.storedSize(),
+                                    "SQL clipboard size changed or exceeds configured limit")),
+                            output, maxClipboardSize, "SQL clipboard exceeds configured size limit");
+                    if (written <= 0) {
+                        throw new IOException("SQL clipboard exceeds configured size limit");
+                    }
+                    return written;
                 }
-                return data;
             }
         }
     }
 
+    @Override
+    public int maxConcurrentCalls() {
+        return type == StorageType.SQLITE ? 1 : poolSize;
+    }
+
     @Override
     public String description() {
         return type.name();
@@ -202,6 +282,80 @@ public final class JdbcClipboardStorage implements ClipboardStorage {
         };
     }
 
+    private int touchBlob(Connection connection, String hash, String keyId,
+                          long now) throws SQLException {
+        String sql = "UPDATE " + blobTable + " SET last_used_at = ?"
+                + " WHERE clipboard_hash = ? AND key_id = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, now);
+            statement.setString(2, hash);
+            statement.setString(3, keyId);
+            return statement.executeUpdate();
+        }
+    }
+
+    private long blobSize(Connection connection, String hash, String keyId) throws Exception {
+        String sql = "SELECT payload_size FROM " + blobTable + " WHERE clipboard_hash = ? AND key_id = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, hash);
+            statement.setString(2, keyId);
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next()) {
+                    throw new IOException("SQL clipboard payload was removed during upload");
+                }
+                return result.getLong(1);
+            }
+        }
+    }
+
+    /** Occasionally delete payloads that no metadata row references any more. */
+    private void collectUnreferencedBlobs(Connection connection, long now) throws SQLException {
+        long previous = lastBlobCollection.get();
+        if (now - previous < BLOB_COLLECTION_INTERVAL_MS
+                || !lastBlobCollection.compareAndSet(previous, now)) {
+            return;
+        }
+        String sql = "DELETE FROM " + blobTable + " WHERE last_used_at < ? AND NOT EXISTS ("
+                + "SELECT 1 FROM " + table + " m WHERE m.clipboard_hash = "
+                + blobTable + ".clipboard_hash)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, now - BLOB_RETENTION_MS);
+            statement.executeUpdate();
+        }
+    }
+
+    /** Move payloads from the former single-table layout into the blob table, then drop them. */
+    private void migrateLegacyPayloads(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                dialect.migrateLegacyPayloads(table, blobTable))) {
+            statement.setString(1, cipher.keyId());
+            statement.setLong(2, clock.getAsLong());
+            statement.executeUpdate();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + table + " DROP COLUMN payload");
+        } catch (SQLException e) {
+            // Another server may have finished the same migration first.
+            if (hasColumn(connection, table, "payload")) {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table,
+                                     String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData metadata = result.getMetaData();
+            for (int index = 1; index <= metadata.getColumnCount(); index++) {
+                if (column.equalsIgnoreCase(metadata.getColumnName(index))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     private void deleteExpired(Connection connection, String playerId,
                                StoredClipboard expected) throws SQLException {
         String sql = "DELETE FROM " + table + " WHERE player_id = ? AND clipboard_hash = ?"
@@ -221,7 +375,7 @@ public final class JdbcClipboardStorage implements ClipboardStorage {
         }
         long cutoff;
         try {
-            cutoff = Math.subtractExact(System.currentTimeMillis(), Math.multiplyExact(ttlMinutes, 60_000L));
+            cutoff = Math.subtractExact(clock.getAsLong(), Math.multiplyExact(ttlMinutes, 60_000L));
         } catch (ArithmeticException ignored) {
             return false;
         }
@@ -229,14 +383,20 @@ public final class JdbcClipboardStorage implements ClipboardStorage {
     }
 
     private void validatePlaintext(byte[] data, String hash) throws IOException {
-        if (data == null || data.length <= 0 || data.length > maxClipboardSize
-                || !ProtocolValidation.isSha256(hash)) {
+        if (data == null) {
+            throw new IOException("Clipboard data or hash is invalid");
+        }
+        validatePlaintext(data.length, hash);
+    }
+
+    private void validatePlaintext(int size, String hash) throws IOException {
+        if (size <= 0 || size > maxClipboardSize || !ProtocolValidation.isSha256(hash)) {
             throw new IOException("Clipboard data or hash is invalid");
         }
     }
 
     private void validateMetadata(String hash, long storedSize, long updatedAt) throws IOException {
-        long maximum = (long) maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES;
+        long maximum = MessageCipher.maxEncryptedSize(maxClipboardSize);
         if (!ProtocolValidation.isSha256(hash) || storedSize <= 0 || storedSize > maximum
                 || updatedAt <= 0) {
             throw new IOException("SQL clipboard metadata is invalid");
@@ -0,0 +1,349 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+/**
+ * Content-addressed clipboard files on the local disk, evicted least recently used first.
+ * Entries are verified against their SHA-256 name on every read.
+ */
+public final class LocalClipboardCache {
+
+    private static final String FILE_SUFFIX = ".schem";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+
+    public LocalClipboardCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(0L, maxBytes);
+    }
+
+    /** Index existing cache files, oldest access first, and trim them to the size limit. */
+    public synchronized void initialize() throws IOException {
+        Files.createDirectories(directory);
+        entries.clear();
+        storedBytes = 0L;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (hashOf(name) != null && Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(LocalClipboardCache::lastModified));
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(hashOf(file.getFileName().toString()), size);
+            storedBytes += size;
+        }
+        evictLocked();
+    }
+
+    /** Return verified cached data, or null when the hash is absent, oversized or corrupt. */
+    public byte[] read(String hash, int maxSize) {
+        String key = key(hash);
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Long size = entries.get(key);
+            if (size == null || size <= 0L || size > maxSize) {
+                return null;
+            }
+        }
+        Path file = file(key);
+        try {
+            byte[] data;
+            try (InputStream input = Files.newInputStream(file)) {
+                data = input.readNBytes(maxSize + 1);
+            }
+            if (data.length <= 0 || data.length > maxSize || !HashUtil.sha256Hex(data).equals(key)) {
+                remove(key);
+                return null;
+            }
+            touch(file);
+            return data;
+        } catch (NoSuchFileException e) {
+            remove(key);
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stream verified cached data into {@code output} without holding it in memory. Returns the
+     * number of bytes copied, or -1 when the hash is absent, oversized or corrupt and nothing
+     * was written. A failure after copying has started is thrown instead.
+     */
+    public long copyTo(String hash, int maxSize, OutputStream output) throws IOException {
+        String key = key(hash);
+        if (key == null) {
+            return -1L;
+        }
+        synchronized (this) {
+            Long size = entries.get(key);
+            if (size == null || size <= 0L || size > maxSize) {
+                return -1L;
+            }
+        }
+        Path file = file(key);
+        // Verify the whole file before the first byte reaches the caller.
+        MessageDigest digest = sha256();
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file), digest)) {
+            long size = input.transferTo(OutputStream.nullOutputStream());
+            if (size <= 0L || size > maxSize || !HashUtil.bytesToHex(digest.digest()).equals(key)) {
+                remove(key);
+                return -1L;
+            }
+        } catch (NoSuchFileException e) {
+            remove(key);
+            return -1L;
+        } catch (IOException e) {
+            return -1L;
+        }
+        long copied;
+        try (InputStream input = Files.newInputStream(file)) {
+            copied = input.transferTo(output);
+        }
+        touch(file);
+        return copied;
+    }
+
+    /** Store data under its already verified content hash. */
+    public void store(String hash, byte[] data) throws IOException {
+        String key = key(hash);
+        if (key == null || data.length <= 0 || data.length > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+        }
+        Path temporary = Files.createTempFile(directory, key, TEMPORARY_SUFFIX);
+        try {
+            Files.write(temporary, data);
+            commit(key, temporary, data.length);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Open a temporary file that collects a clipboard as it streams past. The entry only becomes
+     * visible after {@link Pending#commit()} has checked its size and content hash. Returns null
+     * when the hash is invalid or already cached.
+     */
+    public Pending begin(String hash) throws IOException {
+        String key = key(hash);
+        if (key == null || maxBytes <= 0L) {
+            return null;
+        }
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return null;
+            }
+        }
+        Path temporary = Files.createTempFile(directory, key, TEMPORARY_SUFFIX);
+        try {
+            return new Pending(key, temporary, Files.newOutputStream(temporary));
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private void commit(String key, Path temporary, long size) throws IOException {
+        Files.move(temporary, file(key),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            Long previous = entries.put(key, size);
+            storedBytes += size - (previous == null ? 0L : previous);
+            evictLocked();
+        }
+    }
+
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    public synchronized boolean contains(String hash) {
+        String key = key(hash);
+        return key != null && entries.containsKey(key);
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            storedBytes -= size;
+            deleteQuietly(file(key));
+        }
+    }
+
+    private void evictLocked() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (storedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            storedBytes -= eldest.getValue();
+            deleteQuietly(file(eldest.getKey()));
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    private static String key(String hash) {
+        return ProtocolValidation.isSha256(hash) ? hash.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static String hashOf(String fileName) {
+        if (!fileName.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        String hash = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+        return hash.equals(key(hash)) ? hash : null;
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Only the eviction order after a restart depends on it.
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0L);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // A later initialize() re-indexes whatever is left on disk.
+        }
+    }
+
+    /**
+     * A cache entry being written from a stream that belongs to someone else. Write failures
+     * never reach that stream's owner; they only stop the entry from being committed.
+     */
+    public final class Pending extends OutputStream {
+        private final String key;
+        private final Path temporary;
+        private final OutputStream output;
+        private final MessageDigest digest = sha256();
+        private long written;
+        private boolean failed;
+        private boolean finished;
+
+        private Pending(String key, Path temporary, OutputStream output) {
+            this.key = key;
+            this.temporary = temporary;
+            this.output = output;
+        }
+
+        @Override
+        public void write(int value) {
+            write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            if (failed || finished || length <= 0) {
+                return;
+            }
+            if (length > maxBytes - written) {
+                failed = true;
+                return;
+            }
+            try {
+                output.write(buffer, offset, length);
+                digest.update(buffer, offset, length);
+                written += length;
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        public long size() {
+            return written;
+        }
+
+        /** Publish the entry if every byte was written and it matches its hash. */
+        public boolean commit() throws IOException {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            try {
+                output.close();
+                if (failed || written <= 0L || !HashUtil.bytesToHex(digest.digest()).equals(key)) {
+                    return false;
+                }
+                LocalClipboardCache.this.commit(key, temporary, written);
+                return true;
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        /** Discard the entry; does nothing after {@link #commit()}. */
+        @Override
+        public void close() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                output.close();
+            } catch (IOException ignored) {
+                // The temporary file is deleted either way.
+            }
+            deleteQuietly(temporary);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
+import dev.twme.worldeditsync.common.storage.ClipboardStorage;
+import dev.twme.worldeditsync.common.storage.StoredClipboard;
+
+/** Records the latency and failures of every call that reaches the shared backend. */
+public final class MeteredClipboardStorage implements ClipboardStorage {
+
+    private final ClipboardStorage delegate;
+
+    public MeteredClipboardStorage(ClipboardStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean initialize() throws Exception {
+        return delegate.initialize();
+    }
+
+    @Override
+    public StoredClipboard inspect(String playerId) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return delegate.inspect(playerId);
+        } catch (Exception e) {
+            SyncMetrics.storageErrors(delegate.description(), "inspect").increment();
+            throw e;
+        } finally {
+            SyncMetrics.storageTime(delegate.description(), "inspect").recordSince(start);
+        }
+    }
+
+    @Override
+    public void upload(String playerId, byte[] data, String hash, long updatedAt) throws Exception {
+        long start = System.nanoTime();
+        try {
+            delegate.upload(playerId, data, hash, updatedAt);
+        } catch (Exception e) {
+            SyncMetrics.storageErrors(delegate.description(), "upload").increment();
+            throw e;
+        } finally {
+            SyncMetrics.storageTime(delegate.description(), "upload").recordSince(start);
+        }
+    }
+
+    @Override
+    public void upload(String playerId, InputStream data, int size, String hash,
+                       long updatedAt) throws Exception {
+        long start = System.nanoTime();
+        try {
+            delegate.upload(playerId, data, size, hash, updatedAt);
+        } catch (Exception e) {
+            SyncMetrics.storageErrors(delegate.description(), "upload").increment();
+            throw e;
+        } finally {
+            SyncMetrics.storageTime(delegate.description(), "upload").recordSince(start);
+        }
+    }
+
+    @Override
+    public byte[] download(String playerId, StoredClipboard expected) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return delegate.download(playerId, expected);
+        } catch (Exception e) {
+            SyncMetrics.storageErrors(delegate.description(), "download").increment();
+            throw e;
+        } finally {
+            SyncMetrics.storageTime(delegate.description(), "download").recordSince(start);
+        }
+    }
+
+    @Override
+    public long download(String playerId, StoredClipboard expected,
+                         OutputStream output) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return delegate.download(playerId, expected, output);
+        } catch (Exception e) {
+            SyncMetrics.storageErrors(delegate.description(), "download").increment();
+            throw e;
+        } finally {
+            SyncMetrics.storageTime(delegate.description(), "download").recordSince(start);
+        }
+    }
+
+    @Override
+    public int maxConcurrentCalls() {
+        return delegate.maxConcurrentCalls();
+    }
+
+    @Override
+    public String description() {
+        return delegate.description();
+    }
+
+    @Override
+    public void setUpdateListener(Consumer<String> listener) {
+        delegate.setUpdateListener(listener);
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+}
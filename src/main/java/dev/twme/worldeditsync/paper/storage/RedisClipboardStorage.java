@@ -2,6 +2,7 @@ package dev.twme.worldeditsync.paper.storage;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.CountDownLatch;
@@ -13,6 +14,7 @@ import java.util.logging.Logger;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
 import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
 import dev.twme.worldeditsync.common.storage.ClipboardStorage;
+import dev.twme.worldeditsync.common.storage.StorageStreams;
 import dev.twme.worldeditsync.common.storage.StoredClipboard;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -32,6 +34,17 @@ public final class RedisClipboardStorage implements ClipboardStorage {
                     + "if tonumber(ARGV[5]) > 0 then redis.call('PEXPIRE', KEYS[1], ARGV[5]) "
                     + "else redis.call('PERSIST', KEYS[1]) end; "
                     + "redis.call('PUBLISH', KEYS[2], ARGV[6]); return 1");
+    private static final byte[] COMMIT_STAGED_SCRIPT = bytes(
+            "local d = redis.call('GET', KEYS[3]); redis.call('DEL', KEYS[3]); "
+                    + "if not d or string.len(d) ~= tonumber(ARGV[3]) then return 0 end; "
+                    + "redis.call('HSET', KEYS[1], 'hash', ARGV[1], 'updated_at', ARGV[2], "
+                    + "'size', ARGV[3], 'data', d); "
+                    + "if tonumber(ARGV[4]) > 0 then redis.call('PEXPIRE', KEYS[1], ARGV[4]) "
+                    + "else redis.call('PERSIST', KEYS[1]) end; "
+                    + "redis.call('PUBLISH', KEYS[2], ARGV[5]); return 1");
+    /** Larger payloads are appended to a staging key in pieces of this size, then committed. */
+    private static final int STAGING_CHUNK_SIZE = 1024 * 1024;
+    private static final long STAGING_TTL_MS = 300_000L;
     private static final byte[] READ_SCRIPT = bytes(
             "local h = redis.call('HGET', KEYS[1], 'hash'); "
                     + "local t = redis.call('HGET', KEYS[1], 'updated_at'); "
@@ -118,14 +131,54 @@ public final class RedisClipboardStorage implements ClipboardStorage {
     @Override
     public void upload(String playerId, byte[] data, String hash, long updatedAt) throws Exception {
         validatePlaintext(data, hash);
-        byte[] encrypted = cipher.encrypt(data);
-        validateStoredSize(encrypted.length);
-        try (Jedis jedis = requirePool().getResource()) {
-            jedis.eval(WRITE_SCRIPT,
-                    List.of(key(playerId), updateChannel()),
-                    List.of(bytes(hash), bytes(Long.toString(updatedAt)),
-                            bytes(Integer.toString(encrypted.length)), encrypted,
-                            bytes(Long.toString(ttlMillis)), bytes(playerId)));
+        upload(playerId, new java.io.ByteArrayInputStream(data), data.length, hash, updatedAt);
+    }
+
+    /**
+     * Redis values cannot be written incrementally, so payloads larger than one staging chunk are
+     * appended to a short-lived staging key and moved into the clipboard hash by a script.
+     */
+    @Override
+    public void upload(String playerId, java.io.InputStream data, int size, String hash,
+                       long updatedAt) throws Exception {
+        validatePlaintext(size, hash);
+        long encryptedSize = cipher.encryptedSize(size);
+        validateStoredSize(encryptedSize);
+        try (java.io.InputStream encrypted = cipher.encryptingStream(StorageStreams.exactLength(
+                data, size, "Clipboard stream does not match its declared size"));
+             Jedis jedis = requirePool().getResource()) {
+            if (encryptedSize <= STAGING_CHUNK_SIZE) {
+                byte[] payload = encrypted.readAllBytes();
+                jedis.eval(WRITE_SCRIPT,
+                        List.of(key(playerId), updateChannel()),
+                        List.of(bytes(hash), bytes(Long.toString(updatedAt)),
+                                bytes(Integer.toString(payload.length)), payload,
+                                bytes(Long.toString(ttlMillis)), bytes(playerId)));
+                return;
+            }
+            byte[] staging = bytes(keyPrefix + ":staging:" + playerId + ":" + UUID.randomUUID());
+            try {
+                byte[] chunk;
+                while ((chunk = encrypted.readNBytes(STAGING_CHUNK_SIZE)).length > 0) {
+                    jedis.append(staging, chunk);
+                    jedis.pexpire(staging, STAGING_TTL_MS);
+                }
+                Object committed = jedis.eval(COMMIT_STAGED_SCRIPT,
+                        List.of(key(playerId), updateChannel(), staging),
+                        List.of(bytes(hash), bytes(Long.toString(updatedAt)),
+                                bytes(Long.toString(encryptedSize)),
+                                bytes(Long.toString(ttlMillis)), bytes(playerId)));
+                if (!Long.valueOf(1L).equals(committed)) {
+                    throw new java.io.IOException("Redis staged clipboard upload was incomplete");
+                }
+            } catch (Exception e) {
+                try {
+                    jedis.del(staging);
+                } catch (RuntimeException cleanupError) {
+                    e.addSuppressed(cleanupError);
+                }
+                throw e;
+            }
         }
     }
 
@@ -152,6 +205,11 @@ public final class RedisClipboardStorage implements ClipboardStorage {
         return data;
     }
 
+    @Override
+    public int maxConcurrentCalls() {
+        return poolSize;
+    }
+
     @Override
     public String description() {
         return "Redis-compatible";
@@ -274,8 +332,14 @@ public final class RedisClipboardStorage implements ClipboardStorage {
     }
 
     private void validatePlaintext(byte[] data, String hash) throws java.io.IOException {
-        if (data == null || data.length <= 0 || data.length > maxClipboardSize
-                || !ProtocolValidation.isSha256(hash)) {
+        if (data == null) {
+            throw new java.io.IOException("Clipboard data or hash is invalid");
+        }
+        validatePlaintext(data.length, hash);
+    }
+
+    private void validatePlaintext(int size, String hash) throws java.io.IOException {
+        if (size <= 0 || size > maxClipboardSize || !ProtocolValidation.isSha256(hash)) {
             throw new java.io.IOException("Clipboard data or hash is invalid");
         }
     }
@@ -288,7 +352,7 @@ public final class RedisClipboardStorage implements ClipboardStorage {
     }
 
     private void validateStoredSize(long size) throws java.io.IOException {
-        long maximum = (long) maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES;
+        long maximum = MessageCipher.maxEncryptedSize(maxClipboardSize);
         if (size <= 0 || size > maximum) {
             throw new java.io.IOException("Redis clipboard exceeds configured size limit");
         }
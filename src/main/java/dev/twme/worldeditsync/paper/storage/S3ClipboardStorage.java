@@ -1,5 +1,13 @@
 package dev.twme.worldeditsync.paper.storage;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.storage.ClipboardStorage;
 import dev.twme.worldeditsync.common.storage.StoredClipboard;
 import dev.twme.worldeditsync.paper.s3.S3StorageManager;
@@ -8,11 +16,31 @@ import io.minio.MinioClient;
 /** Adapts the S3 implementation to the shared storage contract. */
 public final class S3ClipboardStorage implements ClipboardStorage {
 
+    /** One conditional manifest request covers every inspection of a scan interval. */
+    private static final long MANIFEST_CHECK_INTERVAL_MS = 1000L;
+    /** MinIO requests share one HTTP client, so the limit is on concurrent requests, not connections. */
+    private static final int MAX_CONCURRENT_CALLS = 8;
+
     private final S3StorageManager storage;
+    private final LongSupplier clock;
+    private final Map<String, CachedInspection> inspections = new ConcurrentHashMap<>();
+    /**
+     * Guards the manifest fields. A lock rather than a monitor, so a virtual thread blocked on
+     * the manifest request does not pin its carrier thread.
+     */
+    private final ReentrantLock manifestLock = new ReentrantLock();
     private volatile MinioClient client;
+    private String manifestVersion;
+    private long manifestCheckedAt;
+    private boolean manifestChecked;
 
     public S3ClipboardStorage(S3StorageManager storage) {
+        this(storage, System::currentTimeMillis);
+    }
+
+    S3ClipboardStorage(S3StorageManager storage, LongSupplier clock) {
         this.storage = storage;
+        this.clock = clock;
     }
 
     @Override
@@ -23,15 +51,47 @@ public final class S3ClipboardStorage implements ClipboardStorage {
 
     @Override
     public StoredClipboard inspect(String playerId) throws Exception {
-        S3StorageManager.RemoteObject remote = storage.getRemoteObject(requireClient(), playerId);
-        return remote.exists()
+        MinioClient activeClient = requireClient();
+        long now = clock.getAsLong();
+        String version = currentManifestVersion(activeClient, now);
+        CachedInspection cached = inspections.get(playerId);
+        if (version != null && cached != null && version.equals(cached.manifestVersion())
+                && now - cached.inspectedAt() < Constants.UNCHANGED_CLIPBOARD_RECHECK_MS) {
+            return cached.clipboard();
+        }
+
+        // The manifest was read before this stat, so any later upload changes its ETag.
+        S3StorageManager.RemoteObject remote = storage.getRemoteObject(activeClient, playerId);
+        StoredClipboard clipboard = remote.exists()
                 ? new StoredClipboard(true, remote.hash(), remote.encryptedSize(), remote.updatedAt())
                 : StoredClipboard.missing();
+        if (version != null) {
+            inspections.put(playerId, new CachedInspection(version, now, clipboard));
+        } else {
+            inspections.remove(playerId);
+        }
+        return clipboard;
     }
 
     @Override
     public void upload(String playerId, byte[] data, String hash, long updatedAt) throws Exception {
-        storage.uploadClipboard(requireClient(), playerId, data, hash, updatedAt);
+        try {
+            storage.uploadClipboard(requireClient(), playerId, data, hash, updatedAt);
+        } finally {
+            inspections.remove(playerId);
+        }
+    }
+
+    @Override
+    public void upload(String playerId, InputStream data, int size, String hash,
+                       long updatedAt) throws Exception {
+        try {
+            storage.uploadClipboard(requireClient(), playerId, data, size, hash, updatedAt);
+        } finally {
+            // The manifest may not be re-read for a while, so drop this player's cached stat
+            // instead of serving the pre-upload object until the next manifest check.
+            inspections.remove(playerId);
+        }
     }
 
     @Override
@@ -39,6 +99,17 @@ public final class S3ClipboardStorage implements ClipboardStorage {
         return storage.downloadClipboard(requireClient(), playerId, expected.storedSize());
     }
 
+    @Override
+    public long download(String playerId, StoredClipboard expected,
+                         OutputStream output) throws Exception {
+        return storage.downloadClipboard(requireClient(), playerId, expected.storedSize(), output);
+    }
+
+    @Override
+    public int maxConcurrentCalls() {
+        return MAX_CONCURRENT_CALLS;
+    }
+
     @Override
     public String description() {
         return "S3";
@@ -48,11 +119,36 @@ public final class S3ClipboardStorage implements ClipboardStorage {
     public void close() throws Exception {
         MinioClient activeClient = client;
         client = null;
+        inspections.clear();
+        storage.close();
         if (activeClient != null) {
             activeClient.close();
         }
     }
 
+    private String currentManifestVersion(MinioClient activeClient, long now) throws Exception {
+        // Concurrent inspections wait for the one manifest request instead of each sending one.
+        manifestLock.lock();
+        try {
+            if (manifestChecked && now - manifestCheckedAt < MANIFEST_CHECK_INTERVAL_MS) {
+                return manifestVersion;
+            }
+            String version = storage.getManifestVersion(activeClient, manifestVersion);
+            if (version == null || !version.equals(manifestVersion)) {
+                inspections.clear();
+            } else {
+                inspections.values().removeIf(inspection ->
+                        now - inspection.inspectedAt() >= Constants.UNCHANGED_CLIPBOARD_RECHECK_MS);
+            }
+            manifestVersion = version;
+            manifestCheckedAt = now;
+            manifestChecked = true;
+            return version;
+        } finally {
+            manifestLock.unlock();
+        }
+    }
+
     private MinioClient requireClient() {
         MinioClient activeClient = client;
         if (activeClient == null) {
@@ -60,4 +156,7 @@ public final class S3ClipboardStorage implements ClipboardStorage {
         }
         return activeClient;
     }
+
+    private record CachedInspection(String manifestVersion, long inspectedAt, StoredClipboard clipboard) {
+    }
 }
@@ -4,25 +4,37 @@ import dev.twme.worldeditsync.paper.config.StorageType;
 
 /** SQL differences kept behind a small, testable dialect boundary. */
 public enum SqlDialect {
-    MYSQL("LONGBLOB", "INSERT INTO %s (player_id, clipboard_hash, updated_at, payload_size, payload) "
-            + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+    MYSQL("LONGBLOB", "INSERT INTO %s (player_id, clipboard_hash, updated_at, payload_size) "
+            + "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
             + "clipboard_hash = VALUES(clipboard_hash), updated_at = VALUES(updated_at), "
-            + "payload_size = VALUES(payload_size), payload = VALUES(payload)"),
-    POSTGRESQL("BYTEA", "INSERT INTO %s (player_id, clipboard_hash, updated_at, payload_size, payload) "
-            + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (player_id) DO UPDATE SET "
+            + "payload_size = VALUES(payload_size)",
+            // A no-op update keeps real errors visible, unlike INSERT IGNORE.
+            "INSERT INTO %s", " ON DUPLICATE KEY UPDATE clipboard_hash = %s.clipboard_hash"),
+    POSTGRESQL("BYTEA", "INSERT INTO %s (player_id, clipboard_hash, updated_at, payload_size) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT (player_id) DO UPDATE SET "
             + "clipboard_hash = EXCLUDED.clipboard_hash, updated_at = EXCLUDED.updated_at, "
-            + "payload_size = EXCLUDED.payload_size, payload = EXCLUDED.payload"),
-    SQLITE("BLOB", "INSERT INTO %s (player_id, clipboard_hash, updated_at, payload_size, payload) "
-            + "VALUES (?, ?, ?, ?, ?) ON CONFLICT(player_id) DO UPDATE SET "
+            + "payload_size = EXCLUDED.payload_size",
+            "INSERT INTO %s", " ON CONFLICT (clipboard_hash, key_id) DO NOTHING"),
+    SQLITE("BLOB", "INSERT INTO %s (player_id, clipboard_hash, updated_at, payload_size) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT(player_id) DO UPDATE SET "
             + "clipboard_hash = excluded.clipboard_hash, updated_at = excluded.updated_at, "
-            + "payload_size = excluded.payload_size, payload = excluded.payload");
+            + "payload_size = excluded.payload_size",
+            "INSERT INTO %s", " ON CONFLICT(clipboard_hash, key_id) DO NOTHING");
+
+    private static final String BLOB_COLUMNS =
+            " (clipboard_hash, key_id, payload_size, last_used_at, payload)";
 
     private final String blobType;
     private final String upsertTemplate;
+    private final String insertIfAbsentPrefix;
+    private final String insertIfAbsentSuffix;
 
-    SqlDialect(String blobType, String upsertTemplate) {
+    SqlDialect(String blobType, String upsertTemplate,
+               String insertIfAbsentPrefix, String insertIfAbsentSuffix) {
         this.blobType = blobType;
         this.upsertTemplate = upsertTemplate;
+        this.insertIfAbsentPrefix = insertIfAbsentPrefix;
+        this.insertIfAbsentSuffix = insertIfAbsentSuffix;
     }
 
     public static SqlDialect forType(StorageType type) {
@@ -34,16 +46,41 @@ public enum SqlDialect {
         };
     }
 
+    /** Small per-player metadata rows; payloads live in {@link #createBlobTable(String)}. */
     public String createTable(String table) {
         return "CREATE TABLE IF NOT EXISTS " + table + " ("
                 + "player_id VARCHAR(36) PRIMARY KEY, "
                 + "clipboard_hash VARCHAR(64) NOT NULL, "
                 + "updated_at BIGINT NOT NULL, "
+                + "payload_size BIGINT NOT NULL)";
+    }
+
+    /** Encrypted payloads addressed by plaintext hash and the key that encrypted them. */
+    public String createBlobTable(String blobTable) {
+        return "CREATE TABLE IF NOT EXISTS " + blobTable + " ("
+                + "clipboard_hash VARCHAR(64) NOT NULL, "
+                + "key_id VARCHAR(16) NOT NULL, "
                 + "payload_size BIGINT NOT NULL, "
-                + "payload " + blobType + " NOT NULL)";
+                + "last_used_at BIGINT NOT NULL, "
+                + "payload " + blobType + " NOT NULL, "
+                + "PRIMARY KEY (clipboard_hash, key_id))";
     }
 
     public String upsert(String table) {
         return upsertTemplate.formatted(table);
     }
+
+    /** Insert a blob unless the same hash and key are already stored. */
+    public String insertBlobIfAbsent(String blobTable) {
+        return insertIfAbsentPrefix.formatted(blobTable) + BLOB_COLUMNS
+                + " VALUES (?, ?, ?, ?, ?)" + insertIfAbsentSuffix.formatted(blobTable);
+    }
+
+    /** Copy payloads out of a pre-split table whose rows still carry a payload column. */
+    public String migrateLegacyPayloads(String table, String blobTable) {
+        // SQLite needs a WHERE clause to parse INSERT ... SELECT ... ON CONFLICT.
+        return insertIfAbsentPrefix.formatted(blobTable) + BLOB_COLUMNS
+                + " SELECT clipboard_hash, ?, payload_size, ?, payload FROM " + table
+                + " WHERE payload IS NOT NULL" + insertIfAbsentSuffix.formatted(blobTable);
+    }
 }
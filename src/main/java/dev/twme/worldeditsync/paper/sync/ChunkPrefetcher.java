@@ -0,0 +1,116 @@
+package dev.twme.worldeditsync.paper.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads an encrypting stream in chunk-sized pieces on a worker, at most {@code capacity} chunks
+ * ahead of the sender. The thread that sends chunks only takes finished ones and never runs the
+ * cipher; when encryption falls behind it gets nothing and tries again on its next pass.
+ */
+final class ChunkPrefetcher {
+
+    private final InputStream source;
+    private final long totalLength;
+    private final int chunkSize;
+    private final int totalChunks;
+    private final int capacity;
+    private final Executor executor;
+    private final ArrayDeque<byte[]> ready = new ArrayDeque<>();
+    private int produced;
+    private boolean filling;
+    private boolean closed;
+    private IOException failure;
+
+    ChunkPrefetcher(InputStream source, long totalLength, int chunkSize, int capacity,
+                    Executor executor) {
+        if (totalLength <= 0L || chunkSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Chunk prefetch sizes must be positive");
+        }
+        this.source = source;
+        this.totalLength = totalLength;
+        this.chunkSize = chunkSize;
+        this.totalChunks = Math.toIntExact((totalLength + chunkSize - 1) / chunkSize);
+        this.capacity = capacity;
+        this.executor = executor;
+    }
+
+    /** Starts reading ahead unless a worker is already doing so or the buffer is full. */
+    void prefetch() {
+        synchronized (this) {
+            if (filling || closed || failure != null
+                    || produced == totalChunks || ready.size() >= capacity) {
+                return;
+            }
+            filling = true;
+        }
+        try {
+            executor.execute(this::fill);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                filling = false;
+                failure = new IOException("Clipboard encryption could not be scheduled", e);
+            }
+        }
+    }
+
+    private void fill() {
+        try {
+            while (true) {
+                int length;
+                synchronized (this) {
+                    if (closed || produced == totalChunks || ready.size() >= capacity) {
+                        filling = false;
+                        return;
+                    }
+                    length = (int) Math.min(chunkSize, totalLength - (long) produced * chunkSize);
+                }
+                byte[] chunk = source.readNBytes(length);
+                if (chunk.length != length) {
+                    throw new IOException("encrypted clipboard ended early");
+                }
+                synchronized (this) {
+                    if (closed) {
+                        filling = false;
+                        return;
+                    }
+                    ready.addLast(chunk);
+                    produced++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                failure = e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+                filling = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the next encrypted chunk, or null when it is not ready yet, and keeps the worker
+     * reading ahead. Throws the worker's failure once every chunk read before it was taken.
+     */
+    byte[] next() throws IOException {
+        byte[] chunk;
+        synchronized (this) {
+            chunk = ready.pollFirst();
+            if (chunk == null && failure != null) {
+                throw failure;
+            }
+        }
+        prefetch();
+        return chunk;
+    }
+
+    int totalChunks() {
+        return totalChunks;
+    }
+
+    /** Stops reading ahead and drops buffered chunks. */
+    synchronized void close() {
+        closed = true;
+        ready.clear();
+    }
+}
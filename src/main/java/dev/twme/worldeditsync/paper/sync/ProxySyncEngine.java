@@ -1,7 +1,14 @@
 package dev.twme.worldeditsync.paper.sync;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -11,13 +18,20 @@ import org.bukkit.plugin.java.JavaPlugin;
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.config.TransferConfig;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
+import dev.twme.worldeditsync.common.metrics.TransferTrace;
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
 import dev.twme.worldeditsync.common.model.SyncState;
+import dev.twme.worldeditsync.common.protocol.ChunkPacing;
 import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
 import dev.twme.worldeditsync.common.protocol.ProtocolCodec;
 import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardManager;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardSerializer;
+import dev.twme.worldeditsync.paper.clipboard.SerializationService;
 import dev.twme.worldeditsync.paper.message.PluginMessageHandler;
+import dev.twme.worldeditsync.paper.storage.AppliedHashIndex;
+import dev.twme.worldeditsync.paper.storage.LocalClipboardCache;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress.Operation;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress.ProgressHandle;
@@ -28,6 +42,10 @@ import dev.twme.worldeditsync.paper.util.SchedulerUtil;
  */
 public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
 
+    private static final long APPLIED_HASH_FLUSH_TICKS = 600L;
+    // Pump passes worth of chunks encrypted ahead of the sender.
+    private static final int ENCRYPTED_PUMPS_AHEAD = 2;
+
     private final JavaPlugin plugin;
     private final ClipboardManager clipboardManager;
     private final ClipboardSerializer clipboardSerializer;
@@ -35,16 +53,39 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
     private final PluginMessageCodec pluginMessageCodec;
     private final TransferConfig transferConfig;
     private final ActionBarProgress actionBarProgress;
+    private final AppliedHashIndex appliedHashIndex;
+    private final LocalClipboardCache localCache;
+    private final SerializationService serializationService;
     private final Logger logger;
     private final ConcurrentHashMap<String, PendingUpload> pendingUploads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, CompletableFuture<Void>> memoryWaits = new ConcurrentHashMap<>();
     private final AtomicBoolean running = new AtomicBoolean();
 
     private PluginMessageHandler messageHandler;
+    private Object appliedHashFlushTask;
 
     public ProxySyncEngine(JavaPlugin plugin, ClipboardManager clipboardManager,
                            ClipboardSerializer clipboardSerializer, MessageCipher cipher,
                            PluginMessageCodec pluginMessageCodec, TransferConfig transferConfig,
                            ActionBarProgress actionBarProgress) {
+        this(plugin, clipboardManager, clipboardSerializer, cipher, pluginMessageCodec,
+                transferConfig, actionBarProgress, null, null, null);
+    }
+
+    /**
+     * @param appliedHashIndex persistent record of the clipboard each player last had applied,
+     *                         or null to always download after a restart
+     * @param localCache       local copies of applied clipboards used to restore them without a
+     *                         proxy download, or null when the local cache is disabled
+     * @param serializationService pool that decrypts and parses downloaded clipboards within the
+     *                         serialization CPU budget, or null to use the async scheduler
+     */
+    public ProxySyncEngine(JavaPlugin plugin, ClipboardManager clipboardManager,
+                           ClipboardSerializer clipboardSerializer, MessageCipher cipher,
+                           PluginMessageCodec pluginMessageCodec, TransferConfig transferConfig,
+                           ActionBarProgress actionBarProgress, AppliedHashIndex appliedHashIndex,
+                           LocalClipboardCache localCache,
+                           SerializationService serializationService) {
         this.plugin = plugin;
         this.clipboardManager = clipboardManager;
         this.clipboardSerializer = clipboardSerializer;
@@ -52,20 +93,52 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         this.pluginMessageCodec = pluginMessageCodec;
         this.transferConfig = transferConfig;
         this.actionBarProgress = actionBarProgress;
+        this.appliedHashIndex = appliedHashIndex;
+        this.localCache = localCache;
+        this.serializationService = serializationService;
         this.logger = plugin.getLogger();
     }
 
     @Override
     public void start() {
         running.set(true);
+        initializeRestoreState();
         plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, Constants.CHANNEL);
         messageHandler = new PluginMessageHandler(
                 plugin, clipboardManager, clipboardSerializer, cipher, pluginMessageCodec,
-                transferConfig, this, actionBarProgress);
+                transferConfig, this, actionBarProgress, appliedHashIndex, localCache,
+                serializationService);
         plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, Constants.CHANNEL, messageHandler);
         logger.info("Proxy sync engine started on channel: " + Constants.CHANNEL);
     }
 
+    private void initializeRestoreState() {
+        if (localCache != null) {
+            try {
+                localCache.initialize();
+            } catch (Exception e) {
+                logger.warning("Failed to open local clipboard cache: " + e.getMessage());
+            }
+        }
+        if (appliedHashIndex != null) {
+            try {
+                appliedHashIndex.initialize();
+            } catch (Exception e) {
+                logger.warning("Failed to load applied clipboard index: " + e.getMessage());
+            }
+            appliedHashFlushTask = SchedulerUtil.runAtFixedRateAsync(plugin,
+                    this::flushAppliedHashes, APPLIED_HASH_FLUSH_TICKS, APPLIED_HASH_FLUSH_TICKS);
+        }
+    }
+
+    private void flushAppliedHashes() {
+        try {
+            appliedHashIndex.flush();
+        } catch (Exception e) {
+            logger.warning("Failed to save applied clipboard index: " + e.getMessage());
+        }
+    }
+
     @Override
     public void shutdown() {
         running.set(false);
@@ -74,12 +147,19 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         if (messageHandler != null) {
             messageHandler.shutdown();
         }
+        memoryWaits.values().forEach(reservation -> reservation.cancel(false));
         pendingUploads.forEach((sessionId, upload) -> {
             if (pendingUploads.remove(sessionId, upload)) {
-                clipboardManager.releaseTransferMemory(upload.payload.length);
+                upload.chunks.close();
+                clipboardManager.releaseTransferMemory(upload.payloadLength);
                 upload.progress.cancel();
             }
         });
+        if (appliedHashIndex != null) {
+            SchedulerUtil.cancelTask(appliedHashFlushTask);
+            appliedHashFlushTask = null;
+            flushAppliedHashes();
+        }
         logger.info("Proxy sync engine shut down.");
     }
 
@@ -98,27 +178,149 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
             return;
         }
 
+        String traceKey = SyncMetrics.uploadTraceKey(playerId);
         if (data.length <= 0 || data.length > transferConfig.getMaxClipboardSize()) {
             logger.warning("Clipboard too large for " + player.getName() + ": " + data.length + " bytes");
+            SyncMetrics.TRACES.finish(traceKey, "too_large");
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
             return;
         }
 
-        int reservedBytes = Math.toIntExact((long) data.length
-                + (cipher.isEnabled() ? MessageCipher.ENCRYPTION_OVERHEAD_BYTES : 0L));
-        if (!clipboardManager.tryReserveTransferMemory(reservedBytes)) {
-            logger.warning("Clipboard upload is waiting because the transfer memory limit was reached for "
-                    + player.getName());
-            clipboardManager.forceSetState(playerId, SyncState.IDLE);
+        // Queue for transfer memory instead of retrying on every watcher tick; the player stays
+        // UPLOADING, so the watcher leaves them alone until the reservation is granted or the
+        // wait times out.
+        int reservedBytes = Math.toIntExact(cipher.encryptedSize(data.length));
+        CompletableFuture<Void> reservation = clipboardManager.reserveTransferMemory(reservedBytes);
+        if (reservation.isDone() && !reservation.isCompletedExceptionally()) {
+            startUpload(player, playerToken, data, hash, reservedBytes);
             return;
         }
+        // Set by whichever of the grant hand-off and the wait deadline gets there first.
+        AtomicBoolean settled = new AtomicBoolean();
+        if (!reservation.isDone()) {
+            logger.fine("Clipboard upload is waiting for transfer memory for " + player.getName());
+            SyncMetrics.TRACES.mark(traceKey, "memory_wait");
+            memoryWaits.put(playerId, reservation);
+            scheduleMemoryWaitDeadline(player, playerToken, reservation, settled, reservedBytes);
+        }
+        reservation.whenComplete((ignored, error) -> {
+            memoryWaits.remove(playerId, reservation);
+            if (error == null) {
+                SyncMetrics.TRACES.mark(traceKey, "memory_granted");
+                startQueuedUpload(player, playerToken, data, hash, reservedBytes, settled);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof CancellationException && settled.get()) {
+                logger.fine("Clipboard upload gave up waiting for transfer memory for " + player.getName());
+                SyncMetrics.TRACES.finish(traceKey, "memory_timeout");
+            } else if (cause instanceof CancellationException) {
+                SyncMetrics.TRACES.discard(traceKey);
+            } else {
+                logger.warning("Clipboard is larger than the transfer memory limit for " + player.getName()
+                        + ": " + reservedBytes + " bytes");
+                SyncMetrics.TRACES.finish(traceKey, "memory_full");
+            }
+            resetUploading(playerId, playerToken);
+        });
+    }
 
-        byte[] payload;
+    /**
+     * Gives up on a queued reservation after the session timeout, so a player is not held in
+     * UPLOADING indefinitely. Also covers a grant whose hand-off to the entity thread never ran.
+     */
+    private void scheduleMemoryWaitDeadline(Player player, Object playerToken,
+                                            CompletableFuture<Void> reservation,
+                                            AtomicBoolean settled, int reservedBytes) {
+        UUID playerId = player.getUniqueId();
+        Runnable deadline = () -> {
+            if (!settled.compareAndSet(false, true) || reservation.cancel(false)) {
+                return;
+            }
+            if (!reservation.isCompletedExceptionally()) {
+                abandonQueuedUpload(playerId, playerToken, reservedBytes, "memory_timeout");
+            }
+        };
         try {
-            payload = cipher.encrypt(data);
+            if (SchedulerUtil.runDelayedAsync(plugin, deadline, transferConfig.getSessionTimeoutMs()) == null) {
+                reservation.cancel(false);
+            }
+        } catch (RuntimeException e) {
+            reservation.cancel(false);
+        }
+    }
+
+    /**
+     * Starts an upload whose reservation was granted after queueing. The player may have replaced
+     * their clipboard while waiting, so the snapshot is only sent if they still hold it.
+     */
+    private void startQueuedUpload(Player player, Object playerToken, byte[] data, String hash,
+                                   int reservedBytes, AtomicBoolean settled) {
+        UUID playerId = player.getUniqueId();
+        Runnable check = () -> {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            if (!running.get()
+                    || !player.isOnline()
+                    || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)
+                    || !clipboardManager.isSerializedAs(
+                            playerId, clipboardSerializer.getPlayerClipboard(player), hash)) {
+                abandonQueuedUpload(playerId, playerToken, reservedBytes, "stale");
+                return;
+            }
+            try {
+                if (SchedulerUtil.runAsync(plugin,
+                        () -> startUpload(player, playerToken, data, hash, reservedBytes)) == null) {
+                    abandonQueuedUpload(playerId, playerToken, reservedBytes, "scheduler_unavailable");
+                }
+            } catch (RuntimeException e) {
+                abandonQueuedUpload(playerId, playerToken, reservedBytes, "scheduler_unavailable");
+            }
+        };
+        try {
+            if (SchedulerUtil.runOnEntityThread(plugin, player, check) == null
+                    && settled.compareAndSet(false, true)) {
+                abandonQueuedUpload(playerId, playerToken, reservedBytes, "scheduler_unavailable");
+            }
+        } catch (RuntimeException e) {
+            if (settled.compareAndSet(false, true)) {
+                abandonQueuedUpload(playerId, playerToken, reservedBytes, "scheduler_unavailable");
+            }
+        }
+    }
+
+    private void abandonQueuedUpload(UUID playerId, Object playerToken, int reservedBytes, String outcome) {
+        clipboardManager.releaseTransferMemory(reservedBytes);
+        SyncMetrics.TRACES.finish(SyncMetrics.uploadTraceKey(playerId), outcome);
+        resetUploading(playerId, playerToken);
+    }
+
+    /** Returns a player whose upload never started to IDLE so the watcher checks them again. */
+    private void resetUploading(UUID playerId, Object playerToken) {
+        if (clipboardManager.isCurrentPlayerToken(playerId, playerToken)
+                && clipboardManager.getState(playerId) == SyncState.UPLOADING) {
+            clipboardManager.forceSetState(playerId, SyncState.IDLE);
+        }
+    }
+
+    /** Sends UPLOAD_BEGIN once {@code reservedBytes} of transfer memory are held for the upload. */
+    private void startUpload(Player player, Object playerToken, byte[] data, String hash, int reservedBytes) {
+        UUID playerId = player.getUniqueId();
+        String traceKey = SyncMetrics.uploadTraceKey(playerId);
+
+        // Chunks are encrypted on the async pool a little ahead of the pump, so UPLOAD_BEGIN
+        // goes out before any crypto work and the entity thread only frames and sends.
+        int chunkSize = transferConfig.getChunkSize();
+        ChunkPrefetcher chunks;
+        try {
+            InputStream ciphertext = cipher.encryptingStream(new ByteArrayInputStream(data));
+            chunks = new ChunkPrefetcher(ciphertext, reservedBytes, chunkSize,
+                    Math.max(1, chunksPerPump()) * ENCRYPTED_PUMPS_AHEAD, asyncExecutor());
         } catch (Exception e) {
             clipboardManager.releaseTransferMemory(reservedBytes);
             logger.warning("Clipboard encryption failed for " + player.getName() + ": " + e.getMessage());
+            SyncMetrics.TRACES.finish(traceKey, "failed");
             if (clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
                 clipboardManager.forgetClipboard(playerId);
                 clipboardManager.forceSetState(playerId, SyncState.IDLE);
@@ -126,48 +328,48 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
             return;
         }
 
-        if (payload.length != reservedBytes) {
-            clipboardManager.releaseTransferMemory(reservedBytes);
-            logger.warning("Clipboard encryption produced an unexpected size for " + player.getName());
-            clipboardManager.forceSetState(playerId, SyncState.IDLE);
-            return;
-        }
-
         if (!running.get()
                 || !player.isOnline()
                 || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)
                 || clipboardManager.getState(playerId) != SyncState.UPLOADING) {
-            clipboardManager.releaseTransferMemory(payload.length);
+            clipboardManager.releaseTransferMemory(reservedBytes);
             return;
         }
 
-        int chunkSize = transferConfig.getChunkSize();
-        int totalChunks = (int) Math.ceil((double) payload.length / chunkSize);
+        SyncMetrics.TRACES.mark(traceKey, "encrypt_ready");
+        int totalChunks = chunks.totalChunks();
         String sessionId = UUID.randomUUID().toString();
+        TransferTrace trace = SyncMetrics.TRACES.get(traceKey);
+        if (trace != null) {
+            trace.setSessionId(sessionId);
+        }
 
         clipboardManager.setActiveSessionId(playerId, sessionId);
         ProgressHandle progress = actionBarProgress.begin(player, Operation.UPLOAD);
         PendingUpload pendingUpload = new PendingUpload(
-                playerId, payload, totalChunks, hash, progress);
+                playerId, chunks, reservedBytes, totalChunks, hash, progress);
         pendingUploads.put(sessionId, pendingUpload);
+        chunks.prefetch();
 
         if (!running.get()
                 || !player.isOnline()
                 || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)
                 || clipboardManager.getState(playerId) != SyncState.UPLOADING) {
             if (pendingUploads.remove(sessionId, pendingUpload)) {
-                clipboardManager.releaseTransferMemory(payload.length);
+                chunks.close();
+                clipboardManager.releaseTransferMemory(reservedBytes);
                 progress.cancel();
             }
             return;
         }
 
         byte[] beginMsg = pluginMessageCodec.encode(
-                ProtocolCodec.encodeUploadBegin(sessionId, payload.length, totalChunks, hash));
+                ProtocolCodec.encodeUploadBegin(sessionId, reservedBytes, totalChunks, hash));
         try {
             Object beginTask = SchedulerUtil.runOnEntityThread(plugin, player, () -> {
                 if (player.isOnline() && sessionId.equals(clipboardManager.getActiveSessionId(playerId))) {
                     player.sendPluginMessage(plugin, Constants.CHANNEL, beginMsg);
+                    SyncMetrics.TRACES.mark(traceKey, "begin");
                 }
             });
             Object timeoutTask = SchedulerUtil.runDelayedAsync(
@@ -182,10 +384,37 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
             failUpload(pendingUpload, sessionId);
             return;
         }
+        rememberLocally(player, data, hash);
         logger.info("Clipboard upload started for " + player.getName()
                 + " (session: " + sessionId + ", " + data.length + " bytes)");
     }
 
+    @Override
+    public void uploadTransform(Player player, String remoteHash, ClipboardTransform transform) {
+        UUID playerId = player.getUniqueId();
+        if (!running.get() || !player.isOnline() || !ProtocolValidation.isSha256(remoteHash)) {
+            return;
+        }
+        // A few bytes replace a full re-upload; the proxy ignores it if the hash is stale.
+        player.sendPluginMessage(plugin, Constants.CHANNEL, pluginMessageCodec.encode(
+                ProtocolCodec.encodeTransformUpdate(remoteHash, transform)));
+        clipboardManager.setRemoteTransform(playerId, remoteHash, transform);
+        logger.fine("Clipboard transform synced for " + player.getName());
+    }
+
+    /** Keep the plaintext so a restarted server can restore it once the proxy accepts it. */
+    private void rememberLocally(Player player, byte[] data, String hash) {
+        if (localCache == null || appliedHashIndex == null) {
+            return;
+        }
+        try {
+            localCache.store(hash, data);
+        } catch (Exception e) {
+            logger.fine("Could not cache clipboard locally for " + player.getName()
+                    + ": " + e.getMessage());
+        }
+    }
+
     @Override
     public void onUploadReady(Player player, String sessionId) {
         UUID playerId = player.getUniqueId();
@@ -198,6 +427,7 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         }
 
         upload.touch();
+        SyncMetrics.TRACES.mark(SyncMetrics.uploadTraceKey(playerId), "proxy_ready");
         sendChunks(player, sessionId, upload);
     }
 
@@ -223,19 +453,24 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         try {
             int chunksPerTick = chunksPerPump();
             for (int sent = 0; sent < chunksPerTick && upload.nextChunkIndex < upload.totalChunks; sent++) {
+                byte[] chunk = upload.chunks.next();
+                if (chunk == null) {
+                    // Encryption has not caught up; the next pass sends what is ready by then.
+                    break;
+                }
                 int chunkIndex = upload.nextChunkIndex++;
-                int offset = chunkIndex * transferConfig.getChunkSize();
-                int length = Math.min(transferConfig.getChunkSize(), upload.payload.length - offset);
-                byte[] chunk = new byte[length];
-                System.arraycopy(upload.payload, offset, chunk, 0, length);
 
                 byte[] chunkMsg = pluginMessageCodec.encode(
                         ProtocolCodec.encodeUploadChunk(sessionId, chunkIndex, chunk));
                 player.sendPluginMessage(plugin, Constants.CHANNEL, chunkMsg);
+                SyncMetrics.UPLOAD_CHUNKS.increment();
+                SyncMetrics.UPLOAD_BYTES.add(chunk.length);
                 upload.touch();
             }
 
             upload.progress.update((double) upload.nextChunkIndex / upload.totalChunks);
+            SyncMetrics.TRACES.progress(SyncMetrics.uploadTraceKey(upload.playerId),
+                    upload.nextChunkIndex, upload.totalChunks);
 
             if (upload.nextChunkIndex < upload.totalChunks) {
                 if (SchedulerUtil.runDelayedOnEntityThread(
@@ -250,16 +485,20 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         }
     }
 
+    private Executor asyncExecutor() {
+        return task -> {
+            if (SchedulerUtil.runAsync(plugin, task) == null) {
+                throw new RejectedExecutionException("Async scheduler rejected clipboard encryption");
+            }
+        };
+    }
+
     private int chunksPerPump() {
-        long delayMs = transferConfig.getChunkSendDelayMs();
-        if (delayMs <= 0) {
-            return Constants.MAX_CHUNKS_PER_TICK;
-        }
-        return Math.max(1, Math.min(Constants.MAX_CHUNKS_PER_TICK, (int) (50L / delayMs)));
+        return ChunkPacing.chunksPerPump(transferConfig.getChunkSendDelayMs());
     }
 
     private long pumpDelayTicks() {
-        return Math.max(1L, (transferConfig.getChunkSendDelayMs() + 49L) / 50L);
+        return ChunkPacing.pumpDelayTicks(transferConfig.getChunkSendDelayMs());
     }
 
     @Override
@@ -273,10 +512,17 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         if (!pendingUploads.remove(sessionId, upload)) {
             return;
         }
-        clipboardManager.releaseTransferMemory(upload.payload.length);
+        upload.chunks.close();
+        clipboardManager.releaseTransferMemory(upload.payloadLength);
         upload.progress.complete();
+        SyncMetrics.UPLOADS_COMPLETED.increment();
+        SyncMetrics.UPLOAD_TIME.recordSince(upload.startedAtNanos);
+        finishTrace(playerId, sessionId, "completed");
         if (sessionId.equals(clipboardManager.getActiveSessionId(playerId))) {
             clipboardManager.markUploadedClipboard(playerId, upload.hash);
+            if (appliedHashIndex != null) {
+                appliedHashIndex.record(playerId, upload.hash, upload.hash);
+            }
             clipboardManager.clearActiveSession(playerId);
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
         }
@@ -345,8 +591,11 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         if (!pendingUploads.remove(sessionId, upload)) {
             return false;
         }
-        clipboardManager.releaseTransferMemory(upload.payload.length);
+        upload.chunks.close();
+        clipboardManager.releaseTransferMemory(upload.payloadLength);
         upload.progress.fail();
+        SyncMetrics.UPLOADS_FAILED.increment();
+        finishTrace(upload.playerId, sessionId, "failed");
         if (sessionId.equals(clipboardManager.getActiveSessionId(upload.playerId))) {
             clipboardManager.clearActiveSession(upload.playerId);
             clipboardManager.forgetClipboard(upload.playerId);
@@ -355,6 +604,15 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         return true;
     }
 
+    /** Ends the player's upload trace if it still belongs to {@code sessionId}. */
+    private void finishTrace(UUID playerId, String sessionId, String outcome) {
+        String traceKey = SyncMetrics.uploadTraceKey(playerId);
+        TransferTrace trace = SyncMetrics.TRACES.get(traceKey);
+        if (trace != null && sessionId.equals(trace.getSessionId())) {
+            SyncMetrics.TRACES.finish(traceKey, outcome);
+        }
+    }
+
     @Override
     public void onPlayerJoinServer(Player player) {
         if (!running.get()) {
@@ -408,7 +666,8 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
             if (sessionId != null) {
                 PendingUpload removed = pendingUploads.remove(sessionId);
                 if (removed != null) {
-                    clipboardManager.releaseTransferMemory(removed.payload.length);
+                    removed.chunks.close();
+                    clipboardManager.releaseTransferMemory(removed.payloadLength);
                     removed.progress.cancel();
                 }
                 byte[] cancelMsg = pluginMessageCodec.encode(
@@ -424,6 +683,11 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
         if (messageHandler != null) {
             messageHandler.removePlayer(playerId);
         }
+        CompletableFuture<Void> reservation = memoryWaits.remove(playerId);
+        if (reservation != null) {
+            reservation.cancel(false);
+        }
+        SyncMetrics.TRACES.discard(SyncMetrics.uploadTraceKey(playerId));
         actionBarProgress.removePlayer(playerId);
         clipboardManager.removePlayer(playerId);
     }
@@ -434,18 +698,21 @@ public class ProxySyncEngine implements SyncEngine, UploadSessionListener {
 
     private static final class PendingUpload {
         private final UUID playerId;
-        private final byte[] payload;
+        private final ChunkPrefetcher chunks;
+        private final int payloadLength;
         private final int totalChunks;
         private final String hash;
         private final ProgressHandle progress;
         private final AtomicBoolean started = new AtomicBoolean();
+        private final long startedAtNanos = System.nanoTime();
         private volatile long lastActivityAt = System.currentTimeMillis();
         private int nextChunkIndex;
 
-        private PendingUpload(UUID playerId, byte[] payload, int totalChunks, String hash,
-                              ProgressHandle progress) {
+        private PendingUpload(UUID playerId, ChunkPrefetcher chunks, int payloadLength,
+                              int totalChunks, String hash, ProgressHandle progress) {
             this.playerId = playerId;
-            this.payload = payload;
+            this.chunks = chunks;
+            this.payloadLength = payloadLength;
             this.totalChunks = totalChunks;
             this.hash = hash;
             this.progress = progress;
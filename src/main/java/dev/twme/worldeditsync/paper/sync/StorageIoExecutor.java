@@ -0,0 +1,51 @@
+package dev.twme.worldeditsync.paper.sync;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs blocking storage calls on virtual threads instead of the server's shared async pool.
+ * A slot must be held for each call; the number of slots is the backend's own concurrency
+ * limit, so a slow database or object store can never tie up more connections than it has.
+ */
+final class StorageIoExecutor implements AutoCloseable {
+
+    private final Semaphore slots;
+    private final ExecutorService executor;
+
+    StorageIoExecutor(String backend, int maxConcurrentCalls) {
+        this.slots = new Semaphore(Math.max(1, maxConcurrentCalls));
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("WorldEditSync-" + backend + "-IO-", 0L).factory());
+    }
+
+    boolean tryAcquire() {
+        return slots.tryAcquire();
+    }
+
+    void release() {
+        slots.release();
+    }
+
+    /** Starts {@code task} on its own virtual thread, or returns false after {@link #close()}. */
+    boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    int availableSlots() {
+        return slots.availablePermits();
+    }
+
+    /** Rejects new calls; calls already running finish on their own. */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -1,9 +1,12 @@
 package dev.twme.worldeditsync.paper.sync;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.UUID;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
@@ -14,11 +17,13 @@ import org.bukkit.plugin.java.JavaPlugin;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 
 import dev.twme.worldeditsync.common.config.TransferConfig;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
 import dev.twme.worldeditsync.common.model.SyncState;
 import dev.twme.worldeditsync.common.protocol.ProtocolValidation;
 import dev.twme.worldeditsync.common.util.HashUtil;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardManager;
 import dev.twme.worldeditsync.paper.clipboard.ClipboardSerializer;
+import dev.twme.worldeditsync.paper.clipboard.SerializationService;
 import dev.twme.worldeditsync.common.storage.ClipboardStorage;
 import dev.twme.worldeditsync.common.storage.StoredClipboard;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress;
@@ -41,7 +46,8 @@ public class StorageSyncEngine implements SyncEngine {
     private final ActionBarProgress actionBarProgress;
     private final Logger logger;
     private final Object lifecycleLock = new Object();
-    private final Semaphore workerSlots = new Semaphore(2);
+    private final StorageIoExecutor io;
+    private final SerializationService serialization;
     private final AtomicBoolean running = new AtomicBoolean();
     private final AtomicBoolean ready = new AtomicBoolean();
     private final AtomicBoolean scanPending = new AtomicBoolean();
@@ -55,11 +61,14 @@ public class StorageSyncEngine implements SyncEngine {
     public StorageSyncEngine(JavaPlugin plugin, ClipboardManager clipboardManager,
                              ClipboardSerializer clipboardSerializer, ClipboardStorage storage,
                              TransferConfig transferConfig, int checkIntervalTicks,
-                             ActionBarProgress actionBarProgress) {
+                             ActionBarProgress actionBarProgress,
+                             SerializationService serialization) {
         this.plugin = plugin;
         this.clipboardManager = clipboardManager;
         this.clipboardSerializer = clipboardSerializer;
         this.storage = storage;
+        this.io = new StorageIoExecutor(storage.description(), storage.maxConcurrentCalls());
+        this.serialization = serialization;
         this.transferConfig = transferConfig;
         this.checkIntervalTicks = Math.max(1, checkIntervalTicks);
         this.actionBarProgress = actionBarProgress;
@@ -166,6 +175,7 @@ public class StorageSyncEngine implements SyncEngine {
         }
         SchedulerUtil.cancelTask(pendingInitialization);
         SchedulerUtil.cancelTask(activeWatcher);
+        io.close();
         inspectionsPending.clear();
         try {
             storage.close();
@@ -190,17 +200,19 @@ public class StorageSyncEngine implements SyncEngine {
                 && !clipboardManager.compareAndSetState(playerId, SyncState.IDLE, SyncState.UPLOADING)) {
             return;
         }
-        if (!workerSlots.tryAcquire()) {
+        if (!io.tryAcquire()) {
+            SyncMetrics.workerSlotRejections("upload").increment();
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
             return;
         }
 
         String playerName = player.getName();
+        SyncMetrics.TRACES.start(traceKey(playerId), "upload", playerId, null);
         ProgressHandle progress = actionBarProgress.begin(player, Operation.UPLOAD);
         try {
-            if (SchedulerUtil.runAsync(plugin,
+            if (!io.execute(
                     () -> uploadSerializedClipboard(
-                            playerId, playerToken, playerName, data, hash, progress)) == null) {
+                            playerId, playerToken, playerName, data, hash, progress))) {
                 progress.fail();
                 finishWorker(playerId, playerToken);
             }
@@ -219,6 +231,7 @@ public class StorageSyncEngine implements SyncEngine {
     @Override
     public void onPlayerQuit(Player player) {
         inspectionsPending.remove(player.getUniqueId());
+        SyncMetrics.TRACES.discard(traceKey(player.getUniqueId()));
         actionBarProgress.removePlayer(player.getUniqueId());
         clipboardManager.removePlayer(player.getUniqueId());
     }
@@ -346,20 +359,23 @@ public class StorageSyncEngine implements SyncEngine {
             resetCheck(playerId, playerToken);
             return;
         }
-        if (!workerSlots.tryAcquire()) {
+        if (!io.tryAcquire()) {
+            SyncMetrics.workerSlotRejections("sync").increment();
             resetCheck(playerId, playerToken);
             return;
         }
 
+        // The reset helpers discard it if the check finds nothing to transfer.
+        SyncMetrics.TRACES.start(traceKey(playerId), "sync", playerId, null);
         try {
-            if (SchedulerUtil.runAsync(plugin,
+            if (!io.execute(
                     () -> synchronizePlayer(
-                            player, playerId, playerToken, playerName, expectedClipboard)) == null) {
-                workerSlots.release();
+                            player, playerId, playerToken, playerName, expectedClipboard))) {
+                io.release();
                 resetCheck(playerId, playerToken);
             }
         } catch (RuntimeException e) {
-            workerSlots.release();
+            io.release();
             resetCheck(playerId, playerToken);
             throw e;
         }
@@ -368,44 +384,93 @@ public class StorageSyncEngine implements SyncEngine {
     private void synchronizePlayer(Player player, UUID playerId, Object playerToken,
                                    String playerName,
                                    Clipboard clipboard) {
+        // Only storage calls hold the I/O slot; serializing and parsing go to the CPU-bounded
+        // serialization service.
         boolean callbackScheduled = false;
+        String traceKey = traceKey(playerId);
         try {
-            if (!running.get()
-                    || !player.isOnline()
-                    || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
-                return;
-            }
-            if (!ready.get()) {
-                return;
-            }
-            StoredClipboard remote = storage.inspect(playerId.toString());
-            if (remote.exists() && !ProtocolValidation.isSha256(remote.hash())) {
-                throw new SecurityException(storage.description() + " clipboard hash metadata is invalid");
-            }
+            StoredClipboard remote;
+            String knownRemoteHash;
+            try {
+                SyncMetrics.TRACES.mark(traceKey, "io_slot");
+                if (!running.get()
+                        || !player.isOnline()
+                        || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
+                    return;
+                }
+                if (!ready.get()) {
+                    return;
+                }
+                remote = storage.inspect(playerId.toString());
+                SyncMetrics.TRACES.mark(traceKey, "inspect");
+                if (remote.exists() && !ProtocolValidation.isSha256(remote.hash())) {
+                    throw new SecurityException(storage.description() + " clipboard hash metadata is invalid");
+                }
 
-            String knownRemoteHash = clipboardManager.getRemoteHash(playerId);
-            if (remote.exists()
-                    && (knownRemoteHash == null
-                    || !remote.hash().equalsIgnoreCase(knownRemoteHash))) {
-                callbackScheduled = downloadRemoteClipboard(
-                        player, playerId, playerToken, playerName, clipboard, remote);
-                return;
+                knownRemoteHash = clipboardManager.getRemoteHash(playerId);
+                if (remote.exists()
+                        && (knownRemoteHash == null
+                        || !remote.hash().equalsIgnoreCase(knownRemoteHash))) {
+                    callbackScheduled = downloadRemoteClipboard(
+                            player, playerId, playerToken, playerName, clipboard, remote);
+                    return;
+                }
+            } finally {
+                io.release();
             }
 
             if (clipboard == null) {
                 return;
             }
-            String localHash = clipboardManager.getLocalHash(playerId);
             if (remote.exists() && remote.hash().equalsIgnoreCase(knownRemoteHash)
                     && clipboardManager.isSerializedClipboard(playerId, clipboard)) {
                 return;
             }
 
+            // A failed or refused upload of the same clipboard reuses its earlier bytes.
+            ClipboardManager.SerializedBytes cached =
+                    clipboardManager.getSerializedBytes(playerId, clipboard);
+            if (cached != null) {
+                clipboardManager.markSerializedClipboard(playerId, clipboard, cached.hash());
+                callbackScheduled = continueUpload(player, playerId, playerToken, playerName,
+                        clipboard, remote, cached.data(), cached.hash());
+                return;
+            }
+            callbackScheduled = serialization.submit(clipboard.getRegion().getVolume(),
+                    () -> serializeForUpload(
+                            player, playerId, playerToken, playerName, clipboard, remote),
+                    () -> resetSynchronization(playerId, playerToken));
+            if (!callbackScheduled) {
+                SyncMetrics.SERIALIZE_REJECTIONS.increment();
+            }
+        } catch (Exception e) {
+            SyncMetrics.TRACES.finish(traceKey, "failed");
+            logOperationalFailure(storage.description() + " sync failed for " + playerName, e);
+        } finally {
+            if (!callbackScheduled) {
+                resetSynchronization(playerId, playerToken);
+            }
+        }
+    }
+
+    /** Runs on the serialization service; a queued job may start well after it was submitted. */
+    private void serializeForUpload(Player player, UUID playerId, Object playerToken,
+                                    String playerName, Clipboard clipboard, StoredClipboard remote) {
+        boolean callbackScheduled = false;
+        String traceKey = traceKey(playerId);
+        try {
+            if (!running.get() || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
+                return;
+            }
+            SyncMetrics.TRACES.mark(traceKey, "serialize_slot");
             byte[] serialized;
             try {
+                long start = System.nanoTime();
                 serialized = clipboardSerializer.serialize(
                         clipboard, transferConfig.getMaxClipboardSize(),
                         transferConfig.getMaxClipboardBlocks());
+                SyncMetrics.SERIALIZE_TIME.recordSince(start);
+                SyncMetrics.TRACES.mark(traceKey, "serialize");
             } catch (Exception e) {
                 callbackScheduled = scheduleEntityContinuation(
                         player, playerId, playerToken,
@@ -416,29 +481,38 @@ public class StorageSyncEngine implements SyncEngine {
             if (serialized.length > transferConfig.getMaxClipboardSize()) {
                 logger.warning("Clipboard too large for " + storage.description() + " sync for " + playerName
                         + ": " + serialized.length + " bytes");
+                SyncMetrics.TRACES.finish(traceKey, "too_large");
                 return;
             }
             String hash = HashUtil.sha256Hex(serialized);
-            clipboardManager.markSerializedClipboard(playerId, clipboard, hash);
-            if (remote.exists() && hash.equalsIgnoreCase(localHash)) {
-                return;
-            }
-
-            callbackScheduled = scheduleEntityContinuation(
-                    player, playerId, playerToken,
-                    () -> uploadIfCurrent(
-                            player, playerId, playerToken, playerName,
-                            clipboard, serialized, hash));
-        } catch (Exception e) {
+            SyncMetrics.TRACES.mark(traceKey, "hash");
+            clipboardManager.markSerializedClipboard(playerId, clipboard, hash, serialized);
+            callbackScheduled = continueUpload(
+                    player, playerId, playerToken, playerName, clipboard, remote, serialized, hash);
+        } catch (RuntimeException e) {
+            SyncMetrics.TRACES.finish(traceKey, "failed");
             logOperationalFailure(storage.description() + " sync failed for " + playerName, e);
         } finally {
-            workerSlots.release();
             if (!callbackScheduled) {
                 resetSynchronization(playerId, playerToken);
             }
         }
     }
 
+    /** Returns false, scheduling nothing, when storage already holds these bytes. */
+    private boolean continueUpload(Player player, UUID playerId, Object playerToken,
+                                   String playerName, Clipboard clipboard, StoredClipboard remote,
+                                   byte[] serialized, String hash) {
+        if (remote.exists() && hash.equalsIgnoreCase(clipboardManager.getLocalHash(playerId))) {
+            return false;
+        }
+        return scheduleEntityContinuation(
+                player, playerId, playerToken,
+                () -> uploadIfCurrent(
+                        player, playerId, playerToken, playerName,
+                        clipboard, serialized, hash));
+    }
+
     private void uploadIfCurrent(Player player, UUID playerId,
                                  Object playerToken, String playerName,
                                  Clipboard expectedClipboard, byte[] serialized, String hash) {
@@ -448,21 +522,22 @@ public class StorageSyncEngine implements SyncEngine {
             resetCheck(playerId, playerToken);
             return;
         }
-        if (!workerSlots.tryAcquire()) {
+        if (!io.tryAcquire()) {
+            SyncMetrics.workerSlotRejections("upload").increment();
             resetCheck(playerId, playerToken);
             return;
         }
         if (!clipboardManager.compareAndSetState(
                 playerId, SyncState.CHECKING, SyncState.UPLOADING)) {
-            workerSlots.release();
+            io.release();
             return;
         }
 
         ProgressHandle progress = actionBarProgress.begin(player, Operation.UPLOAD);
         try {
-            if (SchedulerUtil.runAsync(plugin,
+            if (!io.execute(
                     () -> uploadSerializedClipboard(
-                            playerId, playerToken, playerName, serialized, hash, progress)) == null) {
+                            playerId, playerToken, playerName, serialized, hash, progress))) {
                 progress.fail();
                 finishWorker(playerId, playerToken);
             }
@@ -476,13 +551,17 @@ public class StorageSyncEngine implements SyncEngine {
     private void uploadSerializedClipboard(UUID playerId, Object playerToken,
                                            String playerName, byte[] data, String hash,
                                            ProgressHandle progress) {
+        String traceKey = traceKey(playerId);
         try {
             if (!running.get() || !ready.get()
                     || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
                 progress.cancel();
                 return;
             }
-            storage.upload(playerId.toString(), data, hash, System.currentTimeMillis());
+            SyncMetrics.TRACES.mark(traceKey, "upload_slot");
+            storage.upload(playerId.toString(), new ByteArrayInputStream(data), data.length,
+                    hash, System.currentTimeMillis());
+            SyncMetrics.TRACES.mark(traceKey, "upload");
             if (!running.get()
                     || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
                 progress.cancel();
@@ -490,9 +569,11 @@ public class StorageSyncEngine implements SyncEngine {
             }
             clipboardManager.markUploadedClipboard(playerId, hash);
             progress.complete();
+            SyncMetrics.TRACES.finish(traceKey, "completed");
             logger.fine("Uploaded clipboard to " + storage.description() + " for " + playerName);
         } catch (Exception e) {
             progress.fail();
+            SyncMetrics.TRACES.finish(traceKey, "failed");
             logOperationalFailure(storage.description() + " upload failed for " + playerName, e);
         } finally {
             finishWorker(playerId, playerToken);
@@ -506,12 +587,14 @@ public class StorageSyncEngine implements SyncEngine {
                 != expectedClipboard;
         clipboardManager.clearSerializedClipboard(playerId, expectedClipboard);
         if (!clipboardWasReplaced && clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
+            SyncMetrics.TRACES.finish(traceKey(playerId), "failed");
             logOperationalFailure(storage.description() + " clipboard serialization failed for "
                     + playerName, exception);
         }
         resetCheck(playerId, playerToken);
     }
 
+    /** Called with the I/O slot held; parsing is handed to the serialization service. */
     private boolean downloadRemoteClipboard(Player player,
                                             UUID playerId, Object playerToken,
                                             String playerName, Clipboard expectedClipboard,
@@ -525,51 +608,103 @@ public class StorageSyncEngine implements SyncEngine {
 
         ProgressHandle progress = actionBarProgress.begin(player, Operation.DOWNLOAD);
         try {
-            byte[] data = storage.download(playerId.toString(), remote);
-            String actualHash = HashUtil.sha256Hex(data);
+            // Hash while the backend streams so the payload is only traversed once before parsing.
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                    (int) Math.min(remote.storedSize(), transferConfig.getMaxClipboardSize()));
+            storage.download(playerId.toString(), remote, new DigestOutputStream(buffer, digest));
+            byte[] data = buffer.toByteArray();
+            String actualHash = HashUtil.bytesToHex(digest.digest());
             if (!actualHash.equalsIgnoreCase(remote.hash())) {
                 throw new SecurityException(storage.description() + " clipboard hash mismatch");
             }
+            SyncMetrics.TRACES.mark(traceKey(playerId), "download");
+            boolean scheduled = serialization.submit(data.length,
+                    () -> parseDownloadedClipboard(player, playerId, playerToken, playerName,
+                            expectedClipboard, data, actualHash, progress),
+                    () -> {
+                        progress.cancel();
+                        resetSynchronization(playerId, playerToken);
+                    });
+            if (!scheduled) {
+                SyncMetrics.SERIALIZE_REJECTIONS.increment();
+                progress.cancel();
+            }
+            return scheduled;
+        } catch (Exception e) {
+            progress.fail();
+            throw e;
+        }
+    }
+
+    /** Runs on the serialization service; a queued job may start well after it was submitted. */
+    private void parseDownloadedClipboard(Player player, UUID playerId, Object playerToken,
+                                          String playerName, Clipboard expectedClipboard,
+                                          byte[] data, String remoteHash, ProgressHandle progress) {
+        boolean callbackScheduled = false;
+        String traceKey = traceKey(playerId);
+        try {
+            if (!running.get() || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)) {
+                progress.cancel();
+                return;
+            }
+            SyncMetrics.TRACES.mark(traceKey, "parse_slot");
             Clipboard downloaded = clipboardSerializer.deserialize(
                     data, transferConfig.getMaxClipboardSize(),
                     transferConfig.getMaxClipboardBlocks());
+            SyncMetrics.TRACES.mark(traceKey, "parse");
             String localHash = HashUtil.sha256Hex(clipboardSerializer.serialize(
                     downloaded, transferConfig.getMaxClipboardSize(),
                     transferConfig.getMaxClipboardBlocks()));
-            boolean scheduled = scheduleEntityContinuation(player, playerId, playerToken, () -> {
-                if (!running.get()
-                        || !player.isOnline()
-                        || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)
-                        || clipboardManager.getState(playerId) != SyncState.DOWNLOADING
-                        || clipboardSerializer.getPlayerClipboard(player) != expectedClipboard) {
-                    progress.cancel();
-                    if (clipboardManager.isCurrentPlayerToken(playerId, playerToken)
-                            && clipboardManager.getState(playerId) == SyncState.DOWNLOADING) {
-                        clipboardManager.forceSetState(playerId, SyncState.IDLE);
-                    }
-                    return;
-                }
-                try {
-                    clipboardSerializer.setPlayerClipboard(player, downloaded);
-                    clipboardManager.markDownloadedClipboard(
-                            playerId, downloaded, actualHash, localHash);
-                    progress.complete();
-                    logger.info("Clipboard synced from " + storage.description() + " for " + playerName);
-                } catch (Exception e) {
-                    progress.fail();
-                    logger.severe("Failed to apply " + storage.description() + " clipboard for "
-                            + playerName + ": " + e.getMessage());
-                } finally {
-                    clipboardManager.forceSetState(playerId, SyncState.IDLE);
-                }
-            });
-            if (!scheduled) {
+            SyncMetrics.TRACES.mark(traceKey, "local_hash");
+            callbackScheduled = scheduleEntityContinuation(player, playerId, playerToken,
+                    () -> applyDownloadedClipboard(player, playerId, playerToken, playerName,
+                            expectedClipboard, downloaded, remoteHash, localHash, progress));
+            if (!callbackScheduled) {
                 progress.cancel();
             }
-            return scheduled;
         } catch (Exception e) {
             progress.fail();
-            throw e;
+            SyncMetrics.TRACES.finish(traceKey, "failed");
+            logOperationalFailure(storage.description() + " sync failed for " + playerName, e);
+        } finally {
+            if (!callbackScheduled) {
+                resetSynchronization(playerId, playerToken);
+            }
+        }
+    }
+
+    private void applyDownloadedClipboard(Player player, UUID playerId, Object playerToken,
+                                          String playerName, Clipboard expectedClipboard,
+                                          Clipboard downloaded, String remoteHash, String localHash,
+                                          ProgressHandle progress) {
+        if (!running.get()
+                || !player.isOnline()
+                || !clipboardManager.isCurrentPlayerToken(playerId, playerToken)
+                || clipboardManager.getState(playerId) != SyncState.DOWNLOADING
+                || clipboardSerializer.getPlayerClipboard(player) != expectedClipboard) {
+            progress.cancel();
+            if (clipboardManager.isCurrentPlayerToken(playerId, playerToken)
+                    && clipboardManager.getState(playerId) == SyncState.DOWNLOADING) {
+                SyncMetrics.TRACES.discard(traceKey(playerId));
+                clipboardManager.forceSetState(playerId, SyncState.IDLE);
+            }
+            return;
+        }
+        try {
+            clipboardSerializer.setPlayerClipboard(player, downloaded);
+            clipboardManager.markDownloadedClipboard(
+                    playerId, downloaded, remoteHash, localHash);
+            progress.complete();
+            SyncMetrics.TRACES.finish(traceKey(playerId), "completed");
+            logger.info("Clipboard synced from " + storage.description() + " for " + playerName);
+        } catch (Exception e) {
+            progress.fail();
+            SyncMetrics.TRACES.finish(traceKey(playerId), "failed");
+            logger.severe("Failed to apply " + storage.description() + " clipboard for "
+                    + playerName + ": " + e.getMessage());
+        } finally {
+            clipboardManager.forceSetState(playerId, SyncState.IDLE);
         }
     }
 
@@ -584,6 +719,7 @@ public class StorageSyncEngine implements SyncEngine {
     private void resetCheck(UUID playerId, Object playerToken) {
         if (clipboardManager.isCurrentPlayerToken(playerId, playerToken)
                 && clipboardManager.getState(playerId) == SyncState.CHECKING) {
+            SyncMetrics.TRACES.discard(traceKey(playerId));
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
         }
     }
@@ -596,12 +732,14 @@ public class StorageSyncEngine implements SyncEngine {
         if (state == SyncState.CHECKING
                 || state == SyncState.UPLOADING
                 || state == SyncState.DOWNLOADING) {
+            // Finished traces are already recorded; anything left was abandoned.
+            SyncMetrics.TRACES.discard(traceKey(playerId));
             clipboardManager.forceSetState(playerId, SyncState.IDLE);
         }
     }
 
     private void finishWorker(UUID playerId, Object playerToken) {
-        workerSlots.release();
+        io.release();
         resetSynchronization(playerId, playerToken);
     }
 
@@ -622,4 +760,8 @@ public class StorageSyncEngine implements SyncEngine {
             logger.warning(context + ": " + exception.getMessage());
         }
     }
+
+    private static String traceKey(UUID playerId) {
+        return "sync/" + playerId;
+    }
 }
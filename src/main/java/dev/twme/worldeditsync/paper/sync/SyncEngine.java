@@ -2,6 +2,8 @@ package dev.twme.worldeditsync.paper.sync;
 
 import org.bukkit.entity.Player;
 
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
+
 /**
  * Abstraction for clipboard sync engines.
  * Implementations: ProxySyncEngine (Plugin Message) and StorageSyncEngine (shared storage).
@@ -17,6 +19,17 @@ public interface SyncEngine {
      */
     void uploadClipboard(Player player, byte[] data, String hash);
 
+    /**
+     * Called when only the clipboard holder's transform changed, for example after a rotate.
+     * Runs on the player's entity thread. Engines that cannot store a transform ignore it.
+     *
+     * @param player     the player
+     * @param remoteHash remote hash of the clipboard the transform applies to
+     * @param transform  the holder's new transform
+     */
+    default void uploadTransform(Player player, String remoteHash, ClipboardTransform transform) {
+    }
+
     /**
      * Called when a player joins a server and needs to check/download their clipboard.
      */
@@ -2,49 +2,57 @@ package dev.twme.worldeditsync.paper.ui;
 
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
-import java.util.function.LongSupplier;
 
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.TextComponent;
 
 import dev.twme.worldeditsync.paper.util.SchedulerUtil;
 
-/** Displays low-frequency, coalesced clipboard progress in the player's Action Bar. */
+/**
+ * Displays low-frequency, coalesced clipboard progress in the player's Action Bar. Progress
+ * updates only record the latest frame; one repeating render pass on the global thread sends
+ * every changed frame, so concurrent transfers cost no scheduler traffic of their own.
+ */
 public final class ActionBarProgress {
 
-    static final long UPDATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    static final long RENDER_PERIOD_TICKS = 10L;
     static final int MINIMUM_PERCENT_STEP = 10;
     private static final int BAR_WIDTH = 12;
+    private static final Frame FAILURE = new Frame(prefix() + ChatColor.RED + "Clipboard sync failed");
 
     private final boolean enabled;
-    private final LongSupplier nanoTime;
     private final BiConsumer<Player, Runnable> entityExecutor;
-    private final BiConsumer<Player, String> messageSender;
+    private final BiConsumer<Player, Frame> messageSender;
     private final ConcurrentHashMap<UUID, DisplayState> displays = new ConcurrentHashMap<>();
+    private Object renderTask;
 
     public ActionBarProgress(JavaPlugin plugin, boolean enabled) {
         this(
                 enabled,
-                System::nanoTime,
                 (player, task) -> {
-                    if (SchedulerUtil.runOnEntityThread(plugin, player, task) == null) {
+                    // The render pass already runs on the main thread unless regions are threaded.
+                    if (!SchedulerUtil.FOLIA) {
+                        task.run();
+                    } else if (SchedulerUtil.runOnEntityThread(plugin, player, task) == null) {
                         throw new IllegalStateException("Player scheduler rejected Action Bar update");
                     }
                 },
                 ActionBarProgress::sendSpigotActionBar);
+        if (enabled) {
+            renderTask = SchedulerUtil.runAtFixedRateOnGlobalThread(
+                    plugin, this::render, RENDER_PERIOD_TICKS, RENDER_PERIOD_TICKS);
+        }
     }
 
-    ActionBarProgress(boolean enabled, LongSupplier nanoTime,
-                      BiConsumer<Player, Runnable> entityExecutor,
-                      BiConsumer<Player, String> messageSender) {
+    ActionBarProgress(boolean enabled, BiConsumer<Player, Runnable> entityExecutor,
+                      BiConsumer<Player, Frame> messageSender) {
         this.enabled = enabled;
-        this.nanoTime = nanoTime;
         this.entityExecutor = entityExecutor;
         this.messageSender = messageSender;
     }
@@ -52,14 +60,14 @@ public final class ActionBarProgress {
     public ProgressHandle begin(Player player, Operation operation) {
         UUID playerId = player.getUniqueId();
         Object token = new Object();
-        ProgressHandle handle = new ProgressHandle(player, playerId, token);
+        ProgressHandle handle = new ProgressHandle(playerId, token);
         if (!enabled || !player.isOnline()) {
             return handle;
         }
 
-        DisplayState state = new DisplayState(token, operation, nanoTime.getAsLong());
+        DisplayState state = new DisplayState(player, token, operation);
+        state.pendingFrame = operation.status;
         displays.put(playerId, state);
-        queue(player, playerId, state, statusMessage(operation), false);
         return handle;
     }
 
@@ -68,6 +76,8 @@ public final class ActionBarProgress {
     }
 
     public void shutdown() {
+        SchedulerUtil.cancelTask(renderTask);
+        renderTask = null;
         displays.clear();
     }
 
@@ -82,30 +92,15 @@ public final class ActionBarProgress {
         }
 
         int percent = Math.max(0, Math.min(99, (int) Math.floor(progress * 100.0)));
-        if (percent < MINIMUM_PERCENT_STEP) {
+        int step = percent / MINIMUM_PERCENT_STEP;
+        if (step == 0) {
             return;
         }
-
-        boolean schedule = false;
-        long now = nanoTime.getAsLong();
         synchronized (state) {
-            if (state.terminal || displays.get(handle.playerId) != state
-                    || percent - state.lastPercent < MINIMUM_PERCENT_STEP) {
-                return;
+            if (!state.terminal && step > state.lastStep) {
+                state.lastStep = step;
+                state.pendingFrame = state.operation.progress[step - 1];
             }
-
-            if (now < state.nextIntermediateAt || state.scheduled) {
-                return;
-            }
-
-            state.lastPercent = percent;
-            state.pendingMessage = progressMessage(state.operation, percent);
-            state.nextIntermediateAt = now + UPDATE_INTERVAL_NANOS;
-            state.scheduled = true;
-            schedule = true;
-        }
-        if (schedule) {
-            scheduleFlush(handle.player, handle.playerId, state);
         }
     }
 
@@ -114,11 +109,12 @@ public final class ActionBarProgress {
         if (state == null) {
             return;
         }
-
-        String message = success
-                ? completionMessage(state.operation)
-                : failureMessage();
-        queue(handle.player, handle.playerId, state, message, true);
+        synchronized (state) {
+            if (!state.terminal) {
+                state.pendingFrame = success ? state.operation.completed : FAILURE;
+                state.terminal = true;
+            }
+        }
     }
 
     private void cancel(ProgressHandle handle) {
@@ -136,95 +132,59 @@ public final class ActionBarProgress {
         return state != null && state.token == handle.token ? state : null;
     }
 
-    private void queue(Player player, UUID playerId, DisplayState state,
-                       String message, boolean terminal) {
-        boolean schedule = false;
-        synchronized (state) {
-            if (displays.get(playerId) != state || state.terminal) {
+    /** Sends the latest frame of every display that changed since the previous pass. */
+    void render() {
+        displays.forEach((playerId, state) -> {
+            Frame frame;
+            boolean terminal;
+            synchronized (state) {
+                frame = state.pendingFrame;
+                terminal = state.terminal;
+                state.pendingFrame = null;
+            }
+            if (frame == null) {
                 return;
             }
-            state.pendingMessage = message;
-            state.terminal = terminal;
-            if (!state.scheduled) {
-                state.scheduled = true;
-                schedule = true;
+            if (terminal) {
+                displays.remove(playerId, state);
             }
-        }
-        if (schedule) {
-            scheduleFlush(player, playerId, state);
-        }
-    }
-
-    private void scheduleFlush(Player player, UUID playerId, DisplayState state) {
-        try {
-            entityExecutor.accept(player, () -> flush(player, playerId, state));
-        } catch (RuntimeException e) {
-            displays.remove(playerId, state);
-        }
-    }
-
-    private void flush(Player player, UUID playerId, DisplayState state) {
-        if (displays.get(playerId) != state) {
-            return;
-        }
-
-        String message;
-        boolean terminal;
-        synchronized (state) {
-            if (displays.get(playerId) != state) {
-                return;
+            try {
+                entityExecutor.accept(state.player, () -> send(playerId, state, frame));
+            } catch (RuntimeException e) {
+                displays.remove(playerId, state);
             }
-            message = state.pendingMessage;
-            terminal = state.terminal;
-            state.pendingMessage = null;
-            state.scheduled = false;
-            state.nextIntermediateAt = Math.max(
-                    state.nextIntermediateAt,
-                    nanoTime.getAsLong() + UPDATE_INTERVAL_NANOS);
-        }
+        });
+    }
 
-        if (terminal) {
-            displays.remove(playerId, state);
-        }
-        if (message == null || !player.isOnline()) {
+    private void send(UUID playerId, DisplayState state, Frame frame) {
+        if (!state.player.isOnline()) {
             displays.remove(playerId, state);
             return;
         }
-
         try {
-            messageSender.accept(player, message);
+            messageSender.accept(state.player, frame);
         } catch (RuntimeException e) {
             displays.remove(playerId, state);
         }
     }
 
-    private static void sendSpigotActionBar(Player player, String message) {
-        player.spigot().sendMessage(
-                ChatMessageType.ACTION_BAR,
-                TextComponent.fromLegacyText(message));
+    private static void sendSpigotActionBar(Player player, Frame frame) {
+        player.spigot().sendMessage(ChatMessageType.ACTION_BAR, frame.components);
     }
 
-    private static String statusMessage(Operation operation) {
-        return prefix() + ChatColor.GRAY + operation.status;
-    }
-
-    private static String progressMessage(Operation operation, int percent) {
+    private static String progressMessage(String verb, int percent) {
         int filled = Math.min(BAR_WIDTH - 1, percent * BAR_WIDTH / 100);
         String bar = ChatColor.AQUA + "#".repeat(filled)
                 + ChatColor.DARK_GRAY + "-".repeat(BAR_WIDTH - filled);
-        return prefix() + ChatColor.GRAY + operation.verb + " "
+        return prefix() + ChatColor.GRAY + verb + " "
                 + ChatColor.DARK_GRAY + "[" + bar + ChatColor.DARK_GRAY + "] "
                 + ChatColor.WHITE + percent + "%";
     }
 
-    private static String completionMessage(Operation operation) {
+    private static String completionMessage(String completed) {
         return prefix() + ChatColor.DARK_GRAY + "[" + ChatColor.GREEN
                 + "#".repeat(BAR_WIDTH) + ChatColor.DARK_GRAY + "] "
-                + ChatColor.WHITE + "100% " + ChatColor.GREEN + operation.completed;
-    }
-
-    private static String failureMessage() {
-        return prefix() + ChatColor.RED + "Clipboard sync failed";
+                + ChatColor.WHITE + "100% " + ChatColor.GREEN + completed;
     }
 
     private static String prefix() {
@@ -235,24 +195,39 @@ public final class ActionBarProgress {
         UPLOAD("Uploading clipboard...", "Uploading", "Clipboard uploaded"),
         DOWNLOAD("Downloading clipboard...", "Downloading", "Clipboard ready");
 
-        private final String status;
-        private final String verb;
-        private final String completed;
+        private final Frame status;
+        private final Frame[] progress = new Frame[100 / MINIMUM_PERCENT_STEP - 1];
+        private final Frame completed;
 
         Operation(String status, String verb, String completed) {
-            this.status = status;
-            this.verb = verb;
-            this.completed = completed;
+            this.status = new Frame(prefix() + ChatColor.GRAY + status);
+            for (int step = 1; step <= progress.length; step++) {
+                progress[step - 1] = new Frame(progressMessage(verb, step * MINIMUM_PERCENT_STEP));
+            }
+            this.completed = new Frame(completionMessage(completed));
+        }
+    }
+
+    /** An Action Bar message built once and shared by every player it is sent to. */
+    static final class Frame {
+        private final String text;
+        private final BaseComponent[] components;
+
+        private Frame(String text) {
+            this.text = text;
+            this.components = TextComponent.fromLegacyText(text);
+        }
+
+        String text() {
+            return text;
         }
     }
 
     public final class ProgressHandle {
-        private final Player player;
         private final UUID playerId;
         private final Object token;
 
-        private ProgressHandle(Player player, UUID playerId, Object token) {
-            this.player = player;
+        private ProgressHandle(UUID playerId, Object token) {
             this.playerId = playerId;
             this.token = token;
         }
@@ -279,18 +254,17 @@ public final class ActionBarProgress {
     }
 
     private static final class DisplayState {
+        private final Player player;
         private final Object token;
         private final Operation operation;
-        private long nextIntermediateAt;
-        private int lastPercent;
-        private String pendingMessage;
-        private boolean scheduled;
+        private Frame pendingFrame;
+        private int lastStep;
         private boolean terminal;
 
-        private DisplayState(Object token, Operation operation, long now) {
+        private DisplayState(Player player, Object token, Operation operation) {
+            this.player = player;
             this.token = token;
             this.operation = operation;
-            this.nextIntermediateAt = now + UPDATE_INTERVAL_NANOS;
         }
     }
 }
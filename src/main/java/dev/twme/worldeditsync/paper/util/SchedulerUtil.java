@@ -102,7 +102,23 @@ public final class SchedulerUtil {
     }
 
     /**
-     * Cancel a task handle returned by {@link #runAtFixedRateAsync}.
+     * Schedule a repeating task on the global region thread (Folia) or main thread.
+     *
+     * @return an opaque handle that can be passed to {@link #cancelTask(Object)}
+     */
+    public static Object runAtFixedRateOnGlobalThread(JavaPlugin plugin, Runnable task,
+                                                      long initialDelayTicks, long periodTicks) {
+        if (FOLIA) {
+            return FoliaSchedulerBridge.runAtFixedRateOnGlobalThread(
+                    plugin, task, initialDelayTicks, periodTicks);
+        }
+        return plugin.getServer().getScheduler()
+                .runTaskTimer(plugin, task, initialDelayTicks, periodTicks);
+    }
+
+    /**
+     * Cancel a task handle returned by {@link #runAtFixedRateAsync} or
+     * {@link #runAtFixedRateOnGlobalThread}.
      * Uses reflection so neither {@code BukkitTask} nor Folia's {@code ScheduledTask}
      * is referenced directly, keeping the class loadable on all platforms.
      */
@@ -145,6 +161,12 @@ public final class SchedulerUtil {
             return plugin.getServer().getGlobalRegionScheduler().run(plugin, $ -> task.run());
         }
 
+        private static Object runAtFixedRateOnGlobalThread(
+                JavaPlugin plugin, Runnable task, long initialDelayTicks, long periodTicks) {
+            return plugin.getServer().getGlobalRegionScheduler().runAtFixedRate(
+                    plugin, $ -> task.run(), Math.max(1L, initialDelayTicks), Math.max(1L, periodTicks));
+        }
+
         private static Object runAtFixedRateAsync(
                 JavaPlugin plugin, Runnable task, long initialDelayTicks, long periodTicks) {
             return plugin.getServer().getAsyncScheduler().runAtFixedRate(
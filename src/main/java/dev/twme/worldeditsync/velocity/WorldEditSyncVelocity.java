@@ -1,5 +1,6 @@
 package dev.twme.worldeditsync.velocity;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Duration;
 
@@ -22,6 +23,8 @@ import com.velocitypowered.api.scheduler.ScheduledTask;
 
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.metrics.MetricsHttpServer;
+import dev.twme.worldeditsync.common.metrics.SyncMetrics;
 import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
 import dev.twme.worldeditsync.velocity.config.VelocityConfig;
 import dev.twme.worldeditsync.velocity.handler.MessageHandler;
@@ -32,6 +35,9 @@ import dev.twme.worldeditsync.velocity.storage.ClipboardStore;
         authors = {"TWME"})
 public class WorldEditSyncVelocity {
 
+    private static final String STORED_BYTES_GAUGE = "wesync_proxy_stored_bytes";
+    private static final String RESERVED_UPLOAD_BYTES_GAUGE = "wesync_proxy_reserved_upload_bytes";
+
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
@@ -41,6 +47,7 @@ public class WorldEditSyncVelocity {
     private MessageHandler messageHandler;
     private VelocityConfig config;
     private ScheduledTask cleanupTask;
+    private MetricsHttpServer metricsServer;
 
     @Inject
     public WorldEditSyncVelocity(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -78,7 +85,8 @@ public class WorldEditSyncVelocity {
         PluginMessageCodec pluginMessageCodec = PluginMessageCodec.forProxy(config.getToken());
         messageHandler = new MessageHandler(this, server, store, channelId,
                 config.getChunkSize(), config.getMaxClipboardSize(), config.getChunkSendDelayMs(),
-                config.getSessionTimeoutMs(), pluginMessageCodec, logger);
+                config.getSessionTimeoutMs(), config.getDownloadBytesPerSecond(),
+                config.getFrameCacheBytes(), config.getInboundLimits(), pluginMessageCodec, logger);
 
         // Schedule cleanup
         cleanupTask = server.getScheduler().buildTask(this, () -> {
@@ -86,6 +94,10 @@ public class WorldEditSyncVelocity {
             store.cleanupExpiredClipboards(config.getClipboardTtlMinutes());
         }).repeat(Duration.ofMinutes(2)).schedule();
 
+        if (config.isMetricsEnabled()) {
+            startMetrics();
+        }
+
         logger.info("WorldEditSync Velocity proxy enabled.");
     }
 
@@ -98,6 +110,13 @@ public class WorldEditSyncVelocity {
             cleanupTask.cancel();
             cleanupTask = null;
         }
+        if (metricsServer != null) {
+            metricsServer.close();
+            metricsServer = null;
+        }
+        // The registry outlives this instance; drop gauges that read its store.
+        SyncMetrics.REGISTRY.removeGauge(STORED_BYTES_GAUGE);
+        SyncMetrics.REGISTRY.removeGauge(RESERVED_UPLOAD_BYTES_GAUGE);
         if (messageHandler != null) {
             messageHandler.shutdown();
         }
@@ -107,6 +126,22 @@ public class WorldEditSyncVelocity {
         logger.info("WorldEditSync Velocity proxy disabled.");
     }
 
+    private void startMetrics() {
+        SyncMetrics.REGISTRY.gauge(STORED_BYTES_GAUGE,
+                "Clipboard bytes held by the proxy", store::getStoredBytes);
+        SyncMetrics.REGISTRY.gauge(RESERVED_UPLOAD_BYTES_GAUGE,
+                "Bytes reserved for uploads in progress", store::getReservedUploadBytes);
+        try {
+            metricsServer = MetricsHttpServer.start(
+                    config.getMetricsBindAddress(), config.getMetricsPort(), SyncMetrics.REGISTRY,
+                    SyncMetrics.TRACES);
+            logger.info("Serving metrics on " + config.getMetricsBindAddress() + ":"
+                    + metricsServer.getPort() + "/metrics");
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not start the metrics endpoint: " + e.getMessage());
+        }
+    }
+
     @Subscribe
     public void onPluginMessage(PluginMessageEvent event) {
         if (channelId == null || !channelId.equals(event.getIdentifier())) return;
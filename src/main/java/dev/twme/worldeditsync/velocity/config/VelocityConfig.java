@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.yaml.snakeyaml.Yaml;
 import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.protocol.InboundLimits;
 
 public class VelocityConfig {
 
@@ -20,6 +21,12 @@ public class VelocityConfig {
     private long chunkSendDelayMs = 5;
     private int maxClipboardSize = 52_428_800;
     private long memoryLimitBytes = Constants.DEFAULT_TRANSFER_MEMORY_LIMIT_BYTES;
+    private long downloadBytesPerSecond = Constants.DEFAULT_PROXY_DOWNLOAD_BYTES_PER_SECOND;
+    private long frameCacheBytes = Constants.DEFAULT_PROXY_FRAME_CACHE_BYTES;
+    private InboundLimits inboundLimits = InboundLimits.DEFAULTS;
+    private boolean metricsEnabled = false;
+    private String metricsBindAddress = "127.0.0.1";
+    private int metricsPort = 9464;
 
     public void load(Path dataDirectory, Logger logger) {
         try {
@@ -52,19 +59,42 @@ public class VelocityConfig {
                     maxClipboardSize = getInt(transfer, "max-clipboard-size", maxClipboardSize);
                     memoryLimitBytes = getLong(
                             transfer, "memory-limit-bytes", memoryLimitBytes);
+                    downloadBytesPerSecond = getLong(transfer,
+                            "proxy-download-bytes-per-second", downloadBytesPerSecond);
+                    frameCacheBytes = getLong(transfer,
+                            "proxy-frame-cache-bytes", frameCacheBytes);
+                    inboundLimits = new InboundLimits(
+                            getInt(transfer, "inbound-messages-per-second",
+                                    inboundLimits.messagesPerSecond()),
+                            getInt(transfer, "inbound-message-burst", inboundLimits.messageBurst()),
+                            getLong(transfer, "inbound-bytes-per-second",
+                                    inboundLimits.bytesPerSecond()),
+                            getLong(transfer, "inbound-byte-burst", inboundLimits.byteBurst()));
+                }
+                Object metricsObj = root.get("metrics");
+                if (metricsObj instanceof Map<?, ?> metrics) {
+                    metricsEnabled = Boolean.TRUE.equals(metrics.get("enabled"));
+                    Object bindAddress = metrics.get("bind-address");
+                    if (bindAddress != null) {
+                        metricsBindAddress = bindAddress.toString();
+                    }
+                    metricsPort = getInt(metrics, "port", metricsPort);
                 }
                 chunkSize = Math.max(Constants.MIN_CHUNK_SIZE,
                         Math.min(Constants.MAX_CHUNK_SIZE, chunkSize));
                 maxClipboardSize = Math.max(1, Math.min(
                         Constants.ABSOLUTE_MAX_CLIPBOARD_SIZE, maxClipboardSize));
                 memoryLimitBytes = Math.max(
-                        (long) maxClipboardSize + MessageCipher.ENCRYPTION_OVERHEAD_BYTES,
+                        MessageCipher.maxEncryptedSize(maxClipboardSize),
                         Math.max(Constants.MIN_TRANSFER_MEMORY_LIMIT_BYTES,
                                 Math.min(Constants.MAX_TRANSFER_MEMORY_LIMIT_BYTES,
                                         memoryLimitBytes)));
                 chunkSendDelayMs = Math.max(0L, Math.min(1_000L, chunkSendDelayMs));
                 sessionTimeoutMs = Math.max(5_000L, sessionTimeoutMs);
                 clipboardTtlMinutes = Math.max(0L, clipboardTtlMinutes);
+                downloadBytesPerSecond = Math.max(0L, downloadBytesPerSecond);
+                frameCacheBytes = Math.max(0L, frameCacheBytes);
+                metricsPort = Math.max(0, Math.min(65_535, metricsPort));
             }
         } catch (IOException e) {
             logger.error("Failed to load config: " + e.getMessage());
@@ -115,4 +145,28 @@ public class VelocityConfig {
     public long getMemoryLimitBytes() {
         return memoryLimitBytes;
     }
+
+    public long getDownloadBytesPerSecond() {
+        return downloadBytesPerSecond;
+    }
+
+    public long getFrameCacheBytes() {
+        return frameCacheBytes;
+    }
+
+    public InboundLimits getInboundLimits() {
+        return inboundLimits;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public String getMetricsBindAddress() {
+        return metricsBindAddress;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
 }
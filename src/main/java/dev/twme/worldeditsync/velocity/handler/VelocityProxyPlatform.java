@@ -0,0 +1,87 @@
+package dev.twme.worldeditsync.velocity.handler;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
+
+import dev.twme.worldeditsync.common.proxy.ProxyPlatform;
+
+/** Velocity scheduling, messaging and logging for the shared transfer engine. */
+final class VelocityProxyPlatform implements ProxyPlatform<Player, ServerConnection> {
+
+    private final Object plugin;
+    private final ProxyServer server;
+    private final ChannelIdentifier channelId;
+    private final Logger logger;
+
+    VelocityProxyPlatform(Object plugin, ProxyServer server, ChannelIdentifier channelId,
+                          Logger logger) {
+        this.plugin = plugin;
+        this.server = server;
+        this.channelId = channelId;
+        this.logger = logger;
+    }
+
+    @Override
+    public UUID playerId(Player player) {
+        return player.getUniqueId();
+    }
+
+    @Override
+    public String playerName(Player player) {
+        return player.getUsername();
+    }
+
+    @Override
+    public boolean isConnected(Player player) {
+        return player.isActive();
+    }
+
+    @Override
+    public ServerConnection currentConnection(Player player) {
+        return player.getCurrentServer().orElse(null);
+    }
+
+    @Override
+    public String backendName(ServerConnection connection) {
+        return connection.getServerInfo().getName();
+    }
+
+    @Override
+    public void send(ServerConnection connection, byte[] frame) {
+        connection.sendPluginMessage(channelId, frame);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        server.getScheduler().buildTask(plugin, task).schedule();
+    }
+
+    @Override
+    public void runLater(Runnable task, long delayMs) {
+        server.getScheduler().buildTask(plugin, task)
+                .delay(Duration.ofMillis(delayMs))
+                .schedule();
+    }
+
+    @Override
+    public void debug(String message) {
+        logger.debug(message);
+    }
+
+    @Override
+    public void warn(String message) {
+        logger.warn(message);
+    }
+
+    @Override
+    public void error(String message) {
+        logger.error(message);
+    }
+}
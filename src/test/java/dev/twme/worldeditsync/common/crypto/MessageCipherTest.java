@@ -2,14 +2,29 @@ package dev.twme.worldeditsync.common.crypto;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.junit.Test;
 
 public class MessageCipherTest {
 
+    private static final int SEGMENT_SIZE = 16 * 1024;
+
     @Test
     public void encryptedPayloadRoundTripsWithDeclaredOverhead() {
         MessageCipher cipher = new MessageCipher("shared-token");
@@ -17,9 +32,8 @@ public class MessageCipherTest {
 
         byte[] encrypted = cipher.encrypt(plaintext);
 
-        assertEquals(
-                plaintext.length + MessageCipher.ENCRYPTION_OVERHEAD_BYTES,
-                encrypted.length);
+        assertEquals(cipher.encryptedSize(plaintext.length), encrypted.length);
+        assertTrue(encrypted.length <= MessageCipher.maxEncryptedSize(plaintext.length));
         assertArrayEquals(plaintext, cipher.decrypt(encrypted));
     }
 
@@ -31,4 +45,140 @@ public class MessageCipherTest {
         assertThrows(SecurityException.class,
                 () -> new MessageCipher("second-token").decrypt(encrypted));
     }
+
+    @Test
+    public void streamingFormatMatchesArrayFormat() throws Exception {
+        MessageCipher cipher = new MessageCipher("shared-token");
+        byte[] plaintext = new byte[100_000];
+        new Random(7L).nextBytes(plaintext);
+
+        byte[] streamed = cipher.encryptingStream(new ByteArrayInputStream(plaintext)).readAllBytes();
+
+        assertEquals(cipher.encryptedSize(plaintext.length), streamed.length);
+        assertArrayEquals(plaintext, cipher.decrypt(streamed));
+        assertArrayEquals(plaintext, cipher.decryptingStream(
+                new ByteArrayInputStream(cipher.encrypt(plaintext))).readAllBytes());
+    }
+
+    @Test
+    public void streamingEncryptionCanBeReadChunkByChunk() throws Exception {
+        MessageCipher cipher = new MessageCipher("shared-token");
+        byte[] plaintext = new byte[70_001];
+        new Random(11L).nextBytes(plaintext);
+        int totalBytes = (int) cipher.encryptedSize(plaintext.length);
+        InputStream ciphertext = cipher.encryptingStream(new ByteArrayInputStream(plaintext));
+
+        ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+        for (int offset = 0; offset < totalBytes; offset += 30_000) {
+            int length = Math.min(30_000, totalBytes - offset);
+            byte[] chunk = ciphertext.readNBytes(length);
+            assertEquals(length, chunk.length);
+            assembled.write(chunk);
+        }
+
+        assertEquals(-1, ciphertext.read());
+        assertArrayEquals(plaintext, cipher.decrypt(assembled.toByteArray()));
+    }
+
+    @Test
+    public void segmentedPayloadsRoundTripThroughArraysAndStreams() throws Exception {
+        MessageCipher cipher = new MessageCipher("shared-token", SEGMENT_SIZE);
+        byte[] plaintext = new byte[SEGMENT_SIZE * 5 + 123];
+        new Random(3L).nextBytes(plaintext);
+
+        byte[] encrypted = cipher.encrypt(plaintext);
+        byte[] streamed = cipher.encryptingStream(new ByteArrayInputStream(plaintext)).readAllBytes();
+
+        assertEquals(cipher.encryptedSize(plaintext.length), encrypted.length);
+        assertEquals(encrypted.length, streamed.length);
+        assertArrayEquals(plaintext, cipher.decrypt(streamed));
+        assertArrayEquals(plaintext, cipher.decryptingStream(
+                new ByteArrayInputStream(encrypted)).readAllBytes());
+        assertArrayEquals(plaintext, new MessageCipher("shared-token").decrypt(encrypted));
+    }
+
+    @Test
+    public void stillDecryptsSingleOperationPayloads() throws Exception {
+        byte[] plaintext = "clipboard-data".getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[12];
+        new Random(5L).nextBytes(iv);
+        Cipher legacy = Cipher.getInstance("AES/GCM/NoPadding");
+        legacy.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(MessageDigest.getInstance("SHA-256")
+                .digest("shared-token".getBytes(StandardCharsets.UTF_8)), "AES"),
+                new GCMParameterSpec(128, iv));
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encrypted.write(iv);
+        encrypted.write(legacy.doFinal(plaintext));
+        MessageCipher cipher = new MessageCipher("shared-token");
+
+        assertArrayEquals(plaintext, cipher.decrypt(encrypted.toByteArray()));
+        assertArrayEquals(plaintext, cipher.decryptingStream(
+                new ByteArrayInputStream(encrypted.toByteArray())).readAllBytes());
+    }
+
+    @Test
+    public void eachPayloadIsBoundToItsOwnSalt() {
+        MessageCipher cipher = new MessageCipher("shared-token", SEGMENT_SIZE);
+        byte[] plaintext = new byte[SEGMENT_SIZE + 5];
+        byte[] first = cipher.encrypt(plaintext);
+        byte[] second = cipher.encrypt(plaintext);
+        assertFalse(Arrays.equals(first, 8, 24, second, 8, 24));
+
+        // Segments re-keyed under another payload's salt no longer authenticate.
+        byte[] swapped = second.clone();
+        System.arraycopy(first, 8, swapped, 8, 16);
+        assertThrows(SecurityException.class, () -> cipher.decrypt(swapped));
+        assertThrows(SecurityException.class, () -> cipher.decryptingStream(
+                new ByteArrayInputStream(swapped)).readAllBytes());
+    }
+
+    @Test
+    public void parallelDecryptionMatchesSequentialDecryption() {
+        MessageCipher cipher = new MessageCipher("shared-token", SEGMENT_SIZE);
+        byte[] plaintext = new byte[SEGMENT_SIZE * 70 + 9];
+        new Random(13L).nextBytes(plaintext);
+        byte[] encrypted = cipher.encrypt(plaintext);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(plaintext, cipher.decrypt(encrypted, pool));
+
+            encrypted[encrypted.length / 2] ^= 1;
+            assertThrows(SecurityException.class, () -> cipher.decrypt(encrypted, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsPayloadsTruncatedAtASegmentBoundary() {
+        MessageCipher cipher = new MessageCipher("shared-token", SEGMENT_SIZE);
+        byte[] encrypted = cipher.encrypt(new byte[SEGMENT_SIZE * 3]);
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - (SEGMENT_SIZE + 16));
+
+        assertThrows(SecurityException.class, () -> cipher.decrypt(truncated));
+        assertThrows(SecurityException.class, () -> cipher.decryptingStream(
+                new ByteArrayInputStream(truncated)).readAllBytes());
+    }
+
+    @Test
+    public void rejectsReorderedSegments() {
+        MessageCipher cipher = new MessageCipher("shared-token", SEGMENT_SIZE);
+        byte[] encrypted = cipher.encrypt(new byte[SEGMENT_SIZE * 3]);
+        int segment = SEGMENT_SIZE + 16;
+        int header = encrypted.length - 3 * segment;
+        byte[] reordered = encrypted.clone();
+        System.arraycopy(encrypted, header, reordered, header + segment, segment);
+        System.arraycopy(encrypted, header + segment, reordered, header, segment);
+
+        assertThrows(SecurityException.class, () -> cipher.decrypt(reordered));
+    }
+
+    @Test
+    public void streamingDecryptionRejectsMismatchedToken() {
+        byte[] encrypted = new MessageCipher("first-token")
+                .encrypt("clipboard-data".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(SecurityException.class, () -> new MessageCipher("second-token")
+                .decryptingStream(new ByteArrayInputStream(encrypted)).readAllBytes());
+    }
 }
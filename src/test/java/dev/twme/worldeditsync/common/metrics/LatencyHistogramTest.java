@@ -0,0 +1,57 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.valueAtQuantile(0.99));
+    }
+
+    @Test
+    public void quantilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1_000; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+
+        assertEquals(1_000L, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMaxNanos());
+        assertWithin(500_000_000L, histogram.valueAtQuantile(0.5));
+        assertWithin(990_000_000L, histogram.valueAtQuantile(0.99));
+        assertEquals(1_000_000_000L, histogram.valueAtQuantile(1.0));
+    }
+
+    @Test
+    public void negativeDurationsCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+
+        assertEquals(1L, histogram.getCount());
+        assertEquals(0L, histogram.getSumNanos());
+    }
+
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        long[] values = {0L, 15L, 16L, 17L, 1_000L, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,58 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class MetricsHttpServerTest {
+
+    @Test
+    public void servesTheRegistryOnMetricsPath() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "Test").increment();
+
+        try (MetricsHttpServer server = MetricsHttpServer.start(
+                "127.0.0.1", 0, registry, new TransferTracer())) {
+            HttpURLConnection connection = open(server, "/metrics");
+            try (InputStream in = connection.getInputStream()) {
+                assertEquals(200, connection.getResponseCode());
+                assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+                assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                        .contains("test_total 1\n"));
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Test
+    public void servesTracesAsJson() throws Exception {
+        TransferTracer tracer = new TransferTracer();
+        tracer.start("key", "upload", UUID.randomUUID(), "session").mark("detect");
+        tracer.finish("key", "completed");
+
+        try (MetricsHttpServer server = MetricsHttpServer.start(
+                "127.0.0.1", 0, new MetricsRegistry(), tracer)) {
+            HttpURLConnection connection = open(server, "/traces");
+            try (InputStream in = connection.getInputStream()) {
+                assertTrue(connection.getContentType().startsWith("application/json"));
+                assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                        .contains("\"session\":\"session\""));
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static HttpURLConnection open(MetricsHttpServer server, String path) throws Exception {
+        return (HttpURLConnection) URI.create("http://127.0.0.1:" + server.getPort() + path)
+                .toURL().openConnection();
+    }
+}
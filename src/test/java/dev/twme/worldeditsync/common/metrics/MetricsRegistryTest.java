@@ -0,0 +1,74 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void sameNameAndLabelsReturnTheSameCounter() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        Counter first = registry.counter("test_total", "Test", "result", "ok");
+        Counter second = registry.counter("test_total", "Test", "result", "ok");
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void scrapeUsesPrometheusTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "Things done", "result", "ok").add(3);
+        registry.histogram("test_seconds", "Time taken").record(2_000_000_000L);
+        registry.gauge("test_bytes", "Bytes held", () -> 42L);
+
+        String text = registry.scrape();
+
+        assertTrue(text.contains("# TYPE test_total counter\n"));
+        assertTrue(text.contains("test_total{result=\"ok\"} 3\n"));
+        assertTrue(text.contains("# TYPE test_seconds summary\n"));
+        assertTrue(text.contains("test_seconds{quantile=\"0.99\"} 2.0\n"));
+        assertTrue(text.contains("test_seconds_count 1\n"));
+        assertTrue(text.contains("test_bytes 42\n"));
+    }
+
+    @Test
+    public void labelValuesAreEscaped() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "Test", "backend", "a\"b").increment();
+
+        assertTrue(registry.scrape().contains("test_total{backend=\"a\\\"b\"} 1\n"));
+    }
+
+    @Test
+    public void describeSkipsIdleSeries() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("idle_total", "Idle");
+        registry.histogram("idle_seconds", "Idle");
+        registry.counter("busy_total", "Busy").increment();
+
+        List<String> lines = registry.describe();
+
+        assertEquals(List.of("busy_total 1"), lines);
+    }
+
+    @Test
+    public void rejectsAConflictingType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_metric", "Test");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("test_metric", "Test"));
+    }
+
+    @Test
+    public void rejectsInvalidNames() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new MetricsRegistry().counter("bad-name", "Test"));
+    }
+}
@@ -0,0 +1,91 @@
+package dev.twme.worldeditsync.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TransferTracerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final TransferTracer tracer = new TransferTracer(nanos::get, () -> 0L);
+
+    @Test
+    public void recordsStagesRelativeToTheStart() {
+        nanos.set(1_000_000L);
+        tracer.start("key", "upload", UUID.randomUUID(), null).mark("detect");
+        nanos.addAndGet(5_000_000L);
+        tracer.mark("key", "serialize");
+        tracer.mark("key", "serialize");
+        nanos.addAndGet(2_000_000L);
+        tracer.finish("key", "completed");
+
+        TransferTrace trace = tracer.slowest(1).get(0);
+        assertEquals(List.of(
+                new TransferTrace.Stage("detect", 0L),
+                new TransferTrace.Stage("serialize", 5_000_000L),
+                new TransferTrace.Stage("completed", 7_000_000L)), trace.getStages());
+        assertEquals(7_000_000L, trace.getDurationNanos());
+        assertEquals("completed", trace.getOutcome());
+        assertNull(tracer.get("key"));
+    }
+
+    @Test
+    public void marksChunkProgressAtEachStep() {
+        tracer.start("key", "download", UUID.randomUUID(), "session");
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            tracer.progress("key", chunk, 8);
+        }
+        tracer.finish("key", "completed");
+
+        List<String> names = tracer.slowest(1).get(0).getStages().stream()
+                .map(TransferTrace.Stage::name).toList();
+        assertEquals(List.of("chunks_25%", "chunks_50%", "chunks_75%", "chunks_100%", "completed"), names);
+    }
+
+    @Test
+    public void slowestComeFirstAndDiscardedTracesAreDropped() {
+        for (int index = 1; index <= 3; index++) {
+            tracer.start("key" + index, "upload", UUID.randomUUID(), "session" + index);
+        }
+        nanos.addAndGet(10L);
+        tracer.finish("key1", "completed");
+        nanos.addAndGet(30L);
+        tracer.finish("key2", "failed");
+        tracer.discard("key3");
+        tracer.finish("key3", "completed");
+
+        List<TransferTrace> slowest = tracer.slowest(5);
+        assertEquals(2, slowest.size());
+        assertEquals("session2", slowest.get(0).getSessionId());
+        assertEquals("session1", slowest.get(1).getSessionId());
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentFinishedTraces() {
+        for (int index = 0; index < TransferTracer.MAX_RECENT + 10; index++) {
+            tracer.start("key", "upload", UUID.randomUUID(), "session" + index);
+            tracer.finish("key", "completed");
+        }
+
+        assertEquals(TransferTracer.MAX_RECENT, tracer.slowest(Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void exportsJson() {
+        UUID playerId = UUID.randomUUID();
+        tracer.start("key", "upload", playerId, null).setSessionId("session");
+        nanos.addAndGet(1_500_000L);
+        tracer.finish("key", "completed");
+
+        String json = tracer.slowestJson(10);
+        assertTrue(json, json.startsWith("[{\"kind\":\"upload\",\"player\":\"" + playerId
+                + "\",\"session\":\"session\",\"startedAt\":\"1970-01-01T00:00:00Z\",\"durationMs\":1.500,"));
+        assertTrue(json, json.contains("{\"stage\":\"completed\",\"atMs\":1.500}"));
+    }
+}
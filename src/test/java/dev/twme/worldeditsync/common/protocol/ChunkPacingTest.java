@@ -0,0 +1,27 @@
+package dev.twme.worldeditsync.common.protocol;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import dev.twme.worldeditsync.common.Constants;
+
+public class ChunkPacingTest {
+
+    @Test
+    public void shortDelaysPackSeveralChunksIntoOneTick() {
+        assertEquals(Constants.MAX_CHUNKS_PER_TICK, ChunkPacing.chunksPerPump(0L));
+        assertEquals(Constants.MAX_CHUNKS_PER_TICK, ChunkPacing.chunksPerPump(5L));
+        assertEquals(5, ChunkPacing.chunksPerPump(10L));
+        assertEquals(1, ChunkPacing.chunksPerPump(200L));
+    }
+
+    @Test
+    public void longDelaysWaitWholeTicksBetweenBursts() {
+        assertEquals(1L, ChunkPacing.pumpDelayTicks(0L));
+        assertEquals(1L, ChunkPacing.pumpDelayTicks(50L));
+        assertEquals(2L, ChunkPacing.pumpDelayTicks(51L));
+        assertEquals(50L, ChunkPacing.pumpIntervalMs(5L));
+        assertEquals(200L, ChunkPacing.pumpIntervalMs(200L));
+    }
+}
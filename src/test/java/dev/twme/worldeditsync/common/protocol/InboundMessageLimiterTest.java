@@ -1,5 +1,6 @@
 package dev.twme.worldeditsync.common.protocol;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -14,15 +15,64 @@ public class InboundMessageLimiterTest {
 
     @Test
     public void capsMessagesBeforeProtocolProcessing() {
-        InboundMessageLimiter limiter = new InboundMessageLimiter();
+        AtomicLong clock = new AtomicLong(1_000L);
+        InboundMessageLimiter limiter = new InboundMessageLimiter(clock::get);
         UUID playerId = UUID.randomUUID();
 
-        for (int i = 0; i < Constants.MAX_INBOUND_MESSAGES_PER_SECOND; i++) {
+        for (int i = 0; i < Constants.DEFAULT_INBOUND_MESSAGE_BURST; i++) {
             assertTrue(limiter.tryAcquire(playerId, 1));
         }
         assertFalse(limiter.tryAcquire(playerId, 1));
     }
 
+    @Test
+    public void refillsContinuouslyWithoutWindowEdgeBursts() {
+        AtomicLong clock = new AtomicLong(5_000L);
+        InboundMessageLimiter limiter = new InboundMessageLimiter(
+                new InboundLimits(10, 10, 1_000_000L, 1_000_000L), clock::get);
+        UUID playerId = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(playerId, 1));
+        }
+        assertFalse(limiter.tryAcquire(playerId, 1));
+
+        // One message refills every 100 ms; a new second does not restore the whole burst.
+        clock.addAndGet(99L);
+        assertFalse(limiter.tryAcquire(playerId, 1));
+        clock.addAndGet(1L);
+        assertTrue(limiter.tryAcquire(playerId, 1));
+        assertFalse(limiter.tryAcquire(playerId, 1));
+        clock.addAndGet(900L);
+        for (int i = 0; i < 9; i++) {
+            assertTrue(limiter.tryAcquire(playerId, 1));
+        }
+        assertFalse(limiter.tryAcquire(playerId, 1));
+    }
+
+    @Test
+    public void byteBudgetRefusalDoesNotSpendAMessage() {
+        AtomicLong clock = new AtomicLong(7_000L);
+        int size = Constants.MAX_PLUGIN_MESSAGE_SIZE;
+        InboundMessageLimiter limiter = new InboundMessageLimiter(
+                new InboundLimits(2, 2, size, size), clock::get);
+        UUID playerId = UUID.randomUUID();
+
+        assertTrue(limiter.tryAcquire(playerId, size));
+        assertFalse(limiter.tryAcquire(playerId, size));
+        assertTrue(limiter.tryAcquire(playerId, 0));
+        assertFalse(limiter.tryAcquire(playerId, 0));
+    }
+
+    @Test
+    public void limitsAreClampedToUsableValues() {
+        InboundLimits limits = new InboundLimits(0, -1, 0L, 1L);
+
+        assertEquals(1, limits.messagesPerSecond());
+        assertEquals(1, limits.messageBurst());
+        assertEquals(Constants.MAX_PLUGIN_MESSAGE_SIZE, limits.bytesPerSecond());
+        assertEquals(Constants.MAX_PLUGIN_MESSAGE_SIZE, limits.byteBurst());
+    }
+
     @Test
     public void rejectsInvalidSizesAndTracksPlayersSeparately() {
         InboundMessageLimiter limiter = new InboundMessageLimiter();
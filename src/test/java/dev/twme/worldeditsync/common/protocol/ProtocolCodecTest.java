@@ -2,12 +2,16 @@ package dev.twme.worldeditsync.common.protocol;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.DataInputStream;
 import java.util.UUID;
 
 import org.junit.Test;
 
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
+
 public class ProtocolCodecTest {
 
     @Test
@@ -39,4 +43,35 @@ public class ProtocolCodecTest {
             assertEquals("a".repeat(64), input.readUTF());
         }
     }
+
+    @Test
+    public void roundTripsTransformUpdates() throws Exception {
+        ClipboardTransform rotated = ClipboardTransform.of(new double[] {
+                -0.0, 0, 1, 0,
+                0, 1, 0, 0,
+                -1, 0, 0, 0});
+        ProtocolCodec.ParsedMessage message = ProtocolCodec.decode(
+                ProtocolCodec.encodeTransformUpdate("a".repeat(64), rotated));
+
+        assertNotNull(message);
+        assertEquals(MessageType.TRANSFORM_UPDATE, message.type());
+        try (DataInputStream input = ProtocolCodec.payloadStream(message)) {
+            assertEquals("a".repeat(64), input.readUTF());
+            assertEquals(rotated, ClipboardTransform.read(input));
+            assertTrue(ProtocolValidation.exhausted(input));
+        }
+    }
+
+    @Test
+    public void rejectsUnusableTransforms() {
+        double[] flattened = ClipboardTransform.IDENTITY.getCoefficients();
+        flattened[5] = 0;
+        double[] infinite = ClipboardTransform.IDENTITY.getCoefficients();
+        infinite[3] = Double.POSITIVE_INFINITY;
+
+        assertNull(ClipboardTransform.of(flattened));
+        assertNull(ClipboardTransform.of(infinite));
+        assertNull(ClipboardTransform.of(new double[9]));
+        assertTrue(ClipboardTransform.of(ClipboardTransform.IDENTITY.getCoefficients()).isIdentity());
+    }
 }
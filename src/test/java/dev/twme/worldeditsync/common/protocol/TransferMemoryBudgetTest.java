@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -73,4 +74,63 @@ public class TransferMemoryBudgetTest {
             executor.shutdownNow();
         }
     }
+
+    @Test
+    public void queuedReservationsAreGrantedInArrivalOrder() {
+        TransferMemoryBudget budget = new TransferMemoryBudget(10L);
+        assertTrue(budget.reserve(8L).isDone());
+
+        CompletableFuture<Void> large = budget.reserve(9L);
+        CompletableFuture<Void> small = budget.reserve(1L);
+
+        // The small reservation would fit now, but must not overtake the large one.
+        assertFalse(large.isDone());
+        assertFalse(small.isDone());
+        assertEquals(2, budget.getWaitingReservations());
+
+        budget.release(8L);
+        assertTrue(large.isDone());
+        assertTrue(small.isDone());
+        assertEquals(10L, budget.getReservedBytes());
+        assertEquals(0, budget.getWaitingReservations());
+    }
+
+    @Test
+    public void immediateReservationsTakePriorityOverQueuedOnes() {
+        TransferMemoryBudget budget = new TransferMemoryBudget(10L);
+        assertTrue(budget.tryReserve(6L));
+        CompletableFuture<Void> queued = budget.reserve(8L);
+
+        assertTrue(budget.tryReserve(4L));
+        assertFalse(budget.tryReserve(1L));
+
+        budget.release(6L);
+        assertFalse(queued.isDone());
+        budget.release(4L);
+        assertTrue(queued.isDone());
+        assertEquals(8L, budget.getReservedBytes());
+    }
+
+    @Test
+    public void cancelledReservationsLeaveTheQueue() {
+        TransferMemoryBudget budget = new TransferMemoryBudget(10L);
+        assertTrue(budget.tryReserve(6L));
+        CompletableFuture<Void> blocked = budget.reserve(8L);
+        CompletableFuture<Void> behind = budget.reserve(4L);
+
+        blocked.cancel(false);
+
+        assertTrue(behind.isDone());
+        assertEquals(10L, budget.getReservedBytes());
+        assertEquals(0, budget.getWaitingReservations());
+    }
+
+    @Test
+    public void reservationsLargerThanTheBudgetFail() {
+        TransferMemoryBudget budget = new TransferMemoryBudget(10L);
+
+        assertTrue(budget.reserve(11L).isCompletedExceptionally());
+        assertTrue(budget.reserve(0L).isCompletedExceptionally());
+        assertEquals(0L, budget.getReservedBytes());
+    }
 }
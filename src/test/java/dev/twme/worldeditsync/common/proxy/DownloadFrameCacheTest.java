@@ -0,0 +1,119 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class DownloadFrameCacheTest {
+
+    @Test
+    public void onlyKeepsCompleteFrameSets() {
+        UUID playerId = UUID.randomUUID();
+        DownloadFrameCache cache = new DownloadFrameCache(100L);
+        DownloadFrameCache.Frames frames = frames("a", 2);
+
+        assertFalse(frames.store(0, new byte[10]));
+        cache.put(playerId, frames);
+        assertNull(cache.get(playerId, "a", 4));
+
+        assertTrue(frames.store(1, new byte[10]));
+        cache.put(playerId, frames);
+        assertSame(frames, cache.get(playerId, "a", 4));
+        assertNull(cache.get(playerId, "b", 4));
+        assertNull(cache.get(playerId, "a", 8));
+        assertEquals(20L, cache.getCachedBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPlayersToStayWithinBudget() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        DownloadFrameCache cache = new DownloadFrameCache(100L);
+        cache.put(first, complete("a", 40));
+        cache.put(second, complete("b", 40));
+        cache.get(first, "a", 4);
+
+        cache.put(third, complete("c", 40));
+
+        assertNull(cache.get(second, "b", 4));
+        assertEquals(80L, cache.getCachedBytes());
+        assertNotNull(cache.get(first, "a", 4));
+    }
+
+    @Test
+    public void invalidatesOnlyTheRefusedSession() {
+        UUID playerId = UUID.randomUUID();
+        DownloadFrameCache cache = new DownloadFrameCache(100L);
+        DownloadFrameCache.Frames frames = complete("a", 10);
+        cache.put(playerId, frames);
+
+        cache.invalidate(playerId, UUID.randomUUID().toString());
+        assertSame(frames, cache.get(playerId, "a", 4));
+
+        cache.invalidate(playerId, frames.sessionId());
+        assertNull(cache.get(playerId, "a", 4));
+        assertEquals(0L, cache.getCachedBytes());
+    }
+
+    @Test
+    public void ignoresFrameSetsLargerThanTheBudget() {
+        UUID playerId = UUID.randomUUID();
+        DownloadFrameCache cache = new DownloadFrameCache(10L);
+
+        cache.put(playerId, complete("a", 11));
+
+        assertNull(cache.get(playerId, "a", 4));
+        assertEquals(0L, cache.getCachedBytes());
+    }
+
+    @Test
+    public void framesInFlightShareTheBudgetWithCachedFrames() {
+        DownloadFrameCache cache = new DownloadFrameCache(100L);
+        UUID cachedPlayer = UUID.randomUUID();
+        cache.put(cachedPlayer, complete("a", 40));
+
+        DownloadFrameCache.Frames first = cache.reserve("b", 4, UUID.randomUUID().toString(), 1, 70L);
+        assertNotNull(first);
+        assertNull(cache.reserve("c", 4, UUID.randomUUID().toString(), 1, 60L));
+        assertNull(cache.get(cachedPlayer, "a", 4));
+        assertEquals(70L, cache.getReservedBytes());
+
+        cache.release(first);
+        cache.release(first);
+        assertEquals(0L, cache.getReservedBytes());
+        assertNotNull(cache.reserve("c", 4, UUID.randomUUID().toString(), 1, 60L));
+        assertNull(cache.reserve("d", 4, UUID.randomUUID().toString(), 1, 101L));
+    }
+
+    @Test
+    public void cachingCompletedFramesEndsTheirReservation() {
+        UUID playerId = UUID.randomUUID();
+        DownloadFrameCache cache = new DownloadFrameCache(100L);
+        DownloadFrameCache.Frames frames = cache.reserve("a", 4, UUID.randomUUID().toString(), 1, 30L);
+        frames.store(0, new byte[32]);
+
+        cache.put(playerId, frames);
+
+        assertSame(frames, cache.get(playerId, "a", 4));
+        assertEquals(0L, cache.getReservedBytes());
+        assertEquals(32L, cache.getCachedBytes());
+    }
+
+    private static DownloadFrameCache.Frames complete(String hash, int bytes) {
+        DownloadFrameCache.Frames frames = frames(hash, 1);
+        frames.store(0, new byte[bytes]);
+        return frames;
+    }
+
+    private static DownloadFrameCache.Frames frames(String hash, int totalChunks) {
+        return new DownloadFrameCache.Frames(hash, 4, UUID.randomUUID().toString(), totalChunks);
+    }
+}
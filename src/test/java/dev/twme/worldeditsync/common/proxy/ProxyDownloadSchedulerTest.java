@@ -0,0 +1,90 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ProxyDownloadSchedulerTest {
+
+    private final AtomicLong now = new AtomicLong(10_000L);
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<String> sent = new ArrayList<>();
+
+    @Test
+    public void sharesTheByteBudgetAcrossAllDownloads() {
+        ProxyDownloadScheduler scheduler = scheduler(20_000L);
+        scheduler.enqueue("lobby", 5_000, 500, () -> true, sender("lobby"));
+        scheduler.enqueue("survival", 5_000, 500, () -> true, sender("survival"));
+
+        scheduler.tick();
+        for (int tick = 0; tick < 4; tick++) {
+            now.addAndGet(ProxyDownloadScheduler.TICK_MS);
+            scheduler.tick();
+        }
+
+        // Two ticks of burst plus 1,000 bytes for each later 50 ms tick.
+        assertEquals(12, sent.size());
+        assertEquals(count("lobby"), count("survival"));
+    }
+
+    @Test
+    public void isFairPerBackendRatherThanPerDownload() {
+        ProxyDownloadScheduler scheduler = scheduler(40_000L);
+        for (int index = 0; index < 3; index++) {
+            scheduler.enqueue("lobby", 10_000, 500, () -> true, sender("lobby"));
+        }
+        scheduler.enqueue("survival", 10_000, 500, () -> true, sender("survival"));
+
+        scheduler.tick();
+
+        assertEquals(8, sent.size());
+        assertEquals(4, count("lobby"));
+        assertEquals(4, count("survival"));
+    }
+
+    @Test
+    public void limitsEachDownloadToItsPerTickPace() {
+        ProxyDownloadScheduler scheduler = scheduler(0L);
+        scheduler.enqueue("lobby", 10_000, 500, () -> true, sender("lobby"));
+
+        scheduler.tick();
+
+        assertEquals(8, sent.size());
+        assertEquals(1, scheduler.activeDownloads());
+    }
+
+    @Test
+    public void dropsDownloadsThatAreNoLongerActive() {
+        ProxyDownloadScheduler scheduler = scheduler(0L);
+        AtomicBoolean active = new AtomicBoolean(true);
+        scheduler.enqueue("lobby", 10_000, 500, active::get, sender("lobby"));
+        scheduler.tick();
+        active.set(false);
+        scheduled.clear();
+
+        scheduler.tick();
+
+        assertEquals(8, sent.size());
+        assertEquals(0, scheduler.activeDownloads());
+        assertTrue(scheduled.isEmpty());
+    }
+
+    private ProxyDownloadScheduler scheduler(long bytesPerSecond) {
+        return new ProxyDownloadScheduler((task, delayMs) -> scheduled.add(task),
+                bytesPerSecond, 8, ProxyDownloadScheduler.TICK_MS, now::get);
+    }
+
+    private ProxyDownloadScheduler.ChunkSender sender(String backend) {
+        return chunkIndex -> sent.add(backend);
+    }
+
+    private long count(String backend) {
+        return sent.stream().filter(backend::equals).count();
+    }
+}
@@ -0,0 +1,229 @@
+package dev.twme.worldeditsync.common.proxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import dev.twme.worldeditsync.common.model.ClipboardTransform;
+import dev.twme.worldeditsync.common.protocol.MessageType;
+import dev.twme.worldeditsync.common.protocol.PluginMessageCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec;
+import dev.twme.worldeditsync.common.protocol.ProtocolCodec.ParsedMessage;
+import dev.twme.worldeditsync.common.storage.ProxyClipboardStore;
+
+public class ProxyTransferEngineTest {
+
+    private final PluginMessageCodec paperCodec = PluginMessageCodec.forPaper("test-token");
+
+    @Test
+    public void streamsStoredClipboardToTheCurrentConnection() throws Exception {
+        UUID playerId = UUID.randomUUID();
+        ProxyClipboardStore store = new ProxyClipboardStore();
+        store.storeClipboard(playerId, new byte[] {1, 2, 3, 4, 5}, "c".repeat(64));
+        FakePlatform platform = new FakePlatform(playerId);
+        ProxyTransferEngine<String, String> engine = new ProxyTransferEngine<>(platform, store,
+                2, 1_024, 0L, 30_000L, 0L, 1_024L, PluginMessageCodec.forProxy("test-token"));
+
+        String requestId = UUID.randomUUID().toString();
+        engine.handleMessage("player", paperCodec.encode(ProtocolCodec.encodeDownloadRequest(requestId)));
+
+        assertEquals(4, platform.sent.size());
+        ParsedMessage begin = paperCodec.decode(platform.sent.get(0));
+        assertNotNull(begin);
+        assertEquals(MessageType.DOWNLOAD_BEGIN, begin.type());
+        try (DataInputStream input = ProtocolCodec.payloadStream(begin)) {
+            assertEquals(requestId, input.readUTF());
+        }
+        ParsedMessage last = paperCodec.decode(platform.sent.get(3));
+        assertNotNull(last);
+        assertEquals(MessageType.DOWNLOAD_CHUNK, last.type());
+        try (DataInputStream input = ProtocolCodec.payloadStream(last)) {
+            input.readUTF();
+            assertEquals(2, input.readInt());
+            assertArrayEquals(new byte[] {5}, input.readNBytes(input.readInt()));
+        }
+    }
+
+    @Test
+    public void stopsPumpingWhenThePlayerSwitchesServers() throws Exception {
+        UUID playerId = UUID.randomUUID();
+        ProxyClipboardStore store = new ProxyClipboardStore();
+        store.storeClipboard(playerId, new byte[] {1, 2, 3, 4, 5}, "c".repeat(64));
+        FakePlatform platform = new FakePlatform(playerId);
+        platform.deferScheduledTasks = true;
+        ProxyTransferEngine<String, String> engine = new ProxyTransferEngine<>(platform, store,
+                2, 1_024, 0L, 30_000L, 0L, 1_024L, PluginMessageCodec.forProxy("test-token"));
+
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeDownloadRequest(UUID.randomUUID().toString())));
+        platform.connection = "other-backend";
+        platform.runDeferred();
+
+        assertEquals(1, platform.sent.size());
+    }
+
+    @Test
+    public void reusesEncodedFramesForARepeatedDownload() throws Exception {
+        UUID playerId = UUID.randomUUID();
+        ProxyClipboardStore store = new ProxyClipboardStore();
+        store.storeClipboard(playerId, new byte[] {1, 2, 3, 4, 5}, "c".repeat(64));
+        FakePlatform platform = new FakePlatform(playerId);
+        ProxyTransferEngine<String, String> engine = new ProxyTransferEngine<>(platform, store,
+                2, 1_024, 0L, 30_000L, 0L, 1_024L, PluginMessageCodec.forProxy("test-token"));
+
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeDownloadRequest(UUID.randomUUID().toString())));
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeDownloadRequest(UUID.randomUUID().toString())));
+
+        assertEquals(8, platform.sent.size());
+        for (int chunk = 1; chunk < 4; chunk++) {
+            assertSame(platform.sent.get(chunk), platform.sent.get(chunk + 4));
+        }
+    }
+
+    @Test
+    public void encodesFreshFramesAfterTheClipboardIsReplaced() throws Exception {
+        UUID playerId = UUID.randomUUID();
+        ProxyClipboardStore store = new ProxyClipboardStore();
+        store.storeClipboard(playerId, new byte[] {1, 2, 3, 4, 5}, "c".repeat(64));
+        FakePlatform platform = new FakePlatform(playerId);
+        ProxyTransferEngine<String, String> engine = new ProxyTransferEngine<>(platform, store,
+                2, 1_024, 0L, 30_000L, 0L, 1_024L, PluginMessageCodec.forProxy("test-token"));
+
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeDownloadRequest(UUID.randomUUID().toString())));
+        store.storeClipboard(playerId, new byte[] {6, 7, 8}, "d".repeat(64));
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeDownloadRequest(UUID.randomUUID().toString())));
+
+        assertEquals(7, platform.sent.size());
+        ParsedMessage chunk = paperCodec.decode(platform.sent.get(5));
+        assertNotNull(chunk);
+        try (DataInputStream input = ProtocolCodec.payloadStream(chunk)) {
+            input.readUTF();
+            assertEquals(0, input.readInt());
+            assertArrayEquals(new byte[] {6, 7}, input.readNBytes(input.readInt()));
+        }
+    }
+
+    @Test
+    public void replaysTheTransformOfTheStoredClipboardAfterSyncHash() throws Exception {
+        UUID playerId = UUID.randomUUID();
+        ProxyClipboardStore store = new ProxyClipboardStore();
+        store.storeClipboard(playerId, new byte[] {1, 2, 3}, "c".repeat(64));
+        FakePlatform platform = new FakePlatform(playerId);
+        ProxyTransferEngine<String, String> engine = new ProxyTransferEngine<>(platform, store,
+                2, 1_024, 0L, 30_000L, 0L, 1_024L, PluginMessageCodec.forProxy("test-token"));
+        ClipboardTransform flipped = ClipboardTransform.of(new double[] {
+                -1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 1, 0});
+
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeTransformUpdate("d".repeat(64), flipped)));
+        assertNull(store.getTransform(playerId));
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeTransformUpdate("c".repeat(64), flipped)));
+        engine.handleMessage("player", paperCodec.encode(
+                ProtocolCodec.encodeSyncRequest(UUID.randomUUID().toString())));
+
+        assertEquals(2, platform.sent.size());
+        assertEquals(MessageType.SYNC_HASH, paperCodec.decode(platform.sent.get(0)).type());
+        ParsedMessage update = paperCodec.decode(platform.sent.get(1));
+        assertNotNull(update);
+        assertEquals(MessageType.TRANSFORM_UPDATE, update.type());
+        try (DataInputStream input = ProtocolCodec.payloadStream(update)) {
+            assertEquals("c".repeat(64), input.readUTF());
+            assertEquals(flipped, ClipboardTransform.read(input));
+        }
+
+        store.storeClipboard(playerId, new byte[] {4, 5}, "d".repeat(64));
+        assertNull(store.getTransform(playerId));
+    }
+
+    private static final class FakePlatform implements ProxyPlatform<String, String> {
+        private final UUID playerId;
+        private final List<byte[]> sent = new ArrayList<>();
+        private final List<Runnable> deferred = new ArrayList<>();
+        private String connection = "backend";
+        private boolean deferScheduledTasks;
+
+        private FakePlatform(UUID playerId) {
+            this.playerId = playerId;
+        }
+
+        private void runDeferred() {
+            List<Runnable> tasks = new ArrayList<>(deferred);
+            deferred.clear();
+            tasks.forEach(Runnable::run);
+        }
+
+        @Override
+        public UUID playerId(String player) {
+            return playerId;
+        }
+
+        @Override
+        public String playerName(String player) {
+            return player;
+        }
+
+        @Override
+        public boolean isConnected(String player) {
+            return true;
+        }
+
+        @Override
+        public String currentConnection(String player) {
+            return connection;
+        }
+
+        @Override
+        public String backendName(String connection) {
+            return connection;
+        }
+
+        @Override
+        public void send(String connection, byte[] frame) {
+            if ("backend".equals(connection)) {
+                sent.add(frame);
+            }
+        }
+
+        @Override
+        public void runAsync(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void runLater(Runnable task, long delayMs) {
+            if (deferScheduledTasks) {
+                deferred.add(task);
+            } else {
+                task.run();
+            }
+        }
+
+        @Override
+        public void debug(String message) {
+        }
+
+        @Override
+        public void warn(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    }
+}
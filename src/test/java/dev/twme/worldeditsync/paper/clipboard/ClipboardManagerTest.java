@@ -3,10 +3,12 @@ package dev.twme.worldeditsync.paper.clipboard;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
@@ -49,6 +51,22 @@ public class ClipboardManagerTest {
         assertFalse(manager.isSerializedClipboard(playerId, clipboard));
     }
 
+    @Test
+    public void recognisesTheClipboardAQueuedUploadWasSerializedFrom() {
+        ClipboardManager manager = new ClipboardManager();
+        UUID playerId = UUID.randomUUID();
+        Object clipboard = new Object();
+        String hash = "a".repeat(64);
+        manager.initPlayer(playerId, SyncState.UPLOADING);
+        manager.markSerializedClipboard(playerId, clipboard, hash);
+
+        assertTrue(manager.isSerializedAs(playerId, clipboard, hash));
+        assertFalse(manager.isSerializedAs(playerId, clipboard, "b".repeat(64)));
+        assertFalse(manager.isSerializedAs(playerId, new Object(), hash));
+        manager.forgetClipboard(playerId);
+        assertFalse(manager.isSerializedAs(playerId, clipboard, hash));
+    }
+
     @Test
     public void downloadedClipboardKeepsRemoteAndLocalHashesSeparate() {
         AtomicLong clock = new AtomicLong(10_000L);
@@ -109,6 +127,23 @@ public class ClipboardManagerTest {
         assertThrows(IllegalStateException.class, session::assemble);
     }
 
+    @Test
+    public void downloadsAreNotHeldBackByQueuedUploads() {
+        ClipboardManager manager = new ClipboardManager();
+        TransferMemoryBudget budget = new TransferMemoryBudget(8L);
+        manager.setTransferMemoryBudget(budget);
+        assertTrue(manager.reserveTransferMemory(4L).isDone());
+        CompletableFuture<Void> upload = manager.reserveTransferMemory(8L);
+
+        assertTrue(manager.addDownloadSession(
+                "download", new TransferSession("download", 1, 4, 4, "hash")));
+
+        assertFalse(upload.isDone());
+        assertEquals(8L, budget.getReservedBytes());
+        upload.cancel(false);
+        manager.shutdown();
+    }
+
     @Test
     public void rejectedDuplicateSessionDoesNotConsumeTransferBudget() {
         ClipboardManager manager = new ClipboardManager();
@@ -124,4 +159,71 @@ public class ClipboardManagerTest {
         manager.shutdown();
         assertEquals(0L, budget.getReservedBytes());
     }
+
+    @Test
+    public void reusesSerializedBytesForTheSameClipboardAcrossForgetAndRejoin() {
+        AtomicLong clock = new AtomicLong(10_000L);
+        ClipboardManager manager = new ClipboardManager(clock::get);
+        UUID playerId = UUID.randomUUID();
+        Object clipboard = new Object();
+        byte[] data = new byte[] {1, 2, 3};
+        String hash = "a".repeat(64);
+        manager.initPlayer(playerId, SyncState.IDLE);
+        manager.markSerializedClipboard(playerId, clipboard, hash, data);
+
+        manager.forgetClipboard(playerId);
+        manager.removePlayer(playerId);
+        manager.initPlayer(playerId, SyncState.IDLE);
+
+        ClipboardManager.SerializedBytes cached = manager.getSerializedBytes(playerId, clipboard);
+        assertSame(data, cached.data());
+        assertEquals(hash, cached.hash());
+        assertNull(manager.getSerializedBytes(playerId, new Object()));
+
+        clock.addAndGet(Constants.UNCHANGED_CLIPBOARD_RECHECK_MS);
+        assertNull(manager.getSerializedBytes(playerId, clipboard));
+        assertEquals(0L, manager.getSerializedBytesSize());
+    }
+
+    @Test
+    public void serializedBytesStayWithinTheirBudget() {
+        ClipboardManager manager = new ClipboardManager(() -> 10_000L, 8L);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Object firstClipboard = new Object();
+        Object secondClipboard = new Object();
+
+        manager.markSerializedClipboard(first, firstClipboard, "a".repeat(64), new byte[5]);
+        manager.markSerializedClipboard(second, secondClipboard, "b".repeat(64), new byte[5]);
+
+        assertNull(manager.getSerializedBytes(first, firstClipboard));
+        assertEquals(5, manager.getSerializedBytes(second, secondClipboard).data().length);
+        assertEquals(5L, manager.getSerializedBytesSize());
+
+        manager.markSerializedClipboard(second, secondClipboard, "c".repeat(64), new byte[9]);
+        assertNull(manager.getSerializedBytes(second, secondClipboard));
+        assertEquals(0L, manager.getSerializedBytesSize());
+        manager.shutdown();
+    }
+
+    @Test
+    public void lateHashUpdatesDoNotTrackARemovedPlayer() {
+        ClipboardManager manager = new ClipboardManager();
+        UUID playerId = UUID.randomUUID();
+        manager.initPlayer(playerId);
+        manager.removePlayer(playerId);
+
+        manager.markUploadedClipboard(playerId, "a".repeat(64));
+        manager.forceSetState(playerId, SyncState.IDLE);
+
+        assertFalse(manager.isTracked(playerId));
+        assertNull(manager.getState(playerId));
+        assertFalse(manager.compareAndSetState(playerId, null, SyncState.CHECKING));
+        assertEquals("a".repeat(64), manager.getRemoteHash(playerId));
+
+        manager.initPlayer(playerId, SyncState.IDLE);
+        assertTrue(manager.compareAndSetState(playerId, SyncState.IDLE, SyncState.CHECKING));
+        assertTrue(manager.compareAndSetState(playerId, SyncState.CHECKING, SyncState.UPLOADING));
+        assertEquals(SyncState.UPLOADING, manager.getState(playerId));
+    }
 }
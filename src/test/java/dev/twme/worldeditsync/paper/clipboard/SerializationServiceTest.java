@@ -0,0 +1,126 @@
+package dev.twme.worldeditsync.paper.clipboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SerializationServiceTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicLong cpu = new AtomicLong();
+
+    @Test
+    public void runsQueuedClipboardsSmallestFirst() throws Exception {
+        try (SerializationService service = new SerializationService(1, 0L, now::get, cpu::get)) {
+            CountDownLatch blocker = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(3);
+            List<Long> order = new CopyOnWriteArrayList<>();
+            assertTrue(service.submit(1L, () -> await(blocker)));
+
+            for (long size : new long[] {30L, 10L, 20L}) {
+                assertTrue(service.submit(size, () -> {
+                    order.add(size);
+                    done.countDown();
+                }));
+            }
+            assertEquals(3, service.getQueuedJobs());
+            blocker.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(10L, 20L, 30L), order);
+        }
+    }
+
+    @Test
+    public void holdsBackWorkUntilTheCpuBudgetRefills() throws Exception {
+        long budget = TimeUnit.MILLISECONDS.toNanos(50L);
+        try (SerializationService service = new SerializationService(2, budget, now::get, cpu::get)) {
+            CountDownLatch first = new CountDownLatch(1);
+            assertTrue(service.submit(1L, () -> {
+                cpu.addAndGet(2 * budget);
+                first.countDown();
+            }));
+            assertTrue(first.await(5, TimeUnit.SECONDS));
+            waitUntilIdle(service);
+
+            CountDownLatch second = new CountDownLatch(1);
+            assertTrue(service.submit(1L, second::countDown));
+            assertFalse(second.await(200, TimeUnit.MILLISECONDS));
+            assertEquals(1, service.getQueuedJobs());
+
+            // One tick repays the overdraft and the next earns budget for another job.
+            now.addAndGet(2 * SerializationService.TICK_NANOS);
+            assertTrue(second.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void rejectsWorkWhenFullOrClosed() {
+        SerializationService service = new SerializationService(1, 0L, now::get, cpu::get);
+        CountDownLatch blocker = new CountDownLatch(1);
+        try {
+            assertTrue(service.submit(1L, () -> await(blocker)));
+            for (int index = 0; index < SerializationService.MAX_QUEUED_JOBS; index++) {
+                assertTrue(service.submit(1L, () -> { }));
+            }
+            assertFalse(service.submit(1L, () -> { }));
+        } finally {
+            service.close();
+            blocker.countDown();
+        }
+        assertEquals(0, service.getQueuedJobs());
+        assertFalse(service.submit(1L, () -> { }));
+    }
+
+    @Test
+    public void closeRunsTheDropCallbackOfEveryQueuedJob() {
+        SerializationService service = new SerializationService(1, 0L, now::get, cpu::get);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger dropped = new AtomicInteger();
+        AtomicInteger ran = new AtomicInteger();
+        try {
+            assertTrue(service.submit(1L, () -> await(blocker), dropped::incrementAndGet));
+            assertTrue(service.submit(2L, ran::incrementAndGet, dropped::incrementAndGet));
+            assertTrue(service.submit(3L, ran::incrementAndGet, dropped::incrementAndGet));
+        } finally {
+            service.close();
+            blocker.countDown();
+        }
+        assertEquals(2, dropped.get());
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    public void sizesThePoolFromTheCoreFraction() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        assertEquals(1, SerializationService.threadsFor(0.0));
+        assertEquals(cores, SerializationService.threadsFor(1.0));
+        assertEquals(cores, SerializationService.threadsFor(4.0));
+        assertEquals(1, SerializationService.threadsFor(Double.NaN));
+    }
+
+    private static void waitUntilIdle(SerializationService service) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (service.getRunningJobs() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(0, service.getRunningJobs());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
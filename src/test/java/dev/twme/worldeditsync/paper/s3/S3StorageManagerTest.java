@@ -1,17 +1,38 @@
 package dev.twme.worldeditsync.paper.s3;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import dev.twme.worldeditsync.common.crypto.MessageCipher;
+import dev.twme.worldeditsync.common.util.HashUtil;
+import io.minio.ComposeObjectArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
 import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.errors.ErrorResponseException;
 
 public class S3StorageManagerTest {
 
@@ -32,4 +53,141 @@ public class S3StorageManagerTest {
 
         verify(client).close();
     }
+
+    @Test
+    public void largeUploadsComposeIndependentlyRetriedParts() throws Exception {
+        MinioClient client = mock(MinioClient.class);
+        when(client.putObject(any()))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenReturn(null);
+        when(client.removeObjects(any())).thenReturn(List.of());
+        int maxClipboardSize = 16 * 1024 * 1024;
+        S3StorageManager storage = new S3StorageManager(
+                "http://127.0.0.1:9000", "access", "secret", "bucket", "",
+                new MessageCipher("token"), maxClipboardSize,
+                S3StorageManager.MIN_PART_SIZE, 2, mock(Logger.class));
+        byte[] data = new byte[(int) (S3StorageManager.MIN_PART_SIZE * 2 + 1024)];
+        new Random(3L).nextBytes(data);
+
+        try {
+            storage.uploadClipboard(client, "player", data, HashUtil.sha256Hex(data), 1L);
+        } finally {
+            storage.close();
+        }
+
+        ArgumentCaptor<ComposeObjectArgs> composed = ArgumentCaptor.forClass(ComposeObjectArgs.class);
+        verify(client).composeObject(composed.capture());
+        assertEquals(3, composed.getValue().sources().size());
+        // Three parts, one retry and the manifest update.
+        verify(client, times(5)).putObject(any(PutObjectArgs.class));
+        verify(client, atLeast(1)).removeObjects(any());
+    }
+
+    @Test
+    public void failedComposeRemovesEveryUploadedPart() throws Exception {
+        MinioClient client = mock(MinioClient.class);
+        List<String> putParts = new ArrayList<>();
+        when(client.putObject(any())).thenAnswer(invocation -> {
+            PutObjectArgs args = invocation.getArgument(0);
+            synchronized (putParts) {
+                putParts.add(args.object());
+            }
+            return null;
+        });
+        when(client.composeObject(any())).thenThrow(new IllegalStateException("compose failed"));
+        when(client.removeObjects(any())).thenReturn(List.of());
+        S3StorageManager storage = new S3StorageManager(
+                "http://127.0.0.1:9000", "access", "secret", "bucket", "",
+                new MessageCipher("token"), 16 * 1024 * 1024,
+                S3StorageManager.MIN_PART_SIZE, 2, mock(Logger.class));
+        byte[] data = new byte[(int) (S3StorageManager.MIN_PART_SIZE * 2 + 1024)];
+        new Random(5L).nextBytes(data);
+
+        try {
+            assertThrows(IllegalStateException.class, () -> storage.uploadClipboard(
+                    client, "player", data, HashUtil.sha256Hex(data), 1L));
+        } finally {
+            storage.close();
+        }
+
+        ArgumentCaptor<RemoveObjectsArgs> removed = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(client).removeObjects(removed.capture());
+        List<Object> removedParts = new ArrayList<>();
+        removed.getValue().objects().forEach(removedParts::add);
+        assertEquals(3, putParts.size());
+        assertEquals(putParts.size(), removedParts.size());
+    }
+
+    @Test
+    public void largeDownloadsReassembleParallelRangesInOrder() throws Exception {
+        MessageCipher cipher = new MessageCipher("token");
+        byte[] data = new byte[(int) (S3StorageManager.MIN_PART_SIZE * 2 + 1024)];
+        new Random(7L).nextBytes(data);
+        byte[] encrypted = cipher.encrypt(data);
+        MinioClient client = mock(MinioClient.class);
+        Map<Long, Object> ranges = rangeResponses(encrypted);
+        when(client.getObject(any())).thenAnswer(invocation ->
+                ranges.get(invocation.<GetObjectArgs>getArgument(0).offset()));
+        S3StorageManager storage = new S3StorageManager(
+                "http://127.0.0.1:9000", "access", "secret", "bucket", "",
+                cipher, 16 * 1024 * 1024, S3StorageManager.MIN_PART_SIZE, 2, mock(Logger.class));
+
+        byte[] downloaded;
+        try {
+            downloaded = storage.downloadClipboard(client, "player", encrypted.length);
+        } finally {
+            storage.close();
+        }
+
+        assertArrayEquals(data, downloaded);
+        verify(client, times(3)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    public void downloadFailsWhenTheObjectChangesBetweenRanges() throws Exception {
+        MessageCipher cipher = new MessageCipher("token");
+        byte[] data = new byte[(int) (S3StorageManager.MIN_PART_SIZE * 2 + 1024)];
+        new Random(9L).nextBytes(data);
+        byte[] encrypted = cipher.encrypt(data);
+        MinioClient client = mock(MinioClient.class);
+        Map<Long, Object> ranges = rangeResponses(encrypted);
+        // Later ranges are read with the first range's ETag, which no longer matches.
+        ErrorResponseException changed = mock(ErrorResponseException.class, RETURNS_DEEP_STUBS);
+        when(changed.response().code()).thenReturn(412);
+        ranges.put(S3StorageManager.MIN_PART_SIZE, changed);
+        when(client.getObject(any())).thenAnswer(invocation -> {
+            Object range = ranges.get(invocation.<GetObjectArgs>getArgument(0).offset());
+            if (range instanceof ErrorResponseException e) {
+                throw e;
+            }
+            return range;
+        });
+        S3StorageManager storage = new S3StorageManager(
+                "http://127.0.0.1:9000", "access", "secret", "bucket", "",
+                cipher, 16 * 1024 * 1024, S3StorageManager.MIN_PART_SIZE, 2, mock(Logger.class));
+
+        IOException failure;
+        try {
+            failure = assertThrows(IOException.class,
+                    () -> storage.downloadClipboard(client, "player", encrypted.length));
+        } finally {
+            storage.close();
+        }
+
+        assertEquals("S3 clipboard changed while it was being downloaded", failure.getMessage());
+    }
+
+    /** One stubbed response per part-sized range of {@code object}, keyed by its offset. */
+    private static Map<Long, Object> rangeResponses(byte[] object) throws Exception {
+        Map<Long, Object> ranges = new ConcurrentHashMap<>();
+        for (long offset = 0L; offset < object.length; offset += S3StorageManager.MIN_PART_SIZE) {
+            int end = (int) Math.min(object.length, offset + S3StorageManager.MIN_PART_SIZE);
+            byte[] range = Arrays.copyOfRange(object, (int) offset, end);
+            GetObjectResponse response = mock(GetObjectResponse.class, RETURNS_DEEP_STUBS);
+            when(response.headers().get("ETag")).thenReturn("\"v1\"");
+            when(response.readNBytes(range.length)).thenReturn(range);
+            ranges.put(offset, response);
+        }
+        return ranges;
+    }
 }
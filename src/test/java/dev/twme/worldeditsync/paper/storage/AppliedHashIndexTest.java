@@ -0,0 +1,93 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.twme.worldeditsync.paper.storage.AppliedHashIndex.AppliedClipboard;
+
+public class AppliedHashIndexTest {
+
+    private static final String REMOTE = "a".repeat(64);
+    private static final String LOCAL = "b".repeat(64);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void persistsAppliedHashesAcrossRestarts() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("applied-hashes.txt");
+        UUID playerId = UUID.randomUUID();
+        AppliedHashIndex index = new AppliedHashIndex(file, 10);
+        index.initialize();
+        assertTrue(index.record(playerId, REMOTE.toUpperCase(java.util.Locale.ROOT), LOCAL));
+        index.flush();
+
+        AppliedHashIndex restarted = new AppliedHashIndex(file, 10);
+        restarted.initialize();
+
+        assertEquals(new AppliedClipboard(REMOTE, LOCAL), restarted.get(playerId));
+    }
+
+    @Test
+    public void onlyMarksRealChangesForFlushing() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("applied-hashes.txt");
+        UUID playerId = UUID.randomUUID();
+        AppliedHashIndex index = new AppliedHashIndex(file, 10);
+        index.initialize();
+
+        assertTrue(index.record(playerId, REMOTE, LOCAL));
+        assertFalse(index.record(playerId, REMOTE, LOCAL));
+        assertFalse(index.record(playerId, "not-a-hash", LOCAL));
+        index.flush();
+        Files.delete(file);
+        index.flush();
+
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPlayers() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("applied-hashes.txt");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        AppliedHashIndex index = new AppliedHashIndex(file, 2);
+        index.initialize();
+        index.record(first, REMOTE, LOCAL);
+        index.record(second, REMOTE, LOCAL);
+        index.get(first);
+
+        index.record(third, REMOTE, LOCAL);
+
+        assertEquals(2, index.size());
+        assertNull(index.get(second));
+    }
+
+    @Test
+    public void skipsMalformedLines() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("applied-hashes.txt");
+        UUID playerId = UUID.randomUUID();
+        Files.write(file, List.of(
+                "garbage",
+                "not-a-uuid " + REMOTE + " " + LOCAL,
+                UUID.randomUUID() + " short " + LOCAL,
+                playerId + " " + REMOTE + " " + LOCAL));
+        AppliedHashIndex index = new AppliedHashIndex(file, 10);
+
+        index.initialize();
+
+        assertEquals(1, index.size());
+        assertEquals(REMOTE, index.get(playerId).remoteHash());
+    }
+}
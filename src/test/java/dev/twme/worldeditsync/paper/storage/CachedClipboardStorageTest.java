@@ -0,0 +1,122 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.logging.Logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.twme.worldeditsync.common.storage.ClipboardStorage;
+import dev.twme.worldeditsync.common.storage.StoredClipboard;
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+public class CachedClipboardStorageTest {
+
+    private static final byte[] DATA = new byte[] {1, 2, 3, 4, 5};
+    private static final String HASH = HashUtil.sha256Hex(DATA);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void streamedUploadIsCachedForLaterDownloads() throws Exception {
+        MemoryStorage backend = new MemoryStorage();
+        LocalClipboardCache cache = new LocalClipboardCache(
+                temporaryFolder.newFolder("upload").toPath(), 1_024L);
+        CachedClipboardStorage storage = new CachedClipboardStorage(
+                backend, cache, 1_024, Logger.getAnonymousLogger());
+        storage.initialize();
+
+        storage.upload("player", new ByteArrayInputStream(DATA), DATA.length, HASH, 1L);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        storage.download("player", new StoredClipboard(true, HASH, DATA.length, 1L), output);
+
+        assertTrue(cache.contains(HASH));
+        assertArrayEquals(DATA, output.toByteArray());
+        assertEquals(0, backend.downloads);
+    }
+
+    @Test
+    public void streamedDownloadMissFillsTheCache() throws Exception {
+        MemoryStorage backend = new MemoryStorage();
+        backend.data = DATA;
+        LocalClipboardCache cache = new LocalClipboardCache(
+                temporaryFolder.newFolder("download").toPath(), 1_024L);
+        CachedClipboardStorage storage = new CachedClipboardStorage(
+                backend, cache, 1_024, Logger.getAnonymousLogger());
+        storage.initialize();
+        StoredClipboard expected = new StoredClipboard(true, HASH, DATA.length, 1L);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        storage.download("player", expected, first);
+        storage.download("player", expected, second);
+
+        assertArrayEquals(DATA, first.toByteArray());
+        assertArrayEquals(DATA, second.toByteArray());
+        assertEquals(1, backend.downloads);
+    }
+
+    @Test
+    public void corruptedBackendDataIsNotCached() throws Exception {
+        MemoryStorage backend = new MemoryStorage();
+        backend.data = new byte[] {9, 9, 9};
+        LocalClipboardCache cache = new LocalClipboardCache(
+                temporaryFolder.newFolder("corrupt").toPath(), 1_024L);
+        CachedClipboardStorage storage = new CachedClipboardStorage(
+                backend, cache, 1_024, Logger.getAnonymousLogger());
+        storage.initialize();
+
+        storage.download("player", new StoredClipboard(true, HASH, 3L, 1L),
+                new ByteArrayOutputStream());
+
+        assertFalse(cache.contains(HASH));
+    }
+
+    private static final class MemoryStorage implements ClipboardStorage {
+        private byte[] data;
+        private int downloads;
+
+        @Override
+        public boolean initialize() {
+            return true;
+        }
+
+        @Override
+        public StoredClipboard inspect(String playerId) {
+            return StoredClipboard.missing();
+        }
+
+        @Override
+        public void upload(String playerId, byte[] data, String hash, long updatedAt) {
+            this.data = data.clone();
+        }
+
+        @Override
+        public byte[] download(String playerId, StoredClipboard expected) {
+            downloads++;
+            return data.clone();
+        }
+
+        @Override
+        public long download(String playerId, StoredClipboard expected, OutputStream output)
+                throws Exception {
+            byte[] payload = download(playerId, expected);
+            output.write(payload);
+            return payload.length;
+        }
+
+        @Override
+        public String description() {
+            return "memory";
+        }
+    }
+}
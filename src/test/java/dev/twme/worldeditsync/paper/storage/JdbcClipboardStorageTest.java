@@ -1,16 +1,21 @@
 package dev.twme.worldeditsync.paper.storage;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -110,9 +115,9 @@ public class JdbcClipboardStorageTest {
 
         try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
              PreparedStatement statement = connection.prepareStatement(
-                     "UPDATE worldeditsync_clipboards SET payload = ? WHERE player_id = ?")) {
-            statement.setBytes(1, new byte[1_024 + MessageCipher.ENCRYPTION_OVERHEAD_BYTES + 1]);
-            statement.setString(2, playerId);
+                     "UPDATE worldeditsync_clipboards_blobs SET payload = ? WHERE clipboard_hash = ?")) {
+            statement.setBytes(1, new byte[(int) MessageCipher.maxEncryptedSize(1_024) + 1]);
+            statement.setString(2, expected.hash());
             statement.executeUpdate();
         }
 
@@ -120,6 +125,101 @@ public class JdbcClipboardStorageTest {
         storage.close();
     }
 
+    @Test
+    public void identicalPayloadsShareOneStoredBlob() throws Exception {
+        Path database = temporaryFolder.newFile("shared.db").toPath();
+        JdbcClipboardStorage storage = storage(database, "token", 0L);
+        storage.initialize();
+        String firstPlayer = UUID.randomUUID().toString();
+        String secondPlayer = UUID.randomUUID().toString();
+        byte[] data = new byte[] {7, 7, 7, 7};
+        String hash = HashUtil.sha256Hex(data);
+
+        storage.upload(firstPlayer, data, hash, 1_000L);
+        storage.upload(secondPlayer, data, hash, 2_000L);
+        storage.upload(firstPlayer, data, hash, 3_000L);
+
+        assertEquals(1, countRows(database, "worldeditsync_clipboards_blobs"));
+        assertEquals(3_000L, storage.inspect(firstPlayer).updatedAt());
+        assertArrayEquals(data, storage.download(firstPlayer, storage.inspect(firstPlayer)));
+        assertArrayEquals(data, storage.download(secondPlayer, storage.inspect(secondPlayer)));
+        storage.close();
+    }
+
+    @Test
+    public void deduplicatedUploadStillConsumesItsStream() throws Exception {
+        Path database = temporaryFolder.newFile("drained.db").toPath();
+        JdbcClipboardStorage storage = storage(database, "token", 0L);
+        storage.initialize();
+        byte[] data = new byte[] {3, 1, 4, 1, 5};
+        String hash = HashUtil.sha256Hex(data);
+        storage.upload(UUID.randomUUID().toString(), data, hash, 1_000L);
+
+        ByteArrayInputStream second = new ByteArrayInputStream(data);
+        storage.upload(UUID.randomUUID().toString(), second, data.length, hash, 2_000L);
+
+        assertEquals(0, second.available());
+        assertEquals(1, countRows(database, "worldeditsync_clipboards_blobs"));
+        storage.close();
+    }
+
+    @Test
+    public void removesUnreferencedBlobsAfterRetention() throws Exception {
+        Path database = temporaryFolder.newFile("collect.db").toPath();
+        AtomicLong now = new AtomicLong(1_000_000L);
+        JdbcClipboardStorage storage = new JdbcClipboardStorage(
+                StorageType.SQLITE, "jdbc:sqlite:" + database, "", "", "worldeditsync_clipboards",
+                4, 2_000L, 0L, new MessageCipher("token"), 1_024, now::get);
+        storage.initialize();
+        String playerId = UUID.randomUUID().toString();
+        byte[] first = new byte[] {1};
+        byte[] second = new byte[] {2};
+        storage.upload(playerId, first, HashUtil.sha256Hex(first), now.get());
+        now.addAndGet(3_600_000L);
+        storage.upload(playerId, second, HashUtil.sha256Hex(second), now.get());
+
+        assertEquals(1, countRows(database, "worldeditsync_clipboards_blobs"));
+        assertArrayEquals(second, storage.download(playerId, storage.inspect(playerId)));
+        storage.close();
+    }
+
+    @Test
+    public void migratesPayloadsFromSingleTableLayout() throws Exception {
+        Path database = temporaryFolder.newFile("legacy.db").toPath();
+        String playerId = UUID.randomUUID().toString();
+        byte[] data = new byte[] {3, 1, 4, 1, 5};
+        byte[] encrypted = new MessageCipher("token").encrypt(data);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE worldeditsync_clipboards ("
+                        + "player_id VARCHAR(36) PRIMARY KEY, clipboard_hash VARCHAR(64) NOT NULL, "
+                        + "updated_at BIGINT NOT NULL, payload_size BIGINT NOT NULL, "
+                        + "payload BLOB NOT NULL)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO worldeditsync_clipboards VALUES (?, ?, ?, ?, ?)")) {
+                statement.setString(1, playerId);
+                statement.setString(2, HashUtil.sha256Hex(data));
+                statement.setLong(3, System.currentTimeMillis());
+                statement.setLong(4, encrypted.length);
+                statement.setBytes(5, encrypted);
+                statement.executeUpdate();
+            }
+        }
+
+        JdbcClipboardStorage storage = storage(database, "token", 0L);
+        assertTrue(storage.initialize());
+
+        assertArrayEquals(data, storage.download(playerId, storage.inspect(playerId)));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(
+                     "SELECT * FROM worldeditsync_clipboards WHERE 1 = 0")) {
+            assertEquals(4, result.getMetaData().getColumnCount());
+        }
+        storage.close();
+    }
+
     @Test
     public void validatesSqlTableName() throws Exception {
         Path database = temporaryFolder.newFile("invalid.db").toPath();
@@ -136,6 +236,15 @@ public class JdbcClipboardStorageTest {
                 1_024));
     }
 
+    private int countRows(Path database, String table) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
     private JdbcClipboardStorage storage(Path database, String token, long ttlMinutes) {
         return new JdbcClipboardStorage(
                 StorageType.SQLITE,
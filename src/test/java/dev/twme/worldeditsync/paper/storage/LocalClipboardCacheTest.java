@@ -0,0 +1,130 @@
+package dev.twme.worldeditsync.paper.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.twme.worldeditsync.common.util.HashUtil;
+
+public class LocalClipboardCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void persistsEntriesAcrossRestarts() throws Exception {
+        Path directory = temporaryFolder.newFolder("cache").toPath();
+        byte[] data = new byte[] {1, 2, 3, 4};
+        String hash = HashUtil.sha256Hex(data);
+        LocalClipboardCache cache = new LocalClipboardCache(directory, 1_024L);
+        cache.initialize();
+        cache.store(hash, data);
+
+        LocalClipboardCache restarted = new LocalClipboardCache(directory, 1_024L);
+        restarted.initialize();
+
+        assertArrayEquals(data, restarted.read(hash.toUpperCase(java.util.Locale.ROOT), 1_024));
+        assertEquals(data.length, restarted.getStoredBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntriesBySize() throws Exception {
+        LocalClipboardCache cache = new LocalClipboardCache(
+                temporaryFolder.newFolder("lru").toPath(), 10L);
+        cache.initialize();
+        byte[] first = new byte[] {1, 1, 1, 1};
+        byte[] second = new byte[] {2, 2, 2, 2};
+        byte[] third = new byte[] {3, 3, 3, 3};
+        cache.store(HashUtil.sha256Hex(first), first);
+        cache.store(HashUtil.sha256Hex(second), second);
+        cache.read(HashUtil.sha256Hex(first), 1_024);
+        cache.store(HashUtil.sha256Hex(third), third);
+
+        assertTrue(cache.contains(HashUtil.sha256Hex(first)));
+        assertFalse(cache.contains(HashUtil.sha256Hex(second)));
+        assertTrue(cache.contains(HashUtil.sha256Hex(third)));
+        assertEquals(8L, cache.getStoredBytes());
+    }
+
+    @Test
+    public void discardsCorruptedEntries() throws Exception {
+        Path directory = temporaryFolder.newFolder("corrupt").toPath();
+        byte[] data = new byte[] {5, 6, 7};
+        String hash = HashUtil.sha256Hex(data);
+        LocalClipboardCache cache = new LocalClipboardCache(directory, 1_024L);
+        cache.initialize();
+        cache.store(hash, data);
+        Files.write(directory.resolve(hash + ".schem"), new byte[] {9, 9, 9});
+
+        assertNull(cache.read(hash, 1_024));
+        assertFalse(cache.contains(hash));
+        assertFalse(Files.exists(directory.resolve(hash + ".schem")));
+    }
+
+    @Test
+    public void ignoresEntriesLargerThanTheCache() throws Exception {
+        LocalClipboardCache cache = new LocalClipboardCache(
+                temporaryFolder.newFolder("small").toPath(), 2L);
+        cache.initialize();
+        byte[] data = new byte[] {1, 2, 3};
+
+        cache.store(HashUtil.sha256Hex(data), data);
+
+        assertFalse(cache.contains(HashUtil.sha256Hex(data)));
+        assertEquals(0L, cache.getStoredBytes());
+    }
+
+    @Test
+    public void commitsStreamedEntriesOnlyWhenTheirHashMatches() throws Exception {
+        Path directory = temporaryFolder.newFolder("stream").toPath();
+        LocalClipboardCache cache = new LocalClipboardCache(directory, 1_024L);
+        cache.initialize();
+        byte[] data = new byte[] {4, 5, 6, 7};
+        String hash = HashUtil.sha256Hex(data);
+
+        try (LocalClipboardCache.Pending wrong = cache.begin(hash)) {
+            wrong.write(new byte[] {4, 5, 6}, 0, 3);
+            assertFalse(wrong.commit());
+        }
+        assertFalse(cache.contains(hash));
+
+        try (LocalClipboardCache.Pending pending = cache.begin(hash)) {
+            pending.write(data, 0, 2);
+            pending.write(data, 2, 2);
+            assertTrue(pending.commit());
+        }
+        assertNull(cache.begin(hash));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(data.length, cache.copyTo(hash, 1_024, output));
+        assertArrayEquals(data, output.toByteArray());
+        try (var files = Files.list(directory)) {
+            assertEquals(1L, files.count());
+        }
+    }
+
+    @Test
+    public void copyToWritesNothingForCorruptedEntries() throws Exception {
+        Path directory = temporaryFolder.newFolder("corrupt-stream").toPath();
+        byte[] data = new byte[] {8, 9};
+        String hash = HashUtil.sha256Hex(data);
+        LocalClipboardCache cache = new LocalClipboardCache(directory, 1_024L);
+        cache.initialize();
+        cache.store(hash, data);
+        Files.write(directory.resolve(hash + ".schem"), new byte[] {1, 1});
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(-1L, cache.copyTo(hash, 1_024, output));
+        assertEquals(0, output.size());
+        assertFalse(cache.contains(hash));
+    }
+}
@@ -1,17 +1,26 @@
 package dev.twme.worldeditsync.paper.storage;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.junit.Test;
 
+import dev.twme.worldeditsync.common.Constants;
 import dev.twme.worldeditsync.paper.s3.S3StorageManager;
 import io.minio.MinioClient;
 
 public class S3ClipboardStorageTest {
 
+    private static final String HASH = "a".repeat(64);
+
     @Test
     public void closeReleasesMinioHttpResources() throws Exception {
         S3StorageManager manager = mock(S3StorageManager.class);
@@ -24,4 +33,87 @@ public class S3ClipboardStorageTest {
 
         verify(client).close();
     }
+
+    @Test
+    public void unchangedManifestSkipsPerPlayerStat() throws Exception {
+        AtomicLong now = new AtomicLong(10_000L);
+        S3StorageManager manager = mock(S3StorageManager.class);
+        MinioClient client = mock(MinioClient.class);
+        when(manager.initialize()).thenReturn(client);
+        when(manager.getManifestVersion(eq(client), any())).thenReturn("v1");
+        when(manager.getRemoteObject(client, "player"))
+                .thenReturn(new S3StorageManager.RemoteObject(true, HASH, 128L, 5L));
+        S3ClipboardStorage storage = new S3ClipboardStorage(manager, now::get);
+        storage.initialize();
+
+        assertEquals(HASH, storage.inspect("player").hash());
+        now.addAndGet(5_000L);
+        assertEquals(HASH, storage.inspect("player").hash());
+
+        verify(manager, times(1)).getRemoteObject(client, "player");
+        verify(manager, times(2)).getManifestVersion(eq(client), any());
+    }
+
+    @Test
+    public void changedManifestInvalidatesCachedInspections() throws Exception {
+        AtomicLong now = new AtomicLong(10_000L);
+        S3StorageManager manager = mock(S3StorageManager.class);
+        MinioClient client = mock(MinioClient.class);
+        when(manager.initialize()).thenReturn(client);
+        when(manager.getManifestVersion(eq(client), any())).thenReturn("v1", "v2");
+        when(manager.getRemoteObject(client, "player"))
+                .thenReturn(S3StorageManager.RemoteObject.missing());
+        S3ClipboardStorage storage = new S3ClipboardStorage(manager, now::get);
+        storage.initialize();
+
+        storage.inspect("player");
+        now.addAndGet(5_000L);
+        storage.inspect("player");
+
+        verify(manager, times(2)).getRemoteObject(client, "player");
+    }
+
+    @Test
+    public void missingManifestFallsBackToStatAndCachedEntriesExpire() throws Exception {
+        AtomicLong now = new AtomicLong(10_000L);
+        S3StorageManager manager = mock(S3StorageManager.class);
+        MinioClient client = mock(MinioClient.class);
+        when(manager.initialize()).thenReturn(client);
+        when(manager.getManifestVersion(eq(client), any())).thenReturn(null, null, "v1", "v1");
+        when(manager.getRemoteObject(client, "player"))
+                .thenReturn(S3StorageManager.RemoteObject.missing());
+        S3ClipboardStorage storage = new S3ClipboardStorage(manager, now::get);
+        storage.initialize();
+
+        storage.inspect("player");
+        now.addAndGet(5_000L);
+        storage.inspect("player");
+        now.addAndGet(5_000L);
+        storage.inspect("player");
+        now.addAndGet(Constants.UNCHANGED_CLIPBOARD_RECHECK_MS);
+        storage.inspect("player");
+
+        verify(manager, times(4)).getRemoteObject(client, "player");
+    }
+
+    @Test
+    public void localUploadInvalidatesCachedInspection() throws Exception {
+        AtomicLong now = new AtomicLong(10_000L);
+        S3StorageManager manager = mock(S3StorageManager.class);
+        MinioClient client = mock(MinioClient.class);
+        when(manager.initialize()).thenReturn(client);
+        when(manager.getManifestVersion(eq(client), any())).thenReturn("v1");
+        String uploaded = "b".repeat(64);
+        when(manager.getRemoteObject(client, "player"))
+                .thenReturn(S3StorageManager.RemoteObject.missing(),
+                        new S3StorageManager.RemoteObject(true, uploaded, 128L, 5L));
+        S3ClipboardStorage storage = new S3ClipboardStorage(manager, now::get);
+        storage.initialize();
+
+        storage.inspect("player");
+        storage.upload("player", new byte[] {1, 2, 3}, uploaded, 5L);
+
+        assertEquals(uploaded, storage.inspect("player").hash());
+        verify(manager, times(2)).getRemoteObject(client, "player");
+    }
 }
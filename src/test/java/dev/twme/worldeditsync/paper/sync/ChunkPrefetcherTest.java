@@ -0,0 +1,57 @@
+package dev.twme.worldeditsync.paper.sync;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import org.junit.Test;
+
+public class ChunkPrefetcherTest {
+
+    @Test
+    public void readsOnlyUpToCapacityAheadOfTheSender() throws Exception {
+        ArrayDeque<Runnable> worker = new ArrayDeque<>();
+        ByteArrayInputStream source = new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7});
+        ChunkPrefetcher chunks = new ChunkPrefetcher(source, 7L, 3, 2, worker::add);
+        assertEquals(3, chunks.totalChunks());
+
+        assertNull(chunks.next());
+        worker.poll().run();
+        assertEquals(1, source.available());
+
+        assertArrayEquals(new byte[] {1, 2, 3}, chunks.next());
+        worker.poll().run();
+        assertArrayEquals(new byte[] {4, 5, 6}, chunks.next());
+        assertArrayEquals(new byte[] {7}, chunks.next());
+        assertNull(chunks.next());
+        assertEquals(0, worker.size());
+    }
+
+    @Test
+    public void reportsShortStreamsAfterTheChunksReadBeforeThem() throws Exception {
+        ChunkPrefetcher chunks = new ChunkPrefetcher(
+                new ByteArrayInputStream(new byte[] {1, 2, 3, 4}), 6L, 3, 4, Runnable::run);
+
+        chunks.prefetch();
+
+        assertArrayEquals(new byte[] {1, 2, 3}, chunks.next());
+        assertThrows(IOException.class, chunks::next);
+    }
+
+    @Test
+    public void rejectedWorkerFailsTheUpload() {
+        ChunkPrefetcher chunks = new ChunkPrefetcher(
+                new ByteArrayInputStream(new byte[] {1}), 1L, 3, 1, task -> {
+                    throw new IllegalStateException("scheduler stopped");
+                });
+
+        chunks.prefetch();
+
+        assertThrows(IOException.class, chunks::next);
+    }
+}
@@ -0,0 +1,46 @@
+package dev.twme.worldeditsync.paper.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class StorageIoExecutorTest {
+
+    @Test
+    public void limitsSlotsToTheBackendConcurrency() {
+        try (StorageIoExecutor io = new StorageIoExecutor("test", 3)) {
+            assertTrue(io.tryAcquire());
+            assertTrue(io.tryAcquire());
+            assertTrue(io.tryAcquire());
+            assertFalse(io.tryAcquire());
+
+            io.release();
+            assertEquals(1, io.availableSlots());
+            assertTrue(io.tryAcquire());
+        }
+    }
+
+    @Test
+    public void runsCallsOnVirtualThreadsUntilClosed() throws Exception {
+        StorageIoExecutor io = new StorageIoExecutor("test", 0);
+        assertEquals(1, io.availableSlots());
+
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicBoolean virtual = new AtomicBoolean();
+        assertTrue(io.execute(() -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            ran.countDown();
+        }));
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(virtual.get());
+
+        io.close();
+        assertFalse(io.execute(() -> { }));
+    }
+}
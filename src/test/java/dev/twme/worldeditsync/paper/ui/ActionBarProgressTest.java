@@ -1,6 +1,7 @@
 package dev.twme.worldeditsync.paper.ui;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -10,74 +11,63 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.bukkit.entity.Player;
 import org.junit.Before;
 import org.junit.Test;
 
+import dev.twme.worldeditsync.paper.ui.ActionBarProgress.Frame;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress.Operation;
 import dev.twme.worldeditsync.paper.ui.ActionBarProgress.ProgressHandle;
 
 public class ActionBarProgressTest {
 
-    private final AtomicLong now = new AtomicLong();
     private final Queue<Runnable> scheduled = new ArrayDeque<>();
-    private final List<String> messages = new ArrayList<>();
+    private final List<Frame> frames = new ArrayList<>();
     private Player player;
     private ActionBarProgress progress;
 
     @Before
     public void setUp() {
-        player = mock(Player.class);
-        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
-        when(player.isOnline()).thenReturn(true);
+        player = onlinePlayer();
         progress = new ActionBarProgress(
                 true,
-                now::get,
                 (ignored, task) -> scheduled.add(task),
-                (ignored, message) -> messages.add(message));
+                (ignored, frame) -> frames.add(frame));
     }
 
     @Test
-    public void rateLimitsAndCoalescesIntermediateProgress() {
+    public void coalescesProgressIntoOneFramePerRenderPass() {
         ProgressHandle handle = progress.begin(player, Operation.UPLOAD);
-        runNext();
-
-        assertEquals(1, messages.size());
-        assertTrue(messages.get(0).contains("Uploading clipboard"));
-
-        now.set(TimeUnit.MILLISECONDS.toNanos(999L));
-        handle.update(0.50);
         assertTrue(scheduled.isEmpty());
+        renderAndRun();
+
+        assertEquals(1, frames.size());
+        assertTrue(text(0).contains("Uploading clipboard"));
 
-        now.set(TimeUnit.SECONDS.toNanos(1L));
         handle.update(0.09);
-        assertTrue(scheduled.isEmpty());
+        renderAndRun();
+        assertEquals(1, frames.size());
 
         handle.update(0.10);
-        handle.update(0.90);
-        assertEquals(1, scheduled.size());
-        runNext();
+        handle.update(0.37);
+        handle.update(0.20);
+        renderAndRun();
 
-        assertEquals(2, messages.size());
-        assertTrue(messages.get(1).contains("10%"));
+        assertEquals(2, frames.size());
+        assertTrue(text(1).contains("30%"));
 
-        now.set(TimeUnit.MILLISECONDS.toNanos(1_999L));
-        handle.update(0.95);
-        assertTrue(scheduled.isEmpty());
+        handle.update(0.39);
+        renderAndRun();
+        assertEquals(2, frames.size());
 
-        now.set(TimeUnit.SECONDS.toNanos(2L));
         handle.update(0.95);
-        assertEquals(1, scheduled.size());
-
         handle.complete();
-        assertEquals(1, scheduled.size());
-        runNext();
+        handle.update(0.99);
+        renderAndRun();
 
-        assertEquals(3, messages.size());
-        assertTrue(messages.get(2).contains("100%"));
+        assertEquals(3, frames.size());
+        assertTrue(text(2).contains("100%"));
         assertEquals(0, progress.activeDisplayCount());
     }
 
@@ -85,31 +75,31 @@ public class ActionBarProgressTest {
     public void completionReplacesUnsentStartMessage() {
         ProgressHandle handle = progress.begin(player, Operation.DOWNLOAD);
         handle.complete();
+        renderAndRun();
 
-        assertEquals(1, scheduled.size());
-        runNext();
-
-        assertEquals(1, messages.size());
-        assertTrue(messages.get(0).contains("100%"));
-        assertTrue(messages.get(0).contains("Clipboard ready"));
+        assertEquals(1, frames.size());
+        assertTrue(text(0).contains("100%"));
+        assertTrue(text(0).contains("Clipboard ready"));
     }
 
     @Test
-    public void delayedStartFlushMovesTheNextProgressWindow() {
-        ProgressHandle handle = progress.begin(player, Operation.UPLOAD);
-        now.set(TimeUnit.SECONDS.toNanos(2L));
-        runNext();
-
-        handle.update(0.50);
-        assertTrue(scheduled.isEmpty());
-
-        now.set(TimeUnit.MILLISECONDS.toNanos(2_999L));
-        handle.update(0.50);
-        assertTrue(scheduled.isEmpty());
-
-        now.set(TimeUnit.SECONDS.toNanos(3L));
-        handle.update(0.50);
-        assertEquals(1, scheduled.size());
+    public void rendersEveryChangedPlayerInOnePassAndSharesFrames() {
+        Player other = onlinePlayer();
+        Player idle = onlinePlayer();
+        ProgressHandle first = progress.begin(player, Operation.UPLOAD);
+        ProgressHandle second = progress.begin(other, Operation.UPLOAD);
+        progress.begin(idle, Operation.DOWNLOAD);
+        renderAndRun();
+        frames.clear();
+
+        first.update(0.5);
+        second.update(0.5);
+        progress.render();
+
+        assertEquals(2, scheduled.size());
+        runAll();
+        assertEquals(2, frames.size());
+        assertSame(frames.get(0), frames.get(1));
     }
 
     @Test
@@ -118,11 +108,10 @@ public class ActionBarProgressTest {
         ProgressHandle current = progress.begin(player, Operation.DOWNLOAD);
 
         stale.complete();
-        runNext();
-        runNext();
+        renderAndRun();
 
-        assertEquals(1, messages.size());
-        assertTrue(messages.get(0).contains("Downloading clipboard"));
+        assertEquals(1, frames.size());
+        assertTrue(text(0).contains("Downloading clipboard"));
 
         current.cancel();
         assertEquals(0, progress.activeDisplayCount());
@@ -132,21 +121,38 @@ public class ActionBarProgressTest {
     public void disabledDisplayDoesNotScheduleMessages() {
         ActionBarProgress disabled = new ActionBarProgress(
                 false,
-                now::get,
                 (ignored, task) -> scheduled.add(task),
-                (ignored, message) -> messages.add(message));
+                (ignored, frame) -> frames.add(frame));
 
         ProgressHandle handle = disabled.begin(player, Operation.UPLOAD);
         handle.update(0.5);
         handle.complete();
+        disabled.render();
 
         assertTrue(scheduled.isEmpty());
-        assertTrue(messages.isEmpty());
+        assertTrue(frames.isEmpty());
         assertEquals(0, disabled.activeDisplayCount());
     }
 
-    private void runNext() {
-        Runnable task = scheduled.remove();
-        task.run();
+    private static Player onlinePlayer() {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+        return player;
+    }
+
+    private String text(int index) {
+        return frames.get(index).text();
+    }
+
+    private void renderAndRun() {
+        progress.render();
+        runAll();
+    }
+
+    private void runAll() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove().run();
+        }
     }
 }